@@ -0,0 +1,102 @@
+package io.higgs.benchmarks.boson;
+
+import io.higgs.boson.BosonMessage;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.higgs.boson.serialization.v1.BosonReader;
+import io.higgs.boson.serialization.v1.BosonWriter;
+import io.higgs.examples.boson.Nested;
+import io.higgs.examples.boson.NestedField;
+import io.higgs.examples.boson.PoloExample;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link BosonWriter#serialize(Object, ByteBuf)} and {@link BosonReader#deSerialize(ByteBuf)} for
+ * each {@link Payload}, compare with {@link JacksonBenchmark}. A writer and reader are reused for every operation
+ * and values are written to a reused buffer, as {@link io.higgs.boson.Boson} does. Run with -prof gc, or
+ * {@link #main(String[])}, for the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BosonBenchmark {
+    @Param({ "PRIMITIVES", "STRINGS", "POLO", "LIST", "MAP", "CIRCULAR" })
+    public Payload payload;
+    /**
+     * Protocol version, 1 is the original encoding and 3 the compact one, see {@link BosonMessage#VERSION_3}
+     */
+    @Param({ "1", "3" })
+    public short version;
+    private Object value;
+    private BosonWriter writer;
+    private BosonReader reader;
+    private ByteBuf out;
+    private ByteBuf serialized;
+
+    @Setup
+    public void setup() {
+        SchemaRegistry schemas = new SchemaRegistry();
+        for (Class<?> type : new Class<?>[]{ Primitives.class, Strings.class, PoloExample.class, Nested.class,
+                NestedField.class, Node.class }) {
+            schemas.register(type);
+        }
+        value = payload.create();
+        writer = new BosonWriter();
+        writer.setProtocolVersion(version);
+        writer.setSchemas(schemas);
+        reader = new BosonReader();
+        reader.setProtocolVersion(version);
+        reader.setSchemas(schemas);
+        out = Unpooled.buffer();
+        serialized = Unpooled.buffer();
+        writer.serialize(value, serialized);
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.release();
+        serialized.release();
+    }
+
+    @Benchmark
+    public int write() {
+        out.clear();
+        writer.serialize(value, out);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public Object read() {
+        serialized.readerIndex(0);
+        return reader.deSerialize(serialized);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BosonBenchmark.class.getSimpleName())
+                .include(JacksonBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,61 @@
+package io.higgs.benchmarks.boson;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same payloads as {@link BosonBenchmark} written to and read from JSON by Jackson. Fields are used directly,
+ * as Boson does, whatever their visibility and without getters or setters
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonBenchmark {
+    @Param({ "PRIMITIVES", "STRINGS", "POLO", "LIST", "MAP", "CIRCULAR" })
+    public Payload payload;
+    private Object value;
+    private ObjectMapper mapper;
+    private ByteArrayOutputStream out;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        value = payload.create();
+        mapper = new ObjectMapper();
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+        mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        out = new ByteArrayOutputStream();
+        serialized = mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        out.reset();
+        mapper.writeValue(out, value);
+        return out.size();
+    }
+
+    @Benchmark
+    public Object read() throws IOException {
+        return mapper.readValue(serialized, payload.type());
+    }
+}
@@ -0,0 +1,32 @@
+package io.higgs.benchmarks.boson;
+
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+
+/**
+ * A node in a ring, so every node is reachable from itself. Jackson needs object IDs to write the cycle, Boson's
+ * references handle it without any configuration
+ */
+@JsonIdentityInfo(generator = ObjectIdGenerators.IntSequenceGenerator.class, property = "@id")
+public class Node {
+    String name;
+    int value;
+    Node next;
+
+    /**
+     * @return the first of a ring of the given number of nodes
+     */
+    public static Node ring(int size) {
+        Node first = new Node();
+        Node last = first;
+        for (int i = 1; i < size; i++) {
+            last.next = new Node();
+            last = last.next;
+            last.name = "node" + i;
+            last.value = i;
+        }
+        last.next = first;
+        first.name = "node0";
+        return first;
+    }
+}
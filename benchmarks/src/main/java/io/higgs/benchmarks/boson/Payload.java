@@ -0,0 +1,79 @@
+package io.higgs.benchmarks.boson;
+
+import io.higgs.examples.boson.PoloExample;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The objects serialized by the benchmarks, the same object is given to Boson and Jackson
+ */
+public enum Payload {
+    PRIMITIVES(Primitives.class) {
+        @Override
+        public Object create() {
+            return new Primitives();
+        }
+    },
+    STRINGS(Strings.class) {
+        @Override
+        public Object create() {
+            return new Strings();
+        }
+    },
+    /**
+     * The examples' POLO, with {@link io.higgs.examples.boson.Nested} objects, arrays, a list and maps in it
+     */
+    POLO(PoloExample.class) {
+        @Override
+        public Object create() {
+            return new PoloExample(42);
+        }
+    },
+    LIST(ArrayList.class) {
+        @Override
+        public Object create() {
+            List<Object> list = new ArrayList<>(SIZE);
+            for (int i = 0; i < SIZE; i++) {
+                list.add(i % 2 == 0 ? i : "item" + i);
+            }
+            return list;
+        }
+    },
+    MAP(HashMap.class) {
+        @Override
+        public Object create() {
+            Map<String, Object> map = new HashMap<>(SIZE * 2);
+            for (int i = 0; i < SIZE; i++) {
+                map.put("key" + i, i % 2 == 0 ? (Object) (long) i : "value" + i);
+            }
+            return map;
+        }
+    },
+    CIRCULAR(Node.class) {
+        @Override
+        public Object create() {
+            return Node.ring(100);
+        }
+    };
+    /**
+     * Number of elements in the large list and map
+     */
+    public static final int SIZE = 10000;
+    private final Class<?> type;
+
+    Payload(Class<?> type) {
+        this.type = type;
+    }
+
+    public abstract Object create();
+
+    /**
+     * @return the class the payload is read back as
+     */
+    public Class<?> type() {
+        return type;
+    }
+}
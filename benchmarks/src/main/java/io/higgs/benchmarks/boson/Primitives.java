@@ -0,0 +1,15 @@
+package io.higgs.benchmarks.boson;
+
+/**
+ * One field of each primitive type
+ */
+public class Primitives {
+    byte b = 0x7f;
+    short s = 12345;
+    int i = 123456789;
+    long l = 1234567890123456789L;
+    float f = 1.5f;
+    double d = Math.PI;
+    boolean z = true;
+    char c = 'c';
+}
@@ -0,0 +1,19 @@
+package io.higgs.benchmarks.boson;
+
+/**
+ * Short and long ASCII strings and a string which isn't ASCII
+ */
+public class Strings {
+    String name = "boson";
+    String sentence = "The quick brown fox jumps over the lazy dog";
+    String text;
+    String unicode = "caf\u00e9 \u20ac \u4e2d\u6587 \ud83d\ude00";
+
+    public Strings() {
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < 1024) {
+            buf.append(sentence).append(' ');
+        }
+        text = buf.toString();
+    }
+}
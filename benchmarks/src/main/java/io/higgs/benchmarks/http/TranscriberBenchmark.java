@@ -0,0 +1,98 @@
+package io.higgs.benchmarks.http;
+
+import io.higgs.http.server.Transcriber;
+import io.higgs.http.server.Transcription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of re-writing a URI as the number of transcriptions grows, for the compiled {@link Transcriber} with and
+ * without its result cache, against checking every transcription in turn. The compiled transcriber's cost should
+ * stay roughly flat, the linear scan's grows with the rule count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranscriberBenchmark {
+    private static final int URIS = 2000;
+    @Param({ "10", "100", "400", "1000" })
+    public int rules;
+    private Transcription[] transcriptions;
+    private Transcriber compiled;
+    private Transcriber cached;
+    private String[] uris;
+    private int next;
+
+    @Setup
+    public void setup() {
+        transcriptions = new Transcription[rules];
+        compiled = new Transcriber(0);
+        cached = new Transcriber();
+        for (int i = 0; i < rules; i++) {
+            Transcription t = new Transcription("/legacy/section" + i + "/(\\w+)\\.html", "/new/" + i + "/$1", false);
+            transcriptions[i] = t;
+            compiled.addTranscription(t);
+            cached.addTranscription(t);
+        }
+        Random random = new Random(rules);
+        uris = new String[URIS];
+        for (int i = 0; i < uris.length; i++) {
+            //3 in 4 match a rule, the rest don't match any
+            uris[i] = i % 4 == 0 ? "/api/users/" + random.nextInt(1000)
+                    : "/legacy/section" + random.nextInt(rules) + "/page" + random.nextInt(50) + ".html";
+        }
+    }
+
+    private String uri() {
+        next = next + 1 == uris.length ? 0 : next + 1;
+        return uris[next];
+    }
+
+    /**
+     * How transcriptions were applied before they were compiled, each one is tried in turn
+     */
+    @Benchmark
+    public String linear() {
+        String uri = uri();
+        for (Transcription t : transcriptions) {
+            if (t.matches(uri)) {
+                return t.replaceAllMatches(uri);
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public String compiled() {
+        return compiled.transcribe(uri());
+    }
+
+    @Benchmark
+    public String cached() {
+        return cached.transcribe(uri());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TranscriberBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
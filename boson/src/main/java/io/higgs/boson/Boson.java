@@ -0,0 +1,243 @@
+package io.higgs.boson;
+
+import io.higgs.boson.serialization.ClassFilter;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.higgs.boson.serialization.StringCache;
+import io.higgs.boson.serialization.mutators.ReadMutator;
+import io.higgs.boson.serialization.mutators.WriteMutator;
+import io.higgs.boson.serialization.v1.BosonReader;
+import io.higgs.boson.serialization.v1.BosonWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.Set;
+
+/**
+ * Serializes and de-serializes with a {@link BosonWriter} and {@link BosonReader} per thread, reset and reused for
+ * every message instead of created each time. Each thread's reader shares repeated strings through a
+ * {@link StringCache}. Messages are written to buffers from a {@link ByteBufAllocator}, pooled by default, sized
+ * from a running average of the messages each thread has written so most are written without the buffer having
+ * to grow.
+ * <p/>
+ * Buffers returned are owned by the caller and must be released once written or read.
+ */
+public final class Boson {
+    private static final Boson DEFAULT = new Boson(null, null, PooledByteBufAllocator.DEFAULT);
+    private static final int MIN_BUFFER_SIZE = 64;
+    private static final int STRING_CACHE_SIZE = 256;
+    private final ThreadLocal<Codec> codecs;
+    private final ByteBufAllocator allocator;
+    private final SchemaRegistry schemas = new SchemaRegistry();
+
+    /**
+     * @param readMutators  mutators the writers use to read fields from objects, can be null
+     * @param writeMutators mutators the readers use to create objects and set their fields, can be null
+     * @param allocator     the allocator serialized messages are written to buffers from
+     */
+    public Boson(final Set<ReadMutator> readMutators, final Set<WriteMutator> writeMutators,
+                 ByteBufAllocator allocator) {
+        if (allocator == null) {
+            throw new IllegalArgumentException("Allocator cannot be null");
+        }
+        this.allocator = allocator;
+        codecs = new ThreadLocal<Codec>() {
+            @Override
+            protected Codec initialValue() {
+                return new Codec(readMutators, writeMutators, schemas);
+            }
+        };
+    }
+
+    /**
+     * Register a class whose fields are sent as IDs instead of names by the compact encoding,
+     * {@link BosonMessage#VERSION_3}. The other end must register the class too.
+     */
+    public Boson register(Class<?> type) {
+        schemas.register(type);
+        return this;
+    }
+
+    /**
+     * @return an instance without mutators, writing to buffers from {@link PooledByteBufAllocator#DEFAULT}
+     */
+    public static Boson get() {
+        return DEFAULT;
+    }
+
+    /**
+     * Serialize a message, with Boson headers, to a new buffer from this instance's allocator
+     */
+    public ByteBuf serialize(BosonMessage msg) {
+        Codec codec = codecs.get();
+        ByteBuf buffer = allocator.buffer(codec.expectedSize());
+        try {
+            serialize(msg, buffer);
+        } catch (RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer;
+    }
+
+    /**
+     * Serialize a message, with Boson headers, to the given buffer starting at its writer index
+     */
+    public void serialize(BosonMessage msg, ByteBuf buffer) {
+        Codec codec = codecs.get();
+        BosonWriter writer = codec.acquireWriter();
+        int start = buffer.writerIndex();
+        try {
+            writer.serialize(msg, buffer);
+        } finally {
+            codec.releaseWriter(writer, buffer.writerIndex() - start);
+        }
+    }
+
+    /**
+     * Serialize any object, without Boson headers, to a new buffer from this instance's allocator
+     */
+    public ByteBuf serialize(Object obj) {
+        Codec codec = codecs.get();
+        ByteBuf buffer = allocator.buffer(codec.expectedSize());
+        try {
+            serialize(obj, buffer);
+        } catch (RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer;
+    }
+
+    /**
+     * Serialize any object, without Boson headers, to the given buffer starting at its writer index
+     */
+    public void serialize(Object obj, ByteBuf buffer) {
+        Codec codec = codecs.get();
+        BosonWriter writer = codec.acquireWriter();
+        int start = buffer.writerIndex();
+        try {
+            writer.serialize(obj, buffer);
+        } finally {
+            codec.releaseWriter(writer, buffer.writerIndex() - start);
+        }
+    }
+
+    /**
+     * De-serialize an object written without Boson headers
+     */
+    public <T> T deSerialize(ByteBuf buffer) {
+        Codec codec = codecs.get();
+        BosonReader reader = codec.acquireReader();
+        try {
+            return reader.deSerialize(buffer);
+        } finally {
+            codec.releaseReader(reader);
+        }
+    }
+
+    /**
+     * De-serialize a message written with Boson headers into the given message, from the buffer's reader index to
+     * the end of the message
+     */
+    public void deSerialize(ByteBuf buffer, BosonMessage msg) {
+        deSerialize(buffer, msg, null);
+    }
+
+    /**
+     * De-serialize a message written with Boson headers, from an untrusted source, into the given message
+     *
+     * @param classes the classes POLOs and enums in the message can be read as or null to allow any class
+     */
+    public void deSerialize(ByteBuf buffer, BosonMessage msg, ClassFilter classes) {
+        Codec codec = codecs.get();
+        BosonReader reader = codec.acquireReader();
+        reader.setClassFilter(classes);
+        try {
+            reader.deSerialize(buffer, msg);
+        } finally {
+            reader.setClassFilter(null);
+            codec.releaseReader(reader);
+        }
+    }
+
+    public ByteBufAllocator allocator() {
+        return allocator;
+    }
+
+    /**
+     * A thread's writer and reader. If a mutator serializes or de-serializes while the thread's own is in use a
+     * temporary one is created rather than corrupt the state of the message already in progress
+     */
+    private static final class Codec {
+        private final Set<ReadMutator> readMutators;
+        private final Set<WriteMutator> writeMutators;
+        private final SchemaRegistry schemas;
+        private final BosonWriter writer;
+        private final BosonReader reader;
+        private boolean writing;
+        private boolean reading;
+        //exponentially weighted moving average of the size of messages written
+        private int averageSize = MIN_BUFFER_SIZE;
+
+        private Codec(Set<ReadMutator> readMutators, Set<WriteMutator> writeMutators, SchemaRegistry schemas) {
+            this.readMutators = readMutators;
+            this.writeMutators = writeMutators;
+            this.schemas = schemas;
+            writer = newWriter();
+            reader = newReader();
+            reader.setStringCache(new StringCache(STRING_CACHE_SIZE));
+        }
+
+        BosonWriter newWriter() {
+            BosonWriter w = new BosonWriter(readMutators);
+            w.setSchemas(schemas);
+            return w;
+        }
+
+        BosonReader newReader() {
+            BosonReader r = new BosonReader(writeMutators);
+            r.setSchemas(schemas);
+            return r;
+        }
+
+        /**
+         * @return the initial capacity of a buffer for the next message, a quarter above the average so most fit
+         */
+        int expectedSize() {
+            return averageSize + (averageSize >> 2);
+        }
+
+        BosonWriter acquireWriter() {
+            if (writing) {
+                return newWriter();
+            }
+            writing = true;
+            return writer;
+        }
+
+        void releaseWriter(BosonWriter w, int written) {
+            if (w == writer) {
+                //don't keep the last message's objects reachable from the thread
+                writer.reset();
+                writing = false;
+                averageSize = Math.max(MIN_BUFFER_SIZE, averageSize + ((written - averageSize) >> 3));
+            }
+        }
+
+        BosonReader acquireReader() {
+            if (reading) {
+                return newReader();
+            }
+            reading = true;
+            return reader;
+        }
+
+        void releaseReader(BosonReader r) {
+            if (r == reader) {
+                reader.reset();
+                reading = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.higgs.boson;
+
+/**
+ * Sent as the only argument of a reply when the method a request named couldn't be found or threw.
+ */
+public class BosonError {
+    private String message;
+
+    public BosonError(String message) {
+        this.message = message;
+    }
+
+    public BosonError() {
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "BosonError{message='" + message + "'}";
+    }
+}
@@ -4,10 +4,31 @@ package io.higgs.boson;
  * @author Courtney Robinson <courtney@crlog.info>
  */
 public class BosonMessage {
+    /**
+     * The original protocol, primitive arrays are written element by element as an {@link BosonType#ARRAY}
+     */
+    public static final short VERSION_1 = 0x1;
+    /**
+     * Adds the packed primitive array types, {@link BosonType#BYTE_ARRAY} to {@link BosonType#CHAR_ARRAY}
+     */
+    public static final short VERSION_2 = 0x2;
+    /**
+     * Adds the compact encoding, ints, longs, sizes and references are variable length and the fields of classes in
+     * a {@link io.higgs.boson.serialization.SchemaRegistry} are sent as IDs instead of names
+     */
+    public static final short VERSION_3 = 0x3;
+    /**
+     * The newest protocol version this library can read
+     */
+    public static final short LATEST_VERSION = VERSION_3;
+    /**
+     * The callback of a request which doesn't want a reply. A message with a null callback is a response
+     */
+    public static final String NO_REPLY = "";
     public Object[] arguments;
     public String method;
     public String callback;
-    public short protocolVersion = 0x1;
+    public short protocolVersion = VERSION_1;
 
     public BosonMessage(Object[] arguments, String method, String callback, short protocolVersion) {
         this.arguments = arguments;
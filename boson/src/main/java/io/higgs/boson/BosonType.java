@@ -21,6 +21,15 @@ public class BosonType {
     public static final int REFERENCE = 15;
     public static final int SET = 16;
     public static final int ENUM = 17;
+    //packed primitive arrays, a size followed by the raw big-endian values, protocol version 2 onwards
+    public static final int BYTE_ARRAY = 18;
+    public static final int SHORT_ARRAY = 19;
+    public static final int INT_ARRAY = 20;
+    public static final int LONG_ARRAY = 21;
+    public static final int FLOAT_ARRAY = 22;
+    public static final int DOUBLE_ARRAY = 23;
+    public static final int BOOLEAN_ARRAY = 24;
+    public static final int CHAR_ARRAY = 25;
     //request response flags
     public static final int REQUEST_METHOD_NAME = -127;
     public static final int REQUEST_PARAMETERS = -126;
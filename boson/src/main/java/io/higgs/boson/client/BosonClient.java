@@ -0,0 +1,168 @@
+package io.higgs.boson.client;
+
+import io.higgs.boson.Boson;
+import io.higgs.boson.BosonError;
+import io.higgs.boson.BosonMessage;
+import io.higgs.boson.protocol.BosonDecoder;
+import io.higgs.boson.protocol.BosonEncoder;
+import io.higgs.boson.protocol.BosonProtocolConfiguration;
+import io.higgs.boson.serialization.ClassAllowlist;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection to a server with the {@link BosonProtocolConfiguration} registered. Calls are pipelined, any number
+ * can be sent without waiting for earlier ones to be answered. Each call is given a unique callback name which the
+ * server's reply is sent to, completing the future the call returned.
+ * <p/>
+ * Replies can only contain POLOs and enums of the classes allowed with {@link #allow(Class[])}, and
+ * {@link BosonError}.
+ */
+public class BosonClient {
+    protected final Map<String, Promise<Object>> pending = new ConcurrentHashMap<>();
+    protected final AtomicLong callbacks = new AtomicLong();
+    protected final Boson boson;
+    protected final EventLoopGroup group;
+    protected final boolean ownsGroup;
+    protected final Bootstrap bootstrap = new Bootstrap();
+    protected volatile Channel channel;
+    protected short protocolVersion = BosonMessage.VERSION_1;
+    protected final ClassAllowlist allowedClasses = new ClassAllowlist().allow(BosonError.class);
+
+    public BosonClient() {
+        this(Boson.get(), null);
+    }
+
+    /**
+     * @param boson the instance messages are serialized with
+     * @param group the event loop the connection uses or null to create one which {@link #close()} shuts down
+     */
+    public BosonClient(Boson boson, EventLoopGroup group) {
+        if (boson == null) {
+            throw new IllegalArgumentException("Boson cannot be null");
+        }
+        this.boson = boson;
+        this.ownsGroup = group == null;
+        this.group = group == null ? new NioEventLoopGroup(1) : group;
+        bootstrap.group(this.group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast("boson-decoder", new BosonDecoder(BosonClient.this.boson,
+                                BosonProtocolConfiguration.DEFAULT_MAX_MESSAGE_SIZE, allowedClasses));
+                        ch.pipeline().addLast("boson-encoder", new BosonEncoder(BosonClient.this.boson));
+                        ch.pipeline().addLast("boson-handler", new BosonClientHandler(pending));
+                    }
+                });
+    }
+
+    public ChannelFuture connect(String host, int port) {
+        return connect(new InetSocketAddress(host, port));
+    }
+
+    /**
+     * @return a future notified once connected, calls can be made once it completes
+     */
+    public ChannelFuture connect(SocketAddress address) {
+        ChannelFuture future = bootstrap.connect(address);
+        channel = future.channel();
+        return future;
+    }
+
+    /**
+     * Invoke a method on the server
+     *
+     * @param method the name of the method to invoke
+     * @param args   the arguments to invoke it with
+     * @return a future completed with the method's return value or failed if it couldn't be invoked
+     */
+    public Future<Object> call(String method, Object... args) {
+        Channel ch = channel();
+        final Promise<Object> promise = ch.eventLoop().newPromise();
+        final String callback = "cb" + callbacks.incrementAndGet();
+        pending.put(callback, promise);
+        ch.writeAndFlush(new BosonMessage(args, method, callback, protocolVersion))
+                .addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (!future.isSuccess() && pending.remove(callback) != null) {
+                            promise.tryFailure(future.cause());
+                        }
+                    }
+                });
+        return promise;
+    }
+
+    /**
+     * Invoke a method on the server without waiting for or receiving a reply
+     *
+     * @return a future notified once the request has been written
+     */
+    public ChannelFuture send(String method, Object... args) {
+        return channel().writeAndFlush(new BosonMessage(args, method, BosonMessage.NO_REPLY, protocolVersion));
+    }
+
+    /**
+     * Allow POLOs and enums of the given classes in replies
+     */
+    public BosonClient allow(Class<?>... types) {
+        allowedClasses.allow(types);
+        return this;
+    }
+
+    /**
+     * Close the connection, calls still waiting for a reply are failed
+     */
+    public ChannelFuture close() {
+        Channel ch = channel;
+        ChannelFuture future = ch == null ? null : ch.close();
+        for (String callback : pending.keySet()) {
+            Promise<Object> promise = pending.remove(callback);
+            if (promise != null) {
+                promise.tryFailure(new ClosedChannelException());
+            }
+        }
+        if (ownsGroup) {
+            group.shutdownGracefully();
+        }
+        return future;
+    }
+
+    public short getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * @param protocolVersion the version calls are sent with, the server replies with the same version
+     */
+    public void setProtocolVersion(short protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    private Channel channel() {
+        Channel ch = channel;
+        if (ch == null) {
+            throw new IllegalStateException("Not connected, call connect first");
+        }
+        return ch;
+    }
+}
@@ -0,0 +1,56 @@
+package io.higgs.boson.client;
+
+import io.higgs.boson.BosonError;
+import io.higgs.boson.BosonMessage;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.concurrent.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Map;
+
+/**
+ * Completes the pending call each reply's callback name belongs to
+ */
+public class BosonClientHandler extends SimpleChannelInboundHandler<BosonMessage> {
+    private final Map<String, Promise<Object>> pending;
+    private Logger log = LoggerFactory.getLogger(getClass());
+
+    public BosonClientHandler(Map<String, Promise<Object>> pending) {
+        this.pending = pending;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, BosonMessage msg) throws Exception {
+        Promise<Object> promise = msg.method == null ? null : pending.remove(msg.method);
+        if (promise == null) {
+            log.debug(String.format("Boson message %s received but no call is waiting for it", msg.method));
+            return;
+        }
+        Object result = msg.arguments == null || msg.arguments.length == 0 ? null : msg.arguments[0];
+        if (result instanceof BosonError) {
+            promise.tryFailure(new IllegalStateException(((BosonError) result).getMessage()));
+        } else {
+            promise.trySuccess(result);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (String callback : pending.keySet()) {
+            Promise<Object> promise = pending.remove(callback);
+            if (promise != null) {
+                promise.tryFailure(new ClosedChannelException());
+            }
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        log.warn("Error processing Boson reply, closing connection", cause);
+        ctx.close();
+    }
+}
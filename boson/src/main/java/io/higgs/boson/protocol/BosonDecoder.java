@@ -0,0 +1,66 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.boson.Boson;
+import io.higgs.boson.BosonMessage;
+import io.higgs.boson.serialization.ClassFilter;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+
+/**
+ * Frames Boson messages using the header every message starts with, a 1 byte protocol version followed by the size
+ * of the rest of the message as a 4 byte int. A message is only de-serialized once all of it has been received.
+ */
+public class BosonDecoder extends ByteToMessageDecoder {
+    /**
+     * The version byte and the size
+     */
+    public static final int HEADER_SIZE = 5;
+    private final Boson boson;
+    private final int maxMessageSize;
+    private final ClassFilter classes;
+
+    public BosonDecoder(Boson boson, int maxMessageSize) {
+        this(boson, maxMessageSize, null);
+    }
+
+    /**
+     * @param classes the classes POLOs and enums received can be read as or null to allow any class
+     */
+    public BosonDecoder(Boson boson, int maxMessageSize, ClassFilter classes) {
+        if (boson == null) {
+            throw new IllegalArgumentException("Boson cannot be null");
+        }
+        this.boson = boson;
+        this.maxMessageSize = maxMessageSize;
+        this.classes = classes;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        while (in.readableBytes() >= HEADER_SIZE) {
+            int size = in.getInt(in.readerIndex() + 1);
+            if (size < 0 || size > maxMessageSize) {
+                in.skipBytes(in.readableBytes());
+                ctx.close();
+                throw new TooLongFrameException(String.format("Boson message of %s bytes exceeds the maximum of %s",
+                        size, maxMessageSize));
+            }
+            if (in.readableBytes() < HEADER_SIZE + size) {
+                return; //wait for the rest of the message
+            }
+            int end = in.readerIndex() + HEADER_SIZE + size;
+            BosonMessage msg = new BosonMessage();
+            try {
+                boson.deSerialize(in, msg, classes);
+            } finally {
+                //skip the whole message even if it couldn't be read, so the next one is framed correctly
+                in.readerIndex(end);
+            }
+            out.add(msg);
+        }
+    }
+}
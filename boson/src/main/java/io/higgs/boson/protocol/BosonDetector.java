@@ -0,0 +1,37 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.boson.BosonMessage;
+import io.higgs.core.ProtocolDetector;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+
+/**
+ * Detects Boson by the protocol version byte every message starts with
+ */
+public class BosonDetector implements ProtocolDetector {
+    protected final BosonProtocolConfiguration config;
+
+    public BosonDetector(BosonProtocolConfiguration config) {
+        this.config = config;
+    }
+
+    @Override
+    public boolean detected(ChannelHandlerContext ctx, ByteBuf in) {
+        final int version = in.getUnsignedByte(in.readerIndex());
+        final int size = in.getUnsignedByte(in.readerIndex() + 1);
+        //messages are limited to less than 16MB so the first byte of the size is always 0
+        return version >= BosonMessage.VERSION_1 && version <= BosonMessage.LATEST_VERSION && size == 0;
+    }
+
+    @Override
+    public BosonHandler setupPipeline(ChannelPipeline p, ChannelHandlerContext ctx) {
+        //BosonHandler is stateful so must do an instance per channel
+        BosonHandler h = new BosonHandler(config);
+        p.addLast("boson-decoder", new BosonDecoder(config.getBoson(), config.getMaxMessageSize(),
+                config.getAllowedClasses()));
+        p.addLast("boson-encoder", new BosonEncoder(config.getBoson()));
+        p.addLast("boson-handler", h);
+        return h;
+    }
+}
@@ -0,0 +1,48 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.boson.BosonMessage;
+import io.higgs.core.ProtocolDetector;
+import io.higgs.core.ProtocolDetectorFactory;
+import io.higgs.core.ProtocolSignature;
+
+public class BosonDetectorFactory implements ProtocolDetectorFactory, ProtocolSignature {
+    private final BosonProtocolConfiguration config;
+    private final byte[][] signatures;
+    protected int priority;
+
+    public BosonDetectorFactory(BosonProtocolConfiguration config) {
+        this.config = config;
+        //each version this server reads followed by the high byte of the message size, 0 for any message < 16MB
+        signatures = new byte[BosonMessage.LATEST_VERSION][];
+        for (int version = 1; version <= BosonMessage.LATEST_VERSION; version++) {
+            signatures[version - 1] = new byte[]{ (byte) version, 0 };
+        }
+    }
+
+    @Override
+    public ProtocolDetector newProtocolDetector() {
+        return new BosonDetector(config);
+    }
+
+    @Override
+    public byte[][] signatures() {
+        return signatures;
+    }
+
+    @Override
+    public int setPriority(int value) {
+        int old = priority;
+        priority = value;
+        return old;
+    }
+
+    @Override
+    public int priority() {
+        return priority;
+    }
+
+    @Override
+    public int compareTo(ProtocolDetectorFactory that) {
+        return that.priority() - this.priority();
+    }
+}
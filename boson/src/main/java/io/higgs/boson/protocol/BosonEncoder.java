@@ -0,0 +1,27 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.boson.Boson;
+import io.higgs.boson.BosonMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * Serializes {@link BosonMessage}s, with their headers, straight into the buffer being written to the channel
+ */
+public class BosonEncoder extends MessageToByteEncoder<BosonMessage> {
+    private final Boson boson;
+
+    public BosonEncoder(Boson boson) {
+        super(BosonMessage.class);
+        if (boson == null) {
+            throw new IllegalArgumentException("Boson cannot be null");
+        }
+        this.boson = boson;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, BosonMessage msg, ByteBuf out) throws Exception {
+        boson.serialize(msg, out);
+    }
+}
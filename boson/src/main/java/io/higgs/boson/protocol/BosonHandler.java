@@ -0,0 +1,100 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.boson.BosonError;
+import io.higgs.boson.BosonMessage;
+import io.higgs.core.HiggsServer;
+import io.higgs.core.MessageHandler;
+import io.higgs.core.ServerConfig;
+import io.higgs.core.reflect.dependency.DependencyProvider;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Invokes the method each request names. Unless the request's callback is {@link BosonMessage#NO_REPLY} the
+ * method's return value is sent back as the only argument of a message named by the callback, or a
+ * {@link BosonError} if the method couldn't be invoked. Requests can be pipelined, replies are written in the order
+ * requests are received.
+ */
+public class BosonHandler extends MessageHandler<ServerConfig, BosonMessage> {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    protected final HiggsServer server;
+    /**
+     * Requests received but not yet replied to, only accessed from the channel's event loop
+     */
+    private int inFlight;
+    private final ChannelFutureListener replied = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            done(future.channel().pipeline().context(BosonHandler.this));
+        }
+    };
+
+    public BosonHandler(BosonProtocolConfiguration config) {
+        super(config.getServer().getConfig());
+        server = config.getServer();
+        setMetrics(server.getMetrics());
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, BosonMessage msg) throws Exception {
+        if (msg.callback == null) {
+            //requests always have a callback, empty if they don't want a reply
+            log.warn(String.format("Boson response to %s received by the server, ignoring it", msg.method));
+            return;
+        }
+        if (inFlight++ == 0) {
+            server.markBusy(ctx.channel());
+        }
+        //once the reply is handed over its write listener ends the request, until then an exception has to
+        boolean handedOver = false;
+        try {
+            Object[] args = msg.arguments == null ? NO_ARGUMENTS : msg.arguments;
+            BosonMethod method = findMethod(msg.method, ctx, msg, BosonMethod.class);
+            Object result;
+            if (method == null) {
+                log.warn(String.format("Boson request for method %s but no such method is registered", msg.method));
+                result = new BosonError(String.format("No method named %s", msg.method));
+            } else {
+                try {
+                    result = method.invoke(ctx, msg.method, msg, args, DependencyProvider.from());
+                } catch (InvocationTargetException | IllegalAccessException | InstantiationException e) {
+                    logDetailedFailMessage(true, args, e, method.method());
+                    Throwable cause = e instanceof InvocationTargetException && e.getCause() != null
+                            ? e.getCause() : e;
+                    result = new BosonError(String.valueOf(cause.getMessage()));
+                }
+            }
+            handedOver = true;
+            reply(ctx, msg, result);
+        } finally {
+            if (!handedOver) {
+                done(ctx);
+            }
+        }
+    }
+
+    protected void reply(ChannelHandlerContext ctx, BosonMessage request, Object result) {
+        if (request.callback == null || request.callback.isEmpty()) {
+            done(ctx); //fire and forget, nothing to reply to
+            return;
+        }
+        BosonMessage response = new BosonMessage(new Object[]{ result }, request.callback, null,
+                request.protocolVersion);
+        ctx.writeAndFlush(response).addListener(replied);
+    }
+
+    private void done(ChannelHandlerContext ctx) {
+        if (--inFlight == 0 && ctx != null) {
+            server.markIdle(ctx.channel());
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.warn("Error processing Boson message, closing connection", cause);
+        ctx.close();
+    }
+}
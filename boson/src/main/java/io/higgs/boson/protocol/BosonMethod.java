@@ -0,0 +1,26 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.core.InvokableMethod;
+import io.higgs.core.ObjectFactory;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+
+/**
+ * A method Boson requests can invoke. The method name a request sends is matched against the method's path,
+ * with or without the leading /
+ */
+public class BosonMethod extends InvokableMethod {
+    public BosonMethod(Queue<ObjectFactory> factories, Class<?> klass, Method classMethod) {
+        super(factories, klass, classMethod);
+    }
+
+    @Override
+    public boolean matches(String path, ChannelHandlerContext ctx, Object msg) {
+        if (path == null) {
+            return false;
+        }
+        return path().matches(path.startsWith("/") ? path : "/" + path);
+    }
+}
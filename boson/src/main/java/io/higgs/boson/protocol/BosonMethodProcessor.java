@@ -0,0 +1,19 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.core.MethodProcessor;
+import io.higgs.core.ObjectFactory;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+
+public class BosonMethodProcessor implements MethodProcessor<BosonMethod> {
+    @Override
+    public BosonMethod process(Method method, Class<?> klass, Queue<ObjectFactory> factories) {
+        return newMethod(method, klass, factories);
+    }
+
+    @Override
+    public BosonMethod newMethod(Method method, Class<?> klass, Queue<ObjectFactory> factories) {
+        return new BosonMethod(factories, klass, method);
+    }
+}
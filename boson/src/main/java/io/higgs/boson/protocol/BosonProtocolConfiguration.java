@@ -0,0 +1,108 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.boson.Boson;
+import io.higgs.boson.serialization.ClassAllowlist;
+import io.higgs.boson.serialization.ClassFilter;
+import io.higgs.core.HiggsServer;
+import io.higgs.core.MethodProcessor;
+import io.higgs.core.ProtocolConfiguration;
+import io.higgs.core.ProtocolDetectorFactory;
+
+/**
+ * Puts Boson on the wire. Methods registered with the server, by their {@link javax.ws.rs.Path}, can be invoked by
+ * Boson requests naming them, see {@link io.higgs.boson.client.BosonClient}
+ * <p/>
+ * Requests can only contain POLOs and enums of the classes in {@link #getAllowedClasses()}, which is empty until
+ * the classes the server's methods accept are added to it.
+ */
+public class BosonProtocolConfiguration implements ProtocolConfiguration {
+    /**
+     * The size of the largest message accepted, a message's size doesn't include its 5 byte header
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 0xFFFFFF;
+    protected HiggsServer server;
+    protected Boson boson = Boson.get();
+    protected int maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
+    protected ClassFilter allowedClasses = new ClassAllowlist();
+
+    @Override
+    public ProtocolDetectorFactory getProtocol() {
+        return new BosonDetectorFactory(this);
+    }
+
+    @Override
+    public MethodProcessor getMethodProcessor() {
+        return new BosonMethodProcessor();
+    }
+
+    @Override
+    public void initialize(HiggsServer server) {
+        this.server = server;
+    }
+
+    public HiggsServer getServer() {
+        return server;
+    }
+
+    public Boson getBoson() {
+        return boson;
+    }
+
+    /**
+     * @param boson the instance messages are serialized with, e.g. one with the mutators the application needs
+     */
+    public void setBoson(Boson boson) {
+        if (boson == null) {
+            throw new IllegalArgumentException("Boson cannot be null");
+        }
+        this.boson = boson;
+    }
+
+    /**
+     * @return the classes POLOs and enums in requests can be read as, a {@link ClassAllowlist} unless it's been
+     * replaced
+     */
+    public ClassFilter getAllowedClasses() {
+        return allowedClasses;
+    }
+
+    /**
+     * @param allowedClasses the classes POLOs and enums in requests can be read as. A request naming any other
+     *                       class closes the connection before the class is loaded
+     */
+    public void setAllowedClasses(ClassFilter allowedClasses) {
+        if (allowedClasses == null) {
+            throw new IllegalArgumentException("Allowed classes cannot be null");
+        }
+        this.allowedClasses = allowedClasses;
+    }
+
+    /**
+     * Allow POLOs and enums of the given classes in requests
+     *
+     * @throws IllegalStateException if the allowed classes were replaced by a filter which isn't an allowlist
+     */
+    public BosonProtocolConfiguration allow(Class<?>... types) {
+        if (!(allowedClasses instanceof ClassAllowlist)) {
+            throw new IllegalStateException("The allowed classes were replaced, add to the filter set instead");
+        }
+        ((ClassAllowlist) allowedClasses).allow(types);
+        return this;
+    }
+
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     * @param maxMessageSize connections sending a message larger than this are closed. Must be less than 16MB,
+     *                       the protocol is detected by the first byte of the size being 0
+     */
+    public void setMaxMessageSize(int maxMessageSize) {
+        if (maxMessageSize <= 0 || maxMessageSize > DEFAULT_MAX_MESSAGE_SIZE) {
+            throw new IllegalArgumentException(String.format("Max message size must be between 1 and %s",
+                    DEFAULT_MAX_MESSAGE_SIZE));
+        }
+        this.maxMessageSize = maxMessageSize;
+    }
+}
@@ -0,0 +1,53 @@
+package io.higgs.boson.serialization;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A {@link ClassFilter} which only accepts the classes and packages added to it, nothing else. Safe to add to while
+ * readers are using it.
+ */
+public final class ClassAllowlist implements ClassFilter {
+    private final Set<String> classes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    //each allowed package's name followed by a .
+    private final List<String> packages = new CopyOnWriteArrayList<>();
+
+    public ClassAllowlist allow(Class<?>... types) {
+        for (Class<?> type : types) {
+            if (type == null) {
+                throw new IllegalArgumentException("Class cannot be null");
+            }
+            classes.add(type.getName());
+        }
+        return this;
+    }
+
+    /**
+     * Allow every class in the package and its sub packages
+     *
+     * @param name the package's name, e.g. com.example.model
+     */
+    public ClassAllowlist allowPackage(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Package name cannot be null or empty");
+        }
+        packages.add(name.endsWith(".") ? name : name + ".");
+        return this;
+    }
+
+    @Override
+    public boolean accept(String className) {
+        if (classes.contains(className)) {
+            return true;
+        }
+        for (String p : packages) {
+            if (className.startsWith(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
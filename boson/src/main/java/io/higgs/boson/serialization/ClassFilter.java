@@ -0,0 +1,14 @@
+package io.higgs.boson.serialization;
+
+/**
+ * Decides which classes a reader may create from the class names in the data it reads. A POLO's class is
+ * instantiated and its fields set, so data from an untrusted source must only be able to name classes which are
+ * safe to create, see {@link ClassAllowlist}.
+ */
+public interface ClassFilter {
+    /**
+     * @param className the fully qualified name of a POLO's or enum's class, as received
+     * @return true if the class may be created
+     */
+    boolean accept(String className);
+}
@@ -0,0 +1,58 @@
+package io.higgs.boson.serialization;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The classes a class loader has loaded for de-serialization, by name, so a class name received in a message is
+ * only resolved by the class loader the first time it's seen. Classes and loaders are only weakly held so a cache
+ * never stops either from being unloaded.
+ */
+public final class ClassNameCache {
+    private static final Map<ClassLoader, ClassNameCache> CACHES = new WeakHashMap<>();
+    private final WeakReference<ClassLoader> loader;
+    private final ConcurrentHashMap<String, WeakReference<Class<?>>> classes = new ConcurrentHashMap<>();
+
+    private ClassNameCache(ClassLoader loader) {
+        this.loader = new WeakReference<>(loader);
+    }
+
+    /**
+     * @param loader the loader classes are loaded with, null for the bootstrap class loader
+     * @return the cache shared by everything loading classes with the given loader
+     */
+    public static ClassNameCache of(ClassLoader loader) {
+        synchronized (CACHES) {
+            ClassNameCache cache = CACHES.get(loader);
+            if (cache == null) {
+                cache = new ClassNameCache(loader);
+                CACHES.put(loader, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @param name a fully qualified class name
+     * @return the class with the given name
+     * @throws ClassNotFoundException if the loader can't find the class
+     */
+    public Class<?> load(String name) throws ClassNotFoundException {
+        WeakReference<Class<?>> ref = classes.get(name);
+        Class<?> klass = ref == null ? null : ref.get();
+        if (klass == null) {
+            klass = Class.forName(name, false, loader.get());
+            classes.put(name, new WeakReference<Class<?>>(klass));
+        }
+        return klass;
+    }
+
+    /**
+     * @return true if this is the cache for the given loader
+     */
+    public boolean isFor(ClassLoader loader) {
+        return this.loader.get() == loader;
+    }
+}
@@ -0,0 +1,179 @@
+package io.higgs.boson.serialization;
+
+import io.higgs.core.reflect.FieldAccessor;
+import io.higgs.core.reflect.FieldAccessors;
+import io.netty.util.CharsetUtil;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How a POLO class is serialized, worked out once per class from its fields and {@link BosonProperty} annotations
+ * and cached for the life of the class. Writing or reading an object only walks the arrays and map held here, no
+ * reflection or annotation lookups are done per object.
+ */
+public final class PoloSchema {
+    private static final ClassValue<PoloSchema> CACHE = new ClassValue<PoloSchema>() {
+        @Override
+        protected PoloSchema computeValue(Class<?> type) {
+            return new PoloSchema(type);
+        }
+    };
+    private final Class<?> type;
+    private final byte[] encodedName;
+    private final Property[] properties;
+    private final Map<String, Property> readable;
+    private final Constructor<?> constructor;
+
+    private PoloSchema(Class<?> type) {
+        this.type = type;
+        encodedName = type.getName().getBytes(CharsetUtil.UTF_8);
+        BosonProperty classProperty = type.getAnnotation(BosonProperty.class);
+        boolean ignoreInheritedFields = classProperty != null && classProperty.ignoreInheritedFields();
+        //serialized name -> property, a sub class field replaces an inherited one with the same name
+        Map<String, Property> written = new LinkedHashMap<>();
+        Map<String, Property> read = new HashMap<>();
+        for (FieldAccessor accessor : FieldAccessors.of(type).all()) {
+            if (accessor.isFinal()) {
+                continue; //no point in serializing final fields, they can't be set when read back
+            }
+            boolean inherited = accessor.declaringClass() != type;
+            BosonProperty ann = accessor.field().getAnnotation(BosonProperty.class);
+            String name = ann != null && !ann.value().isEmpty() ? ann.value() : accessor.name();
+            Property property = new Property(name, accessor);
+            //fields are also set by their own name, e.g. if written by a class without the annotation
+            read.put(accessor.name(), property);
+            //if inherited fields are to be ignored then fields must be declared in the current class
+            boolean add = !(ignoreInheritedFields && inherited)
+                    && !(ann != null && (ann.ignore() || ann.ignoreInheritedFields() && inherited));
+            if (add) {
+                written.remove(name);
+                written.put(name, property);
+            }
+        }
+        for (Property property : written.values()) {
+            read.put(property.name, property);
+        }
+        properties = written.values().toArray(new Property[written.size()]);
+        readable = read;
+        Constructor<?> c = null;
+        try {
+            c = type.getDeclaredConstructor();
+            c.setAccessible(true);
+        } catch (NoSuchMethodException | SecurityException e) {
+            //newInstance reports it, the class can still be written
+        }
+        constructor = c;
+    }
+
+    /**
+     * @return the cached schema for the given class
+     */
+    public static PoloSchema of(Class<?> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("POLO class cannot be null");
+        }
+        return CACHE.get(type);
+    }
+
+    /**
+     * @return the properties which are serialized, in a fixed order. The array is shared and must not be modified
+     */
+    public Property[] properties() {
+        return properties;
+    }
+
+    /**
+     * @param name a serialized property name or a field name
+     * @return the property a value received with the given name is set on or null if there isn't one
+     */
+    public Property property(String name) {
+        return readable.get(name);
+    }
+
+    /**
+     * @return a new instance created with the class's no-arg constructor, which can be private
+     * @throws InstantiationException if the class has no no-arg constructor or it throws
+     */
+    public Object newInstance() throws InstantiationException {
+        if (constructor == null) {
+            throw new InstantiationException(String.format("%s has no no-arg constructor", type.getName()));
+        }
+        try {
+            return constructor.newInstance();
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            InstantiationException ie = new InstantiationException(String.format("Unable to create %s",
+                    type.getName()));
+            ie.initCause(e);
+            throw ie;
+        }
+    }
+
+    public Class<?> type() {
+        return type;
+    }
+
+    /**
+     * @return the UTF-8 encoding of the class's name. The array is shared and must not be modified
+     */
+    public byte[] encodedName() {
+        return encodedName;
+    }
+
+    /**
+     * A field and the name it's serialized with
+     */
+    public static final class Property {
+        private final String name;
+        private final byte[] encodedName;
+        private final FieldAccessor accessor;
+        private final Class<?> componentType;
+
+        Property(String name, FieldAccessor accessor) {
+            this.name = name;
+            this.encodedName = name.getBytes(CharsetUtil.UTF_8);
+            this.accessor = accessor;
+            componentType = accessor.type().getComponentType();
+        }
+
+        /**
+         * @return the name the property is serialized with
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return the UTF-8 encoding of {@link #name()}, so it's only encoded once. Must not be modified
+         */
+        public byte[] encodedName() {
+            return encodedName;
+        }
+
+        public FieldAccessor accessor() {
+            return accessor;
+        }
+
+        public Object get(Object instance) {
+            return accessor.get(instance);
+        }
+
+        public void set(Object instance, Object value) {
+            accessor.set(instance, value);
+        }
+
+        public Class<?> type() {
+            return accessor.type();
+        }
+
+        /**
+         * @return the element type if the property is an array, null otherwise
+         */
+        public Class<?> componentType() {
+            return componentType;
+        }
+    }
+}
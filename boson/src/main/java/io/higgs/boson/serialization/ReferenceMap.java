@@ -0,0 +1,105 @@
+package io.higgs.boson.serialization;
+
+import java.util.Arrays;
+
+/**
+ * The objects a writer has already serialized and the reference number each was given. Objects are compared by
+ * identity, never by {@link Object#hashCode()} or {@link Object#equals(Object)}, so two equal objects are still
+ * written separately and user code is never called while tracking references. Keys and values are held in flat
+ * arrays, with linear probing, so nothing is boxed or allocated per object.
+ */
+public final class ReferenceMap {
+    //a table grown beyond this by one large message is dropped on reset rather than held on to
+    private static final int MAX_RETAINED_CAPACITY = 8192;
+    private static final int INITIAL_CAPACITY = 32;
+    private Object[] keys;
+    private int[] values;
+    private int size;
+
+    public ReferenceMap() {
+        keys = new Object[INITIAL_CAPACITY];
+        values = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return the reference number the object was given or -1 if it hasn't been added
+     */
+    public int get(Object obj) {
+        Object[] k = keys;
+        int mask = k.length - 1;
+        for (int i = index(obj, mask); ; i = (i + 1) & mask) {
+            Object key = k[i];
+            if (key == obj) {
+                return values[i];
+            }
+            if (key == null) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Give an object the next reference number. The object must not already be in the map
+     *
+     * @return the reference number, references are numbered from 0 in the order objects are added
+     */
+    public int add(Object obj) {
+        if (obj == null) {
+            throw new IllegalArgumentException("Cannot add a reference to null");
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int ref = size++;
+        insert(keys, values, obj, ref);
+        return ref;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget every object so the map can be used for another message, the arrays are kept and reused unless
+     * they've grown unusually large
+     */
+    public void reset() {
+        if (keys.length > MAX_RETAINED_CAPACITY) {
+            keys = new Object[INITIAL_CAPACITY];
+            values = new int[INITIAL_CAPACITY];
+        } else if (size > 0) {
+            Arrays.fill(keys, null);
+        }
+        size = 0;
+    }
+
+    private void resize() {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        Object[] newKeys = new Object[oldKeys.length * 2];
+        int[] newValues = new int[newKeys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                insert(newKeys, newValues, oldKeys[i], oldValues[i]);
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    private static void insert(Object[] k, int[] v, Object obj, int ref) {
+        int mask = k.length - 1;
+        int i = index(obj, mask);
+        while (k[i] != null) {
+            i = (i + 1) & mask;
+        }
+        k[i] = obj;
+        v[i] = ref;
+    }
+
+    private static int index(Object obj, int mask) {
+        //identity hashes tend to cluster, spread them over the table
+        int h = System.identityHashCode(obj) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
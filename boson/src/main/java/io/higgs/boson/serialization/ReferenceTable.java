@@ -0,0 +1,75 @@
+package io.higgs.boson.serialization;
+
+import java.util.Arrays;
+
+/**
+ * The objects a reader has de-serialized, indexed by the reference number they were written with. Writers number
+ * references from 0 so a growable array is all that's needed to resolve them.
+ */
+public final class ReferenceTable {
+    //a table grown beyond this by one large message is dropped on reset rather than held on to
+    private static final int MAX_RETAINED_CAPACITY = 8192;
+    private static final int INITIAL_CAPACITY = 16;
+    private Object[] objects = new Object[INITIAL_CAPACITY];
+    private int size;
+    //reference number of the object at index 0
+    private int first;
+    //true if the first reference number put is taken as first
+    private boolean floating;
+
+    /**
+     * @param ref the reference number the object was written with, writers number objects in the order they're
+     *            written so it can't be more than the number of objects already put
+     * @param obj the object the reference resolves to
+     */
+    public void put(int ref, Object obj) {
+        if (floating && size == 0 && ref >= 0) {
+            first = ref;
+        }
+        int index = ref - first;
+        if (ref < 0 || index < 0 || index > size) {
+            throw new InvalidDataException(String.format("Invalid reference %s, only %s objects have been read",
+                    ref, size), null);
+        }
+        if (index == objects.length) {
+            objects = Arrays.copyOf(objects, objects.length * 2);
+        }
+        objects[index] = obj;
+        if (index == size) {
+            size++;
+        }
+    }
+
+    /**
+     * @return the object with the given reference number or null if no object has it
+     */
+    public Object get(int ref) {
+        int index = ref - first;
+        return index >= 0 && index < size ? objects[index] : null;
+    }
+
+    /**
+     * Forget every object so the table can be used for another message, the array is kept and reused unless
+     * it's grown unusually large
+     */
+    public void reset() {
+        if (objects.length > MAX_RETAINED_CAPACITY) {
+            objects = new Object[INITIAL_CAPACITY];
+        } else if (size > 0) {
+            Arrays.fill(objects, 0, size, null);
+        }
+        size = 0;
+        first = 0;
+        floating = false;
+    }
+
+    /**
+     * Forget every object, as {@link #reset()} does, to read a value from part way through a message. The first
+     * reference number put is taken as the start of the numbering, objects before it weren't read so references to
+     * them resolve to null
+     */
+    public void resetMidMessage() {
+        reset();
+        floating = true;
+    }
+}
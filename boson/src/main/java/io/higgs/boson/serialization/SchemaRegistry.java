@@ -0,0 +1,98 @@
+package io.higgs.boson.serialization;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classes whose POLO fields are sent as small numeric IDs instead of their names by the compact protocol,
+ * {@link io.higgs.boson.BosonMessage#VERSION_3}. Both ends must register the same classes. IDs are assigned by
+ * sorting a class's serialized property names, so they agree as long as both ends have the same fields. A POLO sent
+ * with IDs carries a fingerprint of those names and is rejected if the receiver's differs, rather than its fields
+ * being silently mixed up. Fields of classes which aren't registered are still sent by name.
+ */
+public final class SchemaRegistry {
+    private static final Comparator<PoloSchema.Property> BY_NAME = new Comparator<PoloSchema.Property>() {
+        @Override
+        public int compare(PoloSchema.Property a, PoloSchema.Property b) {
+            return a.name().compareTo(b.name());
+        }
+    };
+    private final ConcurrentHashMap<String, Entry> classes = new ConcurrentHashMap<>();
+
+    public void register(Class<?> type) {
+        PoloSchema schema = PoloSchema.of(type);
+        PoloSchema.Property[] properties = schema.properties();
+        PoloSchema.Property[] byId = properties.clone();
+        Arrays.sort(byId, BY_NAME);
+        int[] ids = new int[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            ids[i] = Arrays.binarySearch(byId, properties[i], BY_NAME);
+        }
+        classes.put(type.getName(), new Entry(ids, byId, fingerprint(byId)));
+    }
+
+    /**
+     * FNV-1a of the property names in ID order, never 0 so 0 can mean no IDs were sent
+     */
+    private static int fingerprint(PoloSchema.Property[] byId) {
+        int hash = 0x811c9dc5;
+        for (PoloSchema.Property property : byId) {
+            String name = property.name();
+            for (int i = 0; i < name.length(); i++) {
+                hash = (hash ^ name.charAt(i)) * 0x01000193;
+            }
+            hash = (hash ^ 0xff) * 0x01000193; //separates names so "ab","c" differs from "a","bc"
+        }
+        hash &= 0x7fffffff;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * @return the IDs of the class's properties, in the same order as {@link PoloSchema#properties()} or null if
+     * the class isn't registered
+     */
+    public int[] fieldIds(Class<?> type) {
+        Entry entry = classes.get(type.getName());
+        return entry == null ? null : entry.ids;
+    }
+
+    /**
+     * @return the fingerprint of the class's property names, sent with its POLOs so the receiver can check its IDs
+     * agree, or 0 if the class isn't registered
+     */
+    public int fingerprint(Class<?> type) {
+        Entry entry = classes.get(type.getName());
+        return entry == null ? 0 : entry.fingerprint;
+    }
+
+    /**
+     * @param fingerprint the fingerprint received with a POLO of the named class
+     * @return true if the class is registered and its properties have the same fingerprint, so their IDs agree
+     */
+    public boolean matches(String className, int fingerprint) {
+        Entry entry = classes.get(className);
+        return entry != null && entry.fingerprint == fingerprint;
+    }
+
+    /**
+     * @return the property with the given ID in the named class or null if the class isn't registered or has no
+     * such property
+     */
+    public PoloSchema.Property field(String className, int id) {
+        Entry entry = classes.get(className);
+        return entry == null || id < 0 || id >= entry.byId.length ? null : entry.byId[id];
+    }
+
+    private static final class Entry {
+        private final int[] ids;
+        private final PoloSchema.Property[] byId;
+        private final int fingerprint;
+
+        private Entry(int[] ids, PoloSchema.Property[] byId, int fingerprint) {
+            this.ids = ids;
+            this.byId = byId;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.higgs.boson.serialization;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Remembers recently decoded short strings so a string received over and over, like a POLO's field names or the
+ * keys of similar maps, is decoded once and the same instance returned each time after. A string is looked up by
+ * hashing its bytes in the buffer, a hit costs no allocation at all.
+ * <p/>
+ * Not thread safe, each reader needs its own.
+ */
+public final class StringCache {
+    /**
+     * Strings longer than this, in bytes, are unlikely to repeat and are always decoded
+     */
+    public static final int MAX_LENGTH = 64;
+    private final String[] strings;
+    private final byte[][] bytes;
+    private final int mask;
+
+    /**
+     * @param size how many strings are remembered, rounded up to a power of 2
+     */
+    public StringCache(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("String cache size must be greater than 0");
+        }
+        int capacity = Integer.highestOneBit(size - 1) << 1;
+        capacity = capacity == 0 ? 1 : capacity;
+        strings = new String[capacity];
+        bytes = new byte[capacity][];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Get the UTF-8 string at the given index, the buffer's indexes are not changed
+     */
+    public String get(ByteBuf buffer, int index, int length) {
+        if (length == 0 || length > MAX_LENGTH) {
+            return Utf8.read(buffer, index, length);
+        }
+        int hash = length;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.getByte(index + i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        byte[] cached = bytes[slot];
+        if (cached != null && matches(cached, buffer, index, length)) {
+            return strings[slot];
+        }
+        String s = Utf8.read(buffer, index, length);
+        byte[] b = new byte[length];
+        buffer.getBytes(index, b);
+        bytes[slot] = b;
+        strings[slot] = s;
+        return s;
+    }
+
+    private static boolean matches(byte[] cached, ByteBuf buffer, int index, int length) {
+        if (cached.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cached[i] != buffer.getByte(index + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+package io.higgs.boson.serialization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+
+/**
+ * Encodes and decodes UTF-8 strings directly to and from buffers, without copying through temporary byte arrays.
+ */
+public final class Utf8 {
+    private Utf8() {
+    }
+
+    /**
+     * Write the UTF-8 encoding of a string at the buffer's writer index. Unpaired surrogates are written as '?' the
+     * same as {@link String#getBytes(java.nio.charset.Charset)} does
+     *
+     * @return the number of bytes written
+     */
+    public static int write(ByteBuf buffer, CharSequence s) {
+        int length = s.length();
+        //enough for ASCII, the buffer grows further if there are multi byte characters
+        buffer.ensureWritable(length);
+        int start = buffer.writerIndex();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.writeByte(c);
+            } else if (c < 0x800) {
+                buffer.writeByte(0xc0 | (c >> 6));
+                buffer.writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                char low = i + 1 < length ? s.charAt(i + 1) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int cp = Character.toCodePoint(c, low);
+                    buffer.writeByte(0xf0 | (cp >> 18));
+                    buffer.writeByte(0x80 | ((cp >> 12) & 0x3f));
+                    buffer.writeByte(0x80 | ((cp >> 6) & 0x3f));
+                    buffer.writeByte(0x80 | (cp & 0x3f));
+                    i++;
+                } else {
+                    buffer.writeByte('?');
+                }
+            } else {
+                buffer.writeByte(0xe0 | (c >> 12));
+                buffer.writeByte(0x80 | ((c >> 6) & 0x3f));
+                buffer.writeByte(0x80 | (c & 0x3f));
+            }
+        }
+        return buffer.writerIndex() - start;
+    }
+
+    /**
+     * @return the number of bytes {@link #write(ByteBuf, CharSequence)} writes for the string
+     */
+    public static int length(CharSequence s) {
+        int length = s.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isSurrogate(c)) {
+                    char low = i + 1 < length ? s.charAt(i + 1) : 0;
+                    if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                        bytes += 2; //4 bytes for the pair of chars
+                        i++;
+                    }
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Decode a string straight from the buffer's memory, the buffer's indexes are not changed
+     *
+     * @param index  the index of the first byte of the string
+     * @param length the number of bytes in the string
+     */
+    public static String read(ByteBuf buffer, int index, int length) {
+        if (length == 0) {
+            return "";
+        }
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + index, length, CharsetUtil.UTF_8);
+        }
+        return buffer.toString(index, length, CharsetUtil.UTF_8);
+    }
+}
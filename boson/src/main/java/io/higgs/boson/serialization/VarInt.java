@@ -0,0 +1,76 @@
+package io.higgs.boson.serialization;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Variable length integers, 7 bits per byte with the high bit set on every byte but the last. Small values take a
+ * single byte instead of 4 or 8. Signed values are zig-zag encoded first so small negative numbers are small too.
+ */
+public final class VarInt {
+    private VarInt() {
+    }
+
+    public static void writeUnsigned(ByteBuf buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer.writeByte(value);
+    }
+
+    public static void writeUnsigned(ByteBuf buffer, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer.writeByte((int) value);
+    }
+
+    public static void writeSigned(ByteBuf buffer, int value) {
+        writeUnsigned(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    public static void writeSigned(ByteBuf buffer, long value) {
+        writeUnsigned(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * @throws InvalidDataException if the value is longer than 5 bytes
+     */
+    public static int readUnsigned(ByteBuf buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.readByte();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new InvalidDataException("Malformed variable length int", null);
+    }
+
+    /**
+     * @throws InvalidDataException if the value is longer than 10 bytes
+     */
+    public static long readUnsignedLong(ByteBuf buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new InvalidDataException("Malformed variable length long", null);
+    }
+
+    public static int readSigned(ByteBuf buffer) {
+        int value = readUnsigned(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static long readSignedLong(ByteBuf buffer) {
+        long value = readUnsignedLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -1,9 +1,92 @@
 package io.higgs.boson.serialization.mutators;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
 /**
- * Responsible for pooled mutators and creates new unpooled ones
+ * The {@link PoloMutator}s a class loader can load as services, by the name of the class each one is for. Generated
+ * mutators are registered by {@link MutatorProcessor} so they're used without being passed to every reader and
+ * writer. Loaders are only weakly held.
  *
  * @author Courtney Robinson <courtney@crlog.info>
  */
-public class MutatorFactory {
+public final class MutatorFactory {
+    private static final Logger log = LoggerFactory.getLogger(MutatorFactory.class);
+    private static final Map<ClassLoader, WeakReference<MutatorFactory>> FACTORIES = new WeakHashMap<>();
+    private static final ClassValue<PoloMutator> BY_CLASS = new ClassValue<PoloMutator>() {
+        @Override
+        protected PoloMutator computeValue(Class<?> type) {
+            PoloMutator mutator = of(type.getClassLoader()).get(type.getName());
+            //a class with the same name from another loader isn't the same class
+            return mutator != null && mutator.type() == type ? mutator : null;
+        }
+    };
+    private final WeakReference<ClassLoader> loader;
+    private final Map<String, PoloMutator> mutators;
+
+    private MutatorFactory(ClassLoader loader) {
+        this.loader = new WeakReference<>(loader);
+        Map<String, PoloMutator> found = new HashMap<>();
+        Iterator<PoloMutator> it = ServiceLoader.load(PoloMutator.class, loader).iterator();
+        while (true) {
+            try {
+                if (!it.hasNext()) {
+                    break;
+                }
+                PoloMutator mutator = it.next();
+                found.put(mutator.type().getName(), mutator);
+            } catch (ServiceConfigurationError e) {
+                //e.g. a class removed since the services file was generated, the others are still usable
+                log.warn(String.format("Unable to load a Boson mutator, %s", e.getMessage()));
+            }
+        }
+        mutators = Collections.unmodifiableMap(found);
+    }
+
+    /**
+     * @param loader the loader mutators are loaded with, null for the bootstrap class loader
+     * @return the factory shared by everything loading mutators with the given loader
+     */
+    public static MutatorFactory of(ClassLoader loader) {
+        synchronized (FACTORIES) {
+            WeakReference<MutatorFactory> ref = FACTORIES.get(loader);
+            MutatorFactory factory = ref == null ? null : ref.get();
+            if (factory == null) {
+                factory = new MutatorFactory(loader);
+                FACTORIES.put(loader, new WeakReference<>(factory));
+            }
+            return factory;
+        }
+    }
+
+    /**
+     * @return the mutator registered for the given class by its class loader or null if there isn't one
+     */
+    public static PoloMutator forClass(Class<?> type) {
+        return BY_CLASS.get(type);
+    }
+
+    /**
+     * @param className a fully qualified class name
+     * @return the mutator registered for the named class or null if there isn't one
+     */
+    public PoloMutator get(String className) {
+        return mutators.get(className);
+    }
+
+    /**
+     * @return true if this is the factory for the given loader
+     */
+    public boolean isFor(ClassLoader loader) {
+        return this.loader.get() == loader;
+    }
 }
@@ -0,0 +1,379 @@
+package io.higgs.boson.serialization.mutators;
+
+import io.higgs.boson.serialization.BosonProperty;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@link PoloMutator} for every class annotated with {@link BosonProperty}, so it's serialized without
+ * reflection. The fields written and the names they're written with are worked out the same way as
+ * {@link io.higgs.boson.serialization.PoloSchema} does at runtime. Fields the generated class can see are read and
+ * set directly, private fields, or fields of a super class in another package, are read through the class's schema
+ * and left to the reader's reflection when set. Instances are created with new if the class has a no-arg
+ * constructor which isn't private.
+ * <p/>
+ * Mutators are registered as services in META-INF/services so {@link MutatorFactory} finds them. The processor is
+ * registered too, so it runs whenever Boson is on the compiler's class path.
+ */
+@SupportedAnnotationTypes("io.higgs.boson.serialization.BosonProperty")
+public class MutatorProcessor extends AbstractProcessor {
+    public static final String SUFFIX = "_BosonMutator";
+    private static final String SERVICES = "META-INF/services/" + PoloMutator.class.getName();
+    private final Set<String> generated = new LinkedHashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(BosonProperty.class)) {
+            //only classes annotated themselves, annotated fields of other classes are left to reflection
+            if (element.getKind() == ElementKind.CLASS) {
+                TypeElement type = (TypeElement) element;
+                String error = unsupported(type);
+                if (error != null) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, String.format("No Boson " +
+                            "mutator generated for %s, %s", type.getQualifiedName(), error), type);
+                } else {
+                    generate(type);
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !generated.isEmpty()) {
+            writeServices();
+        }
+        return false;
+    }
+
+    private String unsupported(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "it's abstract";
+        }
+        for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return "it's private";
+            }
+            if (e instanceof TypeElement && ((TypeElement) e).getNestingKind() == NestingKind.MEMBER
+                    && !e.getModifiers().contains(Modifier.STATIC) && e.getKind() == ElementKind.CLASS) {
+                return "it's an inner class, only static nested classes can be created without an outer instance";
+            }
+        }
+        return null;
+    }
+
+    private void generate(TypeElement type) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        String simpleName = (packageName.isEmpty() ? typeName : typeName.substring(packageName.length() + 1))
+                .replace('.', '_') + SUFFIX;
+        String mutatorName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        if (!generated.add(mutatorName)) {
+            return;
+        }
+        //the same rules as PoloSchema, serialized name -> field and every name a field can be set by
+        BosonProperty classProperty = type.getAnnotation(BosonProperty.class);
+        boolean ignoreInheritedFields = classProperty != null && classProperty.ignoreInheritedFields();
+        Map<String, VariableElement> written = new LinkedHashMap<>();
+        Map<String, VariableElement> read = new LinkedHashMap<>();
+        for (VariableElement field : fields(type)) {
+            if (field.getModifiers().contains(Modifier.FINAL)) {
+                continue;
+            }
+            boolean inherited = !field.getEnclosingElement().equals(type);
+            BosonProperty ann = field.getAnnotation(BosonProperty.class);
+            String name = ann != null && !ann.value().isEmpty() ? ann.value() : field.getSimpleName().toString();
+            read.put(field.getSimpleName().toString(), field);
+            boolean add = !(ignoreInheritedFields && inherited)
+                    && !(ann != null && (ann.ignore() || ann.ignoreInheritedFields() && inherited));
+            if (add) {
+                written.remove(name);
+                written.put(name, field);
+            }
+        }
+        read.putAll(written);
+
+        StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("/**\n * Generated by ").append(MutatorProcessor.class.getName()).append(", do not edit\n */\n");
+        src.append("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+        src.append("public final class ").append(simpleName).append(" extends ")
+                .append(PoloMutator.class.getName()).append(" {\n");
+        src.append("    private static final java.util.List<String> FIELDS = java.util.Collections.unmodifiableList(")
+                .append("java.util.Arrays.<String>asList(");
+        boolean first = true;
+        for (String name : written.keySet()) {
+            src.append(first ? "" : ", ").append(literal(name));
+            first = false;
+        }
+        src.append("));\n");
+        List<VariableElement> hidden = new ArrayList<>();
+        for (VariableElement field : written.values()) {
+            if (!accessible(field, pkg)) {
+                src.append("    private final io.higgs.boson.serialization.PoloSchema.Property p")
+                        .append(hidden.size()).append(";\n");
+                hidden.add(field);
+            }
+        }
+        src.append("\n    public ").append(simpleName).append("() {\n");
+        src.append("        super(").append(typeName).append(".class);\n");
+        for (int i = 0; i < hidden.size(); i++) {
+            VariableElement field = hidden.get(i);
+            src.append("        p").append(i).append(" = property(")
+                    .append(((TypeElement) field.getEnclosingElement()).getQualifiedName()).append(".class, ")
+                    .append(literal(field.getSimpleName().toString())).append(");\n");
+        }
+        src.append("    }\n\n");
+
+        src.append("    @Override\n    public Object newInstance(String className) {\n");
+        if (hasVisibleConstructor(type)) {
+            src.append("        return new ").append(typeName).append("();\n");
+        } else {
+            src.append("        return newInstanceReflectively();\n");
+        }
+        src.append("    }\n\n");
+
+        src.append("    @Override\n    public <T> java.util.List<String> fields(Class<?> klass, Object obj) {\n");
+        src.append("        return FIELDS;\n    }\n\n");
+
+        src.append("    @Override\n    public Object get(Class<?> klass, Object instance, String field) {\n");
+        src.append("        ").append(typeName).append(" o = (").append(typeName).append(") instance;\n");
+        src.append("        switch (field) {\n");
+        for (Map.Entry<String, VariableElement> e : written.entrySet()) {
+            VariableElement field = e.getValue();
+            src.append("            case ").append(literal(e.getKey())).append(":\n");
+            int idx = hidden.indexOf(field);
+            if (idx >= 0) {
+                src.append("                return p").append(idx).append(".get(o);\n");
+            } else {
+                src.append("                return ").append(target(type, field)).append(";\n");
+            }
+        }
+        src.append("            default:\n                return null;\n        }\n    }\n\n");
+
+        src.append("    @Override\n    public <T> boolean set(T instance, String field, Object value) {\n");
+        src.append("        ").append(typeName).append(" o = (").append(typeName).append(") instance;\n");
+        src.append("        switch (field) {\n");
+        //group the names each field can be set by
+        Map<VariableElement, List<String>> names = new LinkedHashMap<>();
+        for (Map.Entry<String, VariableElement> e : read.entrySet()) {
+            if (accessible(e.getValue(), pkg)) {
+                List<String> list = names.get(e.getValue());
+                if (list == null) {
+                    list = new ArrayList<>();
+                    names.put(e.getValue(), list);
+                }
+                list.add(e.getKey());
+            }
+        }
+        for (Map.Entry<VariableElement, List<String>> e : names.entrySet()) {
+            for (String name : e.getValue()) {
+                src.append("            case ").append(literal(name)).append(":\n");
+            }
+            String valueType = boxedName(e.getKey().asType());
+            src.append("                if (value instanceof ").append(valueType).append(") {\n");
+            src.append("                    ").append(target(type, e.getKey())).append(" = (").append(valueType)
+                    .append(") value;\n");
+            src.append("                    return true;\n                }\n");
+            src.append("                return false;\n");
+        }
+        src.append("            default:\n                return false;\n        }\n    }\n}\n");
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(mutatorName, type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(src.toString());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format("Unable to write %s, %s",
+                    mutatorName, e.getMessage()), type);
+        }
+    }
+
+    /**
+     * @return the fields of the class and its super classes, super class fields first
+     */
+    private List<VariableElement> fields(TypeElement type) {
+        List<TypeElement> hierarchy = new ArrayList<>();
+        TypeElement t = type;
+        while (t != null) {
+            hierarchy.add(t);
+            TypeMirror parent = t.getSuperclass();
+            t = parent.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) parent).asElement() : null;
+        }
+        Collections.reverse(hierarchy);
+        List<VariableElement> fields = new ArrayList<>();
+        for (TypeElement c : hierarchy) {
+            fields.addAll(ElementFilter.fieldsIn(c.getEnclosedElements()));
+        }
+        return fields;
+    }
+
+    /**
+     * @return true if the field can be used directly from a class in the given package
+     */
+    private boolean accessible(VariableElement field, PackageElement pkg) {
+        if (field.getModifiers().contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        Element declaring = field.getEnclosingElement();
+        boolean samePackage = processingEnv.getElementUtils().getPackageOf(declaring).equals(pkg);
+        boolean isPublic = field.getModifiers().contains(Modifier.PUBLIC);
+        for (Element e = declaring; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            isPublic &= e.getModifiers().contains(Modifier.PUBLIC);
+        }
+        return samePackage || isPublic;
+    }
+
+    private boolean hasVisibleConstructor(TypeElement type) {
+        for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return an expression for the field, an inherited field is cast to the class declaring it in case it's hidden
+     */
+    private String target(TypeElement type, VariableElement field) {
+        String declaring = ((TypeElement) field.getEnclosingElement()).getQualifiedName().toString();
+        if (field.getModifiers().contains(Modifier.STATIC)) {
+            return declaring + "." + field.getSimpleName();
+        }
+        if (field.getEnclosingElement().equals(type)) {
+            return "o." + field.getSimpleName();
+        }
+        return "((" + declaring + ") o)." + field.getSimpleName();
+    }
+
+    /**
+     * @return the name of the type a value must be to be assigned to a field of the given type, boxed if primitive
+     */
+    private String boxedName(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "java.lang.Boolean";
+            case BYTE:
+                return "java.lang.Byte";
+            case SHORT:
+                return "java.lang.Short";
+            case CHAR:
+                return "java.lang.Character";
+            case INT:
+                return "java.lang.Integer";
+            case LONG:
+                return "java.lang.Long";
+            case FLOAT:
+                return "java.lang.Float";
+            case DOUBLE:
+                return "java.lang.Double";
+            default:
+                return typeName(processingEnv.getTypeUtils().erasure(type));
+        }
+    }
+
+    private String typeName(TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY:
+                return typeName(((ArrayType) type).getComponentType()) + "[]";
+            case DECLARED:
+                return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+            case TYPEVAR:
+                return typeName(processingEnv.getTypeUtils().erasure(type));
+            default:
+                //primitives, only reached as an array's component type
+                return type.getKind().name().toLowerCase();
+        }
+    }
+
+    private static String literal(String value) {
+        StringBuilder buf = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                buf.append(String.format("\\u%04x", (int) c));
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.append('"').toString();
+    }
+
+    /**
+     * Write the services file, keeping mutators registered by earlier, incremental, compilations
+     */
+    private void writeServices() {
+        Set<String> services = new HashSet<>();
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+            try (BufferedReader reader = new BufferedReader(existing.openReader(true))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        services.add(line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            //no earlier compilation
+        }
+        services.addAll(generated);
+        List<String> sorted = new ArrayList<>(services);
+        Collections.sort(sorted);
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+            try (Writer writer = file.openWriter()) {
+                for (String service : sorted) {
+                    writer.write(service);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format("Unable to write %s, %s",
+                    SERVICES, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.higgs.boson.serialization.mutators;
+
+import io.higgs.boson.serialization.PoloSchema;
+import io.higgs.boson.serialization.UnsupportedBosonTypeException;
+
+/**
+ * A mutator for exactly one POLO class, found by the class's name with a hash lookup instead of asking every mutator
+ * if it can handle it. {@link MutatorProcessor} generates one for each class annotated with
+ * {@link io.higgs.boson.serialization.BosonProperty}, reading and writing fields directly and creating instances
+ * with new. They're registered as services of this type and loaded by {@link MutatorFactory}.
+ * <p/>
+ * {@link #set(Object, String, Object)} returns false for a value it can't set directly, the reader then sets it by
+ * reflection, converting it if it needs to be.
+ */
+public abstract class PoloMutator implements ReadWriteMutator {
+    protected final Class<?> type;
+    protected final String className;
+
+    protected PoloMutator(Class<?> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("POLO class cannot be null");
+        }
+        this.type = type;
+        className = type.getName();
+    }
+
+    /**
+     * @return the class this mutator reads and writes
+     */
+    public Class<?> type() {
+        return type;
+    }
+
+    @Override
+    public boolean canReadFields(Class<?> klass, Object obj) {
+        return klass == type;
+    }
+
+    @Override
+    public boolean canCreate(String className) {
+        return this.className.equals(className);
+    }
+
+    /**
+     * @return the serialized property of the given field, used for fields a generated mutator can't see
+     */
+    protected PoloSchema.Property property(Class<?> declaringClass, String field) {
+        for (PoloSchema.Property property : PoloSchema.of(type).properties()) {
+            if (property.accessor().declaringClass() == declaringClass && property.accessor().name().equals(field)) {
+                return property;
+            }
+        }
+        throw new IllegalStateException(String.format("%s.%s is not serialized, %s needs to be regenerated",
+                declaringClass.getName(), field, getClass().getName()));
+    }
+
+    /**
+     * @return a new instance, for classes whose no-arg constructor a generated mutator can't call
+     */
+    protected Object newInstanceReflectively() {
+        try {
+            return PoloSchema.of(type).newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException(String.format("Unable to create %s", className), e);
+        }
+    }
+
+    /**
+     * POLO classes aren't enums, the class name comes from the wire so this is a decoding error like any other
+     * value of the wrong type
+     *
+     * @throws UnsupportedBosonTypeException always
+     */
+    @Override
+    public Enum get(String enumClassName, String enumStringName) {
+        throw new UnsupportedBosonTypeException(String.format("%s was received as an enum but is a POLO class",
+                enumClassName), null);
+    }
+}
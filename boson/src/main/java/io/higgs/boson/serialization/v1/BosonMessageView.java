@@ -0,0 +1,151 @@
+package io.higgs.boson.serialization.v1;
+
+import io.higgs.boson.serialization.ClassFilter;
+import io.higgs.boson.serialization.InvalidDataException;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.netty.buffer.ByteBuf;
+
+import static io.higgs.boson.BosonType.REQUEST_CALLBACK;
+import static io.higgs.boson.BosonType.REQUEST_METHOD_NAME;
+import static io.higgs.boson.BosonType.REQUEST_PARAMETERS;
+import static io.higgs.boson.BosonType.RESPONSE_METHOD_NAME;
+import static io.higgs.boson.BosonType.RESPONSE_PARAMETERS;
+
+/**
+ * A read-only view of a {@link io.higgs.boson.BosonMessage} with Boson headers, for routers and proxies which only
+ * need the method, callback or a parameter to decide where a message goes. Only the strings asked for are decoded,
+ * parameters are {@link BosonView}s, and {@link #bytes()} forwards the message exactly as it was received.
+ */
+public final class BosonMessageView {
+    private final BosonView.Source source;
+    private final int start;
+    private final int end;
+    private boolean scanned;
+    private String method;
+    private String callback;
+    private BosonView parameters;
+
+    private BosonMessageView(BosonView.Source source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * View the message at the buffer's reader index, all of which must be readable. No POLO or enum parameter can be
+     * decoded, see {@link #of(ByteBuf, SchemaRegistry, ClassFilter)}
+     */
+    public static BosonMessageView of(ByteBuf buffer) {
+        return of(buffer, null, null);
+    }
+
+    /**
+     * View the message at the buffer's reader index, all of which must be readable. No POLO or enum parameter can be
+     * decoded, see {@link #of(ByteBuf, SchemaRegistry, ClassFilter)}
+     *
+     * @param schemas the classes registered to be sent with field IDs by the compact encoding, can be null
+     */
+    public static BosonMessageView of(ByteBuf buffer, SchemaRegistry schemas) {
+        return of(buffer, schemas, null);
+    }
+
+    /**
+     * View the message at the buffer's reader index, all of which must be readable
+     *
+     * @param schemas the classes registered to be sent with field IDs by the compact encoding, can be null
+     * @param classes the classes POLOs and enums can be decoded as by {@link BosonView#value()}, if null none can be
+     */
+    public static BosonMessageView of(ByteBuf buffer, SchemaRegistry schemas, ClassFilter classes) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer cannot be null");
+        }
+        if (buffer.readableBytes() < 5) {
+            throw new InvalidDataException("Not enough data for a Boson message header", null);
+        }
+        int start = buffer.readerIndex();
+        short version = buffer.getByte(start);
+        int size = buffer.getInt(start + 1);
+        if (size < 0 || size > buffer.readableBytes() - 5) {
+            throw new InvalidDataException(String.format("Boson message of %s bytes but only %s are readable",
+                    size, buffer.readableBytes() - 5), null);
+        }
+        return new BosonMessageView(new BosonView.Source(buffer, version, schemas, classes), start, start + 5 + size);
+    }
+
+    /**
+     * Find where each section starts, decoding only the method and callback names
+     */
+    private void scan() {
+        if (scanned) {
+            return;
+        }
+        int pos = start + 5;
+        while (pos < end) {
+            int flag = source.buffer.getByte(pos++);
+            switch (flag) {
+                case REQUEST_METHOD_NAME:
+                case RESPONSE_METHOD_NAME:
+                    method = source.string(pos);
+                    pos = source.skipString(pos);
+                    break;
+                case REQUEST_CALLBACK:
+                    callback = source.string(pos);
+                    pos = source.skipString(pos);
+                    break;
+                case REQUEST_PARAMETERS:
+                case RESPONSE_PARAMETERS:
+                    parameters = new BosonView(source, pos);
+                    pos = parameters.end();
+                    break;
+                default:
+                    throw new InvalidDataException(String.format("The type %s does not match any of the supported " +
+                            "response or request types (method,callback,parameter)", flag), null);
+            }
+        }
+        if (pos > end) {
+            throw new InvalidDataException("Boson message is longer than the size in its header", null);
+        }
+        scanned = true;
+    }
+
+    public short protocolVersion() {
+        return source.protocolVersion;
+    }
+
+    public String method() {
+        scan();
+        return method;
+    }
+
+    public String callback() {
+        scan();
+        return callback;
+    }
+
+    /**
+     * @return the message's parameters array or null if it has none
+     */
+    public BosonView parameters() {
+        scan();
+        return parameters;
+    }
+
+    /**
+     * @return the parameter at the given index
+     */
+    public BosonView get(int index) {
+        BosonView params = parameters();
+        if (params == null) {
+            throw new IndexOutOfBoundsException("The message has no parameters");
+        }
+        return params.get(index);
+    }
+
+    /**
+     * @return the whole message, headers included, sharing the viewed buffer's memory, to be forwarded as it was
+     * received
+     */
+    public ByteBuf bytes() {
+        return source.buffer.slice(start, end - start);
+    }
+}
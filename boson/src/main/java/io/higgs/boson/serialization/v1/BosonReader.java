@@ -1,37 +1,51 @@
 package io.higgs.boson.serialization.v1;
 
 import io.higgs.boson.BosonMessage;
+import io.higgs.boson.serialization.ClassFilter;
+import io.higgs.boson.serialization.ClassNameCache;
 import io.higgs.boson.serialization.InvalidDataException;
 import io.higgs.boson.serialization.InvalidRequestResponseTypeException;
+import io.higgs.boson.serialization.PoloSchema;
+import io.higgs.boson.serialization.ReferenceTable;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.higgs.boson.serialization.StringCache;
 import io.higgs.boson.serialization.UnsupportedBosonTypeException;
+import io.higgs.boson.serialization.Utf8;
+import io.higgs.boson.serialization.VarInt;
+import io.higgs.boson.serialization.mutators.MutatorFactory;
 import io.higgs.boson.serialization.mutators.WriteMutator;
-import io.higgs.core.reflect.ReflectionUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static io.higgs.boson.BosonType.ARRAY;
 import static io.higgs.boson.BosonType.BOOLEAN;
+import static io.higgs.boson.BosonType.BOOLEAN_ARRAY;
 import static io.higgs.boson.BosonType.BYTE;
+import static io.higgs.boson.BosonType.BYTE_ARRAY;
 import static io.higgs.boson.BosonType.CHAR;
+import static io.higgs.boson.BosonType.CHAR_ARRAY;
 import static io.higgs.boson.BosonType.DOUBLE;
+import static io.higgs.boson.BosonType.DOUBLE_ARRAY;
 import static io.higgs.boson.BosonType.ENUM;
 import static io.higgs.boson.BosonType.FLOAT;
+import static io.higgs.boson.BosonType.FLOAT_ARRAY;
 import static io.higgs.boson.BosonType.INT;
+import static io.higgs.boson.BosonType.INT_ARRAY;
 import static io.higgs.boson.BosonType.LIST;
 import static io.higgs.boson.BosonType.LONG;
+import static io.higgs.boson.BosonType.LONG_ARRAY;
 import static io.higgs.boson.BosonType.MAP;
 import static io.higgs.boson.BosonType.NULL;
 import static io.higgs.boson.BosonType.POLO;
@@ -43,6 +57,7 @@ import static io.higgs.boson.BosonType.RESPONSE_METHOD_NAME;
 import static io.higgs.boson.BosonType.RESPONSE_PARAMETERS;
 import static io.higgs.boson.BosonType.SET;
 import static io.higgs.boson.BosonType.SHORT;
+import static io.higgs.boson.BosonType.SHORT_ARRAY;
 import static io.higgs.boson.BosonType.STRING;
 
 /**
@@ -52,7 +67,25 @@ public class BosonReader {
     protected final Set<WriteMutator> mutators;
     protected Logger log = LoggerFactory.getLogger(getClass());
     protected ClassLoader loader = Thread.currentThread().getContextClassLoader();
-    protected IdentityHashMap<Integer, Object> references = new IdentityHashMap<>();
+    protected ClassNameCache classes;
+    /**
+     * Decoded strings are shared through this if it's set, null by default
+     */
+    protected StringCache strings;
+    /**
+     * The protocol version values are read for, see {@link BosonMessage#VERSION_1}
+     */
+    protected short protocolVersion = BosonMessage.VERSION_1;
+    protected SchemaRegistry schemas;
+    /**
+     * The classes POLOs and enums can be read as, null to allow any class
+     */
+    protected ClassFilter classFilter;
+    protected final ReferenceTable references = new ReferenceTable();
+    protected MutatorFactory factory;
+    //mutator found for each class name, null if there isn't one, so each name is only looked up once
+    private final Map<String, WriteMutator> mutatorsByName = new HashMap<>();
+    private int mutatorCount = -1;
 
     public BosonReader() {
         this(null);
@@ -63,52 +96,103 @@ public class BosonReader {
     }
 
     public <T> T deSerialize(ByteBuf buf) {
+        reset();
         Object obj = readType(buf);
         return (T) obj;
     }
 
+    public StringCache getStringCache() {
+        return strings;
+    }
+
+    /**
+     * @param strings a cache short strings which repeat, like field names and map keys, are decoded through or null
+     *                to decode every string. The cache can only be used by this reader
+     */
+    public void setStringCache(StringCache strings) {
+        this.strings = strings;
+    }
+
+    public Set<WriteMutator> getMutators() {
+        return mutators;
+    }
+
+    /**
+     * Forget the objects read so far, each call to deSerialize does this so a reader can be reused for any
+     * number of messages, one at a time.
+     */
+    public void reset() {
+        references.reset();
+    }
+
+    /**
+     * Read the message at the buffer's reader index, which is left after its last byte. Only the message's own bytes
+     * are read, other messages can follow it in the same buffer
+     */
     public void deSerialize(ByteBuf data, BosonMessage msg) {
-        //reset reder index, BosonDecoder would have set to writerIndex
-        data.readerIndex(0);
+        reset();
+        if (data.readableBytes() < 5) {
+            throw new InvalidDataException("Not enough data for a Boson message header", null);
+        }
+        int start = data.readerIndex();
         //protocol version and message size is not a part of the message so read before loop
         //advance reader index by 1
         msg.protocolVersion = data.readByte();
+        if (msg.protocolVersion > BosonMessage.LATEST_VERSION) {
+            throw new InvalidDataException(String.format("Boson protocol version %s is not supported, %s is the " +
+                    "latest version this reader can read", msg.protocolVersion, BosonMessage.LATEST_VERSION), null);
+        }
         //move reader index forward by 4
         int msgSize = data.readInt();
-        //so read until the reader index == obj.length
-        while (data.isReadable()) {
-            //read request/response types
-            int type = data.readByte();
-
-            switch (type) {
-                case RESPONSE_METHOD_NAME: {
-                    msg.method = readString(data, false, 0);
-                    break;
-                }
-                case RESPONSE_PARAMETERS: {
-                    msg.arguments = readArray(data, false, 0);
-                    break;
-                }
-                case REQUEST_METHOD_NAME: {
-                    msg.method = readString(data, false, 0);
-                    break;
-                }
-                case REQUEST_CALLBACK: {
-                    msg.callback = readString(data, false, 0);
-                    break;
-                }
-                case REQUEST_PARAMETERS: {
-                    msg.arguments = readArray(data, false, 0);
-                    break;
+        if (msgSize < 0 || msgSize > data.readableBytes()) {
+            throw new InvalidDataException(String.format("Boson message of %s bytes but only %s are readable",
+                    msgSize, data.readableBytes()), null);
+        }
+        int end = start + 5 + msgSize;
+        //values are read for the message's version, whatever this reader is set to
+        short version = protocolVersion;
+        protocolVersion = msg.protocolVersion;
+        try {
+            //so read until the reader index reaches the end of the message
+            while (data.readerIndex() < end) {
+                //read request/response types
+                int type = data.readByte();
+
+                switch (type) {
+                    case RESPONSE_METHOD_NAME: {
+                        msg.method = readString(data, false, 0);
+                        break;
+                    }
+                    case RESPONSE_PARAMETERS: {
+                        msg.arguments = readArray(data, false, 0);
+                        break;
+                    }
+                    case REQUEST_METHOD_NAME: {
+                        msg.method = readString(data, false, 0);
+                        break;
+                    }
+                    case REQUEST_CALLBACK: {
+                        msg.callback = readString(data, false, 0);
+                        break;
+                    }
+                    case REQUEST_PARAMETERS: {
+                        msg.arguments = readArray(data, false, 0);
+                        break;
+                    }
+                    default:
+                        throw new InvalidRequestResponseTypeException(String.
+                                format("The type %s does not match any of the supported" +
+                                                " response or request types (method,callback,parameter)" +
+                                                "\n data: \n %s",
+                                        type, ByteBufUtil.hexDump(data, start, end - start)
+                                ), null);
                 }
-                default:
-                    throw new InvalidRequestResponseTypeException(String.
-                            format("The type %s does not match any of the supported" +
-                                            " response or request types (method,callback,parameter)" +
-                                            "\n data: \n %s",
-                                    type, new String(data.array())
-                            ), null);
             }
+            if (data.readerIndex() > end) {
+                throw new InvalidDataException("Boson message is longer than the size in its header", null);
+            }
+        } finally {
+            protocolVersion = version;
         }
     }
 
@@ -142,15 +226,16 @@ public class BosonReader {
         if (STRING == type) {
             verifyReadable(data);
             //read size of type - how many bytes are in the string
-            int size = data.readInt();
-            if (size == 0) {
-                return "";
+            int size = readSize(data);
+            if (size < 0 || size > data.readableBytes()) {
+                throw new InvalidDataException(String.format("String of %s bytes but only %s are readable",
+                        size, data.readableBytes()), null);
             }
-            //read type's payload and de-serialize
-            ByteBuf buf = data.readBytes(size);
-            byte[] arr = new byte[buf.writerIndex()];
-            buf.getBytes(0, arr);
-            return new String(arr, Charset.forName("utf8"));
+            //de-serialize the payload straight from the buffer
+            int index = data.readerIndex();
+            String s = strings == null ? Utf8.read(data, index, size) : strings.get(data, index, size);
+            data.skipBytes(size);
+            return s;
         } else {
             throw new UnsupportedBosonTypeException(String.format("type %s is not a Boson STRING", type), null);
         }
@@ -165,19 +250,14 @@ public class BosonReader {
             verifyReadable(data);
             String enumClassName = readString(data, false, -1);
             String enumValue = readString(data, false, -1);
-            WriteMutator mutator = null;
-            for (WriteMutator m : mutators) {
-                if (m.canCreate(enumClassName)) {
-                    mutator = m;
-                    break;
-                }
-            }
+            checkAllowed(enumClassName);
+            WriteMutator mutator = findMutator(enumClassName);
             if (mutator != null) {
                 return mutator.get(enumClassName, enumValue);
             } else {
                 Class<?> klass;
                 try {
-                    klass = loader.loadClass(enumClassName);
+                    klass = loadClass(enumClassName);
                 } catch (ClassNotFoundException e) {
                     throw new IllegalArgumentException(String.format("Cannot load the requested class %s",
                             enumClassName), e);
@@ -255,7 +335,7 @@ public class BosonReader {
         }
         if (INT == type) {
             verifyReadable(data);
-            return data.readInt();
+            return compact() ? VarInt.readSigned(data) : data.readInt();
         } else {
             throw new UnsupportedBosonTypeException(String.format("type %s is not a Boson INT", type), null);
         }
@@ -276,7 +356,7 @@ public class BosonReader {
         }
         if (LONG == type) {
             verifyReadable(data);
-            return data.readLong();
+            return compact() ? VarInt.readSignedLong(data) : data.readLong();
         } else {
             throw new UnsupportedBosonTypeException(String.format("type %s is not a Boson LONG", type), null);
         }
@@ -382,7 +462,7 @@ public class BosonReader {
         }
         if (ARRAY == type) {
             //read number of elements in the array
-            int size = data.readInt();
+            int size = readSize(data);
             Object[] arr = new Object[size];
             for (int i = 0; i < size; i++) {
                 type = data.readByte();
@@ -394,6 +474,98 @@ public class BosonReader {
         }
     }
 
+    /**
+     * Read a packed primitive array from the buffer. The values are copied in bulk straight into an array of the
+     * primitive type, they're never boxed
+     *
+     * @param verified     if true then the verifiedType param is used to match the type, if false then
+     *                     a single byte is read from the buffer to determine the type
+     * @param verifiedType the data type to be de-serialized, one of {@link io.higgs.boson.BosonType#BYTE_ARRAY} to
+     *                     {@link io.higgs.boson.BosonType#CHAR_ARRAY}
+     * @return the array, e.g. an int[] for an INT_ARRAY
+     */
+    public Object readPrimitiveArray(ByteBuf data, boolean verified, int verifiedType) {
+        int type = verifiedType;
+        if (!verified) {
+            type = data.readByte();
+        }
+        int size = readSize(data);
+        switch (type) {
+            case BYTE_ARRAY: {
+                ByteBuffer buf = packed(data, size, 1);
+                byte[] arr = new byte[size];
+                buf.get(arr);
+                return arr;
+            }
+            case SHORT_ARRAY: {
+                ByteBuffer buf = packed(data, size, 2);
+                short[] arr = new short[size];
+                buf.asShortBuffer().get(arr);
+                return arr;
+            }
+            case INT_ARRAY: {
+                ByteBuffer buf = packed(data, size, 4);
+                int[] arr = new int[size];
+                buf.asIntBuffer().get(arr);
+                return arr;
+            }
+            case LONG_ARRAY: {
+                ByteBuffer buf = packed(data, size, 8);
+                long[] arr = new long[size];
+                buf.asLongBuffer().get(arr);
+                return arr;
+            }
+            case FLOAT_ARRAY: {
+                ByteBuffer buf = packed(data, size, 4);
+                float[] arr = new float[size];
+                buf.asFloatBuffer().get(arr);
+                return arr;
+            }
+            case DOUBLE_ARRAY: {
+                ByteBuffer buf = packed(data, size, 8);
+                double[] arr = new double[size];
+                buf.asDoubleBuffer().get(arr);
+                return arr;
+            }
+            case BOOLEAN_ARRAY: {
+                ByteBuffer buf = packed(data, size, 1);
+                boolean[] arr = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    arr[i] = buf.get() != 0;
+                }
+                return arr;
+            }
+            case CHAR_ARRAY: {
+                ByteBuffer buf = packed(data, size, 2);
+                char[] arr = new char[size];
+                buf.asCharBuffer().get(arr);
+                return arr;
+            }
+            default:
+                throw new UnsupportedBosonTypeException(String.format("type %s is not a packed Boson array", type),
+                        null);
+        }
+    }
+
+    /**
+     * Check the buffer holds all of a packed array before anything is allocated for it, the size comes off the
+     * wire and can't be trusted
+     *
+     * @param size  the number of elements
+     * @param width the number of bytes in each element
+     * @return a big-endian view of the array's bytes, which are skipped over
+     */
+    private ByteBuffer packed(ByteBuf data, int size, int width) {
+        long length = (long) size * width;
+        if (size < 0 || length > data.readableBytes()) {
+            throw new InvalidDataException(String.format("Packed array of %s elements (%s bytes) but only %s " +
+                    "bytes are readable", size, length, data.readableBytes()), null);
+        }
+        ByteBuffer buf = data.nioBuffer(data.readerIndex(), (int) length).order(ByteOrder.BIG_ENDIAN);
+        data.skipBytes((int) length);
+        return buf;
+    }
+
     /**
      * Read a List from the buffer
      *
@@ -409,7 +581,7 @@ public class BosonReader {
         }
         if (LIST == type) {
             //read number of elements in the array
-            int size = data.readInt();
+            int size = readSize(data);
             List<Object> arr = new ArrayList<>();
             for (int i = 0; i < size; i++) {
                 verifyReadable(data);
@@ -431,7 +603,7 @@ public class BosonReader {
         }
         if (SET == type) {
             //read number of elements in the array
-            int size = data.readInt();
+            int size = readSize(data);
             Set<Object> set = new HashSet<>();
             for (int i = 0; i < size; i++) {
                 verifyReadable(data);
@@ -460,7 +632,7 @@ public class BosonReader {
             type = data.readByte();
         }
         if (MAP == type) {
-            int size = data.readInt();
+            int size = readSize(data);
             Map<Object, Object> kv = new HashMap<>();
             for (int i = 0; i < size; i++) {
                 verifyReadable(data);
@@ -484,139 +656,284 @@ public class BosonReader {
         if (POLO == type) {
             verifyReadable(data);
             //get reference
-            int ref = data.readInt();
+            int ref = readReferenceNumber(data);
             //get class name
             String poloClassName = readString(data, false, -1);
             if (poloClassName == null || poloClassName.isEmpty()) {
                 throw new InvalidDataException("Cannot de-serialise a POLO without it's fully qualified class name " +
                         "being provided", null);
             }
+            checkAllowed(poloClassName);
             //get number of fields serialized
-            int size = data.readInt();
-            WriteMutator mutator = null;
-            for (WriteMutator m : mutators) {
-                if (m.canCreate(poloClassName)) {
-                    mutator = m;
-                    break;
-                }
-            }
+            int size = readSize(data);
+            boolean ids = compact() && readSchemaFingerprint(data, poloClassName);
+            WriteMutator mutator = findMutator(poloClassName);
             if (mutator != null) {
-                return readPoloMutator(data, mutator, poloClassName, ref, size);
+                return readPoloMutator(data, mutator, poloClassName, ref, size, ids);
             } else {
-                return readPoloReflection(data, poloClassName, ref, size);
+                return readPoloReflection(data, poloClassName, ref, size, ids);
             }
         } else {
             throw new UnsupportedBosonTypeException(String.format("type %s is not a Boson POLO", type), null);
         }
     }
 
-    private Object readPoloMutator(ByteBuf data, WriteMutator mutator, String className, int ref, int size) {
+    private Object readPoloMutator(ByteBuf data, WriteMutator mutator, String className, int ref, int size,
+                                   boolean ids) {
         Object instance = mutator.newInstance(className);
         references.put(ref, instance);
+        PoloSchema schema = null;
         for (int i = 0; i < size; i++) {
             verifyReadable(data);
-            //polo keys are required to be strings
-            String key = readString(data, false, 0);
+            String key = readPoloKey(data, className, ids);
             verifyReadable(data);
             int valueType = data.readByte();
             Object value = readType(data, valueType);
-            //TODO if false is returned try to set the field via reflection
-            mutator.set(instance, key, value);
+            if (!mutator.set(instance, key, value) && instance != null) {
+                //the mutator couldn't set it, try via reflection
+                if (schema == null) {
+                    schema = PoloSchema.of(instance.getClass());
+                }
+                setField(schema, instance, key, value);
+            }
         }
         return instance;
     }
 
-    private Object readPoloReflection(ByteBuf data, String poloClassName, int ref, int size) {
+    private Object readPoloReflection(ByteBuf data, String poloClassName, int ref, int size, boolean ids) {
         //try to load the class if available
         try {
             Class<?> klass;
             try {
-                klass = loader.loadClass(poloClassName);
+                klass = loadClass(poloClassName);
             } catch (ClassNotFoundException e) {
                 throw new IllegalArgumentException(String.format("Cannot load the requested class %s",
                         poloClassName), e);
             }
-            Object instance = klass.newInstance();
+            PoloSchema schema = PoloSchema.of(klass);
+            Object instance = schema.newInstance();
             //Put the instance in the reference table
             references.put(ref, instance);
-            //get ALL (public,private,protect,package) fields declared in the class - excludes inherited fields
-            Set<Field> fields = ReflectionUtil.getAllFields(new HashSet<Field>(), klass, 0);
-            //create a map of fields names -> Field
-            Map<String, Field> fieldset = new HashMap<>();
-            for (Field field : fields) {
-                if (!Modifier.isFinal(field.getModifiers())) {
-                    //only add non-final fields
-                    fieldset.put(field.getName(), field);
-                }
-            }
             for (int i = 0; i < size; i++) {
                 verifyReadable(data);
-                //polo keys are required to be strings
-                String key = readString(data, false, 0);
+                String key = readPoloKey(data, poloClassName, ids);
                 verifyReadable(data);
                 int valueType = data.readByte();
                 Object value = readType(data, valueType);
-                Field field = fieldset.get(key);
-                if (field != null && value != null) {
-                    field.setAccessible(true);
-                    //if field's type is an array  create an array of it's type
-                    Class<?> fieldType = field.getType();
-                    String cname = value == null ? "null" : value.getClass().getName();
-                    if (fieldType.isArray()) {
-                        if (value.getClass().isArray()) {
-                            int length = Array.getLength(value);
-                            //create an array of the expected type
-                            Object arr = Array.newInstance(fieldType.getComponentType(), length);
-                            for (int j = 0; j < length; j++) {
-                                try {
-                                    //get current array value
-                                    Object arrayValue = Array.get(value, j);
-                                    Array.set(arr, j, arrayValue); //set the value at the current index, i
-                                } catch (IllegalArgumentException iae) {
-                                    log.warn(String.format("Field \":%s\" of class \"%s\" is an array but " +
-                                                    "failed to set value at index \"%s\" - type \"%s\"",
-                                            key, klass.getName(), j, cname
-                                    ));
-                                }
-                            }
-                            try {
-                                field.set(instance, arr);
-                            } catch (IllegalAccessException e) {
-                                log.debug(String.format("Unable to access field \"%s\" of class \"%s\" ", key,
-                                        klass.getName()));
-                            }
-                        } else {
-                            log.warn(String.format("Field \":%s\" of class \"%s\" is an array but value " +
-                                    "received is \"%s\" of type \"%s\"", key, klass.getName(), value, cname));
-                        }
-                    } else {
+                setField(schema, instance, key, value);
+            }
+            return instance;
+        } catch (InstantiationException e) {
+            log.warn("Unable to create an instance", e);
+        }
+        return null;
+    }
+
+    /**
+     * Set a POLO's field via reflection, converting arrays to the field's array type
+     */
+    private void setField(PoloSchema schema, Object instance, String key, Object value) {
+        Class<?> klass = schema.type();
+        PoloSchema.Property field = schema.property(key);
+        if (field != null && value != null) {
+            //if field's type is an array  create an array of it's type
+            Class<?> componentType = field.componentType();
+            String cname = value.getClass().getName();
+            if (componentType != null && !field.type().isInstance(value)) {
+                if (value.getClass().isArray()) {
+                    int length = Array.getLength(value);
+                    //create an array of the expected type
+                    Object arr = Array.newInstance(componentType, length);
+                    for (int j = 0; j < length; j++) {
                         try {
-                            field.set(instance, value);
+                            //get current array value
+                            Object arrayValue = Array.get(value, j);
+                            Array.set(arr, j, arrayValue); //set the value at the current index, i
                         } catch (IllegalArgumentException iae) {
-                            String vclass = value.getClass().getName();
-                            log.warn(String.format("Field \"%s\" of class \"%s\" is of type %s " +
-                                            "but value received is \"%s\" of type \"%s\"",
-                                    key, klass.getName(), vclass, value, cname
+                            log.warn(String.format("Field \":%s\" of class \"%s\" is an array but " +
+                                            "failed to set value at index \"%s\" - type \"%s\"",
+                                    key, klass.getName(), j, cname
                             ));
-                        } catch (IllegalAccessException e) {
-                            log.debug(String.format("Unable to access field \"%s\" of class \"%s\" ",
-                                    key, klass.getName()));
                         }
                     }
+                    field.set(instance, arr);
                 } else {
-                    if (value != null) {
-                        log.warn(String.format("Field %s received with value %s but the " +
-                                "field does not exist in class %s", key, value, poloClassName));
-                    }
+                    log.warn(String.format("Field \":%s\" of class \"%s\" is an array but value " +
+                            "received is \"%s\" of type \"%s\"", key, klass.getName(), value, cname));
+                }
+            } else {
+                try {
+                    field.set(instance, value);
+                } catch (IllegalArgumentException iae) {
+                    log.warn(String.format("Field \"%s\" of class \"%s\" is of type %s " +
+                                    "but value received is \"%s\" of type \"%s\"",
+                            key, klass.getName(), field.type().getName(), value, cname
+                    ));
                 }
             }
-            return instance;
-        } catch (InstantiationException e) {
-            log.warn("Unable to create an instance", e);
-        } catch (IllegalAccessException e) {
-            log.debug("Unable to access field", e);
+        } else {
+            if (value != null) {
+                log.warn(String.format("Field %s received with value %s but the " +
+                        "field does not exist in class %s", key, value, klass.getName()));
+            }
         }
-        return null;
+    }
+
+    /**
+     * Read the fingerprint of the schema a compact POLO's field IDs are from
+     *
+     * @return true if its fields may be sent as IDs, false if they're all sent by name
+     * @throws InvalidDataException if the class isn't registered here or its fields differ from the sender's
+     */
+    protected boolean readSchemaFingerprint(ByteBuf data, String className) {
+        int fingerprint = VarInt.readUnsigned(data);
+        if (fingerprint == 0) {
+            return false;
+        }
+        if (schemas == null || !schemas.matches(className, fingerprint)) {
+            throw new InvalidDataException(String.format("Class %s was sent with field IDs but it isn't " +
+                    "registered or its fields differ from the sender's", className), null);
+        }
+        return true;
+    }
+
+    /**
+     * Read the name of a POLO's field, from the compact encoding a registered class's fields are sent as IDs
+     *
+     * @param className the POLO's class
+     * @param ids       true if the POLO's schema fingerprint matched, so its fields may be sent as IDs
+     * @return the field's serialized name
+     */
+    protected String readPoloKey(ByteBuf data, String className, boolean ids) {
+        if (compact()) {
+            int id = VarInt.readUnsigned(data);
+            if (id != 0) {
+                PoloSchema.Property property = ids ? schemas.field(className, id - 1) : null;
+                if (property == null) {
+                    throw new InvalidDataException(String.format("Field ID %s of class %s received but the class " +
+                            "isn't registered or has no such field", id - 1, className), null);
+                }
+                return property.name();
+            }
+        }
+        //polo keys are required to be strings
+        return readString(data, false, 0);
+    }
+
+    /**
+     * Read a size or length, variable length from {@link BosonMessage#VERSION_3}. Every element takes at least a
+     * byte so a size can't be more than the number of bytes left
+     *
+     * @throws InvalidDataException if the size is negative or more than the bytes readable
+     */
+    protected int readSize(ByteBuf data) {
+        int size = compact() ? VarInt.readUnsigned(data) : data.readInt();
+        if (size < 0 || size > data.readableBytes()) {
+            throw new InvalidDataException(String.format("Size %s received but only %s bytes are readable",
+                    size, data.readableBytes()), null);
+        }
+        return size;
+    }
+
+    /**
+     * Read a reference number, variable length from {@link BosonMessage#VERSION_3}
+     */
+    protected int readReferenceNumber(ByteBuf data) {
+        return compact() ? VarInt.readUnsigned(data) : data.readInt();
+    }
+
+    /**
+     * @return true if values are being read with the compact encoding, {@link BosonMessage#VERSION_3}
+     */
+    protected boolean compact() {
+        return protocolVersion >= BosonMessage.VERSION_3;
+    }
+
+    public short getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * @param protocolVersion the version values are read for when de-serialized without a {@link BosonMessage}
+     */
+    public void setProtocolVersion(short protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    public ClassFilter getClassFilter() {
+        return classFilter;
+    }
+
+    /**
+     * @param classFilter the classes POLOs and enums can be read as or null to allow any class. Data from an
+     *                    untrusted source should be read with a filter, a POLO's class is instantiated and its fields
+     *                    set by name
+     */
+    public void setClassFilter(ClassFilter classFilter) {
+        this.classFilter = classFilter;
+    }
+
+    /**
+     * @throws InvalidDataException if the class filter doesn't accept the class
+     */
+    protected void checkAllowed(String className) {
+        if (classFilter != null && !classFilter.accept(className)) {
+            throw new InvalidDataException(String.format("Class %s received but it isn't allowed to be read",
+                    className), null);
+        }
+    }
+
+    public SchemaRegistry getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * @param schemas classes whose fields can be received as IDs by the compact encoding
+     */
+    public void setSchemas(SchemaRegistry schemas) {
+        this.schemas = schemas;
+    }
+
+    /**
+     * @param className a fully qualified class name
+     * @return the mutator given to this reader which can create the class, or else the one generated for it, or
+     * null if there isn't either and the class is read via reflection
+     */
+    protected WriteMutator findMutator(String className) {
+        if (mutatorCount != mutators.size() || factory == null || !factory.isFor(loader)) {
+            //mutators were added or the class loader changed
+            mutatorsByName.clear();
+            mutatorCount = mutators.size();
+            factory = MutatorFactory.of(loader);
+        }
+        WriteMutator mutator = mutatorsByName.get(className);
+        if (mutator == null && !mutatorsByName.containsKey(className)) {
+            for (WriteMutator m : mutators) {
+                if (m.canCreate(className)) {
+                    mutator = m;
+                    break;
+                }
+            }
+            if (mutator == null) {
+                mutator = factory.get(className);
+            }
+            mutatorsByName.put(className, mutator);
+        }
+        return mutator;
+    }
+
+    /**
+     * Load a class by name, each loader only resolves a name once
+     *
+     * @param name the fully qualified class name
+     * @return the class
+     * @throws ClassNotFoundException if {@link #loader} can't load the class
+     */
+    protected Class<?> loadClass(String name) throws ClassNotFoundException {
+        if (classes == null || !classes.isFor(loader)) {
+            classes = ClassNameCache.of(loader);
+        }
+        return classes.load(name);
     }
 
     public Object readReference(ByteBuf data, final boolean verified, int verifiedType) {
@@ -626,7 +943,7 @@ public class BosonReader {
         }
         Object obj;
         if (REFERENCE == type) {
-            int reference = data.readInt();
+            int reference = readReferenceNumber(data);
             obj = references.get(reference);
             return obj;
         } else {
@@ -677,6 +994,15 @@ public class BosonReader {
                 return readReference(data, true, type);
             case ENUM:
                 return readEnum(data, true, ENUM);
+            case BYTE_ARRAY:
+            case SHORT_ARRAY:
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case FLOAT_ARRAY:
+            case DOUBLE_ARRAY:
+            case BOOLEAN_ARRAY:
+            case CHAR_ARRAY:
+                return readPrimitiveArray(data, true, type);
             default: {
                 throw new UnsupportedBosonTypeException(String.format("type %s is not a valid boson type", type), null);
             }
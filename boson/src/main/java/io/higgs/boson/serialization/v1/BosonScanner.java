@@ -0,0 +1,339 @@
+package io.higgs.boson.serialization.v1;
+
+import io.higgs.boson.BosonMessage;
+import io.higgs.boson.serialization.InvalidDataException;
+import io.higgs.boson.serialization.UnsupportedBosonTypeException;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+
+import static io.higgs.boson.BosonType.ARRAY;
+import static io.higgs.boson.BosonType.BOOLEAN;
+import static io.higgs.boson.BosonType.BOOLEAN_ARRAY;
+import static io.higgs.boson.BosonType.BYTE;
+import static io.higgs.boson.BosonType.BYTE_ARRAY;
+import static io.higgs.boson.BosonType.CHAR;
+import static io.higgs.boson.BosonType.CHAR_ARRAY;
+import static io.higgs.boson.BosonType.DOUBLE;
+import static io.higgs.boson.BosonType.DOUBLE_ARRAY;
+import static io.higgs.boson.BosonType.ENUM;
+import static io.higgs.boson.BosonType.FLOAT;
+import static io.higgs.boson.BosonType.FLOAT_ARRAY;
+import static io.higgs.boson.BosonType.INT;
+import static io.higgs.boson.BosonType.INT_ARRAY;
+import static io.higgs.boson.BosonType.LIST;
+import static io.higgs.boson.BosonType.LONG;
+import static io.higgs.boson.BosonType.LONG_ARRAY;
+import static io.higgs.boson.BosonType.MAP;
+import static io.higgs.boson.BosonType.NULL;
+import static io.higgs.boson.BosonType.POLO;
+import static io.higgs.boson.BosonType.REFERENCE;
+import static io.higgs.boson.BosonType.SET;
+import static io.higgs.boson.BosonType.SHORT;
+import static io.higgs.boson.BosonType.SHORT_ARRAY;
+import static io.higgs.boson.BosonType.STRING;
+
+/**
+ * Finds where encoded Boson elements end without decoding them, with an explicit stack rather than recursion so
+ * elements of any depth can be skipped. Nothing is allocated once the stack has grown to the deepest element seen.
+ * <p/>
+ * Sizes come from the wire so every one is checked against the bytes the element may take, a size that would take
+ * it past that limit is rejected with an {@link InvalidDataException} rather than waited for.
+ * <p/>
+ * Not thread safe.
+ */
+public final class BosonScanner {
+    //kinds of frame on the stack
+    private static final int VALUES = 0;
+    private static final int COMPACT_FIELDS = 1;
+    //a variable length long takes at most 10 bytes
+    private static final int MAX_VAR_INT_BYTES = 10;
+    private int[] kinds = new int[8];
+    private int[] counts = new int[8];
+    private int pos;
+    //the element being scanned, where it starts and the index it may not reach
+    private int start;
+    private int max;
+    private long limit;
+    //the stack's height and how far the scan got if it stopped for more data, 0 if it didn't
+    private int suspended;
+    private int offset;
+
+    /**
+     * Find where the element starting at the given index ends without decoding it
+     *
+     * @param compact true if the element was written with the compact encoding, {@link BosonMessage#VERSION_3}
+     * @return the index after the element or -1 if not all of it is readable yet
+     */
+    public int end(ByteBuf in, int index, boolean compact) {
+        return end(in, index, compact, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find where the element starting at the given index ends without decoding it
+     *
+     * @param compact true if the element was written with the compact encoding, {@link BosonMessage#VERSION_3}
+     * @param max     the most bytes the element may take
+     * @return the index after the element or -1 if not all of it is readable yet
+     * @throws InvalidDataException if the element's sizes say it's longer than max bytes
+     */
+    public int end(ByteBuf in, int index, boolean compact, int max) {
+        suspended = 0;
+        return resume(in, index, compact, max);
+    }
+
+    /**
+     * Carry on scanning an element an earlier call to {@link #end(ByteBuf, int, boolean, int)} or this method found
+     * incomplete, from the last of its children that wasn't all readable, rather than from its start. The element
+     * must be at the given index, it may have moved if the bytes before it were discarded. If the last call found
+     * the element it was given complete this is the same as {@link #end(ByteBuf, int, boolean, int)}.
+     *
+     * @return the index after the element or -1 if not all of it is readable yet
+     * @throws InvalidDataException if the element's sizes say it's longer than max bytes
+     */
+    public int resume(ByteBuf in, int index, boolean compact, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("An element takes at least one byte");
+        }
+        start = index;
+        this.max = max;
+        limit = (long) index + max;
+        int top;
+        if (suspended > 0) {
+            top = suspended;
+            pos = index + offset;
+        } else {
+            pos = index;
+            top = push(0, VALUES, 1);
+        }
+        suspended = 0;
+        int end = in.writerIndex();
+        while (top > 0) {
+            if (counts[top - 1] == 0) {
+                top--;
+                continue;
+            }
+            int mark = pos;
+            int markTop = top;
+            counts[top - 1]--;
+            top = next(in, top, compact, end);
+            if (top < 0) {
+                //keep what's been scanned, only the child that isn't all here has to be scanned again
+                counts[markTop - 1]++;
+                suspended = markTop;
+                offset = mark - index;
+                pos = mark;
+                return -1;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Skip the next child of the frame at the top of the stack
+     *
+     * @return the height of the stack after it or -1 if it's not all readable yet
+     */
+    private int next(ByteBuf in, int top, boolean compact, int end) {
+        if (kinds[top - 1] == COMPACT_FIELDS) {
+            int key = size(in, true);
+            if (key < 0) {
+                return -1;
+            }
+            //a field's value, preceded by its name if it wasn't sent as an ID
+            return push(top, VALUES, key == 0 ? 2 : 1);
+        }
+        if (pos >= limit) {
+            throw tooLarge();
+        }
+        if (pos >= end) {
+            return -1;
+        }
+        int type = in.getByte(pos++);
+        int n;
+        switch (type) {
+            case NULL:
+                return top;
+            case BYTE:
+            case BOOLEAN:
+                return skip(1, end) ? top : -1;
+            case SHORT:
+            case CHAR:
+                return skip(2, end) ? top : -1;
+            case FLOAT:
+                return skip(4, end) ? top : -1;
+            case DOUBLE:
+                return skip(8, end) ? top : -1;
+            case INT:
+            case LONG:
+                if (compact) {
+                    return skipVarInt(in, end) ? top : -1;
+                }
+                return skip(type == INT ? 4 : 8, end) ? top : -1;
+            case STRING:
+                if ((n = size(in, compact)) < 0) {
+                    return -1;
+                }
+                return skip(n, end) ? top : -1;
+            case REFERENCE:
+                return size(in, compact) < 0 ? -1 : top;
+            case ENUM:
+                return push(top, VALUES, 2); //class name and value strings
+            case ARRAY:
+            case LIST:
+            case SET:
+                if ((n = size(in, compact)) < 0) {
+                    return -1;
+                }
+                return push(top, VALUES, n);
+            case MAP:
+                if ((n = size(in, compact)) < 0) {
+                    return -1;
+                }
+                return push(top, VALUES, n * 2L);
+            case POLO:
+                //reference, class name, the number of fields then, if compact, the schema fingerprint
+                if (size(in, compact) < 0 || !skip(1, end)) { //class name's STRING type
+                    return -1;
+                }
+                if ((n = size(in, compact)) < 0 || !skip(n, end)) {
+                    return -1;
+                }
+                if ((n = size(in, compact)) < 0 || (compact && size(in, true) < 0)) {
+                    return -1;
+                }
+                return compact ? push(top, COMPACT_FIELDS, n) : push(top, VALUES, n * 2L);
+            case BYTE_ARRAY:
+            case BOOLEAN_ARRAY:
+            case SHORT_ARRAY:
+            case CHAR_ARRAY:
+            case INT_ARRAY:
+            case FLOAT_ARRAY:
+            case LONG_ARRAY:
+            case DOUBLE_ARRAY:
+                if ((n = size(in, compact)) < 0) {
+                    return -1;
+                }
+                return skip((long) n * width(type), end) ? top : -1;
+            default:
+                throw new UnsupportedBosonTypeException(String.format("type %s is not a valid boson type", type),
+                        null);
+        }
+    }
+
+    /**
+     * Move past the given number of bytes if they're all readable
+     */
+    private boolean skip(long n, int end) {
+        long next = pos + n;
+        if (next > limit) {
+            throw tooLarge();
+        }
+        if (next > end) {
+            return false;
+        }
+        pos = (int) next;
+        return true;
+    }
+
+    private InvalidDataException tooLarge() {
+        return new InvalidDataException(String.format("Boson element at index %s is longer than the %s bytes " +
+                "it may take", start, max), null);
+    }
+
+    private int push(int top, int kind, long count) {
+        //every value takes at least a byte, a compact field at least two, so the count is bounded by the limit
+        if (pos + count * (kind == COMPACT_FIELDS ? 2 : 1) > limit) {
+            throw tooLarge();
+        }
+        if (top == kinds.length) {
+            kinds = Arrays.copyOf(kinds, top * 2);
+            counts = Arrays.copyOf(counts, top * 2);
+        }
+        kinds[top] = kind;
+        counts[top] = (int) count;
+        return top + 1;
+    }
+
+    /**
+     * Read a size, of a string or container, or a reference, without moving the buffer's reader index
+     *
+     * @return the size or -1 if it isn't all readable yet, {@link #position()} is then the index after it
+     */
+    public int size(ByteBuf in, int index, boolean compact) {
+        pos = index;
+        limit = Long.MAX_VALUE;
+        return size(in, compact);
+    }
+
+    /**
+     * @return the index after the last element or size found
+     */
+    public int position() {
+        return pos;
+    }
+
+    private int size(ByteBuf in, boolean compact) {
+        int end = in.writerIndex();
+        if (!compact) {
+            if (pos + 4L > limit) {
+                throw tooLarge();
+            }
+            if (pos + 4 > end) {
+                return -1;
+            }
+            int size = in.getInt(pos);
+            pos += 4;
+            if (size < 0) {
+                throw new InvalidDataException(String.format("Negative size %s", size), null);
+            }
+            return size;
+        }
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos >= limit) {
+                throw tooLarge();
+            }
+            if (pos >= end) {
+                return -1;
+            }
+            byte b = in.getByte(pos++);
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new InvalidDataException(String.format("Negative size %s", value), null);
+                }
+                return value;
+            }
+        }
+        throw new InvalidDataException("Malformed variable length int", null);
+    }
+
+    private boolean skipVarInt(ByteBuf in, int end) {
+        for (int i = 0; i < MAX_VAR_INT_BYTES; i++) {
+            if (pos >= end) {
+                return false;
+            }
+            if (in.getByte(pos++) >= 0) {
+                return true;
+            }
+        }
+        throw new InvalidDataException("Malformed variable length long", null);
+    }
+
+    private static int width(int type) {
+        switch (type) {
+            case SHORT_ARRAY:
+            case CHAR_ARRAY:
+                return 2;
+            case INT_ARRAY:
+            case FLOAT_ARRAY:
+                return 4;
+            case LONG_ARRAY:
+            case DOUBLE_ARRAY:
+                return 8;
+            default:
+                return 1;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.higgs.boson.serialization.v1;
+
+import io.higgs.boson.BosonMessage;
+
+/**
+ * Receives what a {@link BosonStreamReader} decodes, as soon as each part is complete.
+ * Depth is 0 for a message's parameters array or a header-less top level value and increases by 1 for each
+ * container the value is in. A map's keys and values are passed to {@link #onElement(int, Object)} in turn.
+ */
+public interface BosonStreamListener {
+    /**
+     * A message's method and callback have been read and its parameters are about to be, only for streams of
+     * messages with Boson headers. The message's arguments are never set, they're passed to the other methods
+     */
+    void onMessageStart(BosonMessage msg);
+
+    /**
+     * A container has been opened, its elements follow
+     *
+     * @param type the container's {@link io.higgs.boson.BosonType}, ARRAY, LIST, SET or MAP
+     * @param size the number of elements, or entries for a map
+     */
+    void onContainerStart(int depth, int type, int size);
+
+    /**
+     * A complete value has been read
+     */
+    void onElement(int depth, Object value);
+
+    /**
+     * All of a container's elements have been read
+     */
+    void onContainerEnd(int depth, int type);
+
+    /**
+     * The whole message has been read
+     */
+    void onMessageEnd(BosonMessage msg);
+}
@@ -0,0 +1,295 @@
+package io.higgs.boson.serialization.v1;
+
+import io.higgs.boson.BosonMessage;
+import io.higgs.boson.serialization.InvalidDataException;
+import io.higgs.boson.serialization.UnsupportedBosonTypeException;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+
+import static io.higgs.boson.BosonType.ARRAY;
+import static io.higgs.boson.BosonType.LIST;
+import static io.higgs.boson.BosonType.MAP;
+import static io.higgs.boson.BosonType.REQUEST_CALLBACK;
+import static io.higgs.boson.BosonType.REQUEST_METHOD_NAME;
+import static io.higgs.boson.BosonType.REQUEST_PARAMETERS;
+import static io.higgs.boson.BosonType.RESPONSE_METHOD_NAME;
+import static io.higgs.boson.BosonType.RESPONSE_PARAMETERS;
+import static io.higgs.boson.BosonType.SET;
+
+/**
+ * Decodes Boson incrementally, as bytes arrive, instead of waiting for a whole message. Containers down to
+ * {@link #getStreamDepth()} are opened and each of their elements handed to a {@link BosonStreamListener} as soon
+ * as it's complete, so the items of a huge LIST are decoded one at a time and only the largest single item ever has
+ * to be buffered. Open containers are tracked on an explicit stack, nothing is decoded recursively until an element
+ * is known to be complete, a {@link BosonScanner} finds where each one ends. The scanner keeps its place in an
+ * incomplete element so each call only scans the bytes that arrived since the last.
+ * <p/>
+ * Call {@link #read(ByteBuf)} each time more data is received. Bytes of an incomplete element are left unread in the
+ * buffer, the next call must pass them again followed by the new data, as a
+ * {@link io.netty.handler.codec.ByteToMessageDecoder}'s cumulation does.
+ * <p/>
+ * Not thread safe, one instance is needed per stream.
+ */
+public class BosonStreamReader {
+    public static final int DEFAULT_MAX_ELEMENT_SIZE = 0xFFFFFF;
+    private static final int HEADER = 0;
+    private static final int SECTION = 1;
+    private static final int VALUE = 2;
+    protected final BosonReader reader;
+    protected final BosonStreamListener listener;
+    protected final boolean headers;
+    protected int streamDepth = 2;
+    protected int maxElementSize = DEFAULT_MAX_ELEMENT_SIZE;
+    private int state;
+    private BosonMessage msg;
+    //bytes of the current message not yet read, only used with headers
+    private int messageRemaining;
+    //the containers currently open, their types and how many elements each still has to come
+    private int[] types = new int[8];
+    private int[] remaining = new int[8];
+    private int depth;
+    private final BosonScanner scanner = new BosonScanner();
+
+    /**
+     * @param reader   the reader elements are decoded with, references are resolved across all of a message's
+     *                 elements
+     * @param listener receives each element decoded
+     * @param headers  true if the stream is of {@link BosonMessage}s with Boson headers, false if it's of values
+     *                 written with {@link BosonWriter#serialize(Object)}
+     */
+    public BosonStreamReader(BosonReader reader, BosonStreamListener listener, boolean headers) {
+        if (reader == null || listener == null) {
+            throw new IllegalArgumentException("Reader and listener cannot be null");
+        }
+        this.reader = reader;
+        this.listener = listener;
+        this.headers = headers;
+        state = headers ? HEADER : VALUE;
+    }
+
+    /**
+     * Decode as much of the data available as possible
+     *
+     * @param in the data received, its reader index is left at the start of the first incomplete element
+     */
+    public void read(ByteBuf in) {
+        while (true) {
+            int start = in.readerIndex();
+            int before = state;
+            boolean progressed;
+            switch (state) {
+                case HEADER:
+                    progressed = readHeader(in);
+                    break;
+                case SECTION:
+                    progressed = readSection(in);
+                    break;
+                default:
+                    progressed = readValue(in);
+            }
+            if (!progressed) {
+                in.readerIndex(start);
+                return;
+            }
+            if (before != HEADER && headers) {
+                messageRemaining -= in.readerIndex() - start;
+                if (messageRemaining < 0) {
+                    throw new InvalidDataException("Boson message is longer than the size in its header", null);
+                }
+            }
+        }
+    }
+
+    private boolean readHeader(ByteBuf in) {
+        if (in.readableBytes() < 5) {
+            return false;
+        }
+        short version = in.readByte();
+        if (version > BosonMessage.LATEST_VERSION) {
+            throw new InvalidDataException(String.format("Boson protocol version %s is not supported, %s is the " +
+                    "latest version this reader can read", version, BosonMessage.LATEST_VERSION), null);
+        }
+        messageRemaining = in.readInt();
+        if (messageRemaining < 0) {
+            throw new InvalidDataException(String.format("Negative message size %s", messageRemaining), null);
+        }
+        reader.reset();
+        reader.setProtocolVersion(version);
+        msg = new BosonMessage();
+        msg.protocolVersion = version;
+        state = SECTION;
+        return true;
+    }
+
+    private boolean readSection(ByteBuf in) {
+        if (messageRemaining == 0) {
+            listener.onMessageEnd(msg);
+            msg = null;
+            state = HEADER;
+            return true;
+        }
+        if (!in.isReadable()) {
+            return false;
+        }
+        int flag = in.getByte(in.readerIndex());
+        switch (flag) {
+            case REQUEST_METHOD_NAME:
+            case RESPONSE_METHOD_NAME:
+            case REQUEST_CALLBACK:
+                if (scanner.resume(in, in.readerIndex() + 1, compact(), limit(1)) < 0) {
+                    return false;
+                }
+                in.skipBytes(1);
+                String s = reader.readString(in, false, 0);
+                if (flag == REQUEST_CALLBACK) {
+                    msg.callback = s;
+                } else {
+                    msg.method = s;
+                }
+                return true;
+            case REQUEST_PARAMETERS:
+            case RESPONSE_PARAMETERS:
+                in.skipBytes(1);
+                if (!openContainer(in)) {
+                    return false;
+                }
+                state = VALUE;
+                return true;
+            default:
+                throw new InvalidDataException(String.format("The type %s does not match any of the supported " +
+                        "response or request types (method,callback,parameter)", flag), null);
+        }
+    }
+
+    private boolean readValue(ByteBuf in) {
+        if (depth > 0 && remaining[depth - 1] == 0) {
+            depth--;
+            listener.onContainerEnd(depth, types[depth]);
+            if (depth == 0) {
+                topLevelComplete();
+            }
+            return true;
+        }
+        if (!in.isReadable()) {
+            return false;
+        }
+        int type = in.getByte(in.readerIndex());
+        boolean container = type == ARRAY || type == LIST || type == SET || type == MAP;
+        if (container && depth < streamDepth) {
+            return openContainer(in);
+        }
+        if (scanner.resume(in, in.readerIndex(), compact(), limit(0)) < 0) {
+            return false;
+        }
+        int elementDepth = depth;
+        Object value = reader.readType(in);
+        if (depth > 0) {
+            remaining[depth - 1]--;
+        }
+        listener.onElement(elementDepth, value);
+        if (elementDepth == 0) {
+            topLevelComplete();
+        }
+        return true;
+    }
+
+    /**
+     * Read a container's type and size, if both are available, and push it on to the stack
+     */
+    private boolean openContainer(ByteBuf in) {
+        if (in.readableBytes() < 2) {
+            return false;
+        }
+        int type = in.getByte(in.readerIndex());
+        int size = scanner.size(in, in.readerIndex() + 1, compact());
+        if (size < 0) {
+            return false;
+        }
+        if (type != ARRAY && type != LIST && type != SET && type != MAP) {
+            throw new UnsupportedBosonTypeException(String.format("type %s is not a Boson container", type), null);
+        }
+        //every element takes at least a byte
+        if ((type == MAP ? size * 2L : size) > limit(0)) {
+            throw new InvalidDataException(String.format("Boson container of %s elements is longer than the %s " +
+                    "bytes it may take", size, limit(0)), null);
+        }
+        in.readerIndex(scanner.position());
+        if (depth > 0) {
+            remaining[depth - 1]--;
+        } else if (headers) {
+            listener.onMessageStart(msg);
+        }
+        if (depth == types.length) {
+            types = Arrays.copyOf(types, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+        types[depth] = type;
+        remaining[depth] = type == MAP ? size * 2 : size;
+        listener.onContainerStart(depth, type, size);
+        depth++;
+        return true;
+    }
+
+    private void topLevelComplete() {
+        if (headers) {
+            state = SECTION;
+        } else {
+            //each top level value is independent, references don't carry over to the next
+            reader.reset();
+        }
+    }
+
+    /**
+     * @param offset how far after the reader index the element starts
+     * @return the most bytes the element may take, the rest of the message if that's less than the maximum
+     */
+    private int limit(int offset) {
+        if (!headers) {
+            return maxElementSize;
+        }
+        int left = messageRemaining - offset;
+        if (left < 1) {
+            throw new InvalidDataException("Boson message is longer than the size in its header", null);
+        }
+        return Math.min(maxElementSize, left);
+    }
+
+    private boolean compact() {
+        return reader.getProtocolVersion() >= BosonMessage.VERSION_3;
+    }
+
+    public int getStreamDepth() {
+        return streamDepth;
+    }
+
+    /**
+     * @param streamDepth containers at a depth less than this are opened and their elements passed to the listener
+     *                    one at a time, deeper containers are decoded whole. With headers the parameters array is
+     *                    always opened. The default is 2, a message's parameters and any containers passed as
+     *                    parameters, or a header-less top level container and the containers in it
+     */
+    public void setStreamDepth(int streamDepth) {
+        if (streamDepth < 1) {
+            throw new IllegalArgumentException("Stream depth must be at least 1");
+        }
+        this.streamDepth = streamDepth;
+    }
+
+    public int getMaxElementSize() {
+        return maxElementSize;
+    }
+
+    /**
+     * @param maxElementSize the most bytes any element, other than an opened container, may take. Elements whose
+     *                       sizes say they're longer are rejected as soon as the size is read rather than buffered
+     *                       until they're complete. With headers an element can't be longer than the rest of its
+     *                       message either. The default is 16MB
+     */
+    public void setMaxElementSize(int maxElementSize) {
+        if (maxElementSize < 1) {
+            throw new IllegalArgumentException("Max element size must be at least 1");
+        }
+        this.maxElementSize = maxElementSize;
+    }
+}
@@ -0,0 +1,359 @@
+package io.higgs.boson.serialization.v1;
+
+import io.higgs.boson.BosonMessage;
+import io.higgs.boson.serialization.ClassAllowlist;
+import io.higgs.boson.serialization.ClassFilter;
+import io.higgs.boson.serialization.InvalidDataException;
+import io.higgs.boson.serialization.PoloSchema;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.higgs.boson.serialization.UnsupportedBosonTypeException;
+import io.higgs.boson.serialization.Utf8;
+import io.netty.buffer.ByteBuf;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.higgs.boson.BosonType.ARRAY;
+import static io.higgs.boson.BosonType.BOOLEAN_ARRAY;
+import static io.higgs.boson.BosonType.BYTE_ARRAY;
+import static io.higgs.boson.BosonType.CHAR_ARRAY;
+import static io.higgs.boson.BosonType.DOUBLE_ARRAY;
+import static io.higgs.boson.BosonType.FLOAT_ARRAY;
+import static io.higgs.boson.BosonType.INT_ARRAY;
+import static io.higgs.boson.BosonType.LIST;
+import static io.higgs.boson.BosonType.LONG_ARRAY;
+import static io.higgs.boson.BosonType.MAP;
+import static io.higgs.boson.BosonType.POLO;
+import static io.higgs.boson.BosonType.SET;
+import static io.higgs.boson.BosonType.SHORT_ARRAY;
+import static io.higgs.boson.BosonType.STRING;
+
+/**
+ * A read-only view of an encoded Boson value which decodes only what's asked for. The offsets of a container's
+ * elements, or a map's or POLO's values by key, are found on demand, skipping over the elements before them without
+ * decoding them, and remembered so each is only found once. {@link #get(int)} and {@link #get(String)} return views
+ * of nested values, {@link #value()} decodes a value and {@link #bytes()} returns its encoded bytes, to be forwarded
+ * without being serialized again. See {@link BosonMessageView} for messages with Boson headers.
+ * <p/>
+ * The buffer is never modified, its indices included, and must not be released while views of it are in use.
+ * A {@link io.higgs.boson.BosonType#REFERENCE} in a value decoded on its own is read as null if the object it refers
+ * to is outside the value. Not thread safe.
+ */
+public final class BosonView {
+    private final Source source;
+    private final int start;
+    private final int type;
+    private int end = -1;
+    //number of elements, entries or fields and the index of the first, for containers and POLOs
+    private int size = -1;
+    private int first;
+    private String className;
+    //true if a compact POLO's fingerprint matched the registered schema, so its fields may be sent as IDs
+    private boolean fieldIds;
+    //start of each element found so far
+    private int[] offsets;
+    private int indexed;
+    //start of each value by its key, for maps and POLOs
+    private Map<String, Integer> keys;
+
+    BosonView(Source source, int start) {
+        if (start >= source.buffer.writerIndex()) {
+            throw new InvalidDataException("No Boson value to view, the buffer ends first", null);
+        }
+        this.source = source;
+        this.start = start;
+        type = source.buffer.getByte(start);
+        switch (type) {
+            case ARRAY:
+            case LIST:
+            case SET:
+            case MAP:
+            case BYTE_ARRAY:
+            case SHORT_ARRAY:
+            case INT_ARRAY:
+            case LONG_ARRAY:
+            case FLOAT_ARRAY:
+            case DOUBLE_ARRAY:
+            case BOOLEAN_ARRAY:
+            case CHAR_ARRAY:
+                size = source.size(start + 1);
+                first = source.scanner.position();
+                break;
+            case POLO:
+                //reference, class name then number of fields
+                int nameIndex = source.skipSize(start + 1);
+                className = source.string(nameIndex);
+                size = source.size(source.skipString(nameIndex));
+                first = source.scanner.position();
+                if (source.compact) {
+                    int fingerprint = source.size(first);
+                    first = source.scanner.position();
+                    if (fingerprint != 0) {
+                        if (source.schemas == null || !source.schemas.matches(className, fingerprint)) {
+                            throw new InvalidDataException(String.format("Class %s was sent with field IDs but it " +
+                                    "isn't registered or its fields differ from the sender's", className), null);
+                        }
+                        fieldIds = true;
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * View the value at the buffer's reader index, written without Boson headers with {@link BosonMessage#VERSION_1}.
+     * No POLO or enum can be decoded by {@link #value()}, see {@link #of(ByteBuf, short, SchemaRegistry, ClassFilter)}
+     */
+    public static BosonView of(ByteBuf buffer) {
+        return of(buffer, BosonMessage.VERSION_1, null, null);
+    }
+
+    /**
+     * View the value at the buffer's reader index, written without Boson headers. No POLO or enum can be decoded by
+     * {@link #value()}, see {@link #of(ByteBuf, short, SchemaRegistry, ClassFilter)}
+     *
+     * @param protocolVersion the version the value was written with
+     * @param schemas         the classes registered to be sent with field IDs by the compact encoding, can be null
+     */
+    public static BosonView of(ByteBuf buffer, short protocolVersion, SchemaRegistry schemas) {
+        return of(buffer, protocolVersion, schemas, null);
+    }
+
+    /**
+     * View the value at the buffer's reader index, written without Boson headers
+     *
+     * @param protocolVersion the version the value was written with
+     * @param schemas         the classes registered to be sent with field IDs by the compact encoding, can be null
+     * @param classes         the classes POLOs and enums can be decoded as by {@link #value()}, if null none can be
+     */
+    public static BosonView of(ByteBuf buffer, short protocolVersion, SchemaRegistry schemas, ClassFilter classes) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer cannot be null");
+        }
+        return new BosonView(new Source(buffer, protocolVersion, schemas, classes), buffer.readerIndex());
+    }
+
+    /**
+     * @return the value's {@link io.higgs.boson.BosonType}
+     */
+    public int type() {
+        return type;
+    }
+
+    /**
+     * @return the number of elements in an array, list or set, entries in a map or fields in a POLO, the length of
+     * a primitive array or -1 for other types
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the fully qualified class name of a POLO, null for other types
+     */
+    public String className() {
+        return className;
+    }
+
+    /**
+     * @return the element at the given index of an array, list or set
+     */
+    public BosonView get(int index) {
+        if (type != ARRAY && type != LIST && type != SET) {
+            throw new UnsupportedBosonTypeException(String.format("type %s is not a Boson ARRAY, LIST or SET",
+                    type), null);
+        }
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %s of %s elements", index, size));
+        }
+        if (offsets == null) {
+            offsets = new int[Math.min(size, Math.max(index + 1, 16))];
+        }
+        while (indexed <= index) {
+            if (indexed == offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.min(size, Math.max(index + 1, indexed * 2)));
+            }
+            offsets[indexed] = indexed == 0 ? first : source.end(offsets[indexed - 1]);
+            indexed++;
+        }
+        return new BosonView(source, offsets[index]);
+    }
+
+    /**
+     * @param key a map key, only string keys can be looked up, or a POLO's serialized field name
+     * @return the value of the key or null if there isn't one
+     */
+    public BosonView get(String key) {
+        if (type != MAP && type != POLO) {
+            throw new UnsupportedBosonTypeException(String.format("type %s is not a Boson MAP or POLO", type), null);
+        }
+        if (keys == null) {
+            keys = index();
+        }
+        Integer offset = keys.get(key);
+        return offset == null ? null : new BosonView(source, offset);
+    }
+
+    /**
+     * Find the start of every value by its key, values are skipped without being decoded
+     */
+    private Map<String, Integer> index() {
+        Map<String, Integer> index = new HashMap<>();
+        int pos = first;
+        for (int i = 0; i < size; i++) {
+            String name = null;
+            int value = -1;
+            if (type == POLO && source.compact) {
+                int id = source.size(pos);
+                pos = source.scanner.position();
+                if (id != 0) {
+                    PoloSchema.Property property = fieldIds ? source.schemas.field(className, id - 1) : null;
+                    if (property == null) {
+                        throw new InvalidDataException(String.format("Field ID %s of class %s received but the " +
+                                "class isn't registered or has no such field", id - 1, className), null);
+                    }
+                    name = property.name();
+                    value = pos; //no name to skip
+                }
+            }
+            if (value < 0) {
+                if (source.buffer.getByte(pos) == STRING) {
+                    name = source.string(pos);
+                }
+                value = source.end(pos);
+            }
+            if (name != null && !index.containsKey(name)) {
+                index.put(name, value);
+            }
+            pos = source.end(value);
+        }
+        return index;
+    }
+
+    /**
+     * Decode the value, nested values and all. POLOs and enums are only decoded if their class is accepted by the
+     * filter the view was created with
+     */
+    public Object value() {
+        return value(source.reader());
+    }
+
+    /**
+     * Decode the value with the given reader, which must read the protocol version the value was written with
+     */
+    public Object value(BosonReader reader) {
+        //the value's references are numbered from wherever it starts in the message
+        reader.references.resetMidMessage();
+        return reader.readType(bytes());
+    }
+
+    /**
+     * @return the encoded value, sharing the viewed buffer's memory, to be forwarded as it was received
+     */
+    public ByteBuf bytes() {
+        return source.buffer.slice(start, end() - start);
+    }
+
+    /**
+     * @return the index of the value's first byte in the viewed buffer
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * @return the index after the value's last byte in the viewed buffer
+     */
+    public int end() {
+        if (end < 0) {
+            end = source.end(start);
+        }
+        return end;
+    }
+
+    /**
+     * The buffer being viewed and how it was written, shared by the views of its values
+     */
+    static final class Source {
+        final ByteBuf buffer;
+        final short protocolVersion;
+        final boolean compact;
+        final SchemaRegistry schemas;
+        final ClassFilter classes;
+        final BosonScanner scanner = new BosonScanner();
+        private BosonReader reader;
+
+        Source(ByteBuf buffer, short protocolVersion, SchemaRegistry schemas, ClassFilter classes) {
+            if (protocolVersion > BosonMessage.LATEST_VERSION) {
+                throw new InvalidDataException(String.format("Boson protocol version %s is not supported, %s is " +
+                        "the latest version this reader can read", protocolVersion, BosonMessage.LATEST_VERSION),
+                        null);
+            }
+            this.buffer = buffer;
+            this.protocolVersion = protocolVersion;
+            this.schemas = schemas;
+            //views are for payloads being routed or forwarded, which can't be trusted to name safe classes
+            this.classes = classes == null ? new ClassAllowlist() : classes;
+            compact = protocolVersion >= BosonMessage.VERSION_3;
+        }
+
+        int end(int index) {
+            int end = scanner.end(buffer, index, compact);
+            if (end < 0) {
+                throw new InvalidDataException(String.format("Boson value at index %s is truncated, the buffer " +
+                        "ends at %s", index, buffer.writerIndex()), null);
+            }
+            return end;
+        }
+
+        int size(int index) {
+            int size = scanner.size(buffer, index, compact);
+            if (size < 0) {
+                throw new InvalidDataException(String.format("Boson size at index %s is truncated", index), null);
+            }
+            return size;
+        }
+
+        /**
+         * @return the index after the size at the given index
+         */
+        int skipSize(int index) {
+            size(index);
+            return scanner.position();
+        }
+
+        /**
+         * @return the index after the string, with its type, at the given index
+         */
+        int skipString(int index) {
+            return skipSize(index + 1) + scanner.size(buffer, index + 1, compact);
+        }
+
+        String string(int index) {
+            if (buffer.getByte(index) != STRING) {
+                throw new UnsupportedBosonTypeException(String.format("type %s is not a Boson STRING",
+                        buffer.getByte(index)), null);
+            }
+            int length = size(index + 1);
+            int from = scanner.position();
+            if (from + length > buffer.writerIndex()) {
+                throw new InvalidDataException(String.format("String of %s bytes but only %s are readable",
+                        length, buffer.writerIndex() - from), null);
+            }
+            return Utf8.read(buffer, from, length);
+        }
+
+        BosonReader reader() {
+            if (reader == null) {
+                reader = new BosonReader();
+                reader.setProtocolVersion(protocolVersion);
+                reader.setSchemas(schemas);
+                reader.setClassFilter(classes);
+            }
+            return reader;
+        }
+    }
+}
@@ -1,34 +1,43 @@
 package io.higgs.boson.serialization.v1;
 
 import io.higgs.boson.BosonMessage;
-import io.higgs.boson.serialization.BosonProperty;
+import io.higgs.boson.serialization.PoloSchema;
+import io.higgs.boson.serialization.ReferenceMap;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.higgs.boson.serialization.UnsupportedBosonTypeException;
+import io.higgs.boson.serialization.Utf8;
+import io.higgs.boson.serialization.VarInt;
+import io.higgs.boson.serialization.mutators.MutatorFactory;
 import io.higgs.boson.serialization.mutators.ReadMutator;
-import io.higgs.core.reflect.ReflectionUtil;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.lang.reflect.Array;
 import java.nio.charset.Charset;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.higgs.boson.BosonType.ARRAY;
 import static io.higgs.boson.BosonType.BOOLEAN;
+import static io.higgs.boson.BosonType.BOOLEAN_ARRAY;
 import static io.higgs.boson.BosonType.BYTE;
+import static io.higgs.boson.BosonType.BYTE_ARRAY;
 import static io.higgs.boson.BosonType.CHAR;
+import static io.higgs.boson.BosonType.CHAR_ARRAY;
 import static io.higgs.boson.BosonType.DOUBLE;
+import static io.higgs.boson.BosonType.DOUBLE_ARRAY;
 import static io.higgs.boson.BosonType.ENUM;
 import static io.higgs.boson.BosonType.FLOAT;
+import static io.higgs.boson.BosonType.FLOAT_ARRAY;
 import static io.higgs.boson.BosonType.INT;
+import static io.higgs.boson.BosonType.INT_ARRAY;
 import static io.higgs.boson.BosonType.LIST;
 import static io.higgs.boson.BosonType.LONG;
+import static io.higgs.boson.BosonType.LONG_ARRAY;
 import static io.higgs.boson.BosonType.MAP;
 import static io.higgs.boson.BosonType.NULL;
 import static io.higgs.boson.BosonType.POLO;
@@ -40,6 +49,7 @@ import static io.higgs.boson.BosonType.RESPONSE_METHOD_NAME;
 import static io.higgs.boson.BosonType.RESPONSE_PARAMETERS;
 import static io.higgs.boson.BosonType.SET;
 import static io.higgs.boson.BosonType.SHORT;
+import static io.higgs.boson.BosonType.SHORT_ARRAY;
 import static io.higgs.boson.BosonType.STRING;
 
 /**
@@ -51,9 +61,13 @@ public class BosonWriter {
      */
     public static final int MAX_RECURSION_DEPTH = 10;
     public static final Charset utf8 = Charset.forName("utf-8");
-    protected final HashMap<Object, Integer> references = new HashMap<>();
-    protected final AtomicInteger reference = new AtomicInteger();
+    protected final ReferenceMap references = new ReferenceMap();
     protected final Set<ReadMutator> mutators;
+    /**
+     * The protocol version values are written for, see {@link BosonMessage#VERSION_1}
+     */
+    protected short protocolVersion = BosonMessage.VERSION_1;
+    protected SchemaRegistry schemas;
     private Logger log = LoggerFactory.getLogger(getClass());
 
     public BosonWriter() {
@@ -74,11 +88,22 @@ public class BosonWriter {
      */
     public ByteBuf serialize(Object msg) {
         ByteBuf buffer = Unpooled.buffer();
-        validateAndWriteType(buffer, msg);
+        serialize(msg, buffer);
         buffer.readerIndex(0);
         return buffer;
     }
 
+    /**
+     * Serialize any object, without Boson headers, into the given buffer starting at its writer index
+     *
+     * @param msg    the object to serialize
+     * @param buffer the buffer to write to, e.g. one from a pooled allocator
+     */
+    public void serialize(Object msg, ByteBuf buffer) {
+        reset();
+        validateAndWriteType(buffer, msg);
+    }
+
     /**
      * Serializes a {@link io.higgs.boson.BosonMessage} to the wire format specified by the protocol spec
      *
@@ -87,24 +112,55 @@ public class BosonWriter {
      */
     public ByteBuf serialize(BosonMessage msg) {
         ByteBuf buffer = Unpooled.buffer();
+        serialize(msg, buffer);
+        buffer.readerIndex(0);
+        return buffer;
+    }
+
+    /**
+     * Serializes a {@link io.higgs.boson.BosonMessage} into the given buffer starting at its writer index
+     *
+     * @param msg    the message to serialize
+     * @param buffer the buffer to write to, e.g. one from a pooled allocator
+     */
+    public void serialize(BosonMessage msg, ByteBuf buffer) {
+        reset();
+        int start = buffer.writerIndex();
         //first thing to write is the protocol version
         buffer.writeByte(msg.protocolVersion);
         //pad the buffer with 4 bytes which will be updated after serialization to set the size of the message
         buffer.writeInt(0);
-        //then write the message itself
-        if (msg.callback != null && !msg.callback.isEmpty()) {
-            //otherwise its a request
-            serializeRequest(buffer, msg);
-        } else {
-            //if there's no callback then its a response...responses don't send callbacks
-            serializeResponse(buffer, msg);
+        //values are written for the message's version, whatever this writer is set to
+        short version = protocolVersion;
+        protocolVersion = msg.protocolVersion;
+        try {
+            //then write the message itself
+            if (msg.callback != null) {
+                //a request, with an empty callback if it doesn't want a reply
+                serializeRequest(buffer, msg);
+            } else {
+                //if there's no callback then its a response...responses don't send callbacks
+                serializeResponse(buffer, msg);
+            }
+        } finally {
+            protocolVersion = version;
         }
         //calculate the total size of the message. we wrote 5 bytes to the buffer before serializing
         //this means byte 6 until buffer.writerIndex() = total message size
-        //set message size at index = 1 with value writerIndex() - 5 bytes
-        buffer.setInt(1, buffer.writerIndex() - 5);
-        buffer.readerIndex(0);
-        return buffer;
+        //set message size at index = start + 1 with value writerIndex() - start - 5 bytes
+        buffer.setInt(start + 1, buffer.writerIndex() - start - 5);
+    }
+
+    public Set<ReadMutator> getMutators() {
+        return mutators;
+    }
+
+    /**
+     * Forget the objects written so far, references in the next message are numbered from 0 again.
+     * Each call to serialize does this so a writer can be reused for any number of messages, one at a time.
+     */
+    public void reset() {
+        references.reset();
     }
 
     public void serializeResponse(ByteBuf buffer, BosonMessage msg) {
@@ -144,12 +200,20 @@ public class BosonWriter {
 
     public void writeInt(ByteBuf buffer, int i) {
         buffer.writeByte(INT);
-        buffer.writeInt(i);
+        if (compact()) {
+            VarInt.writeSigned(buffer, i);
+        } else {
+            buffer.writeInt(i);
+        }
     }
 
     public void writeLong(ByteBuf buffer, long l) {
         buffer.writeByte(LONG);
-        buffer.writeLong(l);
+        if (compact()) {
+            VarInt.writeSigned(buffer, l);
+        } else {
+            buffer.writeLong(l);
+        }
     }
 
     public void writeFloat(ByteBuf buffer, float f) {
@@ -178,9 +242,26 @@ public class BosonWriter {
 
     public void writeString(ByteBuf buffer, String s) {
         buffer.writeByte(STRING); //type
-        byte[] str = s.getBytes(utf8);
-        buffer.writeInt(str.length); //size
-        buffer.writeBytes(str); //payload
+        if (compact()) {
+            //a variable length size can't be reserved, work out how long the string will be first
+            VarInt.writeUnsigned(buffer, Utf8.length(s)); //size
+            Utf8.write(buffer, s); //payload
+        } else {
+            int sizeIndex = buffer.writerIndex();
+            buffer.writeInt(0); //size, set once the string's encoded
+            buffer.setInt(sizeIndex, Utf8.write(buffer, s)); //payload
+        }
+    }
+
+    /**
+     * Write a string which has already been UTF-8 encoded, e.g. a name written many times which is only encoded once
+     *
+     * @param utf8 the encoded string
+     */
+    public void writeString(ByteBuf buffer, byte[] utf8) {
+        buffer.writeByte(STRING); //type
+        writeSize(buffer, utf8.length); //size
+        buffer.writeBytes(utf8); //payload
     }
 
     public void writeEnum(ByteBuf buf, Enum param) {
@@ -191,7 +272,7 @@ public class BosonWriter {
 
     public void writeList(ByteBuf buffer, List<Object> value) {
         buffer.writeByte(LIST); //type
-        buffer.writeInt(value.size()); //size
+        writeSize(buffer, value.size()); //size
         for (Object param : value) {
             if (param == null) {
                 writeNull(buffer);
@@ -203,7 +284,7 @@ public class BosonWriter {
 
     public void writeSet(ByteBuf buffer, Set<Object> value) {
         buffer.writeByte(SET); //type
-        buffer.writeInt(value.size()); //size
+        writeSize(buffer, value.size()); //size
         for (Object param : value) {
             if (param == null) {
                 writeNull(buffer);
@@ -221,15 +302,161 @@ public class BosonWriter {
      */
     public void writeArray(ByteBuf buffer, Object[] value) {
         buffer.writeByte(ARRAY); //type
-        buffer.writeInt(value.length); //size
+        writeSize(buffer, value.length); //size
         for (Object param : value) {
             validateAndWriteType(buffer, param); //payload
         }
     }
 
+    /**
+     * Write an array whose component type is a primitive. From {@link BosonMessage#VERSION_2} the array is packed,
+     * its size followed by the raw values, before that each element is boxed and written as part of an
+     * {@link io.higgs.boson.BosonType#ARRAY}.
+     *
+     * @param value the array to write, e.g. an int[]
+     */
+    public void writePrimitiveArray(ByteBuf buffer, Object value) {
+        if (protocolVersion < BosonMessage.VERSION_2) {
+            int length = Array.getLength(value);
+            buffer.writeByte(ARRAY); //type
+            writeSize(buffer, length); //size
+            for (int i = 0; i < length; i++) {
+                validateAndWriteType(buffer, Array.get(value, i)); //payload
+            }
+        } else if (value instanceof byte[]) {
+            writeByteArray(buffer, (byte[]) value);
+        } else if (value instanceof short[]) {
+            writeShortArray(buffer, (short[]) value);
+        } else if (value instanceof int[]) {
+            writeIntArray(buffer, (int[]) value);
+        } else if (value instanceof long[]) {
+            writeLongArray(buffer, (long[]) value);
+        } else if (value instanceof float[]) {
+            writeFloatArray(buffer, (float[]) value);
+        } else if (value instanceof double[]) {
+            writeDoubleArray(buffer, (double[]) value);
+        } else if (value instanceof boolean[]) {
+            writeBooleanArray(buffer, (boolean[]) value);
+        } else if (value instanceof char[]) {
+            writeCharArray(buffer, (char[]) value);
+        } else {
+            throw new UnsupportedBosonTypeException(String.format("%s is not a primitive array",
+                    value.getClass().getName()), null);
+        }
+    }
+
+    public void writeByteArray(ByteBuf buffer, byte[] value) {
+        buffer.writeByte(BYTE_ARRAY); //type
+        writeSize(buffer, value.length); //size
+        buffer.writeBytes(value); //payload
+    }
+
+    public void writeShortArray(ByteBuf buffer, short[] value) {
+        buffer.ensureWritable(5 + value.length * 2);
+        buffer.writeByte(SHORT_ARRAY);
+        writeSize(buffer, value.length);
+        for (short v : value) {
+            buffer.writeShort(v);
+        }
+    }
+
+    public void writeIntArray(ByteBuf buffer, int[] value) {
+        buffer.ensureWritable(5 + value.length * 4);
+        buffer.writeByte(INT_ARRAY);
+        writeSize(buffer, value.length);
+        for (int v : value) {
+            buffer.writeInt(v);
+        }
+    }
+
+    public void writeLongArray(ByteBuf buffer, long[] value) {
+        buffer.ensureWritable(5 + value.length * 8);
+        buffer.writeByte(LONG_ARRAY);
+        writeSize(buffer, value.length);
+        for (long v : value) {
+            buffer.writeLong(v);
+        }
+    }
+
+    public void writeFloatArray(ByteBuf buffer, float[] value) {
+        buffer.ensureWritable(5 + value.length * 4);
+        buffer.writeByte(FLOAT_ARRAY);
+        writeSize(buffer, value.length);
+        for (float v : value) {
+            buffer.writeFloat(v);
+        }
+    }
+
+    public void writeDoubleArray(ByteBuf buffer, double[] value) {
+        buffer.ensureWritable(5 + value.length * 8);
+        buffer.writeByte(DOUBLE_ARRAY);
+        writeSize(buffer, value.length);
+        for (double v : value) {
+            buffer.writeDouble(v);
+        }
+    }
+
+    public void writeBooleanArray(ByteBuf buffer, boolean[] value) {
+        buffer.ensureWritable(5 + value.length);
+        buffer.writeByte(BOOLEAN_ARRAY);
+        writeSize(buffer, value.length);
+        for (boolean v : value) {
+            buffer.writeByte(v ? 1 : 0);
+        }
+    }
+
+    public void writeCharArray(ByteBuf buffer, char[] value) {
+        buffer.ensureWritable(5 + value.length * 2);
+        buffer.writeByte(CHAR_ARRAY);
+        writeSize(buffer, value.length);
+        for (char v : value) {
+            buffer.writeChar(v);
+        }
+    }
+
+    /**
+     * Write a size, length or reference number, variable length from {@link BosonMessage#VERSION_3}
+     */
+    protected void writeSize(ByteBuf buffer, int size) {
+        if (compact()) {
+            VarInt.writeUnsigned(buffer, size);
+        } else {
+            buffer.writeInt(size);
+        }
+    }
+
+    /**
+     * @return true if values are being written with the compact encoding, {@link BosonMessage#VERSION_3}
+     */
+    protected boolean compact() {
+        return protocolVersion >= BosonMessage.VERSION_3;
+    }
+
+    public SchemaRegistry getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * @param schemas classes whose fields are written as IDs by the compact encoding, null to always write names
+     */
+    public void setSchemas(SchemaRegistry schemas) {
+        this.schemas = schemas;
+    }
+
+    public short getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * @param protocolVersion the version values are written for when serialized without a {@link BosonMessage}
+     */
+    public void setProtocolVersion(short protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
     public void writeMap(ByteBuf buffer, Map<?, ?> value) {
         buffer.writeByte(MAP); //type
-        buffer.writeInt(value.size()); //size
+        writeSize(buffer, value.size()); //size
         for (Object key : value.keySet()) {
             Object v = value.get(key);
             validateAndWriteType(buffer, key); //key payload
@@ -251,83 +478,74 @@ public class BosonWriter {
             validateAndWriteType(buffer, obj);
             return;
         }
-        Map<String, Object> data = new HashMap<>();
         Class<?> klass = obj.getClass();
-        ReadMutator mutator = null;
+        ReadMutator mutator = findMutator(klass, obj);
+        buffer.writeByte(POLO); //type
+        //write the POLO's reference number
+        writeSize(buffer, ref);
+        if (mutator != null) {
+            writeString(buffer, klass.getName()); //class name
+            writePoloFieldsViaMutator(buffer, mutator, klass, obj);
+        } else {
+            PoloSchema schema = PoloSchema.of(klass);
+            writeString(buffer, schema.encodedName()); //class name
+            writePoloFieldsViaSchema(buffer, schema, obj);
+        }
+    }
+
+    /**
+     * @return the mutator given to this writer which can read the object, or else the one generated for its class,
+     * or null if there isn't either and the object is written via its schema
+     */
+    protected ReadMutator findMutator(Class<?> klass, Object obj) {
         for (ReadMutator m : mutators) {
             if (m.canReadFields(klass, obj)) {
-                mutator = m;
-                break;
+                return m;
             }
         }
-        if (mutator != null) {
-            writePoloFieldsViaMutator(mutator, klass, obj, data);
-        } else {
-            writePoloFieldsViaReflection(klass, obj, data);
-        }
-        //if at least one field is allowed to be serialized
-        buffer.writeByte(POLO); //type
-        //write the POLO's reference number
-        buffer.writeInt(ref);
-        writeString(buffer, klass.getName()); //class name
-        buffer.writeInt(data.size()); //size
-        for (String key : data.keySet()) {
-            Object value = data.get(key);
-            writeString(buffer, key); //key payload must be a string
-            validateAndWriteType(buffer, value); //value payload
+        //generated mutators write fields by name, a registered class's fields are written as IDs via its schema
+        if (compact() && schemas != null && schemas.fieldIds(klass) != null) {
+            return null;
         }
+        return MutatorFactory.forClass(klass);
     }
 
-    private void writePoloFieldsViaMutator(ReadMutator mutator, Class<?> klass, Object obj, Map<String, Object> data) {
+    private void writePoloFieldsViaMutator(ByteBuf buffer, ReadMutator mutator, Class<?> klass, Object obj) {
         List<String> fields = mutator.fields(klass, obj);
+        writeSize(buffer, fields.size()); //size
+        boolean compact = compact();
+        if (compact) {
+            VarInt.writeUnsigned(buffer, 0); //no schema fingerprint, every field is sent by name
+        }
         for (String field : fields) {
-            Object value = mutator.get(klass, obj, field);
-            data.put(field, value);
+            if (compact) {
+                VarInt.writeUnsigned(buffer, 0); //no field ID, sent by name
+            }
+            writeString(buffer, field); //key payload must be a string
+            validateAndWriteType(buffer, mutator.get(klass, obj, field)); //value payload
         }
     }
 
-    private void writePoloFieldsViaReflection(Class<?> klass, Object obj, Map<String, Object> data) {
-        Class<BosonProperty> propertyClass = BosonProperty.class;
-        boolean ignoreInheritedFields = false;
-        if (klass.isAnnotationPresent(propertyClass)) {
-            ignoreInheritedFields = klass.getAnnotation(propertyClass).ignoreInheritedFields();
+    private void writePoloFieldsViaSchema(ByteBuf buffer, PoloSchema schema, Object obj) {
+        PoloSchema.Property[] properties = schema.properties();
+        writeSize(buffer, properties.length); //size
+        boolean compact = compact();
+        int[] ids = compact && schemas != null ? schemas.fieldIds(schema.type()) : null;
+        if (compact) {
+            //lets the receiver check its IDs are for the same fields, 0 if they're all sent by name
+            VarInt.writeUnsigned(buffer, ids == null ? 0 : schemas.fingerprint(schema.type()));
         }
-        //get ALL (public,private,protect,package) fields declared in the class - includes inherited fields
-        Set<Field> fields = ReflectionUtil.getAllFields(new HashSet<Field>(), klass, 0);
-        for (Field field : fields) {
-            //if inherited fields are to be ignored then fields must be declared in the current class
-            if (ignoreInheritedFields && klass != field.getDeclaringClass()) {
-                continue;
-            }
-            if (Modifier.isFinal(field.getModifiers())) {
-                continue; //no point in serializing final fields
-            }
-            field.setAccessible(true);
-            boolean add = true;
-            String name = field.getName();
-            //add if annotated with BosonProperty
-            if (field.isAnnotationPresent(propertyClass)) {
-                BosonProperty ann = field.getAnnotation(propertyClass);
-                if (ann != null && !ann.value().isEmpty()) {
-                    name = ann.value();
-                }
-                if ((ann != null) && ann.ignore()) {
-                    add = false;
-                }
-                //if configured to ignore inherited fields then
-                //only fields declared in the object's class are allowed
-                if ((ann != null) && ann.ignoreInheritedFields() && field.getDeclaringClass() != klass) {
-                    add = false;
-                }
-            }
-            if (add) {
-                try {
-                    data.put(name, field.get(obj));
-                } catch (IllegalAccessException e) {
-                    log.warn(String.format("Unable to access field %s in class %s", field.getName(),
-                            field.getDeclaringClass().getName()), e);
+        for (int i = 0; i < properties.length; i++) {
+            PoloSchema.Property property = properties[i];
+            if (ids != null) {
+                VarInt.writeUnsigned(buffer, ids[i] + 1); //field ID, offset by 1 as 0 means a name follows
+            } else {
+                if (compact) {
+                    VarInt.writeUnsigned(buffer, 0); //no field ID, sent by name
                 }
+                writeString(buffer, property.encodedName()); //key payload must be a string
             }
+            validateAndWriteType(buffer, property.get(obj)); //value payload
         }
     }
 
@@ -364,8 +582,12 @@ public class BosonWriter {
             } else if (param instanceof Map || Map.class.isAssignableFrom(param.getClass())) {
                 writeMap(buffer, (Map<Object, Object>) param);
             } else if (param.getClass().isArray()) {
-                //array values can be reference types but not the arrays themselves
-                writeArray(buffer, (Object[]) param);
+                if (param.getClass().getComponentType().isPrimitive()) {
+                    writePrimitiveArray(buffer, param);
+                } else {
+                    //array values can be reference types but not the arrays themselves
+                    writeArray(buffer, (Object[]) param);
+                }
             } else if (param instanceof Enum || Enum.class.isAssignableFrom(param.getClass())) {
                 writeEnum(buffer, (Enum) param);
             } else {
@@ -373,13 +595,11 @@ public class BosonWriter {
                     throw new UnsupportedOperationException("Cannot serialize throwable", (Throwable) param);
                 }
                 //in reference list?
-                Integer ref = references.get(param);
+                int ref = references.get(param);
                 //no
-                if (ref == null) {
-                    //assign unique reference number
-                    ref = reference.getAndIncrement();
-                    //add to reference list
-                    references.put(param, ref);
+                if (ref < 0) {
+                    //assign unique reference number and add to reference list
+                    ref = references.add(param);
                     writePolo(buffer, param, ref);
                 } else {
                     //yes -  write reference
@@ -389,9 +609,9 @@ public class BosonWriter {
         }
     }
 
-    private void writeReference(ByteBuf buffer, Integer ref) {
+    private void writeReference(ByteBuf buffer, int ref) {
         //if the object has been written already then write a negative reference
         buffer.writeByte(REFERENCE);
-        buffer.writeInt(ref);
+        writeSize(buffer, ref);
     }
 }
@@ -0,0 +1,51 @@
+package io.higgs.boson;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class BosonTest {
+    @Test
+    public void testReusedForManyMessages() throws Exception {
+        Boson boson = Boson.get();
+        for (int i = 0; i < 100; i++) {
+            BosonMessage original = new BosonMessage(new Object[]{ "a", i }, "test", "callback");
+            ByteBuf buf = boson.serialize(original);
+            try {
+                BosonMessage msg = new BosonMessage();
+                boson.deSerialize(buf, msg);
+                assertEquals("test", msg.method);
+                assertEquals("callback", msg.callback);
+                assertEquals(Arrays.asList(original.arguments), Arrays.asList(msg.arguments));
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    @Test
+    public void testSerializeToOffset() throws Exception {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeLong(-1L);
+        Boson.get().serialize(new BosonMessage(new Object[]{ "x" }, "test"), buf);
+        assertEquals(-1L, buf.readLong());
+        assertEquals(BosonMessage.VERSION_1, buf.readByte());
+        assertEquals(buf.readableBytes() - 4, buf.readInt());
+        //a second message after the first in the same buffer
+        Boson.get().serialize(new BosonMessage(new Object[]{ 2 }, "second", "cb"), buf);
+        buf.readerIndex(8);
+        BosonMessage msg = new BosonMessage();
+        Boson.get().deSerialize(buf, msg);
+        assertEquals("test", msg.method);
+        assertEquals(Arrays.asList((Object) "x"), Arrays.asList(msg.arguments));
+        Boson.get().deSerialize(buf, msg);
+        assertEquals("second", msg.method);
+        assertEquals("cb", msg.callback);
+        assertEquals(Arrays.asList((Object) 2), Arrays.asList(msg.arguments));
+        assertEquals(0, buf.readableBytes());
+    }
+}
@@ -0,0 +1,36 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.boson.Boson;
+import io.higgs.boson.BosonMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BosonDecoderTest {
+    @Test
+    public void testMessagesSplitAcrossReads() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new BosonDecoder(Boson.get(), 1024),
+                new BosonEncoder(Boson.get()));
+        ByteBuf out = Unpooled.buffer();
+        Boson.get().serialize(new BosonMessage(new Object[]{ "a", 1 }, "first", "cb1"), out);
+        Boson.get().serialize(new BosonMessage(new Object[]{ "b", 2 }, "second", "cb2"), out);
+        //one byte short of the first message
+        int split = out.getInt(1) + BosonDecoder.HEADER_SIZE - 1;
+        ch.writeInbound(out.readSlice(split).retain());
+        assertNull(ch.readInbound());
+        ch.writeInbound(out);
+        BosonMessage first = (BosonMessage) ch.readInbound();
+        BosonMessage second = (BosonMessage) ch.readInbound();
+        assertEquals("first", first.method);
+        assertEquals("cb1", first.callback);
+        assertEquals(1, first.arguments[1]);
+        assertEquals("second", second.method);
+        assertEquals("b", second.arguments[0]);
+        assertNull(ch.readInbound());
+        ch.finish();
+    }
+}
@@ -0,0 +1,123 @@
+package io.higgs.boson.protocol;
+
+import io.higgs.boson.client.BosonClient;
+import io.higgs.core.HiggsServer;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.Path;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BosonRpcTest {
+    private static final BlockingQueue<String> RECORDED = new ArrayBlockingQueue<>(16);
+    private HiggsServer server;
+    private BosonClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new HiggsServer();
+        BosonProtocolConfiguration config = new BosonProtocolConfiguration();
+        server.registerProtocol(config);
+        config.allow(Point.class);
+        server.registerClass(RpcService.class);
+        server.start(new InetSocketAddress("127.0.0.1", 0));
+        int port = ((InetSocketAddress) server.channel().localAddress()).getPort();
+        client = new BosonClient();
+        client.allow(Point.class);
+        assertTrue(client.connect("127.0.0.1", port).await(5, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop().await(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testCallsAreAnswered() throws Exception {
+        Future<Object> sum = client.call("add", 2, 3);
+        Point p = new Point();
+        p.x = 7;
+        p.y = -1;
+        Future<Object> echo = client.call("/echo", p);
+        assertEquals(5, sum.get(5, TimeUnit.SECONDS));
+        Point in = (Point) echo.get(5, TimeUnit.SECONDS);
+        assertEquals(7, in.x);
+        assertEquals(-1, in.y);
+    }
+
+    @Test
+    public void testErrorsFailTheCall() throws Exception {
+        Future<Object> failed = client.call("fail");
+        Future<Object> missing = client.call("missing");
+        assertFalse(failed.await(5, TimeUnit.SECONDS) && failed.isSuccess());
+        assertEquals("refused", failed.cause().getMessage());
+        assertFalse(missing.await(5, TimeUnit.SECONDS) && missing.isSuccess());
+        assertEquals("No method named missing", missing.cause().getMessage());
+        //the connection is still usable
+        assertEquals(3, client.call("add", 1, 2).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSendWithoutReply() throws Exception {
+        RECORDED.clear();
+        assertTrue(client.send("record", "one-way").await(5, TimeUnit.SECONDS));
+        assertEquals("one-way", RECORDED.poll(5, TimeUnit.SECONDS));
+        //a call after it is answered, the one way request wasn't taken as a reply
+        assertEquals(4, client.call("add", 2, 2).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testClassesNotAllowedAreRejected() throws Exception {
+        Future<Object> rejected = client.call("echo", new NotAllowed());
+        assertTrue(rejected.await(5, TimeUnit.SECONDS));
+        assertFalse(rejected.isSuccess());
+        //only the instance sent, the server closed the connection before creating one
+        assertEquals(1, NotAllowed.CREATED.get());
+    }
+
+    public static class RpcService {
+        @Path("add")
+        public int add(Integer a, Integer b) {
+            return a + b;
+        }
+
+        @Path("echo")
+        public Object echo(Object p) {
+            return p;
+        }
+
+        @Path("fail")
+        public Object fail() {
+            throw new IllegalStateException("refused");
+        }
+
+        @Path("record")
+        public void record(String value) {
+            RECORDED.add(value);
+        }
+    }
+
+    public static class Point {
+        private int x;
+        private int y;
+    }
+
+    public static class NotAllowed {
+        private static final AtomicInteger CREATED = new AtomicInteger();
+
+        public NotAllowed() {
+            CREATED.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.higgs.boson.serialization.mutators;
+
+import io.higgs.boson.BosonMessage;
+import io.higgs.boson.BosonType;
+import io.higgs.boson.serialization.BosonProperty;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.higgs.boson.serialization.UnsupportedBosonTypeException;
+import io.higgs.boson.serialization.v1.BosonReader;
+import io.higgs.boson.serialization.v1.BosonWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MutatorProcessorTest {
+    @Test
+    public void testGeneratedMutatorIsRegistered() throws Exception {
+        PoloMutator mutator = MutatorFactory.forClass(GeneratedPolo.class);
+        assertNotNull(mutator);
+        assertEquals(GeneratedPolo.class.getName().replace('$', '_') + MutatorProcessor.SUFFIX,
+                mutator.getClass().getName());
+        assertEquals(Arrays.asList("inherited", "count", "renamed", "name", "tags"),
+                mutator.fields(GeneratedPolo.class, null));
+        assertTrue(mutator.canCreate(GeneratedPolo.class.getName()));
+        //not annotated
+        assertNull(MutatorFactory.forClass(Base.class));
+
+        GeneratedPolo polo = (GeneratedPolo) mutator.newInstance(GeneratedPolo.class.getName());
+        assertTrue(mutator.set(polo, "count", 5));
+        assertTrue(mutator.set(polo, "renamed", 6L));
+        //set by its field name too
+        assertTrue(mutator.set(polo, "value", 7L));
+        assertFalse(mutator.set(polo, "count", "not an int"));
+        //private, left to reflection
+        assertFalse(mutator.set(polo, "name", "n"));
+        assertEquals(5, mutator.get(GeneratedPolo.class, polo, "count"));
+        assertEquals(7L, mutator.get(GeneratedPolo.class, polo, "renamed"));
+        assertEquals("generated", mutator.get(GeneratedPolo.class, polo, "name"));
+    }
+
+    @Test
+    public void testSerializingWithGeneratedMutators() throws Exception {
+        GeneratedPolo polo = new GeneratedPolo();
+        polo.count = 42;
+        polo.value = -9;
+        polo.ignored = "not sent";
+        polo.tags = new String[]{ "a", "b" };
+        polo.setInherited("super");
+        SchemaRegistry schemas = new SchemaRegistry();
+        schemas.register(GeneratedPolo.class);
+        for (short version : new short[]{ BosonMessage.VERSION_1, BosonMessage.VERSION_3 }) {
+            BosonWriter writer = new BosonWriter();
+            writer.setSchemas(schemas);
+            BosonReader reader = new BosonReader();
+            reader.setSchemas(schemas);
+            ByteBuf buf = writer.serialize(new BosonMessage(new Object[]{ polo }, "m", "cb", version));
+            BosonMessage msg = new BosonMessage();
+            reader.deSerialize(buf, msg);
+            GeneratedPolo in = (GeneratedPolo) msg.arguments[0];
+            assertEquals(42, in.count);
+            assertEquals(-9, in.value);
+            assertEquals("generated", in.getName());
+            assertEquals("super", in.getInherited());
+            assertNull(in.ignored);
+            //sent as an Object[] by v1, converted by reflection
+            assertArrayEquals(new String[]{ "a", "b" }, in.tags);
+        }
+    }
+
+    @Test
+    public void testGivenMutatorsComeFirst() throws Exception {
+        final PoloMutator generated = MutatorFactory.forClass(GeneratedPolo.class);
+        WriteMutator given = new WriteMutator() {
+            @Override
+            public <T> boolean set(T instance, String field, Object value) {
+                return generated.set(instance, field, value);
+            }
+
+            @Override
+            public Object newInstance(String className) {
+                GeneratedPolo polo = new GeneratedPolo();
+                polo.ignored = "given";
+                return polo;
+            }
+
+            @Override
+            public boolean canCreate(String className) {
+                return generated.canCreate(className);
+            }
+
+            @Override
+            public Enum get(String enumClassName, String enumStringName) {
+                return null;
+            }
+        };
+        BosonReader reader = new BosonReader(new HashSet<>(Arrays.asList(given)));
+        GeneratedPolo in = reader.deSerialize(new BosonWriter().serialize(new GeneratedPolo()));
+        assertEquals("given", in.ignored);
+        List<String> fields = generated.fields(GeneratedPolo.class, null);
+        assertEquals(5, fields.size());
+    }
+
+    @Test
+    public void testEnumNamingAPoloIsRejected() throws Exception {
+        BosonWriter writer = new BosonWriter();
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeByte(BosonType.ENUM);
+        writer.writeString(buf, GeneratedPolo.class.getName());
+        writer.writeString(buf, "count");
+        try {
+            new BosonReader().deSerialize(buf);
+            fail("A POLO class sent as an enum should have been rejected");
+        } catch (UnsupportedBosonTypeException expected) {
+            //pass
+        }
+    }
+
+    public static class Base {
+        private String inherited;
+
+        public String getInherited() {
+            return inherited;
+        }
+
+        public void setInherited(String inherited) {
+            this.inherited = inherited;
+        }
+    }
+
+    @BosonProperty
+    public static class GeneratedPolo extends Base {
+        int count;
+        @BosonProperty("renamed")
+        long value;
+        @BosonProperty(ignore = true)
+        String ignored;
+        private String name = "generated";
+        String[] tags;
+
+        public String getName() {
+            return name;
+        }
+    }
+}
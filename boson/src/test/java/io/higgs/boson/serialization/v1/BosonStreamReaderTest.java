@@ -0,0 +1,220 @@
+package io.higgs.boson.serialization.v1;
+
+import io.higgs.boson.BosonMessage;
+import io.higgs.boson.BosonType;
+import io.higgs.boson.serialization.InvalidDataException;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BosonStreamReaderTest {
+    @Test
+    public void testMessagesReadAByteAtATime() throws Exception {
+        SchemaRegistry schemas = new SchemaRegistry();
+        schemas.register(BosonWriterTest.CompactPolo.class);
+        BosonWriterTest.CompactPolo shared = new BosonWriterTest.CompactPolo();
+        List<Object> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            items.add(i % 2 == 0 ? shared : "item" + i);
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("nested", Arrays.asList(1L, 2L));
+        for (short version : new short[]{ BosonMessage.VERSION_1, BosonMessage.VERSION_2, BosonMessage.VERSION_3 }) {
+            BosonWriter writer = new BosonWriter();
+            writer.setSchemas(schemas);
+            ByteBuf out = Unpooled.buffer();
+            writer.serialize(new BosonMessage(new Object[]{ "a", items, map, 1.5 }, "test", "cb",
+                    version), out);
+            writer.serialize(new BosonMessage(new Object[]{ 7 }, "second", "cb2", version), out);
+            BosonReader reader = new BosonReader();
+            reader.setSchemas(schemas);
+            Recorder recorder = new Recorder();
+            BosonStreamReader stream = new BosonStreamReader(reader, recorder, true);
+            ByteBuf in = Unpooled.buffer();
+            while (out.isReadable()) {
+                in.writeByte(out.readByte());
+                stream.read(in);
+                in.discardReadBytes();
+            }
+            assertEquals(0, in.readableBytes());
+            assertEquals(2, recorder.messages.size());
+            assertEquals("test", recorder.messages.get(0).method);
+            assertEquals("cb", recorder.messages.get(0).callback);
+            assertNull(recorder.messages.get(0).arguments);
+            assertEquals("second", recorder.messages.get(1).method);
+            //the list and the map are opened, their items passed one by one
+            List<Object> elements = recorder.elements;
+            assertEquals(1 + items.size() + 2 + 1 + 1, elements.size());
+            assertEquals("a", elements.get(0));
+            assertEquals("item1", elements.get(2));
+            //references are resolved across elements
+            assertTrue(elements.get(1) instanceof BosonWriterTest.CompactPolo);
+            assertSame(elements.get(1), elements.get(3));
+            assertEquals("nested", elements.get(1 + items.size()));
+            assertEquals(Arrays.asList(1L, 2L), elements.get(2 + items.size()));
+            assertEquals(1.5, elements.get(3 + items.size()));
+            assertEquals(7, elements.get(4 + items.size()));
+            assertEquals(Arrays.asList("start 0 " + BosonType.ARRAY + " 4", "start 1 " + BosonType.LIST + " 50",
+                    "end 1", "start 1 " + BosonType.MAP + " 1", "end 1", "end 0", "start 0 " + BosonType.ARRAY + " 1",
+                    "end 0"), recorder.containers);
+        }
+    }
+
+    @Test
+    public void testValuesWithoutHeaders() throws Exception {
+        List<Object> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(Arrays.asList(i, "v" + i));
+        }
+        BosonWriter writer = new BosonWriter();
+        ByteBuf out = writer.serialize(items);
+        writer.serialize("after", out);
+        Recorder recorder = new Recorder();
+        BosonStreamReader stream = new BosonStreamReader(new BosonReader(), recorder, false);
+        stream.setStreamDepth(1);
+        ByteBuf in = Unpooled.buffer();
+        while (out.isReadable()) {
+            in.writeBytes(out, Math.min(7, out.readableBytes()));
+            stream.read(in);
+            in.discardReadBytes();
+        }
+        assertEquals(0, in.readableBytes());
+        assertEquals(items.size() + 1, recorder.elements.size());
+        assertEquals(Arrays.asList(99, "v99"), recorder.elements.get(99));
+        assertEquals("after", recorder.elements.get(100));
+        assertEquals(Arrays.asList("start 0 " + BosonType.LIST + " 100", "end 0"), recorder.containers);
+    }
+
+    @Test
+    public void testHostileSizesAreRejected() throws Exception {
+        //a string, a map and a byte array claiming far more bytes than they may take, or than an int can count
+        ByteBuf[] values = {
+                Unpooled.buffer().writeByte(BosonType.STRING).writeInt(Integer.MAX_VALUE),
+                Unpooled.buffer().writeByte(BosonType.LIST).writeInt(1).writeByte(BosonType.MAP)
+                        .writeInt(Integer.MAX_VALUE),
+                Unpooled.buffer().writeByte(BosonType.LONG_ARRAY).writeInt(Integer.MAX_VALUE / 2)
+        };
+        for (ByteBuf in : values) {
+            BosonStreamReader stream = new BosonStreamReader(new BosonReader(), new Recorder(), false);
+            stream.setStreamDepth(1);
+            try {
+                stream.read(in);
+                fail("Size should have been rejected");
+            } catch (InvalidDataException expected) {
+                //not waited for as if the rest was still to come
+            }
+        }
+        //opened containers are checked too
+        BosonStreamReader stream = new BosonStreamReader(new BosonReader(), new Recorder(), false);
+        try {
+            stream.read(Unpooled.buffer().writeByte(BosonType.MAP).writeInt(Integer.MAX_VALUE));
+            fail("Size should have been rejected");
+        } catch (InvalidDataException expected) {
+            //pass
+        }
+    }
+
+    @Test
+    public void testElementsCannotOutgrowTheirMessage() throws Exception {
+        ByteBuf in = Unpooled.buffer();
+        in.writeByte(BosonMessage.VERSION_1).writeInt(10);
+        in.writeByte(BosonType.REQUEST_METHOD_NAME).writeByte(BosonType.STRING).writeInt(1000);
+        BosonStreamReader stream = new BosonStreamReader(new BosonReader(), new Recorder(), true);
+        try {
+            stream.read(in);
+            fail("String longer than its message should have been rejected");
+        } catch (InvalidDataException expected) {
+            //pass
+        }
+    }
+
+    @Test
+    public void testMaxElementSize() throws Exception {
+        BosonWriter writer = new BosonWriter();
+        ByteBuf out = writer.serialize(Arrays.asList("short", "a much longer string than the limit"));
+        Recorder recorder = new Recorder();
+        BosonStreamReader stream = new BosonStreamReader(new BosonReader(), recorder, false);
+        stream.setMaxElementSize(16);
+        //the list is opened so only its items are limited
+        ByteBuf in = Unpooled.buffer();
+        in.writeBytes(out, 15);
+        stream.read(in);
+        assertEquals(Arrays.<Object>asList("short"), recorder.elements);
+        try {
+            //rejected once its size is read, without waiting for the rest
+            in.writeBytes(out, 5);
+            stream.read(in);
+            fail("String longer than the max should have been rejected");
+        } catch (InvalidDataException expected) {
+            //pass
+        }
+    }
+
+    @Test
+    public void testScanResumesWhereItStopped() throws Exception {
+        BosonWriter writer = new BosonWriter();
+        ByteBuf out = writer.serialize(Arrays.asList(Arrays.asList("a", "b"), "c"));
+        int length = out.readableBytes();
+        BosonScanner scanner = new BosonScanner();
+        ByteBuf in = Unpooled.buffer();
+        in.writeBytes(out, length - 1);
+        assertEquals(-1, scanner.end(in, 0, false, length));
+        //the bytes before the element can be discarded between calls
+        ByteBuf moved = Unpooled.buffer().writeByte(0).writeBytes(in).writeBytes(out);
+        moved.readByte();
+        assertEquals(length + 1, scanner.resume(moved, 1, false, length));
+        assertEquals(length + 1, scanner.end(moved, 1, false, length));
+        try {
+            scanner.end(moved, 1, false, length - 1);
+            fail("Element is longer than the max");
+        } catch (InvalidDataException expected) {
+            //pass
+        }
+    }
+
+    private static class Recorder implements BosonStreamListener {
+        private final List<BosonMessage> messages = new ArrayList<>();
+        private final List<Object> elements = new ArrayList<>();
+        private final List<String> containers = new ArrayList<>();
+        private BosonMessage current;
+
+        @Override
+        public void onMessageStart(BosonMessage msg) {
+            current = msg;
+        }
+
+        @Override
+        public void onContainerStart(int depth, int type, int size) {
+            containers.add("start " + depth + " " + type + " " + size);
+        }
+
+        @Override
+        public void onElement(int depth, Object value) {
+            elements.add(value);
+        }
+
+        @Override
+        public void onContainerEnd(int depth, int type) {
+            containers.add("end " + depth);
+        }
+
+        @Override
+        public void onMessageEnd(BosonMessage msg) {
+            assertSame(current, msg);
+            messages.add(msg);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package io.higgs.boson.serialization.v1;
+
+import io.higgs.boson.BosonMessage;
+import io.higgs.boson.BosonType;
+import io.higgs.boson.serialization.ClassAllowlist;
+import io.higgs.boson.serialization.InvalidDataException;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.netty.buffer.ByteBuf;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BosonViewTest {
+    @Test
+    public void testMessageView() throws Exception {
+        SchemaRegistry schemas = new SchemaRegistry();
+        schemas.register(BosonWriterTest.CompactPolo.class);
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("tenant", "acme");
+        headers.put("nested", Arrays.asList(1, 2, 3));
+        headers.put("n", 5);
+        List<Object> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items.add(i % 3 == 0 ? "s" + i : i);
+        }
+        for (short version : new short[]{ BosonMessage.VERSION_1, BosonMessage.VERSION_2, BosonMessage.VERSION_3 }) {
+            BosonWriter writer = new BosonWriter();
+            writer.setSchemas(schemas);
+            ByteBuf buf = writer.serialize(new BosonMessage(new Object[]{ headers, items,
+                    new BosonWriterTest.CompactPolo(), new int[]{ 1, 2 } }, "route", "cb", version));
+            int readerIndex = buf.readerIndex();
+            BosonMessageView msg = BosonMessageView.of(buf, schemas,
+                    new ClassAllowlist().allow(BosonWriterTest.CompactPolo.class));
+            assertEquals(version, msg.protocolVersion());
+            assertEquals("route", msg.method());
+            assertEquals("cb", msg.callback());
+            assertEquals(4, msg.parameters().size());
+
+            BosonView map = msg.get(0);
+            assertEquals(BosonType.MAP, map.type());
+            assertEquals("acme", map.get("tenant").value());
+            assertEquals(Arrays.asList(1, 2, 3), map.get("nested").value());
+            assertNull(map.get("missing"));
+
+            BosonView list = msg.get(1);
+            assertEquals(1000, list.size());
+            assertEquals("s999", list.get(999).value());
+            assertEquals(500, list.get(500).value());
+
+            BosonView polo = msg.get(2);
+            assertEquals(BosonWriterTest.CompactPolo.class.getName(), polo.className());
+            assertEquals("compact", polo.get("name").value());
+            assertEquals(300, polo.get("count").value());
+            assertTrue(polo.value() instanceof BosonWriterTest.CompactPolo);
+
+            Object ints = msg.get(3).value();
+            if (version == BosonMessage.VERSION_1) {
+                assertTrue(Arrays.equals(new Object[]{ 1, 2 }, (Object[]) ints));
+            } else {
+                assertTrue(Arrays.equals(new int[]{ 1, 2 }, (int[]) ints));
+            }
+
+            //forwarded unchanged, the buffer itself untouched
+            assertEquals(buf, msg.bytes());
+            assertEquals(readerIndex, buf.readerIndex());
+            BosonMessage decoded = new BosonMessage();
+            BosonReader reader = new BosonReader();
+            reader.setSchemas(schemas);
+            reader.deSerialize(msg.bytes(), decoded);
+            assertEquals("route", decoded.method);
+        }
+    }
+
+    @Test
+    public void testValueView() throws Exception {
+        List<Object> list = new ArrayList<>();
+        list.add("first");
+        list.add(Arrays.asList("a", Arrays.asList("b", "c")));
+        ByteBuf buf = new BosonWriter().serialize(list);
+        BosonView view = BosonView.of(buf);
+        assertEquals(BosonType.LIST, view.type());
+        assertEquals(buf.writerIndex(), view.end());
+        BosonView nested = view.get(1).get(1);
+        assertEquals("c", nested.get(1).value());
+        assertEquals(Arrays.asList("b", "c"), new BosonReader().deSerialize(nested.bytes()));
+    }
+
+    @Test
+    public void testReferencesInPartOfAValue() throws Exception {
+        BosonWriterTest.EqualPolo repeated = new BosonWriterTest.EqualPolo();
+        List<Object> list = new ArrayList<>();
+        list.add(new BosonWriterTest.EqualPolo());
+        list.add(Arrays.asList(repeated, repeated));
+        BosonView view = BosonView.of(new BosonWriter().serialize(list), BosonMessage.VERSION_1, null,
+                new ClassAllowlist().allow(BosonWriterTest.EqualPolo.class));
+        //numbered from 1, the first object isn't part of the value
+        List<Object> in = (List<Object>) view.get(1).value();
+        assertTrue(in.get(0) instanceof BosonWriterTest.EqualPolo);
+        assertTrue(in.get(0) == in.get(1));
+    }
+
+    @Test
+    public void testClassesMustBeAllowed() throws Exception {
+        ByteBuf buf = new BosonWriter().serialize(Arrays.asList("a", new BosonWriterTest.EqualPolo()));
+        BosonView view = BosonView.of(buf);
+        assertEquals("a", view.get(0).value());
+        //the class can still be inspected without being loaded
+        assertEquals(BosonWriterTest.EqualPolo.class.getName(), view.get(1).className());
+        try {
+            view.get(1).value();
+            fail("Decoded a POLO without a class filter allowing it");
+        } catch (InvalidDataException expected) {
+            //no filter allows nothing
+        }
+        try {
+            BosonView.of(buf, BosonMessage.VERSION_1, null, new ClassAllowlist().allow(String.class)).value();
+            fail("Decoded a POLO the class filter doesn't allow");
+        } catch (InvalidDataException expected) {
+            //only the classes added
+        }
+    }
+}
@@ -1,18 +1,37 @@
 package io.higgs.boson.serialization.v1;
 
 import io.higgs.boson.BosonMessage;
+import io.higgs.boson.serialization.InvalidDataException;
+import io.higgs.boson.serialization.SchemaRegistry;
+import io.higgs.boson.serialization.StringCache;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import static io.higgs.boson.BosonType.ARRAY;
+import static io.higgs.boson.BosonType.BOOLEAN_ARRAY;
+import static io.higgs.boson.BosonType.BYTE_ARRAY;
+import static io.higgs.boson.BosonType.DOUBLE_ARRAY;
+import static io.higgs.boson.BosonType.INT_ARRAY;
+import static io.higgs.boson.BosonType.LIST;
+import static io.higgs.boson.BosonType.LONG_ARRAY;
 import static io.higgs.boson.BosonType.MAP;
+import static io.higgs.boson.BosonType.SHORT_ARRAY;
 import static io.higgs.boson.BosonType.STRING;
 import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Courtney Robinson <courtney@crlog.info>
@@ -202,6 +221,239 @@ public class BosonWriterTest {
         assertEquals(obj.type.value, in.type.value);
     }
 
+    @Test
+    public void testSerializingPrimitiveArrays() throws Exception {
+        PrimitiveArrays obj = new PrimitiveArrays();
+        for (short version : new short[]{ BosonMessage.VERSION_1, BosonMessage.VERSION_2 }) {
+            BosonWriter writer = new BosonWriter();
+            writer.setProtocolVersion(version);
+            BosonReader reader = new BosonReader();
+            PrimitiveArrays in = reader.deSerialize(writer.serialize(obj));
+            assertNotNull(in);
+            assertTrue(Arrays.equals(obj.bytes, in.bytes));
+            assertTrue(Arrays.equals(obj.shorts, in.shorts));
+            assertTrue(Arrays.equals(obj.ints, in.ints));
+            assertTrue(Arrays.equals(obj.longs, in.longs));
+            assertTrue(Arrays.equals(obj.floats, in.floats));
+            assertTrue(Arrays.equals(obj.doubles, in.doubles));
+            assertTrue(Arrays.equals(obj.booleans, in.booleans));
+            assertTrue(Arrays.equals(obj.chars, in.chars));
+        }
+        BosonMessage msg = new BosonMessage(new Object[]{ obj.ints, obj.doubles }, "test", "callback",
+                BosonMessage.VERSION_2);
+        BosonMessage m = new BosonMessage();
+        new BosonReader().deSerialize(new BosonWriter().serialize(msg), m);
+        assertEquals(BosonMessage.VERSION_2, m.protocolVersion);
+        assertTrue(Arrays.equals(obj.ints, (int[]) m.arguments[0]));
+        assertTrue(Arrays.equals(obj.doubles, (double[]) m.arguments[1]));
+    }
+
+    @Test
+    public void testHostilePrimitiveArraySizes() throws Exception {
+        //sizes whose byte lengths overflow an int, a huge boolean array and a truncated array
+        int[][] cases = {
+                { INT_ARRAY, 0x40000001 },
+                { LONG_ARRAY, 0x20000001 },
+                { SHORT_ARRAY, Integer.MIN_VALUE },
+                { BOOLEAN_ARRAY, Integer.MAX_VALUE },
+                { BYTE_ARRAY, 100 },
+                { DOUBLE_ARRAY, 3 }
+        };
+        for (int[] c : cases) {
+            ByteBuf buf = Unpooled.buffer();
+            buf.writeByte(c[0]);
+            buf.writeInt(c[1]);
+            buf.writeLong(0);
+            try {
+                new BosonReader().deSerialize(buf);
+                fail(String.format("type %s of size %s was read from 8 bytes", c[0], c[1]));
+            } catch (InvalidDataException expected) {
+                assertEquals(5, buf.readerIndex());
+            }
+        }
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+        List<Object> strings = new ArrayList<>();
+        strings.add("");
+        strings.add("ascii");
+        strings.add("caf\u00e9 \u20ac \ud83d\ude00");
+        strings.add("unpaired \ud83d");
+        strings.add("ascii");
+        BosonWriter writer = new BosonWriter();
+        BosonReader reader = new BosonReader();
+        reader.setStringCache(new StringCache(16));
+        ByteBuf direct = Unpooled.directBuffer();
+        writer.serialize(strings, direct);
+        for (ByteBuf buf : new ByteBuf[]{ writer.serialize(strings), direct }) {
+            List<Object> in = reader.deSerialize(buf);
+            assertEquals(Arrays.asList("", "ascii", "caf\u00e9 \u20ac \ud83d\ude00", "unpaired ?", "ascii"), in);
+            assertTrue(in.get(1) == in.get(4));
+        }
+        direct.release();
+    }
+
+    @Test
+    public void testCompactEncoding() throws Exception {
+        SchemaRegistry schemas = new SchemaRegistry();
+        schemas.register(CompactPolo.class);
+        CompactPolo polo = new CompactPolo();
+        polo.nested = new OuterEnclosingType();
+        BosonMessage original = new BosonMessage(new Object[]{ polo, -1, Long.MIN_VALUE, new int[]{ 1, 2 } },
+                "test", "callback", BosonMessage.VERSION_3);
+        BosonWriter writer = new BosonWriter();
+        writer.setSchemas(schemas);
+        BosonReader reader = new BosonReader();
+        reader.setSchemas(schemas);
+        ByteBuf compact = writer.serialize(original);
+        BosonMessage msg = new BosonMessage();
+        reader.deSerialize(compact, msg);
+        assertEquals(BosonMessage.VERSION_3, msg.protocolVersion);
+        CompactPolo in = (CompactPolo) msg.arguments[0];
+        assertEquals(polo.count, in.count);
+        assertEquals(polo.total, in.total);
+        assertEquals(polo.name, in.name);
+        //not registered, its fields are sent by name
+        assertEquals(SomeType.C, in.nested.type.value);
+        assertEquals(-1, msg.arguments[1]);
+        assertEquals(Long.MIN_VALUE, msg.arguments[2]);
+        assertTrue(Arrays.equals(new int[]{ 1, 2 }, (int[]) msg.arguments[3]));
+        //the same message without the compact encoding
+        original.protocolVersion = BosonMessage.VERSION_2;
+        assertTrue(compact.writerIndex() < writer.serialize(original).writerIndex());
+    }
+
+    @Test
+    public void testSchemaMismatchIsRejected() throws Exception {
+        SchemaRegistry schemas = new SchemaRegistry();
+        schemas.register(CompactPolo.class);
+        schemas.register(OuterEnclosingType.class);
+        //classes with different fields have different fingerprints
+        assertTrue(schemas.fingerprint(CompactPolo.class) != 0);
+        assertFalse(schemas.matches(CompactPolo.class.getName(), schemas.fingerprint(OuterEnclosingType.class)));
+        assertTrue(schemas.matches(CompactPolo.class.getName(), schemas.fingerprint(CompactPolo.class)));
+        BosonWriter writer = new BosonWriter();
+        writer.setSchemas(schemas);
+        BosonMessage original = new BosonMessage(new Object[]{ new CompactPolo() }, "test", "callback",
+                BosonMessage.VERSION_3);
+        //the receiver doesn't have the class registered so can't know what its IDs are
+        BosonReader reader = new BosonReader();
+        reader.setSchemas(new SchemaRegistry());
+        try {
+            reader.deSerialize(writer.serialize(original), new BosonMessage());
+            fail("Field IDs for an unregistered class should have been rejected");
+        } catch (InvalidDataException expected) {
+            //pass
+        }
+        //without IDs the receiver's registry doesn't matter
+        writer.setSchemas(null);
+        BosonMessage msg = new BosonMessage();
+        reader.deSerialize(writer.serialize(original), msg);
+        assertEquals(300, ((CompactPolo) msg.arguments[0]).count);
+    }
+
+    public static class CompactPolo {
+        private int count = 300;
+        private long total = -5;
+        private String name = "compact";
+        private OuterEnclosingType nested;
+    }
+
+    @Test
+    public void testReferencesAreByIdentity() throws Exception {
+        //enough objects that reference numbers go past the boxed Integer cache
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            list.add(new EqualPolo());
+        }
+        EqualPolo repeated = new EqualPolo();
+        list.add(repeated);
+        list.add(repeated);
+        BosonWriter writer = new BosonWriter();
+        BosonReader reader = new BosonReader();
+        //the writer and reader are reused, references must not leak between messages
+        for (int n = 0; n < 2; n++) {
+            List<Object> in = reader.deSerialize(writer.serialize(list));
+            assertEquals(list.size(), in.size());
+            Set<Object> distinct = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+            distinct.addAll(in);
+            assertEquals(301, distinct.size());
+            assertTrue(in.get(300) == in.get(301));
+        }
+    }
+
+    @Test
+    public void testHostileReferences() throws Exception {
+        for (int ref : new int[]{ Integer.MAX_VALUE, 1, -1 }) {
+            ByteBuf buf = new BosonWriter().serialize(new EqualPolo());
+            //the POLO's reference number follows its type
+            buf.setInt(1, ref);
+            try {
+                new BosonReader().deSerialize(buf);
+                fail(String.format("reference %s was accepted for the first object", ref));
+            } catch (InvalidDataException expected) {
+                //rejected before anything was allocated for it
+            }
+        }
+    }
+
+    @Test
+    public void testHostileSizes() throws Exception {
+        //a 5 byte varint which decodes to -1, then one which decodes to more than the bytes left
+        byte[][] compact = { { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f }, { (byte) 0x80, 0x01 } };
+        for (byte[] size : compact) {
+            for (int type : new int[]{ ARRAY, LIST, MAP, STRING }) {
+                ByteBuf buf = Unpooled.buffer();
+                buf.writeByte(type);
+                buf.writeBytes(size);
+                buf.writeLong(0);
+                BosonReader reader = new BosonReader();
+                reader.setProtocolVersion(BosonMessage.VERSION_3);
+                try {
+                    reader.deSerialize(buf);
+                    fail(String.format("type %s was read with a hostile size", type));
+                } catch (InvalidDataException expected) {
+                    //rejected before anything was allocated for it
+                }
+            }
+        }
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeByte(ARRAY);
+        buf.writeInt(-5);
+        try {
+            new BosonReader().deSerialize(buf);
+            fail("an ARRAY was read with a negative size");
+        } catch (InvalidDataException expected) {
+            //rejected before anything was allocated for it
+        }
+    }
+
+    public static class EqualPolo {
+        private int value = 1;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EqualPolo;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
+
+    public static class PrimitiveArrays {
+        private byte[] bytes = { 1, -2, 3 };
+        private short[] shorts = { 1, Short.MIN_VALUE, Short.MAX_VALUE };
+        private int[] ints = { 1, Integer.MIN_VALUE, Integer.MAX_VALUE, 1000 };
+        private long[] longs = { 1, Long.MIN_VALUE, Long.MAX_VALUE };
+        private float[] floats = { 1.5f, Float.NaN, -0f };
+        private double[] doubles = { 1.5, Double.MAX_VALUE, -3 };
+        private boolean[] booleans = { true, false, true };
+        private char[] chars = { 'a', '\u00e9', '\uffff' };
+    }
+
     enum SomeType {
         A, B, C
     }
@@ -0,0 +1,111 @@
+package io.higgs.core;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Decides which protocol a new connection uses from its first {@link #SIGNATURE_LENGTH} bytes. Built once from the
+ * registered {@link ProtocolDetectorFactory}s, sorted by priority, rather than for every connection.
+ * <p/>
+ * Factories implementing {@link ProtocolSignature} are resolved with a single lookup on the first two bytes. Any other
+ * factory, and any signature factory with a lower priority than one of them, can only be found by asking its
+ * detector so those are returned by {@link #fallback()} to be tried in order when the lookup misses.
+ */
+public final class DetectionTable {
+    /**
+     * The number of bytes needed before a connection's protocol can be looked up
+     */
+    public static final int SIGNATURE_LENGTH = 2;
+    private final ProtocolDetectorFactory[][] table = new ProtocolDetectorFactory[256][];
+    private final ProtocolDetectorFactory[] fallback;
+    private final ProtocolDetectorFactory fixed;
+
+    /**
+     * @param factories the protocols to detect, in any order
+     */
+    public DetectionTable(Collection<ProtocolDetectorFactory> factories) {
+        if (factories == null) {
+            throw new IllegalArgumentException("Protocol detector factories cannot be null");
+        }
+        List<ProtocolDetectorFactory> rest = new ArrayList<>();
+        for (ProtocolDetectorFactory factory : new FixedSortedList<>(factories)) {
+            //once a factory has to be asked, every factory after it must be asked too to keep the priority order
+            if (rest.isEmpty() && factory instanceof ProtocolSignature) {
+                for (byte[] signature : ((ProtocolSignature) factory).signatures()) {
+                    add(signature, factory);
+                }
+            } else {
+                rest.add(factory);
+            }
+        }
+        fallback = rest.toArray(new ProtocolDetectorFactory[rest.size()]);
+        fixed = null;
+    }
+
+    private DetectionTable(ProtocolDetectorFactory fixed) {
+        this.fixed = fixed;
+        fallback = new ProtocolDetectorFactory[0];
+    }
+
+    /**
+     * A table which hands every connection to the same protocol without looking at its data
+     *
+     * @param factory the only protocol the server speaks
+     */
+    public static DetectionTable fixed(ProtocolDetectorFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Fixed protocol cannot be null");
+        }
+        return new DetectionTable(factory);
+    }
+
+    /**
+     * @param in the connection's data, at least {@link #SIGNATURE_LENGTH} bytes must be readable
+     * @return the protocol whose signature matches the data or null if it doesn't match any
+     */
+    public ProtocolDetectorFactory lookup(ByteBuf in) {
+        if (fixed != null) {
+            return fixed;
+        }
+        ProtocolDetectorFactory[] second = table[in.getUnsignedByte(in.readerIndex())];
+        return second == null ? null : second[in.getUnsignedByte(in.readerIndex() + 1)];
+    }
+
+    /**
+     * @return the protocols whose detectors must be asked, in descending order of priority, if {@link #lookup(ByteBuf)}
+     * doesn't match. The array is shared and must not be modified
+     */
+    public ProtocolDetectorFactory[] fallback() {
+        return fallback;
+    }
+
+    /**
+     * @return the protocol every connection is handed to or null if connections are detected
+     */
+    public ProtocolDetectorFactory fixedProtocol() {
+        return fixed;
+    }
+
+    private void add(byte[] signature, ProtocolDetectorFactory factory) {
+        if (signature == null || signature.length == 0 || signature.length > SIGNATURE_LENGTH) {
+            throw new IllegalArgumentException(String.format("%s has a signature which isn't 1 or 2 bytes",
+                    factory.getClass().getName()));
+        }
+        int first = signature[0] & 0xFF;
+        if (table[first] == null) {
+            table[first] = new ProtocolDetectorFactory[256];
+        }
+        ProtocolDetectorFactory[] second = table[first];
+        //a 1 byte signature matches anything in the second byte, where two factories match the higher priority wins
+        int from = signature.length == 1 ? 0 : signature[1] & 0xFF;
+        int to = signature.length == 1 ? 255 : from;
+        for (int i = from; i <= to; i++) {
+            if (second[i] == null) {
+                second[i] = factory;
+            }
+        }
+    }
+}
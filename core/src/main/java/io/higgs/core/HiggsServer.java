@@ -1,16 +1,34 @@
 package io.higgs.core;
 
+import io.higgs.core.metrics.ServerMetrics;
 import io.higgs.core.reflect.ReflectionUtil;
 import io.higgs.core.reflect.classpath.HiggsClassLoader;
 import io.higgs.core.reflect.classpath.PackageScanner;
 import io.higgs.core.reflect.dependency.DependencyProvider;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelGroupFuture;
+import io.netty.channel.group.ChannelGroupFutureListener;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultProgressivePromise;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ProgressiveFuture;
+import io.netty.util.concurrent.ProgressivePromise;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yaml.snakeyaml.constructor.Constructor;
@@ -21,17 +39,25 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  */
 public class HiggsServer {
     private static final HiggsClassLoader HIGGS_CLASS_LOADER = new HiggsClassLoader();
+    private static final AttributeKey<Boolean> BUSY = AttributeKey.valueOf("higgs.busy");
     public static Path BASE_PATH = Paths.get("./");
     protected final Set<MethodProcessor> methodProcessors = new HashSet<>();
     protected final Queue<ProtocolDetectorFactory> detectors = new ConcurrentLinkedDeque<>();
@@ -53,6 +79,14 @@ public class HiggsServer {
     protected Logger log = LoggerFactory.getLogger(getClass());
     protected boolean onlyRegisterAnnotatedMethods = true;
     protected int port = 8080;
+    protected ServerMetrics metrics;
+    protected ProtocolDetectorFactory fixedProtocol;
+    protected final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Every open connection, from all listeners. Closed connections are removed automatically
+     */
+    protected final ChannelGroup connections = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    protected volatile boolean draining;
     Class<javax.ws.rs.Path> methodClass = javax.ws.rs.Path.class;
 
     public <C extends ServerConfig> HiggsServer setConfig(String configFile, Class<C> klass) {
@@ -78,38 +112,323 @@ public class HiggsServer {
         start(new InetSocketAddress(port));
     }
 
+    /**
+     * Start the server, binding every listener added with {@link #addListener(Listener)}. If no listener was added
+     * the server binds to the given address with its own protocol, SSL and GZIP settings
+     *
+     * @throws UnsupportedOperationException if the server's already started
+     * @throws IllegalStateException         if a listener can't be bound, e.g. its address is in use or its SSL
+     *                                       config is invalid. Listeners bound before it are closed again
+     */
     public void start(SocketAddress address) {
         if (channel != null) {
             throw new UnsupportedOperationException("Server already started");
         }
+        if (listeners.isEmpty()) {
+            listeners.add(new Listener(address)
+                    .setDetectSsl(detectSsl)
+                    .setDetectGzip(detectGzip)
+                    .setFixedProtocol(fixedProtocol));
+        }
+        if (metrics == null && config.enable_metrics) {
+            metrics = new ServerMetrics();
+            if (config.register_metrics_mbeans) {
+                metrics.registerMBeans(String.valueOf(listeners.get(0).address()));
+            }
+        }
+        bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class);
+        try {
+            for (Listener listener : listeners) {
+                bind(listener);
+            }
+        } catch (RuntimeException e) {
+            //a server listening on only some of its addresses isn't started, release the ones already bound
+            for (Listener listener : listeners) {
+                if (listener.channel() != null) {
+                    listener.channel().close();
+                    listener.channel = null;
+                }
+            }
+            throw e;
+        }
+        channel = listeners.get(0).channel();
+    }
+
+    /**
+     * Accept connections on another address. All listeners share the server's event loops and registrations.
+     * If the server's already started the listener is bound straight away
+     *
+     * @param listener the listener to add
+     * @throws IllegalStateException if the server's started and the listener can't be bound, it isn't added
+     */
+    public HiggsServer addListener(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.add(listener);
+        if (channel != null) {
+            try {
+                bind(listener);
+            } catch (RuntimeException e) {
+                listeners.remove(listener);
+                throw e;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the listeners added to the server, once started this includes the default listener if none were added
+     */
+    public List<Listener> listeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    /**
+     * @throws IllegalStateException if the listener can't be bound
+     */
+    protected void bind(final Listener listener) {
         try {
-            bootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        public void initChannel(SocketChannel ch) throws Exception {
-                            ch.pipeline().addLast(new Transducer(detectSsl, detectGzip, detectors,
-                                    methods));
-                        }
-                    });
+            listener.initSsl();
+            listener.detectionTable = newDetectionTable(listener);
+            ServerBootstrap b = bootstrap.clone();
+            for (Map.Entry<ChannelOption<?>, Object> e : listener.options.entrySet()) {
+                //Listener#option only accepts values of the option's own type
+                @SuppressWarnings("unchecked")
+                ChannelOption<Object> option = (ChannelOption<Object>) e.getKey();
+                b.option(option, e.getValue());
+            }
+            for (Map.Entry<ChannelOption<?>, Object> e : listener.childOptions.entrySet()) {
+                @SuppressWarnings("unchecked")
+                ChannelOption<Object> option = (ChannelOption<Object>) e.getKey();
+                b.childOption(option, e.getValue());
+            }
+            b.childHandler(new ChannelInitializer<SocketChannel>() {
+                public void initChannel(SocketChannel ch) throws Exception {
+                    connections.add(ch);
+                    ChannelPipeline p = ch.pipeline();
+                    SslHandler ssl = listener.newSslHandler();
+                    if (ssl != null) {
+                        p.addLast("ssl", ssl);
+                    }
+                    DetectionTable table = listener.detectionTable;
+                    ProtocolDetectorFactory fixed = table.fixedProtocol();
+                    if (fixed != null && !listener.detectSsl() && !listener.detectGzip()) {
+                        //nothing to detect, go straight to the protocol's pipeline
+                        MessageHandler<?, ?> handler = fixed.newProtocolDetector().setupPipeline(p, p.context(this));
+                        handler.setMethods(methods);
+                    } else {
+                        p.addLast(new Transducer(listener.detectSsl(), listener.detectGzip(), table, methods));
+                    }
+                }
+            });
             // Bind and start to accept incoming connections.
-            channel = bootstrap.bind(address).sync().channel();
-        } catch (Throwable t) {
-            log.warn("Error starting server", t);
+            listener.channel = b.bind(listener.address()).sync().channel();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("Interrupted while starting listener %s", listener), e);
+        } catch (Exception e) {
+            //sync() rethrows the bind's cause as is, including checked ones like BindException
+            throw new IllegalStateException(String.format("Error starting listener %s", listener), e);
+        }
+    }
+
+    /**
+     * Stop the server, draining connections for up to {@link ServerConfig#drain_timeout_ms}
+     *
+     * @see #stop(long, TimeUnit)
+     */
+    public ProgressiveFuture<Void> stop() {
+        return stop(config.drain_timeout_ms, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop accepting connections and drain the open ones. Idle connections are closed straight away, connections
+     * with a request in flight are closed once the response is written and every connection gets a
+     * {@link ServerEvent#DRAINING} event so long lived ones can end themselves. Anything still open when the timeout
+     * expires is closed, then the event loops are shut down.
+     *
+     * @param timeout how long to wait for in-flight requests, 0 or less closes every connection straight away
+     * @return completes once the server has stopped. Its progress is the number of connections closed out of those
+     * open when the drain started
+     */
+    public ProgressiveFuture<Void> stop(final long timeout, final TimeUnit unit) {
+        final ProgressivePromise<Void> promise = new DefaultProgressivePromise<>(GlobalEventExecutor.INSTANCE);
+        draining = true;
+        List<ChannelFuture> unbinding = new ArrayList<>();
+        for (Listener listener : listeners) {
+            if (listener.channel() != null) {
+                unbinding.add(listener.channel().close());
+            }
+        }
+        if (unbinding.isEmpty()) {
+            drain(promise, timeout, unit);
+            return promise;
+        }
+        //never waits for the listeners to close, stop may be called from an event loop
+        final AtomicInteger remaining = new AtomicInteger(unbinding.size());
+        ChannelFutureListener onUnbound = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                if (remaining.decrementAndGet() == 0) {
+                    drain(promise, timeout, unit);
+                }
+            }
+        };
+        for (ChannelFuture future : unbinding) {
+            future.addListener(onUnbound);
+        }
+        return promise;
+    }
+
+    private void drain(final ProgressivePromise<Void> promise, long timeout, TimeUnit unit) {
+        final int total = connections.size();
+        if (timeout <= 0 || total == 0) {
+            connections.close().addListener(new ChannelGroupFutureListener() {
+                @Override
+                public void operationComplete(ChannelGroupFuture future) {
+                    shutdown(promise);
+                }
+            });
+            return;
+        }
+        final AtomicInteger closed = new AtomicInteger();
+        final AtomicBoolean done = new AtomicBoolean();
+        final ScheduledFuture<?> deadline = GlobalEventExecutor.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!connections.isEmpty()) {
+                    log.warn(String.format("%s connections still open after draining, closing them",
+                            connections.size()));
+                    connections.close();
+                }
+            }
+        }, timeout, unit);
+        ChannelFutureListener onClose = new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                promise.tryProgress(Math.min(closed.incrementAndGet(), total), total);
+                //the group removes a channel before this listener runs, it was added first
+                if (connections.isEmpty() && done.compareAndSet(false, true)) {
+                    deadline.cancel(false);
+                    shutdown(promise);
+                }
+            }
+        };
+        for (Channel ch : connections) {
+            ch.closeFuture().addListener(onClose);
+            ch.pipeline().fireUserEventTriggered(ServerEvent.DRAINING);
+            if (ch.attr(BUSY).get() == null) {
+                ch.close();
+            }
         }
     }
 
-    public void stop() {
+    private void shutdown(final ProgressivePromise<Void> promise) {
         bossGroup.shutdownGracefully();
-        workerGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully().addListener(new GenericFutureListener<Future<Object>>() {
+            @Override
+            public void operationComplete(Future<Object> future) {
+                for (ProtocolConfiguration protocol : protocolConfigurations) {
+                    if (!(protocol instanceof Stoppable)) {
+                        continue;
+                    }
+                    try {
+                        ((Stoppable) protocol).stop(HiggsServer.this);
+                    } catch (Throwable t) {
+                        log.warn(String.format("Error stopping protocol %s", protocol), t);
+                    }
+                }
+                promise.trySuccess(null);
+            }
+        });
+        if (metrics != null) {
+            metrics.unregisterMBeans();
+        }
+    }
+
+    /**
+     * @return true once {@link #stop()} has been called, responses should close their connection
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * @return the number of connections currently open across all listeners
+     */
+    public int openConnections() {
+        return connections.size();
+    }
+
+    /**
+     * Called by protocol handlers when a request is received so a drain waits for it to finish
+     *
+     * @param channel the connection the request was received on
+     */
+    public void markBusy(Channel channel) {
+        channel.attr(BUSY).set(Boolean.TRUE);
+    }
+
+    /**
+     * Called by protocol handlers once a response has been written and the connection is waiting for another
+     * request. If the server's draining the connection is closed
+     *
+     * @param channel the connection the response was written to
+     */
+    public void markIdle(Channel channel) {
+        channel.attr(BUSY).remove();
+        if (draining) {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return the server's metrics or null if {@link ServerConfig#enable_metrics} is false
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
     }
 
     /**
-     * @return The Server's channel or null if it's not started
+     * Use the given metrics instead of creating them on start. Must be set before the server is started
+     *
+     * @param metrics the metrics to record to or null to disable metrics
+     */
+    public void setMetrics(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The channel of the Server's first listener or null if it's not started
      */
     public Channel channel() {
         return channel;
     }
 
+    /**
+     * Hand every connection to the given protocol instead of detecting it from the connection's first bytes. If SSL
+     * and GZIP detection are also disabled the protocol's pipeline is set up as soon as a connection is accepted.
+     * Must be set before the server is started
+     *
+     * @param factory the only protocol the server speaks or null to detect protocols
+     */
+    public void setFixedProtocol(ProtocolDetectorFactory factory) {
+        fixedProtocol = factory;
+    }
+
+    protected DetectionTable newDetectionTable(Listener listener) {
+        Queue<ProtocolDetectorFactory> protocols = listener.protocols.isEmpty() ? detectors : listener.protocols;
+        ProtocolDetectorFactory fixed = listener.fixedProtocol();
+        if (fixed == null && config.fixed_protocol) {
+            if (protocols.isEmpty()) {
+                throw new IllegalStateException("fixed_protocol is enabled but no protocol is registered");
+            }
+            fixed = new FixedSortedList<>(protocols).get(0);
+        }
+        return fixed == null ? new DetectionTable(protocols) : DetectionTable.fixed(fixed);
+    }
+
     public void setDetectSsl(boolean detectSsl) {
         this.detectSsl = detectSsl;
     }
@@ -135,6 +454,20 @@ public class HiggsServer {
         registerMethodProcessor(protocolConfiguration.getMethodProcessor());
     }
 
+    /**
+     * Register a protocol which is only detected on the given listener. Its methods are still shared with the
+     * server's other listeners. Must be registered before the listener is bound
+     */
+    public void registerProtocol(ProtocolConfiguration protocolConfiguration, Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        protocolConfigurations.add(protocolConfiguration);
+        protocolConfiguration.initialize(this);
+        listener.addProtocol(protocolConfiguration.getProtocol());
+        registerMethodProcessor(protocolConfiguration.getMethodProcessor());
+    }
+
     /**
      * Registers a new protocol for the server to detect and handle
      *
@@ -142,6 +475,12 @@ public class HiggsServer {
      */
     public void registerProtocolDetectorFactory(ProtocolDetectorFactory factory) {
         detectors.add(factory);
+        for (Listener listener : listeners) {
+            if (listener.channel() != null) {
+                //already started, new connections should see the new protocol
+                listener.detectionTable = newDetectionTable(listener);
+            }
+        }
     }
 
     public void registerMethodProcessor(MethodProcessor processor) {
@@ -0,0 +1,179 @@
+package io.higgs.core;
+
+import io.higgs.core.ssl.SSLConfiguration;
+import io.higgs.core.ssl.SSLContextFactory;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.SslHandler;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * An address a {@link HiggsServer} accepts connections on. A server can bind any number of listeners, all of them
+ * share the server's event loops, registered methods and object factories but each can speak its own set of
+ * protocols, require TLS and set its own socket options e.g. a plain text port, a TLS port and an admin port.
+ */
+public class Listener {
+    protected final SocketAddress address;
+    protected final Queue<ProtocolDetectorFactory> protocols = new ConcurrentLinkedDeque<>();
+    protected final Map<ChannelOption<?>, Object> options = new LinkedHashMap<>();
+    protected final Map<ChannelOption<?>, Object> childOptions = new LinkedHashMap<>();
+    protected boolean detectSsl = true;
+    protected boolean detectGzip = true;
+    protected ProtocolDetectorFactory fixedProtocol;
+    protected SSLConfiguration ssl;
+    protected String[] sslProtocols;
+    protected SSLContext sslContext;
+    protected volatile DetectionTable detectionTable;
+    protected volatile Channel channel;
+
+    public Listener(int port) {
+        this(new InetSocketAddress(port));
+    }
+
+    public Listener(SocketAddress address) {
+        if (address == null) {
+            throw new IllegalArgumentException("Listener address cannot be null");
+        }
+        this.address = address;
+    }
+
+    /**
+     * Only detect the given protocol on this listener. If no protocols are added to a listener it detects every
+     * protocol registered with the server
+     *
+     * @param factory the protocol to add
+     */
+    public Listener addProtocol(ProtocolDetectorFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Protocol cannot be null");
+        }
+        protocols.add(factory);
+        return this;
+    }
+
+    /**
+     * Require TLS on every connection to this listener. The SSL context is created once when the listener is bound
+     * and SSL detection is not done
+     *
+     * @param ssl          the key and trust stores to use or null for no TLS
+     * @param sslProtocols the protocols to enable e.g. TLSv1.2 or null for the JVM's defaults
+     */
+    public Listener setSsl(SSLConfiguration ssl, String... sslProtocols) {
+        this.ssl = ssl;
+        this.sslProtocols = sslProtocols;
+        return this;
+    }
+
+    /**
+     * @see HiggsServer#setFixedProtocol(ProtocolDetectorFactory)
+     */
+    public Listener setFixedProtocol(ProtocolDetectorFactory factory) {
+        fixedProtocol = factory;
+        return this;
+    }
+
+    public Listener setDetectSsl(boolean detectSsl) {
+        this.detectSsl = detectSsl;
+        return this;
+    }
+
+    public Listener setDetectGzip(boolean detectGzip) {
+        this.detectGzip = detectGzip;
+        return this;
+    }
+
+    /**
+     * @param option an option for the listening socket e.g. {@link ChannelOption#SO_BACKLOG}
+     */
+    public <T> Listener option(ChannelOption<T> option, T value) {
+        options.put(option, value);
+        return this;
+    }
+
+    /**
+     * @param option an option for each accepted connection e.g. {@link ChannelOption#TCP_NODELAY}
+     */
+    public <T> Listener childOption(ChannelOption<T> option, T value) {
+        childOptions.put(option, value);
+        return this;
+    }
+
+    public SocketAddress address() {
+        return address;
+    }
+
+    /**
+     * @return the protocols added to this listener, if empty the listener uses the server's protocols
+     */
+    public List<ProtocolDetectorFactory> protocols() {
+        return Collections.unmodifiableList(new ArrayList<>(protocols));
+    }
+
+    /**
+     * @return true if SSL detection is done on this listener, never when TLS is required
+     */
+    public boolean detectSsl() {
+        return detectSsl && ssl == null;
+    }
+
+    public boolean detectGzip() {
+        return detectGzip;
+    }
+
+    public ProtocolDetectorFactory fixedProtocol() {
+        return fixedProtocol;
+    }
+
+    /**
+     * @return the listener's channel or null if it's not bound
+     */
+    public Channel channel() {
+        return channel;
+    }
+
+    /**
+     * Load the key and trust stores once, before connections are accepted
+     *
+     * @throws IllegalStateException if TLS is required and the SSL context can't be created
+     */
+    protected void initSsl() {
+        if (ssl == null || sslContext != null) {
+            return;
+        }
+        sslContext = new SSLContextFactory().getSSLSocket(ssl);
+        if (sslContext == null) {
+            throw new IllegalStateException(String.format("Unable to create SSL context for %s", address));
+        }
+    }
+
+    /**
+     * @return a handler for a new connection if this listener requires TLS, null otherwise
+     */
+    protected SslHandler newSslHandler() {
+        if (sslContext == null) {
+            return null;
+        }
+        SSLEngine engine = sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        if (sslProtocols != null && sslProtocols.length > 0) {
+            engine.setEnabledProtocols(sslProtocols);
+        }
+        return new SslHandler(engine);
+    }
+
+    @Override
+    public String toString() {
+        return "Listener{address=" + address + ", protocols=" + protocols + ", ssl=" + (ssl != null) + '}';
+    }
+}
@@ -1,5 +1,7 @@
 package io.higgs.core;
 
+import io.higgs.core.metrics.Phase;
+import io.higgs.core.metrics.ServerMetrics;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import org.slf4j.Logger;
@@ -19,6 +21,15 @@ public abstract class MessageHandler<C extends ServerConfig, T> extends SimpleCh
     protected final C config;
     protected Queue<InvokableMethod> methods;
     protected Logger log = LoggerFactory.getLogger(getClass());
+    /**
+     * Null if metrics are disabled, in which case no instrumentation is done at all
+     */
+    protected ServerMetrics metrics;
+    /**
+     * How long the last call to {@link #findMethod(String, ChannelHandlerContext, Object, Class)} took,
+     * only set if {@link #metrics} is enabled
+     */
+    protected long routeNanos;
 
     public MessageHandler(C config) {
         this.config = config;
@@ -28,6 +39,18 @@ public abstract class MessageHandler<C extends ServerConfig, T> extends SimpleCh
         this.methods = methods;
     }
 
+    public void setMetrics(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param method the method to get a name for
+     * @return the name the method's metrics are recorded under
+     */
+    protected String routeName(InvokableMethod method) {
+        return method == null ? null : method.rawPath();
+    }
+
     /**
      * Finds a method which matches the given path AND is an instance of the provided method class
      *
@@ -39,11 +62,14 @@ public abstract class MessageHandler<C extends ServerConfig, T> extends SimpleCh
      */
     public <M extends InvokableMethod> M findMethod(String path, ChannelHandlerContext ctx, Object msg,
                                                     Class<M> methodClass) {
+        long start = metrics == null ? 0 : System.nanoTime();
+        M match = null;
         List<InvokableMethod> sortedMethods = new FixedSortedList<>(methods);
         for (InvokableMethod method : sortedMethods) {
             if (method.matches(path, ctx, msg)) {
                 if (methodClass.isAssignableFrom(method.getClass())) {
-                    return (M) method;
+                    match = (M) method;
+                    break;
                 } else {
                     log.debug(String.format("%s matches %s but types are incompatible." +
                                     " Registered method %s and expected method %s",
@@ -51,7 +77,11 @@ public abstract class MessageHandler<C extends ServerConfig, T> extends SimpleCh
                 }
             }
         }
-        return null;
+        if (metrics != null) {
+            routeNanos = System.nanoTime() - start;
+            metrics.route(routeName(match)).record(Phase.ROUTE, routeNanos);
+        }
+        return match;
     }
 
     protected void logDetailedFailMessage(Object[] args, Throwable e, Method method) {
@@ -0,0 +1,16 @@
+package io.higgs.core;
+
+/**
+ * Implemented by {@link ProtocolDetectorFactory}s whose protocol can be recognised from the first bytes of a
+ * connection alone. The {@link Transducer} looks these up in a {@link DetectionTable} instead of creating and
+ * asking every {@link ProtocolDetector} in turn.
+ */
+public interface ProtocolSignature {
+    /**
+     * The protocol's detector must return true for every connection starting with one of these and false for every
+     * other connection.
+     *
+     * @return the 1 or 2 byte sequences a connection using this protocol can start with
+     */
+    byte[][] signatures();
+}
@@ -26,4 +26,12 @@ public class ServerConfig {
     public boolean add_default_injector = true;
     public boolean add_static_resource_filter = true;
     public boolean log_requests = true;
+    //per route counters and latency histograms, when false handlers do no instrumentation at all
+    public boolean enable_metrics;
+    //if metrics are enabled, also expose them through JMX
+    public boolean register_metrics_mbeans = true;
+    //hand every connection to the highest priority registered protocol without looking at its first bytes
+    public boolean fixed_protocol;
+    //how long stop() waits for in-flight requests to finish before closing their connections, 0 doesn't wait
+    public long drain_timeout_ms;
 }
@@ -0,0 +1,13 @@
+package io.higgs.core;
+
+/**
+ * User events a {@link HiggsServer} fires down the pipeline of its open connections
+ */
+public enum ServerEvent {
+    /**
+     * The server has stopped accepting connections and is waiting for in-flight requests to finish. Handlers of long
+     * lived connections e.g. web sockets or event streams should end them so the drain doesn't have to wait for the
+     * deadline
+     */
+    DRAINING
+}
@@ -0,0 +1,14 @@
+package io.higgs.core;
+
+/**
+ * Implemented by a {@link ProtocolConfiguration} which has something to release when the server stops, e.g. a
+ * thread or a file started in {@link ProtocolConfiguration#initialize(HiggsServer)}.
+ */
+public interface Stoppable {
+    /**
+     * Invoked once the server has stopped, after every connection is closed and the event loops have shut down.
+     *
+     * @param server the server this protocol was registered to
+     */
+    void stop(HiggsServer server);
+}
@@ -12,16 +12,15 @@ import io.netty.handler.ssl.SslHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 
 /**
  * Manipulates the current pipeline dynamically to switch protocols or enable
- * SSL or GZIP.
+ * SSL or GZIP. The protocol is picked from a {@link DetectionTable} built once for the server.
  */
 public class Transducer extends ByteToMessageDecoder {
-    private final Queue<ProtocolDetectorFactory> factories;
+    private final DetectionTable protocols;
     private final Queue<InvokableMethod> methods;
     private Logger log = LoggerFactory.getLogger(getClass());
     private boolean detectSsl;
@@ -30,15 +29,20 @@ public class Transducer extends ByteToMessageDecoder {
 
     public Transducer(boolean detectSsl, boolean detectGzip, Queue<ProtocolDetectorFactory> f,
                       Queue<InvokableMethod> methods) {
+        this(detectSsl, detectGzip, new DetectionTable(f), methods);
+    }
+
+    public Transducer(boolean detectSsl, boolean detectGzip, DetectionTable protocols,
+                      Queue<InvokableMethod> methods) {
         this.detectSsl = detectSsl;
         this.detectGzip = detectGzip;
-        factories = f;
+        this.protocols = protocols;
         this.methods = methods;
     }
 
     @Override
     public void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        if (in instanceof EmptyByteBuf) {
+        if (in instanceof EmptyByteBuf || in.readableBytes() < DetectionTable.SIGNATURE_LENGTH) {
             return;
         }
         if (detectSsl) {
@@ -49,6 +53,8 @@ public class Transducer extends ByteToMessageDecoder {
 
             if (SslHandler.isEncrypted(in)) {
                 enableSsl(ctx);
+                //the new transducer gets the decrypted data
+                return;
             }
         }
         if (detectGzip) {
@@ -56,35 +62,39 @@ public class Transducer extends ByteToMessageDecoder {
             final int magic2 = in.getUnsignedByte(in.readerIndex() + 1);
             if (magic1 == 31 && magic2 == 139) {
                 enableGzip(ctx);
+                return;
             }
         }
-        List<ProtocolDetectorFactory> protocols = new FixedSortedList<>(factories);
-        Iterator<ProtocolDetectorFactory> it = protocols.iterator();
-        boolean detectedProtocol = false;
-        while (it.hasNext()) {
-            ProtocolDetectorFactory codec = it.next();
+        ProtocolDetectorFactory factory = protocols.lookup(in);
+        if (factory != null) {
+            //the signature decides, the detector is only needed to set up the pipeline
+            setupPipeline(ctx, factory.newProtocolDetector());
+            return;
+        }
+        for (ProtocolDetectorFactory codec : protocols.fallback()) {
             ProtocolDetector detector = codec.newProtocolDetector();
             if (detector.detected(ctx, in)) {
-                detectedProtocol = true;
-                ChannelPipeline p = ctx.pipeline();
-                MessageHandler<?, ?> handler = detector.setupPipeline(p, ctx);
-                handler.setMethods(methods);
-                p.remove(this);
-                break;
+                setupPipeline(ctx, detector);
+                return;
             }
         }
-        if (!detectedProtocol) {
-            log.warn("Unknown protocol. Discarding data and closing connection");
-            //unknown protocol
-            in.clear();
-            ctx.close();
-        }
+        log.warn("Unknown protocol. Discarding data and closing connection");
+        //unknown protocol
+        in.clear();
+        ctx.close();
+    }
+
+    private void setupPipeline(ChannelHandlerContext ctx, ProtocolDetector detector) {
+        ChannelPipeline p = ctx.pipeline();
+        MessageHandler<?, ?> handler = detector.setupPipeline(p, ctx);
+        handler.setMethods(methods);
+        p.remove(this);
     }
 
     private void enableSsl(ChannelHandlerContext ctx) {
         ChannelPipeline p = ctx.pipeline();
         sslCtx.addSSL(p, false, null);
-        p.addLast("unificationA", new Transducer(false, detectGzip, factories, methods));
+        p.addLast("unificationA", new Transducer(false, detectGzip, protocols, methods));
         p.remove(this);
     }
 
@@ -92,7 +102,7 @@ public class Transducer extends ByteToMessageDecoder {
         ChannelPipeline p = ctx.pipeline();
         p.addLast("gzipdeflater", ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP));
         p.addLast("gzipinflater", ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP));
-        p.addLast("unificationB", new Transducer(detectSsl, false, factories, methods));
+        p.addLast("unificationB", new Transducer(detectSsl, false, protocols, methods));
         p.remove(this);
     }
 
@@ -0,0 +1,33 @@
+package io.higgs.core.metrics;
+
+/**
+ * The stages of handling a request which are timed individually
+ */
+public enum Phase {
+    /**
+     * Reading and decoding the request, including any entity, up until the method is invoked
+     */
+    DECODE,
+    /**
+     * Finding the method which matches the request
+     */
+    ROUTE,
+    /**
+     * Invoking the matched method
+     */
+    INVOKE,
+    /**
+     * Converting the method's return value into a response
+     */
+    TRANSFORM,
+    /**
+     * Writing the response, until the write completes
+     */
+    WRITE;
+
+    private final String label = name().toLowerCase();
+
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,97 @@
+package io.higgs.core.metrics;
+
+import org.cliffc.high_scale_lib.ConcurrentAutoTable;
+
+/**
+ * Counters and per {@link Phase} latency histograms for a single route
+ */
+public class RouteMetrics implements RouteMetricsMXBean {
+    private static final Phase[] PHASES = Phase.values();
+    private final String route;
+    private final ConcurrentAutoTable requests = new ConcurrentAutoTable();
+    private final ConcurrentAutoTable errors = new ConcurrentAutoTable();
+    private final LatencyHistogram[] latencies = new LatencyHistogram[PHASES.length];
+
+    public RouteMetrics(String route) {
+        this.route = route;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public void request() {
+        requests.increment();
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public void record(Phase phase, long nanos) {
+        latencies[phase.ordinal()].recordNanos(nanos);
+    }
+
+    public LatencyHistogram latency(Phase phase) {
+        return latencies[phase.ordinal()];
+    }
+
+    @Override
+    public String getRoute() {
+        return route;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public String[] getPhases() {
+        String[] names = new String[PHASES.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = PHASES[i].label();
+        }
+        return names;
+    }
+
+    @Override
+    public double[] getMeanMicros() {
+        double[] v = new double[latencies.length];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = latencies[i].mean();
+        }
+        return v;
+    }
+
+    @Override
+    public long[] getP50Micros() {
+        return percentiles(50);
+    }
+
+    @Override
+    public long[] getP99Micros() {
+        return percentiles(99);
+    }
+
+    @Override
+    public long[] getMaxMicros() {
+        long[] v = new long[latencies.length];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = latencies[i].max();
+        }
+        return v;
+    }
+
+    private long[] percentiles(double p) {
+        long[] v = new long[latencies.length];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = latencies[i].percentile(p);
+        }
+        return v;
+    }
+}
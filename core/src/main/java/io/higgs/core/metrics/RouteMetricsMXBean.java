@@ -0,0 +1,22 @@
+package io.higgs.core.metrics;
+
+/**
+ * JMX view of a single route's metrics. Latency arrays are indexed in the same order as {@link #getPhases()}
+ */
+public interface RouteMetricsMXBean {
+    String getRoute();
+
+    long getRequests();
+
+    long getErrors();
+
+    String[] getPhases();
+
+    double[] getMeanMicros();
+
+    long[] getP50Micros();
+
+    long[] getP99Micros();
+
+    long[] getMaxMicros();
+}
@@ -0,0 +1,252 @@
+package io.higgs.core.metrics;
+
+import org.cliffc.high_scale_lib.ConcurrentAutoTable;
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Request level instrumentation for a {@link io.higgs.core.HiggsServer}.
+ * Everything is updated lock-free from the event loops. When metrics are disabled the server's metrics are null
+ * and handlers skip instrumentation entirely, including the calls to {@link System#nanoTime()}.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+    /**
+     * The route name requests which don't match any method are recorded under
+     */
+    public static final String UNMATCHED = "unmatched";
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private final NonBlockingHashMap<String, RouteMetrics> routes = new NonBlockingHashMap<>();
+    private final ConcurrentAutoTable requests = new ConcurrentAutoTable();
+    private final ConcurrentAutoTable inFlight = new ConcurrentAutoTable();
+    private final ConcurrentAutoTable bytesIn = new ConcurrentAutoTable();
+    private final ConcurrentAutoTable bytesOut = new ConcurrentAutoTable();
+    //index is status code
+    private final AtomicLongArray statuses = new AtomicLongArray(600);
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private String mbeanName;
+
+    /**
+     * Get the metrics for a route, creating them if necessary
+     *
+     * @param name the route's name, usually {@link io.higgs.core.InvokableMethod#rawPath()}.
+     *             If null the {@link #UNMATCHED} route is returned
+     * @return the route's metrics
+     */
+    public RouteMetrics route(String name) {
+        if (name == null) {
+            name = UNMATCHED;
+        }
+        RouteMetrics m = routes.get(name);
+        if (m == null) {
+            m = new RouteMetrics(name);
+            RouteMetrics existing = routes.putIfAbsent(name, m);
+            if (existing != null) {
+                m = existing;
+            } else if (mbeanName != null) {
+                registerRoute(m);
+            }
+        }
+        return m;
+    }
+
+    public void requestStarted() {
+        requests.increment();
+        inFlight.increment();
+    }
+
+    public void requestFinished() {
+        inFlight.decrement();
+    }
+
+    public void bytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    public void bytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * Record a response status, anything 400 or above is counted as an error
+     *
+     * @param code the HTTP status code
+     */
+    public void status(int code) {
+        if (code >= 400 && code < statuses.length()) {
+            statuses.incrementAndGet(code);
+        }
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    @Override
+    public Map<Integer, Long> getErrorsByStatus() {
+        Map<Integer, Long> errors = new TreeMap<>();
+        for (int i = 400; i < statuses.length(); i++) {
+            long v = statuses.get(i);
+            if (v > 0) {
+                errors.put(i, v);
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public String[] getRoutes() {
+        return routes.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Register these metrics, and every route's metrics with the platform MBean server
+     *
+     * @param name a name which distinguishes this server from others in the same JVM
+     */
+    public void registerMBeans(String name) {
+        mbeanName = ObjectName.quote(name);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName("io.higgs:type=ServerMetrics,name=" + mbeanName));
+        } catch (JMException e) {
+            log.warn(String.format("Unable to register metrics MBean for %s", name), e);
+        }
+        for (RouteMetrics m : routes.values()) {
+            registerRoute(m);
+        }
+    }
+
+    private void registerRoute(RouteMetrics m) {
+        try {
+            ObjectName name = new ObjectName("io.higgs:type=RouteMetrics,name=" + mbeanName
+                    + ",route=" + ObjectName.quote(m.getRoute()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(m, name);
+        } catch (JMException e) {
+            log.warn(String.format("Unable to register metrics MBean for route %s", m.getRoute()), e);
+        }
+    }
+
+    /**
+     * Remove any MBeans registered by {@link #registerMBeans(String)}
+     */
+    public void unregisterMBeans() {
+        if (mbeanName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (ObjectName n : server.queryNames(new ObjectName("io.higgs:name=" + mbeanName + ",*"), null)) {
+                server.unregisterMBean(n);
+            }
+        } catch (JMException e) {
+            log.warn("Unable to unregister metrics MBeans", e);
+        }
+        mbeanName = null;
+    }
+
+    /**
+     * Write all metrics in the Prometheus text exposition format (version 0.0.4)
+     *
+     * @param out the builder to append to
+     * @return out
+     */
+    public StringBuilder writePrometheus(StringBuilder out) {
+        gauge(out, "higgs_requests_in_flight", "Requests currently being handled", getInFlight());
+        counter(out, "higgs_requests_total", "Requests received", getRequests());
+        counter(out, "higgs_received_bytes_total", "Request entity bytes received", getBytesIn());
+        counter(out, "higgs_sent_bytes_total", "Response bytes sent", getBytesOut());
+        out.append("# HELP higgs_errors_total Responses sent with a status of 400 or above\n")
+                .append("# TYPE higgs_errors_total counter\n");
+        for (Map.Entry<Integer, Long> e : getErrorsByStatus().entrySet()) {
+            out.append("higgs_errors_total{status=\"").append(e.getKey()).append("\"} ")
+                    .append(e.getValue()).append('\n');
+        }
+        out.append("# HELP higgs_route_requests_total Requests handled per route\n")
+                .append("# TYPE higgs_route_requests_total counter\n");
+        for (RouteMetrics m : routes.values()) {
+            out.append("higgs_route_requests_total{route=\"");
+            escape(out, m.getRoute()).append("\"} ").append(m.getRequests()).append('\n');
+        }
+        out.append("# HELP higgs_route_errors_total Error responses per route\n")
+                .append("# TYPE higgs_route_errors_total counter\n");
+        for (RouteMetrics m : routes.values()) {
+            out.append("higgs_route_errors_total{route=\"");
+            escape(out, m.getRoute()).append("\"} ").append(m.getErrors()).append('\n');
+        }
+        out.append("# HELP higgs_route_phase_seconds Time spent in each phase of handling a request\n")
+                .append("# TYPE higgs_route_phase_seconds summary\n");
+        for (RouteMetrics m : routes.values()) {
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram h = m.latency(phase);
+                if (h.count() == 0) {
+                    continue;
+                }
+                for (double q : QUANTILES) {
+                    labels(out.append("higgs_route_phase_seconds"), m, phase).append(",quantile=\"").append(q)
+                            .append("\"} ").append(h.percentile(q * 100) / 1e6).append('\n');
+                }
+                labels(out.append("higgs_route_phase_seconds_sum"), m, phase).append("} ")
+                        .append(h.sum() / 1e6).append('\n');
+                labels(out.append("higgs_route_phase_seconds_count"), m, phase).append("} ")
+                        .append(h.count()).append('\n');
+            }
+        }
+        return out;
+    }
+
+    private StringBuilder labels(StringBuilder out, RouteMetrics m, Phase phase) {
+        out.append("{route=\"");
+        return escape(out, m.getRoute()).append("\",phase=\"").append(phase.label()).append('"');
+    }
+
+    private void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" counter\n")
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    private void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" gauge\n")
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    private StringBuilder escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+        return out;
+    }
+}
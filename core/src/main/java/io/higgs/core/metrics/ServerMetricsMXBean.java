@@ -0,0 +1,23 @@
+package io.higgs.core.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of server wide metrics
+ */
+public interface ServerMetricsMXBean {
+    long getRequests();
+
+    long getInFlight();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    /**
+     * @return the number of responses sent for each status code of 400 and above
+     */
+    Map<Integer, Long> getErrorsByStatus();
+
+    String[] getRoutes();
+}
@@ -0,0 +1,160 @@
+package io.higgs.core.ratelimit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket per key e.g. per client address, which allows a number of requests per period with bursts of up to
+ * {@code burst} requests at once.
+ * <p/>
+ * Each bucket is a single {@link AtomicLong} holding the time at which it will next be full (the generic cell rate
+ * algorithm), so taking a token is one compare and set and never blocks. Buckets are spread over several maps by the
+ * key's hash so event loops limiting different clients don't contend, and a full bucket is the same as no bucket so
+ * they are swept from a map when it reaches its share of {@code maxKeys}.
+ * <p/>
+ * If every key in a map has made requests recently, a new key evicts the one whose bucket will be full soonest rather
+ * than being refused, so a flood of distinct keys can't lock new clients out. The price is that an evicted key starts
+ * again with a full bucket, {@link #evicted()} counts how often that happens so {@code maxKeys} can be raised.
+ */
+public final class RateLimiter {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private final ConcurrentHashMap<Object, AtomicLong>[] stripes;
+    private final int mask;
+    private final int maxKeysPerStripe;
+    private final int requests;
+    private final AtomicLong evicted = new AtomicLong();
+    /**
+     * Nanoseconds it takes for one token to be added back
+     */
+    private final long interval;
+    /**
+     * How far ahead of now a bucket's full time can be and still have a token to give
+     */
+    private final long tolerance;
+
+    /**
+     * @param requests how many requests a key can make each period
+     * @param period   the period's length
+     * @param unit     the period's unit
+     * @param burst    how many requests a key can make at once, 0 or less for the same as {@code requests}
+     * @param maxKeys  the most keys tracked at once, when that many keys have made requests recently new keys evict
+     *                 the key whose bucket will be full soonest
+     */
+    public RateLimiter(int requests, long period, TimeUnit unit, int burst, int maxKeys) {
+        if (requests <= 0 || period <= 0) {
+            throw new IllegalArgumentException("A rate limit must allow at least 1 request in a period of time");
+        }
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("A rate limiter must track at least 1 key");
+        }
+        this.requests = requests;
+        interval = Math.max(1, unit.toNanos(period) / requests);
+        tolerance = interval * ((burst <= 0 ? requests : burst) - 1);
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4 - 1)) << 1;
+        n = Math.min(n, Integer.highestOneBit(maxKeys));
+        @SuppressWarnings("unchecked")
+        ConcurrentHashMap<Object, AtomicLong>[] maps = new ConcurrentHashMap[n];
+        for (int i = 0; i < n; i++) {
+            maps[i] = new ConcurrentHashMap<>();
+        }
+        stripes = maps;
+        mask = n - 1;
+        maxKeysPerStripe = Math.max(1, maxKeys / n);
+    }
+
+    /**
+     * @param key identifies who is making the request, e.g. an address
+     * @return true if the key had a token left, false if the request should be refused
+     */
+    public boolean tryAcquire(Object key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    boolean tryAcquire(Object key, long now) {
+        if (key == null) {
+            throw new IllegalArgumentException("Rate limit key cannot be null");
+        }
+        ConcurrentHashMap<Object, AtomicLong> stripe = stripes[spread(key.hashCode()) & mask];
+        AtomicLong bucket = stripe.get(key);
+        if (bucket == null) {
+            if (stripe.size() >= maxKeysPerStripe) {
+                makeRoom(stripe, now);
+            }
+            bucket = new AtomicLong(EMPTY);
+            AtomicLong existing = stripe.putIfAbsent(key, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+        while (true) {
+            long full = bucket.get();
+            long start = full == EMPTY || full - now < 0 ? now : full;
+            if (start - now > tolerance) {
+                return false;
+            }
+            if (bucket.compareAndSet(full, start + interval)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Remove the buckets which have filled up again, they're indistinguishable from new ones. If none have, evict the
+     * one which will be full soonest
+     */
+    private void makeRoom(ConcurrentHashMap<Object, AtomicLong> stripe, long now) {
+        Map.Entry<Object, AtomicLong> soonest = null;
+        long soonestFull = 0;
+        Iterator<Map.Entry<Object, AtomicLong>> it = stripe.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Object, AtomicLong> e = it.next();
+            long full = e.getValue().get();
+            if (full == EMPTY || full - now <= 0) {
+                it.remove();
+            } else if (soonest == null || full - soonestFull < 0) {
+                soonest = e;
+                soonestFull = full;
+            }
+        }
+        if (stripe.size() >= maxKeysPerStripe && soonest != null
+                && stripe.remove(soonest.getKey(), soonest.getValue())) {
+            evicted.incrementAndGet();
+        }
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the number of keys with a bucket that isn't full
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<Object, AtomicLong> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return how many keys have been evicted before their buckets were full again, to make room for new keys
+     */
+    public long evicted() {
+        return evicted.get();
+    }
+
+    public int requests() {
+        return requests;
+    }
+
+    /**
+     * @return how many seconds, rounded up, until a refused key gets another token e.g. for a Retry-After header
+     */
+    public long retryAfterSeconds() {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(interval + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+}
@@ -0,0 +1,120 @@
+package io.higgs.core.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reads and writes a single field through {@link MethodHandle}s resolved once, rather than going through
+ * {@link Field#get(Object)} and {@link Field#set(Object, Object)} and their access checks on every call.
+ * Instances are obtained from {@link FieldAccessors} which caches them per class.
+ */
+public final class FieldAccessor {
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+    private final Field field;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    FieldAccessor(Field field) throws IllegalAccessException {
+        this.field = field;
+        field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+        MethodHandle get = lookup.unreflectGetter(field);
+        if (isStatic) {
+            //accept and ignore an instance so static and instance fields are used the same way
+            get = MethodHandles.dropArguments(get, 0, Object.class);
+        }
+        getter = get.asType(GETTER);
+        MethodHandle set = null;
+        //static final fields can't be written even after setAccessible
+        if (!(isStatic && isFinal())) {
+            set = lookup.unreflectSetter(field);
+            if (isStatic) {
+                set = MethodHandles.dropArguments(set, 0, Object.class);
+            }
+            set = set.asType(SETTER);
+        }
+        setter = set;
+    }
+
+    /**
+     * @param instance the object to read from, ignored for static fields
+     * @return the field's value, primitives are boxed
+     */
+    public Object get(Object instance) {
+        try {
+            return (Object) getter.invokeExact(instance);
+        } catch (ClassCastException | NullPointerException e) {
+            throw new IllegalArgumentException(String.format("Can't read %s from %s", name(), instance), e);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * @param instance the object to write to, ignored for static fields
+     * @param value    the new value, unboxed if the field is a primitive
+     * @throws IllegalArgumentException if the value isn't of the field's type or the field can't be written
+     */
+    public void set(Object instance, Object value) {
+        if (setter == null) {
+            throw new IllegalArgumentException(String.format("%s is static and final", name()));
+        }
+        try {
+            setter.invokeExact(instance, value);
+        } catch (ClassCastException e) {
+            //the handle only unboxes the exact wrapper type, reflection also allows widening e.g. Integer to long
+            try {
+                field.set(instance, value);
+            } catch (IllegalAccessException iae) {
+                throw new IllegalArgumentException(iae);
+            }
+        } catch (NullPointerException e) {
+            throw new IllegalArgumentException(String.format("Can't set %s of type %s to %s", name(),
+                    field.getType().getName(), value), e);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public String name() {
+        return field.getName();
+    }
+
+    public Class<?> type() {
+        return field.getType();
+    }
+
+    public Class<?> declaringClass() {
+        return field.getDeclaringClass();
+    }
+
+    public boolean isFinal() {
+        return Modifier.isFinal(field.getModifiers());
+    }
+
+    public boolean isStatic() {
+        return Modifier.isStatic(field.getModifiers());
+    }
+
+    /**
+     * @return the underlying field, e.g. to check its annotations
+     */
+    public Field field() {
+        return field;
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,79 @@
+package io.higgs.core.reflect;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link FieldAccessor}s for every field of a class, including inherited fields, worked out once per class and
+ * cached for the life of the class. Used wherever objects are turned into name/value pairs or populated from them,
+ * e.g. template models, Boson POLOs and field injection.
+ */
+public final class FieldAccessors {
+    private static final ClassValue<FieldAccessors> CACHE = new ClassValue<FieldAccessors>() {
+        @Override
+        protected FieldAccessors computeValue(Class<?> type) {
+            return new FieldAccessors(type);
+        }
+    };
+    private final FieldAccessor[] accessors;
+    private final Map<String, FieldAccessor> byName;
+
+    private FieldAccessors(Class<?> type) {
+        List<FieldAccessor> list = new ArrayList<>();
+        Map<String, FieldAccessor> names = new HashMap<>();
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            hierarchy.add(c);
+        }
+        //super class fields first, a sub class field hides any inherited field with the same name
+        Collections.reverse(hierarchy);
+        for (Class<?> c : hierarchy) {
+            for (Field field : c.getDeclaredFields()) {
+                FieldAccessor accessor;
+                try {
+                    accessor = new FieldAccessor(field);
+                } catch (IllegalAccessException | SecurityException e) {
+                    continue;
+                }
+                list.add(accessor);
+                names.put(accessor.name(), accessor);
+            }
+        }
+        accessors = list.toArray(new FieldAccessor[list.size()]);
+        byName = Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * @param type the class to get accessors for
+     * @return the cached accessors for the class
+     */
+    public static FieldAccessors of(Class<?> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+        return CACHE.get(type);
+    }
+
+    /**
+     * @return every field's accessor, inherited fields first. The array is shared and must not be modified
+     */
+    public FieldAccessor[] all() {
+        return accessors;
+    }
+
+    /**
+     * @param name the field's name
+     * @return the accessor for the field with the given name or null if there isn't one
+     */
+    public FieldAccessor get(String name) {
+        return byName.get(name);
+    }
+
+    public int size() {
+        return accessors.length;
+    }
+}
@@ -1,13 +1,11 @@
 package io.higgs.core.reflect.dependency;
 
+import io.higgs.core.reflect.FieldAccessor;
+import io.higgs.core.reflect.FieldAccessors;
 import io.higgs.core.reflect.ReflectionUtil;
 import org.cliffc.high_scale_lib.NonBlockingHashMap;
 import org.cliffc.high_scale_lib.NonBlockingHashSet;
 
-import java.lang.reflect.Field;
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * A registry for {@link DependencyProvider}s that can be used to inject objects into instances and parameters
  *
@@ -177,22 +175,12 @@ public class Injector {
         if (instance == null) {
             return;
         }
-        Set<Field> fields = ReflectionUtil.getAllFields(new HashSet<Field>(), instance.getClass());
-        for (Field field : fields) {
-            try {
-                field.setAccessible(true);
-            } catch (SecurityException se) {
-                return;
-            }
-            try {
-                //only null fields are injected
-                if (field.get(instance) != null) {
-                    continue;
-                }
-            } catch (IllegalAccessException e) {
-                return;
+        for (FieldAccessor field : FieldAccessors.of(instance.getClass()).all()) {
+            //only null fields are injected
+            if (field.get(instance) != null) {
+                continue;
             }
-            Class<?> fieldType = field.getType();
+            Class<?> fieldType = field.type();
             Object param;
             //try to inject from local dependencies
             if (local.has(fieldType) && (param = local.get(fieldType)) != null) {
@@ -211,7 +199,7 @@ public class Injector {
         }
     }
 
-    private static boolean setField(Object instance, Field field, Object param) {
+    private static boolean setField(Object instance, FieldAccessor field, Object param) {
         try {
             field.set(instance, param);
             return true;
@@ -16,7 +16,11 @@ public class SSLConfiguration {
     private String securityProviderClass = "com.sun.net.ssl.internal.www.protocol";
     private String securityProtocol = "TLS";
 
-    protected SSLConfiguration() {
+    /**
+     * Use {@link SSLConfigFactory#sslConfiguration} for the JVM wide settings, new instances are for
+     * {@link io.higgs.core.Listener}s with their own key and trust stores
+     */
+    public SSLConfiguration() {
     }
 
     public String getKeyStorePath() {
@@ -0,0 +1,51 @@
+package io.higgs.core;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class HiggsServerTest {
+    @Test(timeout = 60000)
+    public void testStartFailsWhenAListenerCantBind() throws Exception {
+        try (ServerSocket taken = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"))) {
+            HiggsServer server = new HiggsServer();
+            Listener free = new Listener(new InetSocketAddress("127.0.0.1", 0));
+            server.addListener(free);
+            server.addListener(new Listener(taken.getLocalSocketAddress()));
+            try {
+                server.start();
+                fail("Started with an address in use");
+            } catch (IllegalStateException expected) {
+                assertNotNull(expected.getCause());
+            }
+            //the listener bound before the failure was released and the server wasn't started
+            assertNull(free.channel());
+            assertNull(server.channel());
+            //the event loops' quiet period makes how long this takes vary, the test's timeout is the only limit
+            server.stop().syncUninterruptibly();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testAddingAListenerWhichCantBind() throws Exception {
+        try (ServerSocket taken = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"))) {
+            HiggsServer server = new HiggsServer();
+            server.start(new InetSocketAddress("127.0.0.1", 0));
+            try {
+                server.addListener(new Listener(taken.getLocalSocketAddress()));
+                fail("Added a listener with an address in use");
+            } catch (IllegalStateException expected) {
+                assertNotNull(expected.getCause());
+            }
+            assertEquals(1, server.listeners().size());
+            server.stop().syncUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.higgs.core.ratelimit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+    private static final long START = TimeUnit.HOURS.toNanos(1);
+    private static final long TOKEN = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void testBurst() {
+        //10 a second, a token every 100ms, 5 at once
+        RateLimiter limiter = new RateLimiter(10, 1, TimeUnit.SECONDS, 5, 100);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("a", START));
+        }
+        assertFalse(limiter.tryAcquire("a", START));
+        assertFalse(limiter.tryAcquire("a", START + TOKEN - 1));
+    }
+
+    @Test
+    public void testBurstDefaultsToRequests() {
+        RateLimiter limiter = new RateLimiter(3, 1, TimeUnit.SECONDS, 0, 100);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("a", START));
+        }
+        assertFalse(limiter.tryAcquire("a", START));
+    }
+
+    @Test
+    public void testRefill() {
+        RateLimiter limiter = new RateLimiter(10, 1, TimeUnit.SECONDS, 5, 100);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("a", START));
+        }
+        //one token back after each interval
+        assertTrue(limiter.tryAcquire("a", START + TOKEN));
+        assertFalse(limiter.tryAcquire("a", START + TOKEN));
+        assertTrue(limiter.tryAcquire("a", START + 2 * TOKEN));
+        assertFalse(limiter.tryAcquire("a", START + 2 * TOKEN));
+        //never more than the burst however long the key was idle
+        long later = START + TimeUnit.MINUTES.toNanos(1);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("a", later));
+        }
+        assertFalse(limiter.tryAcquire("a", later));
+    }
+
+    @Test
+    public void testKeysHaveTheirOwnBuckets() {
+        RateLimiter limiter = new RateLimiter(1, 1, TimeUnit.SECONDS, 1, 100);
+        assertTrue(limiter.tryAcquire("a", START));
+        assertFalse(limiter.tryAcquire("a", START));
+        assertTrue(limiter.tryAcquire("b", START));
+        assertFalse(limiter.tryAcquire("b", START));
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    public void testFullBucketsMakeRoomForNewKeys() {
+        RateLimiter limiter = new RateLimiter(1, 1, TimeUnit.SECONDS, 1, 1);
+        assertTrue(limiter.tryAcquire("a", START));
+        //a's bucket is full again so it's swept to make room
+        assertTrue(limiter.tryAcquire("b", START + TimeUnit.SECONDS.toNanos(1)));
+        assertEquals(1, limiter.size());
+        assertEquals(0, limiter.evicted());
+    }
+
+    @Test
+    public void testNewKeysEvictWhenFull() {
+        RateLimiter limiter = new RateLimiter(1, 1, TimeUnit.SECONDS, 1, 1);
+        assertTrue(limiter.tryAcquire("a", START));
+        //a's bucket isn't full yet but b isn't locked out
+        assertTrue(limiter.tryAcquire("b", START + TOKEN));
+        assertEquals(1, limiter.evicted());
+        assertEquals(1, limiter.size());
+        assertFalse(limiter.tryAcquire("b", START + TOKEN));
+        //the trade-off, an evicted key starts again with a full bucket
+        assertTrue(limiter.tryAcquire("a", START + TOKEN));
+        assertEquals(2, limiter.evicted());
+    }
+
+    @Test
+    public void testRetryAfterSeconds() {
+        assertEquals(1, new RateLimiter(10, 1, TimeUnit.SECONDS, 5, 100).retryAfterSeconds());
+        assertEquals(60, new RateLimiter(1, 1, TimeUnit.MINUTES, 1, 100).retryAfterSeconds());
+        assertEquals(2, new RateLimiter(2, 3, TimeUnit.SECONDS, 1, 100).retryAfterSeconds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullKey() {
+        new RateLimiter(1, 1, TimeUnit.SECONDS, 1, 1).tryAcquire(null, START);
+    }
+}
@@ -65,8 +65,13 @@ public class HttpRequest extends DefaultHttpRequest {
     protected ByteBuf content = Unpooled.buffer(0);
     protected HttpCookie sessionCookie;
     protected List<MediaType> contentType;
+    //the last produces list negotiated against this request's accepted types and the result
+    protected List<MediaType> negotiatedFor;
+    protected MediaType negotiated;
     protected Session session;
     protected Subject subject;
+    //set until the subject and session are created on first use
+    protected ChannelHandlerContext pendingSession;
     protected final HttpProtocolConfiguration config;
 
     public HttpRequest(FullHttpRequest msg, HttpProtocolConfiguration config) {
@@ -96,9 +101,9 @@ public class HttpRequest extends DefaultHttpRequest {
      */
     public void init(ChannelHandlerContext ctx) {
         String contentTypeStr = headers().get(HttpHeaders.Names.CONTENT_TYPE);
-        this.contentType = MediaType.valueOf(contentTypeStr);
+        contentType = MediaType.parse(contentTypeStr);
         String accept = headers().get(HttpHeaders.Names.ACCEPT);
-        acceptedMediaTypes = MediaType.valueOf(accept);
+        acceptedMediaTypes = MediaType.parse(accept);
         String cookiesStr = headers().get(HttpHeaders.Names.COOKIE);
         if (cookiesStr != null) {
             Set<Cookie> cookie = CookieDecoder.decode(cookiesStr);
@@ -109,11 +114,13 @@ public class HttpRequest extends DefaultHttpRequest {
         QueryStringDecoder decoderQuery = new QueryStringDecoder(getUri());
         queryParams.putAll(decoderQuery.parameters());
         if (config.isEnableSessions()) {
-            initSession(ctx);
+            //the subject and session are only looked up or started if something asks for them
+            pendingSession = ctx;
         }
     }
 
     public void initSession(ChannelHandlerContext ctx) {
+        pendingSession = null;
         HttpCookie sc = getCookie(SID);
         if (sc == null) {
             Attribute<String> sessAttr = ctx.channel().attr(sessionAttr);
@@ -191,6 +198,21 @@ public class HttpRequest extends DefaultHttpRequest {
         return acceptedMediaTypes;
     }
 
+    /**
+     * Pick the type the client most prefers from those a method produces, see
+     * {@link MediaType#negotiate(List, List)}. The result is kept so asking again for the same method is free.
+     *
+     * @param produces the types a method produces
+     * @return the best type or null if the client accepts none of them
+     */
+    public MediaType negotiate(List<MediaType> produces) {
+        if (produces != negotiatedFor) {
+            negotiated = MediaType.negotiate(produces, acceptedMediaTypes);
+            negotiatedFor = produces;
+        }
+        return negotiated;
+    }
+
     public boolean isGet() {
         return HttpMethod.GET.name().equalsIgnoreCase(getMethod().name());
     }
@@ -243,22 +265,63 @@ public class HttpRequest extends DefaultHttpRequest {
         cookies.put(cookie.getName(), cookie);
     }
 
+    /**
+     * @return true if this request started a new session. Doesn't create the session, false until something has
+     * used it
+     */
     public boolean isNewSession() {
         return newSession;
     }
 
+    /**
+     * @return the session's ID, creating the subject and session first if they haven't been yet, see
+     * {@link #getSubject()}
+     */
     public String getSessionId() {
+        if (pendingSession != null) {
+            initSession(pendingSession);
+        }
         return sessionId;
     }
 
+    /**
+     * @return the cookie which sets the session ID if the session is new or the client didn't send one, creating
+     * the subject and session first if they haven't been yet, see {@link #getSubject()}
+     */
     public HttpCookie getSessionCookie() {
+        if (pendingSession != null) {
+            initSession(pendingSession);
+        }
         return sessionCookie;
     }
 
+    /**
+     * Get the subject for this request. If sessions are enabled the subject and its session are created the first
+     * time this is called, so requests which never use them don't start a session or get a session cookie.
+     *
+     * @return the subject or null if sessions aren't enabled
+     */
     public Subject getSubject() {
+        if (pendingSession != null) {
+            initSession(pendingSession);
+        }
         return subject;
     }
 
+    /**
+     * @return true if this request has or can create a subject, i.e. sessions are enabled
+     */
+    public boolean isSessionEnabled() {
+        return subject != null || pendingSession != null;
+    }
+
+    /**
+     * @return true if {@link #getSubject()} has created the subject and its session
+     */
+    public boolean isSubjectCreated() {
+        return subject != null;
+    }
+
     public void addFormField(final String name, final Object value) {
         form.put(name, value);
     }
@@ -98,6 +98,35 @@ public class HttpResponse extends DefaultFullHttpResponse {
         return content;
     }
 
+    //reference counting follows the content actually written, not the empty buffer given to the super class
+
+    @Override
+    public int refCnt() {
+        return content.refCnt();
+    }
+
+    @Override
+    public FullHttpResponse retain() {
+        content.retain();
+        return this;
+    }
+
+    @Override
+    public FullHttpResponse retain(int increment) {
+        content.retain(increment);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return content.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return content.release(decrement);
+    }
+
     @Override
     public FullHttpResponse setProtocolVersion(HttpVersion version) {
         this.version = version;
@@ -141,7 +170,8 @@ public class HttpResponse extends DefaultFullHttpResponse {
     public void finalizeCustomHeaders(HttpRequest request) {
         if (newCookies.size() > 0 || request.isNewSession()) {
             HashMap<String, HttpCookie> cookies = new HashMap<>();
-            HttpCookie cookie = request.getSessionCookie();
+            //a session nothing used isn't started just to send its cookie
+            HttpCookie cookie = request.isSubjectCreated() ? request.getSessionCookie() : null;
             //if it's a new session or the session cookie isn't set on the request then tell the client to set it
             if (cookie != null && (request.isNewSession() || request.getCookie(HttpRequest.SID) == null)) {
                 cookies.put(cookie.getName(), cookie);
@@ -0,0 +1,70 @@
+package io.higgs.http.server;
+
+import io.higgs.core.ObjectFactory;
+import io.higgs.core.metrics.ServerMetrics;
+import io.higgs.core.reflect.dependency.DependencyProvider;
+import io.higgs.http.server.protocol.HttpMethod;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.CharsetUtil;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Queue;
+
+/**
+ * Serves the server's {@link ServerMetrics} in the Prometheus text format.
+ * Like the {@link StaticFileMethod} this isn't registered, the {@link io.higgs.http.server.protocol.HttpHandler}
+ * checks it when metrics are enabled and {@link io.higgs.http.server.config.HttpConfig#metrics_path} is set.
+ */
+public class MetricsMethod extends HttpMethod {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final Method METHOD;
+    private final ServerMetrics metrics;
+    private final String metricsPath;
+
+    static {
+        try {
+            METHOD = MetricsMethod.class.getMethod("metrics");
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Unable to set up metrics method", e);
+        }
+    }
+
+    public MetricsMethod(Queue<ObjectFactory> factories, ServerMetrics metrics, String metricsPath) {
+        super(factories, MetricsMethod.class, METHOD);
+        this.metrics = metrics;
+        this.metricsPath = metricsPath;
+        addVerb(VERB.GET);
+    }
+
+    public HttpResponse metrics() {
+        byte[] data = metrics.writePrometheus(new StringBuilder(4096)).toString().getBytes(CharsetUtil.UTF_8);
+        HttpResponse res = new HttpResponse(Unpooled.wrappedBuffer(data));
+        res.headers().set(HttpHeaders.Names.CONTENT_TYPE, CONTENT_TYPE);
+        return res;
+    }
+
+    @Override
+    public boolean matches(String requestPath, ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof HttpRequest) || !matchesVerb(((HttpRequest) msg).getMethod().name())) {
+            return false;
+        }
+        int qIndex = requestPath.indexOf('?');
+        int length = qIndex == -1 ? requestPath.length() : qIndex;
+        return length == metricsPath.length() && requestPath.startsWith(metricsPath);
+    }
+
+    @Override
+    public String rawPath() {
+        return metricsPath;
+    }
+
+    @Override
+    public Object invoke(ChannelHandlerContext ctx, String path, Object msg, Object[] params,
+                         DependencyProvider provider)
+            throws InvocationTargetException, IllegalAccessException, InstantiationException {
+        return classMethod.invoke(this);
+    }
+}
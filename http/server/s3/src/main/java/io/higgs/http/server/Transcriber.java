@@ -1,16 +1,30 @@
 package io.higgs.http.server;
 
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 /**
  * Essentially a request re-writer
  * On receiving a request it modifies the request path based on the rules given
+ * <p/>
+ * Transcriptions are compiled into a trie keyed on the literal prefix of each pattern, so a request is only checked
+ * against the transcriptions whose prefix it starts with, in the order they were added. The first match wins.
+ * Results are cached per URI, if a {@link Transcription} is modified after it's added call {@link #refresh()}.
  *
  * @author Courtney Robinson <courtney@crlog.info>
  */
 public class Transcriber {
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    //marks a cached URI which no transcription matches
+    private static final String NO_MATCH = new String("");
     //sort transcriptions by creation time ensuring FIFO
     Set<Transcription> transcriptions = new TreeSet<>(new Comparator<Transcription>() {
         public int compare(final Transcription o1, final Transcription o2) {
@@ -23,25 +37,56 @@ public class Transcriber {
             return 0;
         }
     });
+    private final int cacheSize;
+    private volatile Compiled compiled;
+
+    public Transcriber() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize the maximum number of URIs to cache rewrite results for, 0 disables the cache
+     */
+    public Transcriber(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
 
     public void transcribe(HttpRequest request) {
-        //apply any transcription
-        for (Transcription transcription : transcriptions) {
-            if (transcription.matches(request.getUri())) {
-                if (transcription.isReplaceWholeRequest()) {
-                    request.setUri(transcription.getReplacementPath());
-                } else {
-                    String newPath;
-                    if (transcription.isReplaceFirstOccurrence()) {
-                        newPath = transcription.replaceFirstMatch(request.getUri());
-                    } else {
-                        newPath = transcription.replaceAllMatches(request.getUri());
-                    }
-                    request.setUri(newPath);
-                }
-                break;
+        String newPath = transcribe(request.getUri());
+        if (newPath != null) {
+            request.setUri(newPath);
+        }
+    }
+
+    /**
+     * Apply the first matching transcription to a URI
+     *
+     * @param uri the URI to re-write
+     * @return the re-written URI or null if no transcription matches
+     */
+    public String transcribe(String uri) {
+        Compiled c = compiled;
+        if (c == null) {
+            c = compile();
+        }
+        if (c.empty) {
+            return null;
+        }
+        if (cacheSize > 0) {
+            String cached = c.cache.get(uri);
+            if (cached != null) {
+                return cached == NO_MATCH ? null : cached;
             }
         }
+        String newPath = c.transcribe(uri);
+        if (cacheSize > 0) {
+            if (c.cache.size() >= cacheSize) {
+                //rather than track usage, start again, the URIs that are requested often will quickly be back
+                c.cache.clear();
+            }
+            c.cache.put(uri, newPath == null ? NO_MATCH : newPath);
+        }
+        return newPath;
     }
 
     /**
@@ -49,8 +94,114 @@ public class Transcriber {
      *
      * @param transcription
      */
-    public void addTranscription(Transcription transcription) {
+    public synchronized void addTranscription(Transcription transcription) {
         transcriptions.add(transcription);
+        refresh();
+    }
+
+    /**
+     * Recompile the transcriptions and clear cached results. Only needed if a transcription is modified after
+     * being added.
+     */
+    public synchronized void refresh() {
+        //results are cached with the compiled transcriptions so they're discarded together
+        compiled = null;
+    }
+
+    private synchronized Compiled compile() {
+        if (compiled == null) {
+            compiled = new Compiled(new ArrayList<>(transcriptions));
+        }
+        return compiled;
+    }
+
+    private static String apply(Transcription transcription, String uri) {
+        if (transcription.isReplaceWholeRequest()) {
+            return transcription.getReplacementPath();
+        } else if (transcription.isReplaceFirstOccurrence()) {
+            return transcription.replaceFirstMatch(uri);
+        } else {
+            return transcription.replaceAllMatches(uri);
+        }
     }
 
+    /**
+     * An immutable snapshot of the transcriptions indexed by literal prefix, and the results cached from it
+     */
+    private static final class Compiled {
+        private final NonBlockingHashMap<String, String> cache = new NonBlockingHashMap<>();
+        private final Transcription[] transcriptions;
+        private final Node root = new Node();
+        private final boolean empty;
+
+        private Compiled(List<Transcription> list) {
+            transcriptions = list.toArray(new Transcription[list.size()]);
+            empty = transcriptions.length == 0;
+            for (int i = 0; i < transcriptions.length; i++) {
+                String prefix = transcriptions[i].literalPrefix();
+                Node node = root;
+                for (int j = 0; j < prefix.length(); j++) {
+                    node = node.child(prefix.charAt(j));
+                }
+                node.add(i);
+            }
+        }
+
+        private String transcribe(String uri) {
+            //collect the transcriptions whose prefix the URI starts with, then try them in the order they were added
+            int[] candidates = root.indices;
+            boolean merged = false;
+            Node node = root;
+            for (int i = 0; i < uri.length() && node.children != null; i++) {
+                node = node.children.get(uri.charAt(i));
+                if (node == null) {
+                    break;
+                }
+                if (node.indices.length == 0) {
+                    continue;
+                }
+                if (candidates.length == 0) {
+                    candidates = node.indices;
+                } else {
+                    int[] all = Arrays.copyOf(candidates, candidates.length + node.indices.length);
+                    System.arraycopy(node.indices, 0, all, candidates.length, node.indices.length);
+                    candidates = all;
+                    merged = true;
+                }
+            }
+            if (merged) {
+                //only needed if more than one prefix on the path had transcriptions, all is always a copy
+                Arrays.sort(candidates);
+            }
+            for (int index : candidates) {
+                Transcription t = transcriptions[index];
+                if (t.matches(uri)) {
+                    return apply(t, uri);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Node {
+        private int[] indices = new int[0];
+        private Map<Character, Node> children;
+
+        private Node child(char c) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            Node n = children.get(c);
+            if (n == null) {
+                n = new Node();
+                children.put(c, n);
+            }
+            return n;
+        }
+
+        private void add(int index) {
+            indices = Arrays.copyOf(indices, indices.length + 1);
+            indices[indices.length - 1] = index;
+        }
+    }
 }
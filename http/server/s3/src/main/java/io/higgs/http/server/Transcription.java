@@ -19,6 +19,7 @@ public class Transcription implements Sortable<Transcription> {
     private boolean replaceWholeRequest;
     private String replacementPath;
     private boolean replaceFirstOccurrence;
+    private String literalPrefix;
 
     /**
      * Rewrites/replaced a request based on the provided options
@@ -84,6 +85,77 @@ public class Transcription implements Sortable<Transcription> {
             throw new NullPointerException("You must provide a transcription pattern");
         }
         this.pattern = pattern;
+        literalPrefix = null;
+    }
+
+    /**
+     * Every URI this transcription matches starts with the returned string. It's the run of literal characters at
+     * the start of the pattern, empty if the pattern starts with anything else or could match without it
+     * (alternation, flags, an optional first character etc).
+     *
+     * @return the literal prefix of the pattern
+     */
+    public String literalPrefix() {
+        if (literalPrefix == null) {
+            literalPrefix = literalPrefix(pattern);
+        }
+        return literalPrefix;
+    }
+
+    static String literalPrefix(Pattern pattern) {
+        String regex = pattern.pattern();
+        if (pattern.flags() != 0 || hasAlternation(regex)) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int len = 1;
+            if (c == '\\') {
+                //an escaped punctuation character is a literal, anything else (\d, \Q, \w...) isn't
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    break;
+                }
+                c = regex.charAt(i + 1);
+                len = 2;
+            } else if (".[]{}()*+?^$|".indexOf(c) != -1) {
+                break;
+            }
+            char next = i + len < regex.length() ? regex.charAt(i + len) : 0;
+            if (next == '?' || next == '*' || next == '{') {
+                //the character is optional or repeated so can't be part of the prefix
+                break;
+            }
+            prefix.append(c);
+            i += len;
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * @return true if the regex has a | outside of any group or character class
+     */
+    private static boolean hasAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean matches(final String uri) {
@@ -0,0 +1,300 @@
+package io.higgs.http.server.accesslog;
+
+import io.higgs.http.server.HttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.CharsetUtil;
+import org.cliffc.high_scale_lib.ConcurrentAutoTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An asynchronous access log. Event loops copy request details into preallocated records in a lock-free ring
+ * buffer and return immediately, a single background thread formats the records in batches and appends them to a
+ * daily rolling file through a {@link FileChannel}. If no file is configured the formatted lines go to the
+ * "request_logger" SLF4J logger instead, still from the background thread.
+ * <p/>
+ * When the ring buffer is full, records are dropped rather than blocking the event loop, see {@link #getDropped()}.
+ */
+public class AccessLog {
+    private static final int FLUSH_THRESHOLD = 32 * 1024;
+    private final AccessLogRecord[] ring;
+    private final int mask;
+    //the next sequence a producer will claim
+    private final AtomicLong claimed = new AtomicLong();
+    private final ConcurrentAutoTable dropped = new ConcurrentAutoTable();
+    private final AccessLogFormat format;
+    private final CachedDate date;
+    private final Path file;
+    private final boolean rollDaily;
+    private final StringBuilder lines = new StringBuilder(FLUSH_THRESHOLD * 2);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(FLUSH_THRESHOLD);
+    private final CharsetEncoder encoder = CharsetUtil.UTF_8.newEncoder();
+    private final Thread writer;
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Logger requestLogger = LoggerFactory.getLogger("request_logger");
+    //the next sequence the writer will read, every sequence before it is free to be reused
+    private volatile long consumed;
+    private volatile boolean closed;
+    //set by the writer before it parks, producers only unpark it when it's set
+    private volatile boolean idle;
+    private FileChannel channel;
+    private long nextRoll;
+    private CachedDate rollSuffix;
+
+    /**
+     * @param format     the line format
+     * @param bufferSize the number of records which can be queued, rounded up to a power of 2
+     * @param file       the file to write to, if null or empty lines are logged to the "request_logger" logger
+     * @param rollDaily  if true the file is renamed with the date as a suffix at midnight and a new one started
+     */
+    public AccessLog(AccessLogFormat format, int bufferSize, String file, boolean rollDaily) {
+        if (format == null) {
+            throw new IllegalArgumentException("Access log format cannot be null");
+        }
+        int size = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+        ring = new AccessLogRecord[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new AccessLogRecord();
+        }
+        mask = size - 1;
+        this.format = format;
+        date = new CachedDate(format.datePattern());
+        this.file = file == null || file.isEmpty() ? null : Paths.get(file);
+        this.rollDaily = rollDaily;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "higgs-access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue a request to be logged. Never blocks, if the buffer is full the record is dropped.
+     *
+     * @param remoteAddress the client's address
+     * @param request       the request being responded to
+     * @param status        the response status code
+     * @param size          the number of bytes in the response entity
+     * @return true if the record was queued, false if it was dropped
+     */
+    public boolean log(SocketAddress remoteAddress, HttpRequest request, int status, long size) {
+        return log(remoteAddress, request, request.getCreatedAt().getMillis(), status, size);
+    }
+
+    /**
+     * Queue a request which isn't a Higgs {@link HttpRequest}, e.g. one aggregated by Netty, to be logged.
+     * Never blocks, if the buffer is full the record is dropped.
+     *
+     * @param remoteAddress the client's address
+     * @param request       the request being responded to
+     * @param created       when the request was received, in milliseconds since the epoch
+     * @param status        the response status code
+     * @param size          the number of bytes in the response entity
+     * @return true if the record was queued, false if it was dropped
+     */
+    public boolean log(SocketAddress remoteAddress, io.netty.handler.codec.http.HttpRequest request, long created,
+                       int status, long size) {
+        if (closed) {
+            return false;
+        }
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed >= ring.length) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+        AccessLogRecord r = ring[(int) (seq & mask)];
+        r.remoteAddress = remoteAddress;
+        r.timestamp = created;
+        r.method = request.getMethod().name();
+        r.uri = request.getUri();
+        r.protocol = request.getProtocolVersion().text();
+        r.status = status;
+        r.size = size;
+        r.referer = request.headers().get(HttpHeaders.Names.REFERER);
+        r.userAgent = request.headers().get(HttpHeaders.Names.USER_AGENT);
+        r.durationMillis = System.currentTimeMillis() - created;
+        r.published = seq;
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of records dropped because the ring buffer was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop accepting records, write everything already queued and close the file. Called by
+     * {@link io.higgs.http.server.protocol.HttpProtocolConfiguration} when the server stops
+     *
+     * @param timeout how long to wait for queued records to be written, in milliseconds
+     */
+    public void close(long timeout) {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        long next = consumed;
+        while (true) {
+            AccessLogRecord r = ring[(int) (next & mask)];
+            if (r.published == next) {
+                append(r);
+                r.clear();
+                consumed = ++next;
+                if (lines.length() >= FLUSH_THRESHOLD) {
+                    flush();
+                }
+            } else if (lines.length() > 0) {
+                //caught up, write the batch out before waiting for more
+                flush();
+            } else if (closed && next == claimed.get()) {
+                break;
+            } else {
+                idle = true;
+                //checked again after idle is set, a record published before then wouldn't unpark the writer
+                if (r.published != next && !closed) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+            }
+        }
+        closeChannel();
+    }
+
+    private void append(AccessLogRecord r) {
+        if (file == null) {
+            format.format(r, date.format(r.timestamp), lines);
+            requestLogger.info(lines.toString());
+            lines.setLength(0);
+            return;
+        }
+        if (rollDaily && r.timestamp >= nextRoll && channel != null) {
+            flush();
+            roll();
+        }
+        format.format(r, date.format(r.timestamp), lines);
+        lines.append('\n');
+    }
+
+    private void flush() {
+        if (file == null || lines.length() == 0) {
+            lines.setLength(0);
+            return;
+        }
+        try {
+            if (channel == null) {
+                open();
+            }
+            CharBuffer chars = CharBuffer.wrap(lines);
+            encoder.reset();
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, bytes, true);
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                bytes.clear();
+            } while (result.isOverflow());
+        } catch (IOException e) {
+            log.warn(String.format("Unable to write to access log %s", file), e);
+            closeChannel();
+        } finally {
+            lines.setLength(0);
+        }
+    }
+
+    private void open() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        long midnight = startOfDay(System.currentTimeMillis());
+        if (rollDaily) {
+            if (rollSuffix == null) {
+                rollSuffix = new CachedDate("yyyy-MM-dd");
+            }
+            //a file left from a previous day is rolled before it's appended to
+            if (Files.exists(file) && Files.getLastModifiedTime(file).toMillis() < midnight) {
+                rename(Files.getLastModifiedTime(file).toMillis());
+            }
+            nextRoll = nextDay(midnight);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void roll() {
+        closeChannel();
+        try {
+            rename(nextRoll - 1);
+            open();
+        } catch (IOException e) {
+            log.warn(String.format("Unable to roll access log %s", file), e);
+        }
+    }
+
+    private void rename(long day) throws IOException {
+        Path target = file.resolveSibling(file.getFileName() + "." + rollSuffix.format(day));
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn(String.format("Unable to close access log %s", file), e);
+            }
+            channel = null;
+        }
+    }
+
+    private static long startOfDay(long millis) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(millis);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        return c.getTimeInMillis();
+    }
+
+    private static long nextDay(long midnight) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(midnight);
+        c.add(Calendar.DAY_OF_MONTH, 1);
+        return c.getTimeInMillis();
+    }
+}
@@ -0,0 +1,116 @@
+package io.higgs.http.server.accesslog;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * The line formats supported by the {@link AccessLog}
+ */
+public enum AccessLogFormat {
+    /**
+     * The Apache/NCSA combined log format i.e.
+     * 127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] "GET /a.gif HTTP/1.0" 200 2326 "http://a.com/" "Mozilla/4.08"
+     */
+    COMBINED("dd/MMM/yyyy:HH:mm:ss Z") {
+        @Override
+        void format(AccessLogRecord r, String date, StringBuilder out) {
+            host(r.remoteAddress, out).append(" - - [").append(date).append("] \"")
+                    .append(r.method).append(' ').append(r.uri).append(' ').append(r.protocol).append("\" ")
+                    .append(r.status).append(' ');
+            if (r.size > 0) {
+                out.append(r.size);
+            } else {
+                out.append('-');
+            }
+            out.append(" \"").append(r.referer == null ? "-" : r.referer)
+                    .append("\" \"").append(r.userAgent == null ? "-" : r.userAgent).append('"');
+        }
+    },
+    /**
+     * One JSON object per line
+     */
+    JSON("yyyy-MM-dd'T'HH:mm:ssZ") {
+        @Override
+        void format(AccessLogRecord r, String date, StringBuilder out) {
+            out.append("{\"time\":\"").append(date).append("\",\"remote\":\"");
+            host(r.remoteAddress, out).append("\",\"method\":");
+            string(r.method, out).append(",\"uri\":");
+            string(r.uri, out).append(",\"protocol\":");
+            string(r.protocol, out).append(",\"status\":").append(r.status)
+                    .append(",\"bytes\":").append(r.size).append(",\"referer\":");
+            string(r.referer, out).append(",\"user_agent\":");
+            string(r.userAgent, out).append(",\"duration_ms\":").append(r.durationMillis).append('}');
+        }
+    };
+
+    private final String datePattern;
+
+    AccessLogFormat(String datePattern) {
+        this.datePattern = datePattern;
+    }
+
+    /**
+     * @return the {@link java.text.SimpleDateFormat} pattern timestamps are written with
+     */
+    public String datePattern() {
+        return datePattern;
+    }
+
+    abstract void format(AccessLogRecord r, String date, StringBuilder out);
+
+    /**
+     * @param name the format's name, case insensitive
+     * @return the matching format or {@link #COMBINED} if name is null or unknown
+     */
+    public static AccessLogFormat of(String name) {
+        if (name != null) {
+            for (AccessLogFormat f : values()) {
+                if (f.name().equalsIgnoreCase(name)) {
+                    return f;
+                }
+            }
+        }
+        return COMBINED;
+    }
+
+    private static StringBuilder host(SocketAddress address, StringBuilder out) {
+        if (address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null) {
+            return out.append(((InetSocketAddress) address).getAddress().getHostAddress());
+        }
+        return out.append(address == null ? "-" : address.toString());
+    }
+
+    private static StringBuilder string(String value, StringBuilder out) {
+        if (value == null) {
+            return out.append("null");
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+}
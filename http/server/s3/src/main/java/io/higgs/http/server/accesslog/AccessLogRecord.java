@@ -0,0 +1,33 @@
+package io.higgs.http.server.accesslog;
+
+import java.net.SocketAddress;
+
+/**
+ * A preallocated slot in the {@link AccessLog} ring buffer. Producers only copy references and primitives into it,
+ * all formatting happens on the writer thread once {@link #published} has been set.
+ */
+final class AccessLogRecord {
+    /**
+     * The sequence this slot was last published for, written last by the producer and read first by the writer
+     */
+    volatile long published = -1;
+    SocketAddress remoteAddress;
+    long timestamp;
+    String method;
+    String uri;
+    String protocol;
+    int status;
+    long size;
+    String referer;
+    String userAgent;
+    long durationMillis;
+
+    void clear() {
+        remoteAddress = null;
+        method = null;
+        uri = null;
+        protocol = null;
+        referer = null;
+        userAgent = null;
+    }
+}
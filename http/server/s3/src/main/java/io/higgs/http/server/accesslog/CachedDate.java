@@ -0,0 +1,30 @@
+package io.higgs.http.server.accesslog;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Formats timestamps at a resolution of one second, reusing the last formatted value until the second changes.
+ * Not thread safe, it's only used by the {@link AccessLog} writer thread.
+ */
+final class CachedDate {
+    private final SimpleDateFormat format;
+    private final Date date = new Date();
+    private long second = Long.MIN_VALUE;
+    private String value;
+
+    CachedDate(String pattern) {
+        format = new SimpleDateFormat(pattern, Locale.US);
+    }
+
+    String format(long millis) {
+        long s = millis / 1000;
+        if (s != second) {
+            second = s;
+            date.setTime(s * 1000);
+            value = format.format(date);
+        }
+        return value;
+    }
+}
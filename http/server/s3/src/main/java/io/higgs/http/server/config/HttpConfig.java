@@ -15,6 +15,33 @@ public class HttpConfig extends ServerConfig {
     public boolean enable_directory_listing = true;
     public String public_directory = "public";
     public String security_config_path = "classpath:shiro.ini";
+    //milliseconds between comment lines sent to keep idle event streams open, 0 disables heartbeats
+    public int sse_heartbeat_interval = 15000;
+    //how many events each SSE topic keeps to replay to clients reconnecting with a Last-Event-ID
+    public int sse_replay_buffer_size = 100;
+    //if true slow SSE clients only get the latest event once writable again, if false events are dropped
+    public boolean sse_coalesce_slow_consumers = true;
+    //if metrics are enabled, serve them in the Prometheus text format at this path. null or empty to disable
+    public String metrics_path = "/metrics";
+    //if log_requests is true, the access log line format, either combined or json
+    public String access_log_format = "combined";
+    //the file access log lines are appended to, if null or empty they go to the "request_logger" logger
+    public String access_log_file;
+    //how many access log records can be queued for the writer before new ones are dropped
+    public int access_log_buffer_size = 8192;
+    //if true the access log file is renamed with the date as a suffix at midnight and a new one started
+    public boolean access_log_roll_daily = true;
+    //requests each client can make per rate_limit_period_ms before getting a 429, 0 disables the server wide limit
+    public int rate_limit_requests;
+    public long rate_limit_period_ms = 1000;
+    //how many requests a client can make at once, 0 for the same as rate_limit_requests
+    public int rate_limit_burst;
+    //what identifies a client, one of address, header or session
+    public String rate_limit_key = "address";
+    //the header identifying a client if rate_limit_key is header
+    public String rate_limit_header = "X-Api-Key";
+    //the most clients tracked at once, when this many have made requests recently the least active is forgotten
+    public int rate_limit_max_clients = 100000;
     //
     private Map<Integer, HttpMethod> errors = new HashMap<>();
 
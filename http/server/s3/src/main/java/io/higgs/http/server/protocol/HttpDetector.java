@@ -3,6 +3,7 @@ package io.higgs.http.server.protocol;
 import io.higgs.core.ProtocolDetector;
 import io.higgs.http.server.HttpRequestDecoder;
 import io.higgs.http.server.HttpResponseEncoder;
+import io.higgs.http.server.ratelimit.RateLimitHandler;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
@@ -41,6 +42,11 @@ public class HttpDetector implements ProtocolDetector {
         p.addLast("decoder", new HttpRequestDecoder(config));
         p.addLast("encoder", new HttpResponseEncoder());
         p.addLast("chunkedWriter", new ChunkedWriteHandler());
+        if (config.getRateLimiter() != null) {
+            //after the encoder so refused requests can be answered, before the handler so they're never routed
+            p.addLast("rateLimiter", new RateLimitHandler(config.getRateLimiter(), config.getAccessLog(),
+                    config.getServer().getMetrics()));
+        }
         //ByteBufToHttpContent must come before compressor and after chunked writer to support
         //compressing chunked files
 //        p.addLast("ByteBufToHttpContent", new MessageToMessageEncoder<ByteBuf>() {
@@ -2,11 +2,18 @@ package io.higgs.http.server.protocol;
 
 import io.higgs.core.ProtocolDetector;
 import io.higgs.core.ProtocolDetectorFactory;
+import io.higgs.core.ProtocolSignature;
 
 /**
  * @author Courtney Robinson <courtney@crlog.info>
  */
-public class HttpDetectorFactory implements ProtocolDetectorFactory {
+public class HttpDetectorFactory implements ProtocolDetectorFactory, ProtocolSignature {
+    /**
+     * The first two bytes of each method {@link HttpDetector} accepts
+     */
+    private static final byte[][] SIGNATURES = {
+            {'G', 'E'}, {'P', 'O'}, {'P', 'U'}, {'H', 'E'}, {'O', 'P'}, {'P', 'A'}, {'D', 'E'}, {'T', 'R'}, {'C', 'O'}
+    };
     private final HttpProtocolConfiguration config;
     protected int priority;
 
@@ -19,6 +26,14 @@ public class HttpDetectorFactory implements ProtocolDetectorFactory {
         return new HttpDetector(config);
     }
 
+    /**
+     * Sub classes whose detector accepts a different set of methods must override this to match
+     */
+    @Override
+    public byte[][] signatures() {
+        return SIGNATURES;
+    }
+
     @Override
     public int setPriority(int value) {
         int old = priority;
@@ -1,21 +1,29 @@
 package io.higgs.http.server.protocol;
 
 import io.higgs.core.FixedSortedList;
+import io.higgs.core.HiggsServer;
 import io.higgs.core.InvokableMethod;
 import io.higgs.core.MessageHandler;
 import io.higgs.core.ResolvedFile;
+import io.higgs.core.ServerEvent;
+import io.higgs.core.metrics.Phase;
+import io.higgs.core.metrics.RouteMetrics;
 import io.higgs.core.reflect.dependency.DependencyProvider;
 import io.higgs.core.reflect.dependency.Injector;
 import io.higgs.http.server.HttpRequest;
 import io.higgs.http.server.HttpResponse;
 import io.higgs.http.server.HttpStatus;
 import io.higgs.http.server.MessagePusher;
+import io.higgs.http.server.MetricsMethod;
 import io.higgs.http.server.ParamInjector;
 import io.higgs.http.server.StaticFileMethod;
 import io.higgs.http.server.WrappedResponse;
+import io.higgs.http.server.accesslog.AccessLog;
 import io.higgs.http.server.config.HttpConfig;
 import io.higgs.http.server.protocol.mediaTypeDecoders.FormUrlEncodedDecoder;
 import io.higgs.http.server.protocol.mediaTypeDecoders.JsonDecoder;
+import io.higgs.http.server.ratelimit.HttpRateLimiter;
+import io.higgs.http.server.sse.SseEmitter;
 import io.higgs.http.server.transformers.ResponseTransformer;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
@@ -24,16 +32,13 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMessage;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
 import org.apache.shiro.subject.Subject;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.WebApplicationException;
-import java.net.SocketAddress;
-import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
@@ -65,22 +70,51 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
     protected HttpProtocolConfiguration protocolConfig;
     protected boolean replied;
     protected MediaTypeDecoder decoder;
-    private Logger requestLogger = LoggerFactory.getLogger("request_logger");
+    /**
+     * Set once a method starts a text/event-stream response on this channel
+     */
+    protected SseEmitter emitter;
+    /**
+     * Only used if metrics are enabled. The current request's route and when the request was received
+     */
+    protected RouteMetrics routeMetrics;
+    protected long requestStartedAt;
+    protected boolean inFlight;
+    protected MetricsMethod metricsMethod;
+    protected AccessLog accessLog;
+    protected HiggsServer server;
 
     public HttpHandler(HttpProtocolConfiguration config) {
         super(config.getServer().<HttpConfig>getConfig());
+        server = config.getServer();
         httpConfig = config.getServer().getConfig();
         protocolConfig = config;
+        accessLog = config.getAccessLog();
         injector = config.getInjector();
         mediaTypeDecoders.addAll(config.getMediaTypeDecoders());
+        setMetrics(config.getServer().getMetrics());
+        if (metrics != null && httpConfig.metrics_path != null && !httpConfig.metrics_path.isEmpty()) {
+            metricsMethod = new MetricsMethod(config.getServer().getFactories(), metrics, httpConfig.metrics_path);
+        }
     }
 
     public void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
-        if (msg instanceof LastHttpContent && !(msg instanceof FullHttpRequest) && replied) {
-            return;  //can happen if exception was thrown before last http content received
+        if (msg instanceof HttpContent && !(msg instanceof HttpMessage) && replied) {
+            //can happen if exception was thrown or the request was refused before all its content was received
+            return;
         }
         replied = false;
+        if (metrics != null && msg instanceof HttpContent) {
+            metrics.bytesIn(((HttpContent) msg).content().readableBytes());
+        }
         if (msg instanceof HttpRequest || msg instanceof FullHttpRequest) {
+            server.markBusy(ctx.channel());
+            if (metrics != null) {
+                requestStartedAt = System.nanoTime();
+                routeMetrics = null;
+                metrics.requestStarted();
+                inFlight = true;
+            }
             if (msg instanceof HttpRequest) {
                 request = (HttpRequest) msg;
             } else {
@@ -92,10 +126,18 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
             //initialize request, setting cookies, media types etc
             request.init(ctx);
             method = findMethod(request.getUri(), ctx, request, methodClass);
+            if (metrics != null) {
+                routeMetrics = metrics.route(routeName(method));
+            }
             if (method == null) {
                 //404
                 throw new WebApplicationException(HttpStatus.NOT_FOUND.code());
             }
+            HttpRateLimiter limit = method.getRateLimiter();
+            if (limit != null && !limit.allow(ctx, request)) {
+                reject(ctx, limit);
+                return;
+            }
             if (isEntityRequest()) {
                 if (httpConfig.add_form_url_decoder) {
                     mediaTypeDecoders.add(new FormUrlEncodedDecoder(request));
@@ -142,8 +184,34 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
         }
     }
 
+    /**
+     * Refuse the current request with the limiter's 429 response, without decoding or invoking anything
+     */
+    protected void reject(ChannelHandlerContext ctx, HttpRateLimiter limit) {
+        limit.reject(ctx);
+        int status = HttpResponseStatus.TOO_MANY_REQUESTS.code();
+        if (accessLog != null) {
+            accessLog.log(ctx.channel().remoteAddress(), request, status, limit.rejectedSize());
+        }
+        if (metrics != null && inFlight) {
+            currentRouteMetrics().request();
+            currentRouteMetrics().error();
+            metrics.status(status);
+            metrics.bytesOut(limit.rejectedSize());
+            metrics.requestFinished();
+            inFlight = false;
+        }
+        request = null;
+        res = null;
+        replied = true;
+    }
+
     public <M extends InvokableMethod> M findMethod(String path, ChannelHandlerContext ctx, Object msg,
                                                     Class<M> methodClass) {
+        if (metricsMethod != null && metricsMethod.matches(path, ctx, msg)
+                && methodClass.isAssignableFrom(MetricsMethod.class)) {
+            return (M) metricsMethod;
+        }
         M m = super.findMethod(path, ctx, msg, methodClass);
         if (m == null && config.add_static_resource_filter) {
             StaticFileMethod fileMethod = new StaticFileMethod(protocolConfig.getServer().getFactories(),
@@ -155,6 +223,12 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
         return m;
     }
 
+    @Override
+    protected String routeName(InvokableMethod method) {
+        //static files don't have a route of their own, their raw path would clash with a method at /
+        return method instanceof StaticFileMethod ? "static" : super.routeName(method);
+    }
+
     /**
      * @return true if post or put request, i.e. requests that have a body/entity
      */
@@ -164,6 +238,11 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
     }
 
     protected void invoke(final ChannelHandlerContext ctx) {
+        long invokeStart = 0;
+        if (metrics != null) {
+            invokeStart = System.nanoTime();
+            routeMetrics.record(Phase.DECODE, invokeStart - requestStartedAt - routeNanos);
+        }
         MessagePusher pusher = new MessagePusher() {
             @Override
             public ChannelFuture push(Object message) {
@@ -189,9 +268,17 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
         //take all objects in the global provider
         provider.take(DependencyProvider.global());
 
-        Subject subject = request.getSubject();
-        if (subject != null) {
-            provider.add(subject, subject.getSession());
+        //asking for the subject starts a session, only do it if the method can be given one
+        if (method.injectsSubject()) {
+            Subject subject = request.getSubject();
+            if (subject != null) {
+                provider.add(subject, subject.getSession());
+            }
+        }
+        SseEmitter sse = null;
+        if (method.isEventStream()) {
+            sse = new SseEmitter(ctx, request, protocolConfig.getBroadcaster(), httpConfig);
+            provider.add(sse);
         }
         provider.add(ctx, ctx.channel(), ctx.executor(), request, res,
                 request.getFormFiles(), request.getFormParam(), request.getCookies(),
@@ -202,7 +289,14 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
         injector.injectParams(method, request, res, ctx, params);
         try {
             Object response = method.invoke(ctx, request.getUri(), method, params, provider);
-            pusher.push(response);
+            if (metrics != null) {
+                routeMetrics.record(Phase.INVOKE, System.nanoTime() - invokeStart);
+            }
+            if (sse != null) {
+                startEventStream(ctx, sse, response);
+            } else {
+                pusher.push(response);
+            }
         } catch (WebApplicationException wae) {
             throw wae; //just re-throw for it to be handled in exceptionCaught handler
         } catch (Throwable t) {
@@ -215,6 +309,50 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
         }
     }
 
+    /**
+     * Sends the event stream's headers instead of a full response. The channel stays open and is
+     * owned by the emitter from here on.
+     *
+     * @param response whatever the method returned, if it's not the emitter it is sent as the first event
+     */
+    protected void startEventStream(ChannelHandlerContext ctx, SseEmitter sse, Object response) {
+        if (response instanceof SseEmitter) {
+            sse = (SseEmitter) response;
+        }
+        emitter = sse;
+        res.finalizeCustomHeaders(request);
+        sse.open(res.headers());
+        if (response != null && response != sse) {
+            sse.push(response);
+        }
+        if (metrics != null && inFlight) {
+            routeMetrics.request();
+            metrics.requestFinished();
+            inFlight = false;
+        }
+        request = null;
+        res = null;
+        decoder = null;
+        replied = true;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == ServerEvent.DRAINING && emitter != null) {
+            //clients reconnect to an event stream on their own, end it rather than hold up the drain
+            emitter.complete();
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (emitter != null) {
+            emitter.writabilityChanged();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     protected ChannelFuture writeResponse(ChannelHandlerContext ctx, Object response, Queue<ResponseTransformer> t) {
         if (res.isRedirect()) {
             return doWrite(ctx);
@@ -224,24 +362,41 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
             res = (HttpResponse) response;
             return doWrite(ctx);
         }
-        List<ResponseTransformer> ts = new FixedSortedList<>(t);
-        boolean notAcceptable = false;
-        for (ResponseTransformer transformer : ts) {
-            if (transformer.canTransform(response, request, request.getMatchedMediaType(), method, ctx)) {
-                transformer.transform(response, request, res, request.getMatchedMediaType(),
-                        method, ctx);
-                notAcceptable = false;
-                break;
+        long transformStart = metrics == null ? 0 : System.nanoTime();
+        ResponseTransformer transformer = null;
+        if (t == protocolConfig.getTransformers()) {
+            transformer = protocolConfig.getTransformerSelector().select(response, request, method, ctx);
+        } else {
+            for (ResponseTransformer rt : new FixedSortedList<>(t)) {
+                if (rt.canTransform(response, request, request.getMatchedMediaType(), method, ctx)) {
+                    transformer = rt;
+                    break;
+                }
             }
-            notAcceptable = true;
         }
-        if (notAcceptable) {
+        if (transformer != null) {
+            transformer.transform(response, request, res, request.getMatchedMediaType(), method, ctx);
+        } else if (!t.isEmpty()) {
             res.setStatus(HttpStatus.NOT_ACCEPTABLE);
         }
+        if (metrics != null) {
+            currentRouteMetrics().record(Phase.TRANSFORM, System.nanoTime() - transformStart);
+        }
         return doWrite(ctx);
     }
 
+    /**
+     * @return the metrics for the current request's route or the unmatched route if none has been found yet
+     */
+    protected RouteMetrics currentRouteMetrics() {
+        if (routeMetrics == null) {
+            routeMetrics = metrics.route(null);
+        }
+        return routeMetrics;
+    }
+
     protected ChannelFuture doWrite(ChannelHandlerContext ctx) {
+        long writeStart = metrics == null ? 0 : System.nanoTime();
         long responseSize = getHeader(res, HttpHeaders.Names.CONTENT_LENGTH) == null ?
                 res.content().writerIndex() : HttpHeaders.getContentLength(res);
         //apply request cookies to response, this includes the session id
@@ -253,6 +408,10 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
         if (!close && res.getManagedWriter() == null) {
             setContentLength(res, res.content().readableBytes());
         }
+        if (server.isDraining()) {
+            close = true;
+            res.headers().set(CONNECTION, HttpHeaders.Values.CLOSE);
+        }
         ChannelFuture future;
         if (res.getManagedWriter() == null) {
             //if no post write op is set then the handler flushes the response
@@ -267,21 +426,28 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
         }
         // Close the connection after the write operation is done if necessary.
         if (close || !config.enable_keep_alive_requests) {
-            future.addListener(ChannelFutureListener.CLOSE);
-        }
-        if (config.log_requests) {
-            SocketAddress address = ctx.channel().remoteAddress();
-            //going with the Apache format
-            //194.116.215.20 - [14/Nov/2005:22:28:57 +0000] “GET / HTTP/1.0″ 200 16440
-            requestLogger.info(String.format("%s - [%s] \"%s %s %s\" %s %s",
-                    address,
-                    HttpHeaders.getDate(request, request.getCreatedAt().toDate()),
-                    request.getMethod().name(),
-                    request.getUri(),
-                    request.getProtocolVersion(),
-                    res.getStatus().code(),
-                    responseSize
-            ));
+            if (future == null) {
+                //the managed writer had already finished, nothing is left to wait for
+                ctx.channel().close();
+            } else {
+                future.addListener(ChannelFutureListener.CLOSE);
+            }
+        } else if (future == null) {
+            server.markIdle(ctx.channel());
+        } else {
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture f) {
+                    server.markIdle(f.channel());
+                }
+            });
+        }
+        if (accessLog != null) {
+            //only copies references, the line is formatted and written by the access log's own thread
+            accessLog.log(ctx.channel().remoteAddress(), request, res.getStatus().code(), responseSize);
+        }
+        if (metrics != null) {
+            recordWrite(future, writeStart, responseSize);
         }
         //clean up and prep for next request. if keep-alive browsers like chrome will
         //make multiple requests on the same channel
@@ -292,6 +458,56 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
         return future;
     }
 
+    private void recordWrite(ChannelFuture future, final long writeStart, long responseSize) {
+        final RouteMetrics route = currentRouteMetrics();
+        final boolean finished = inFlight;
+        int status = res.getStatus().code();
+        route.request();
+        metrics.bytesOut(responseSize);
+        metrics.status(status);
+        if (status >= 400) {
+            route.error();
+        }
+        inFlight = false;
+        routeMetrics = null;
+        if (future == null) {
+            writeComplete(route, writeStart, finished);
+            return;
+        }
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                writeComplete(route, writeStart, finished);
+            }
+        });
+    }
+
+    private void writeComplete(RouteMetrics route, long writeStart, boolean finished) {
+        route.record(Phase.WRITE, System.nanoTime() - writeStart);
+        if (finished) {
+            metrics.requestFinished();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        //closed before the response was written
+        requestAbandoned();
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * Stop counting the current request as in flight if it never got a response
+     */
+    protected void requestAbandoned() {
+        if (metrics != null && inFlight) {
+            currentRouteMetrics().error();
+            metrics.requestFinished();
+            inFlight = false;
+            routeMetrics = null;
+        }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         try {
@@ -306,8 +522,13 @@ public class HttpHandler extends MessageHandler<HttpConfig, Object> {
             //at this point if an exception occurs, just log and return internal server error
             //internal server error
             log.warn(String.format("Uncaught error while processing request %s", request), cause);
-            res.setStatus(HttpStatus.INTERNAL_SERVER_ERROR);
-            doWrite(ctx);
+            try {
+                res.setStatus(HttpStatus.INTERNAL_SERVER_ERROR);
+                doWrite(ctx);
+            } finally {
+                //a no-op if the error response was written
+                requestAbandoned();
+            }
         }
     }
 }
@@ -3,12 +3,20 @@ package io.higgs.http.server.protocol;
 import io.higgs.core.InvokableMethod;
 import io.higgs.core.ObjectFactory;
 import io.higgs.core.ResourcePath;
+import io.higgs.core.reflect.FieldAccessor;
+import io.higgs.core.reflect.FieldAccessors;
 import io.higgs.core.reflect.dependency.DependencyProvider;
 import io.higgs.http.server.HttpRequest;
 import io.higgs.http.server.MethodParam;
 import io.higgs.http.server.params.ValidationResult;
 import io.higgs.http.server.resource.MediaType;
+import io.higgs.http.server.ratelimit.HttpRateLimiter;
+import io.higgs.http.server.ratelimit.RateLimit;
+import io.higgs.http.server.sse.SseEmitter;
+import io.higgs.http.server.transformers.RouteTransformers;
 import io.netty.channel.ChannelHandlerContext;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.subject.Subject;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
@@ -31,10 +39,79 @@ public class HttpMethod extends InvokableMethod {
     private ValidationResult validationResult;
     private String[] fragments = new String[0];
     private List<VERB> verbs = new ArrayList<>();
+    private boolean eventStream;
+    private boolean injectsSubject;
+    private HttpRateLimiter rateLimiter;
+    private volatile RouteTransformers routeTransformers;
 
     public HttpMethod(Queue<ObjectFactory> factories, Class<?> klass, Method classMethod) {
         super(factories, klass, classMethod);
         parseMediaTypes();
+        detectEventStream();
+        detectSubjectInjection();
+        parseRateLimit();
+    }
+
+    /**
+     * A method's own {@link RateLimit} takes precedence over its class's, each method gets a limiter of its own
+     */
+    protected void parseRateLimit() {
+        RateLimit limit = classMethod.getAnnotation(RateLimit.class);
+        if (limit == null) {
+            limit = klass.getAnnotation(RateLimit.class);
+        }
+        if (limit != null) {
+            rateLimiter = HttpRateLimiter.of(limit);
+        }
+    }
+
+    /**
+     * @return the limit on how often each client can call this method or null if it isn't limited
+     */
+    public HttpRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * The request's {@link Subject} and {@link Session} are only created when something uses them, so they're only
+     * made available for injection if the method accepts one or its class has a field which can hold one
+     */
+    protected void detectSubjectInjection() {
+        for (Class<?> param : classMethod.getParameterTypes()) {
+            injectsSubject |= acceptsSubject(param);
+        }
+        for (FieldAccessor field : FieldAccessors.of(klass).all()) {
+            injectsSubject |= acceptsSubject(field.type());
+        }
+    }
+
+    private static boolean acceptsSubject(Class<?> type) {
+        //Object would accept anything, injecting it isn't worth starting a session for
+        return type != Object.class && (type.isAssignableFrom(Subject.class) || Subject.class.isAssignableFrom(type)
+                || type.isAssignableFrom(Session.class) || Session.class.isAssignableFrom(type));
+    }
+
+    /**
+     * A method is an event stream if it produces text/event-stream, accepts an {@link SseEmitter}
+     * or returns one
+     */
+    protected void detectEventStream() {
+        eventStream = SseEmitter.class.isAssignableFrom(classMethod.getReturnType());
+        for (Class<?> param : classMethod.getParameterTypes()) {
+            eventStream |= SseEmitter.class.isAssignableFrom(param);
+        }
+        for (MediaType type : producesMediaTypes) {
+            //only an explicit match counts, */* shouldn't turn every method into an event stream
+            eventStream |= MediaType.SERVER_SENT_EVENTS_TYPE.getType().equalsIgnoreCase(type.getType())
+                    && MediaType.SERVER_SENT_EVENTS_TYPE.getSubtype().equalsIgnoreCase(type.getSubtype());
+        }
+    }
+
+    /**
+     * @return true if the response to this method is a text/event-stream written through an {@link SseEmitter}
+     */
+    public boolean isEventStream() {
+        return eventStream;
     }
 
     public void parseMediaTypes() {
@@ -123,9 +200,10 @@ public class HttpMethod extends InvokableMethod {
                 //does the method limit the content type it consumes?
                 if (consumesMediaTypes.size() > 0) {
                     //is there a content type and does the method consume the content type supplied?
-                    String strType = request.headers() == null ? null : request.headers().get(CONTENT_TYPE);
-                    if (strType != null && !strType.isEmpty()) {
-                        LinkedList<MediaType> contentType = MediaType.valueOf(strType);
+                    //parsed once by HttpRequest#init, parse is cached if it hasn't been initialised
+                    List<MediaType> contentType = request.getContentType() != null ? request.getContentType()
+                            : MediaType.parse(request.headers() == null ? null : request.headers().get(CONTENT_TYPE));
+                    if (!contentType.isEmpty()) {
                         boolean consumesType = false;
                         for (MediaType consumesMediaType : consumesMediaTypes) {
                             for (MediaType type : contentType) {
@@ -144,14 +222,11 @@ public class HttpMethod extends InvokableMethod {
                 //does the method or it's class have the @Produces annotation?
                 if (producesMediaTypes.size() > 0) {
                     //if so does this method produce a media type which matches what the client accepts
-                    for (MediaType producesMediaType : producesMediaTypes) {
-                        for (MediaType acceptedMediaType : request.getAcceptedMediaTypes()) {
-                            if (producesMediaType.isCompatible(acceptedMediaType)) {
-                                //set the matched media type to the type the class produces
-                                request.setMatchedMediaType(producesMediaType);
-                                return true;
-                            }
-                        }
+                    MediaType producesMediaType = request.negotiate(producesMediaTypes);
+                    if (producesMediaType != null) {
+                        //set the matched media type to the type the client prefers most of those produced
+                        request.setMatchedMediaType(producesMediaType);
+                        return true;
                     }
                     //there may be other matching methods we can't say it's unacceptable here anymore
                     //path matched but media type didn't
@@ -211,6 +286,25 @@ public class HttpMethod extends InvokableMethod {
         return template != null || fragments.length > 0;
     }
 
+    /**
+     * @return true if the method's parameters or its class's fields can be injected with the request's subject or
+     * session
+     */
+    public boolean injectsSubject() {
+        return injectsSubject;
+    }
+
+    /**
+     * @return the transformers worked out for this method when it was registered or null if it wasn't registered
+     */
+    public RouteTransformers getRouteTransformers() {
+        return routeTransformers;
+    }
+
+    public void setRouteTransformers(RouteTransformers routeTransformers) {
+        this.routeTransformers = routeTransformers;
+    }
+
     public String getTemplate() {
         return template;
     }
@@ -127,6 +127,8 @@ public class HttpMethodProcessor implements MethodProcessor<HttpMethod> {
                 log.warn(String.format("Unknown param type annotation %s", annotation.annotationType().getName()));
             }
         }
+        //work out which transformers can handle the route's responses now rather than on every response
+        config.getTransformerSelector().register(im);
         return im;
     }
 
@@ -3,13 +3,20 @@ package io.higgs.http.server.protocol;
 import io.higgs.core.HiggsServer;
 import io.higgs.core.MethodProcessor;
 import io.higgs.core.ProtocolConfiguration;
+import io.higgs.core.Stoppable;
 import io.higgs.core.ProtocolDetectorFactory;
+import io.higgs.core.reflect.dependency.DependencyProvider;
 import io.higgs.http.server.DefaultParamInjector;
 import io.higgs.http.server.ParamInjector;
 import io.higgs.http.server.Transcriber;
+import io.higgs.http.server.accesslog.AccessLog;
+import io.higgs.http.server.accesslog.AccessLogFormat;
+import io.higgs.http.server.ratelimit.HttpRateLimiter;
 import io.higgs.http.server.auth.HiggsSecurityManager;
 import io.higgs.http.server.config.HttpConfig;
+import io.higgs.http.server.sse.SseBroadcaster;
 import io.higgs.http.server.transformers.ResponseTransformer;
+import io.higgs.http.server.transformers.TransformerSelector;
 import org.apache.shiro.config.IniSecurityManagerFactory;
 import org.apache.shiro.mgt.DefaultSecurityManager;
 import org.apache.shiro.mgt.SecurityManager;
@@ -22,15 +29,21 @@ import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
-public class HttpProtocolConfiguration implements ProtocolConfiguration {
+public class HttpProtocolConfiguration implements ProtocolConfiguration, Stoppable {
+    //how long the access log gets to write out what's queued when the server stops
+    private static final long ACCESS_LOG_CLOSE_TIMEOUT = 5000;
     protected final Queue<ResponseTransformer> transformers = new ConcurrentLinkedDeque<>();
     protected final Queue<MediaTypeDecoder> mediaTypeDecoders = new ConcurrentLinkedDeque<>();
+    protected final TransformerSelector transformerSelector = new TransformerSelector(transformers);
     protected SecurityManager securityManager;
     protected HiggsServer server;
     protected ParamInjector injector = new DefaultParamInjector();
     protected Transcriber transcriber = new Transcriber();
     protected Logger log = LoggerFactory.getLogger(getClass());
     protected boolean enableSessions = true;
+    protected SseBroadcaster broadcaster;
+    protected AccessLog accessLog;
+    protected HttpRateLimiter rateLimiter;
 
     public Transcriber getTranscriber() {
         return transcriber;
@@ -80,7 +93,19 @@ public class HttpProtocolConfiguration implements ProtocolConfiguration {
     @Override
     public void initialize(HiggsServer server) {
         this.server = server;
-        String path = ((HttpConfig) server.getConfig()).security_config_path;
+        HttpConfig config = server.getConfig();
+        if (broadcaster == null) {
+            broadcaster = new SseBroadcaster(config.sse_replay_buffer_size);
+        }
+        DependencyProvider.global().add(broadcaster);
+        if (config.log_requests && accessLog == null) {
+            accessLog = new AccessLog(AccessLogFormat.of(config.access_log_format), config.access_log_buffer_size,
+                    config.access_log_file, config.access_log_roll_daily);
+        }
+        if (rateLimiter == null) {
+            rateLimiter = HttpRateLimiter.of(config);
+        }
+        String path = config.security_config_path;
         IniSecurityManagerFactory factory = new IniSecurityManagerFactory(path);
         securityManager = factory.getInstance();
 
@@ -103,6 +128,13 @@ public class HttpProtocolConfiguration implements ProtocolConfiguration {
         }
     }
 
+    @Override
+    public void stop(HiggsServer server) {
+        if (accessLog != null) {
+            accessLog.close(ACCESS_LOG_CLOSE_TIMEOUT);
+        }
+    }
+
     public Queue<MediaTypeDecoder> getMediaTypeDecoders() {
         return mediaTypeDecoders;
     }
@@ -111,6 +143,49 @@ public class HttpProtocolConfiguration implements ProtocolConfiguration {
         return transformers;
     }
 
+    /**
+     * @return the selector which picks the transformer for each response from {@link #getTransformers()}
+     */
+    public TransformerSelector getTransformerSelector() {
+        return transformerSelector;
+    }
+
+    /**
+     * @return the broadcaster used to publish server-sent events to topic subscribers
+     */
+    public SseBroadcaster getBroadcaster() {
+        return broadcaster;
+    }
+
+    public void setBroadcaster(SseBroadcaster broadcaster) {
+        if (broadcaster == null) {
+            throw new IllegalArgumentException("Broadcaster cannot be null");
+        }
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * @return the access log requests are written to or null if request logging is disabled
+     */
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    public void setAccessLog(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    /**
+     * @return the limit applied to every client's requests before they're routed or null if there isn't one
+     */
+    public HttpRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public void setRateLimiter(HttpRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
     public SecurityManager getSecurityManager() {
         return securityManager;
     }
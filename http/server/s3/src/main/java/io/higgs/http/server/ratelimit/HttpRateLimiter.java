@@ -0,0 +1,95 @@
+package io.higgs.http.server.ratelimit;
+
+import io.higgs.core.ratelimit.RateLimiter;
+import io.higgs.http.server.config.HttpConfig;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RateLimiter} for HTTP requests, with what it's keyed on and the 429 response sent to refused requests.
+ * The response is created once and a duplicate of it sent each time so refusing a request costs no more than
+ * writing a few bytes.
+ */
+public class HttpRateLimiter {
+    private final RateLimiter limiter;
+    private final RateLimitKey key;
+    private final String header;
+    private final FullHttpResponse rejected;
+
+    public HttpRateLimiter(RateLimiter limiter, RateLimitKey key, String header) {
+        if (limiter == null || key == null) {
+            throw new IllegalArgumentException("Rate limiter and key cannot be null");
+        }
+        this.limiter = limiter;
+        this.key = key;
+        this.header = header;
+        ByteBuf body = Unpooled.unreleasableBuffer(Unpooled.directBuffer().writeBytes(
+                HttpResponseStatus.TOO_MANY_REQUESTS.reasonPhrase().getBytes(CharsetUtil.US_ASCII)));
+        rejected = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.TOO_MANY_REQUESTS, body);
+        HttpHeaders headers = rejected.headers();
+        headers.set(HttpHeaders.Names.CONTENT_TYPE, "text/plain");
+        headers.set(HttpHeaders.Names.CONTENT_LENGTH, body.readableBytes());
+        headers.set(HttpHeaders.Names.RETRY_AFTER, limiter.retryAfterSeconds());
+        headers.set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+    }
+
+    /**
+     * @return a limiter for a method or class with the given annotation
+     */
+    public static HttpRateLimiter of(RateLimit limit) {
+        return new HttpRateLimiter(new RateLimiter(limit.value(), limit.period(), limit.unit(), limit.burst(),
+                limit.maxClients()), limit.key(), limit.header());
+    }
+
+    /**
+     * @return the limit every client's requests are subject to or null if the config doesn't set one
+     */
+    public static HttpRateLimiter of(HttpConfig config) {
+        if (config.rate_limit_requests <= 0) {
+            return null;
+        }
+        RateLimitKey key = RateLimitKey.valueOf(config.rate_limit_key.toUpperCase(Locale.ENGLISH));
+        return new HttpRateLimiter(new RateLimiter(config.rate_limit_requests, config.rate_limit_period_ms,
+                TimeUnit.MILLISECONDS, config.rate_limit_burst, config.rate_limit_max_clients), key,
+                config.rate_limit_header);
+    }
+
+    /**
+     * @return true if the request can go ahead, false if it should be refused with
+     * {@link #reject(ChannelHandlerContext)}
+     */
+    public boolean allow(ChannelHandlerContext ctx, HttpRequest request) {
+        return limiter.tryAcquire(key.key(ctx, request, header));
+    }
+
+    /**
+     * Send the 429 response and close the connection, anything else the client sends on it is ignored
+     */
+    public ChannelFuture reject(ChannelHandlerContext ctx) {
+        return ctx.writeAndFlush(rejected.duplicate()).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    /**
+     * @return the number of bytes in the 429 response's entity
+     */
+    public int rejectedSize() {
+        return rejected.content().readableBytes();
+    }
+
+    public RateLimiter limiter() {
+        return limiter;
+    }
+}
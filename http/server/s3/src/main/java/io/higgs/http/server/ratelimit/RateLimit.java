@@ -0,0 +1,45 @@
+package io.higgs.http.server.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often each client can call a method. If applied to a class every method in the class gets its own limit
+ * of the given size, UNLESS the method declares its own. Requests over the limit get a 429 response and the method is
+ * not invoked.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface RateLimit {
+    /**
+     * @return how many requests each client can make per {@link #period()}
+     */
+    int value();
+
+    long period() default 1;
+
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * @return how many requests a client can make at once, 0 for the same as {@link #value()}
+     */
+    int burst() default 0;
+
+    /**
+     * @return what identifies a client
+     */
+    RateLimitKey key() default RateLimitKey.ADDRESS;
+
+    /**
+     * @return the header identifying a client if {@link #key()} is {@link RateLimitKey#HEADER}
+     */
+    String header() default "X-Api-Key";
+
+    /**
+     * @return the most clients tracked at once for this method
+     */
+    int maxClients() default 100000;
+}
@@ -0,0 +1,77 @@
+package io.higgs.http.server.ratelimit;
+
+import io.higgs.core.metrics.RouteMetrics;
+import io.higgs.core.metrics.ServerMetrics;
+import io.higgs.http.server.accesslog.AccessLog;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Applies the server wide per client limit as soon as a request is decoded, before it is routed. Refused requests,
+ * and any content that follows them, never reach the {@link io.higgs.http.server.protocol.HttpHandler} so they are
+ * logged and counted here instead
+ */
+public class RateLimitHandler extends ChannelInboundHandlerAdapter {
+    private final HttpRateLimiter limiter;
+    private final AccessLog accessLog;
+    private final ServerMetrics metrics;
+    private boolean discarding;
+
+    public RateLimitHandler(HttpRateLimiter limiter) {
+        this(limiter, null, null);
+    }
+
+    /**
+     * @param accessLog if not null refused requests are logged
+     * @param metrics   if not null refused requests are counted against the unmatched route
+     */
+    public RateLimitHandler(HttpRateLimiter limiter, AccessLog accessLog, ServerMetrics metrics) {
+        this.limiter = limiter;
+        this.accessLog = accessLog;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            discarding = !limiter.allow(ctx, (HttpRequest) msg);
+            if (discarding) {
+                limiter.reject(ctx);
+                recordRejection(ctx, (HttpRequest) msg);
+            }
+        }
+        if (!discarding) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (msg instanceof LastHttpContent) {
+            discarding = false;
+        }
+        ReferenceCountUtil.release(msg);
+    }
+
+    private void recordRejection(ChannelHandlerContext ctx, HttpRequest request) {
+        int status = HttpResponseStatus.TOO_MANY_REQUESTS.code();
+        if (metrics != null) {
+            //never routed, the same as a request which didn't match a method
+            RouteMetrics route = metrics.route(null);
+            metrics.requestStarted();
+            route.request();
+            route.error();
+            metrics.status(status);
+            metrics.bytesOut(limiter.rejectedSize());
+            metrics.requestFinished();
+        }
+        if (accessLog != null) {
+            //the decoder creates Higgs requests but an aggregator in front of this handler creates its own
+            long created = request instanceof io.higgs.http.server.HttpRequest
+                    ? ((io.higgs.http.server.HttpRequest) request).getCreatedAt().getMillis()
+                    : System.currentTimeMillis();
+            accessLog.log(ctx.channel().remoteAddress(), request, created, status, limiter.rejectedSize());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.higgs.http.server.ratelimit;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import static io.higgs.http.server.HttpRequest.SID;
+
+/**
+ * What a rate limit counts requests against. If a request doesn't have the header or session cookie it is counted
+ * against its address
+ */
+public enum RateLimitKey {
+    /**
+     * The client's IP address, all connections from the same address share a limit
+     */
+    ADDRESS,
+    /**
+     * The value of a header e.g. an API key
+     */
+    HEADER,
+    /**
+     * The session ID cookie, read from the request without loading the session
+     */
+    SESSION;
+
+    /**
+     * @param header the header to use if this is {@link #HEADER}
+     * @return the key the request is counted against
+     */
+    public Object key(ChannelHandlerContext ctx, HttpRequest request, String header) {
+        String value = null;
+        if (this == HEADER) {
+            value = request.headers().get(header);
+        } else if (this == SESSION) {
+            value = sessionId(request.headers().get(HttpHeaders.Names.COOKIE));
+        }
+        if (value != null) {
+            return value;
+        }
+        SocketAddress address = ctx.channel().remoteAddress();
+        return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getAddress() : address;
+    }
+
+    /**
+     * @param cookies a Cookie header
+     * @return the session ID cookie's value or null if there isn't one
+     */
+    static String sessionId(String cookies) {
+        if (cookies == null) {
+            return null;
+        }
+        int from = 0;
+        while ((from = cookies.indexOf(SID, from)) >= 0) {
+            int end = from + SID.length();
+            boolean starts = from == 0 || cookies.charAt(from - 1) == ' ' || cookies.charAt(from - 1) == ';';
+            if (starts && end < cookies.length() && cookies.charAt(end) == '=') {
+                int semi = cookies.indexOf(';', end);
+                String id = cookies.substring(end + 1, semi < 0 ? cookies.length() : semi).trim();
+                return id.isEmpty() ? null : id;
+            }
+            from = end;
+        }
+        return null;
+    }
+}
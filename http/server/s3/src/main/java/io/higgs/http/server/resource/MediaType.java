@@ -1,12 +1,14 @@
 package io.higgs.http.server.resource;
 
+import org.cliffc.high_scale_lib.NonBlockingHashMap;
+
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -121,13 +123,30 @@ public class MediaType {
      * "text/html"
      */
     public static final MediaType TEXT_HTML_TYPE = new MediaType("text", "html");
+    /**
+     * "text/event-stream"
+     */
+    public static final String SERVER_SENT_EVENTS = "text/event-stream";
+    /**
+     * "text/event-stream"
+     */
+    public static final MediaType SERVER_SENT_EVENTS_TYPE = new MediaType("text", "event-stream");
     /**
      * Empty immutable map used for all instances without parameters
      */
     private static final Map<String, String> emptyMap = Collections.emptyMap();
-    private String type;
-    private String subtype;
-    private Map<String, String> parameters;
+    private static final int MAX_PARSED = 1024;
+    private static final NonBlockingHashMap<String, List<MediaType>> PARSED = new NonBlockingHashMap<>();
+    private static final Comparator<MediaType> QUALITY_ORDER = new Comparator<MediaType>() {
+        @Override
+        public int compare(MediaType a, MediaType b) {
+            return Float.compare(b.quality, a.quality);
+        }
+    };
+    private final String type;
+    private final String subtype;
+    private final Map<String, String> parameters;
+    private final float quality;
 
     /**
      * Creates a new instance of MediaType, both type and subtype are wildcards.
@@ -176,113 +195,154 @@ public class MediaType {
             }
             this.parameters = Collections.unmodifiableMap(map);
         }
+        quality = parseQuality(this.parameters.get("q"));
+    }
+
+    private static float parseQuality(String q) {
+        if (q == null) {
+            return 1f;
+        }
+        try {
+            float v = Float.parseFloat(q);
+            return v < 0 || v > 1 || Float.isNaN(v) ? 1f : v;
+        } catch (NumberFormatException e) {
+            return 1f;
+        }
     }
 
     /**
      * Creates a new instance of MediaType by parsing the supplied string.
-     * Order is implicit by definition
+     * Types are ordered by their quality (q parameter), highest first, types with the same quality keep the order
+     * they were given in.
      *
      * @param mtype the media type string
-     * @return the newly created MediaType
-     * @throws IllegalArgumentException if the supplied string cannot be parsed
-     *                                  or is null
+     * @return a new, modifiable list of the media types parsed from the string
+     * @see #parse(String)
      */
     public static LinkedList<MediaType> valueOf(String mtype) {
-        LinkedList<MediaType> types = new LinkedList<>();
-        if (mtype == null) {
-            return types;
+        return new LinkedList<>(parse(mtype));
+    }
+
+    /**
+     * Parse a header value such as an Accept or Content-Type header into its media types.
+     * Parsed values are cached, clients send a small number of distinct values so most calls are a map lookup.
+     *
+     * @param header the header value
+     * @return an immutable list of the media types in the header ordered by quality, highest first.
+     * Empty if header is null or has no valid types
+     */
+    public static List<MediaType> parse(String header) {
+        if (header == null || header.isEmpty()) {
+            return Collections.emptyList();
         }
-        //multiple media types are separated by commas
-        Set<String> individualTypes = parseDelimitedType(mtype.length(), mtype, ",");
-        for (String m : individualTypes) {
-            //type and subtype is everything up to the first semi colon
-            int idx = m.indexOf(";");
-            MediaType type = new MediaType();
-            String typeSubType = m;
-            if (idx != -1) {
-                typeSubType = m.substring(0, idx);
-                String strParams = m.substring(idx + 1);
-                //multiple media parameters are separated by semi-colons
-                Set<String> params = parseDelimitedType(strParams.length(), strParams, ";");
-                if (params.size() > 0) {
-                    type.parameters = new HashMap<>();
-                }
-                for (String p : params) {
-                    int eqIdx = p.indexOf("=");
-                    if (eqIdx != -1) {
-                        String name = p.substring(0, eqIdx);
-                        String value = p.substring(eqIdx + 1);
-                        if (value.startsWith("\"") && value.endsWith("\"")) {
-                            value = value.substring(1, value.length() - 1);
-                        }
-                        //add param and remove spurious whitespaces
-                        type.parameters.put(name.trim(), value.trim());
-                    }
+        List<MediaType> types = PARSED.get(header);
+        if (types == null) {
+            types = Collections.unmodifiableList(parseHeader(header));
+            //the cache is bounded so arbitrary header values can't fill the heap
+            if (PARSED.size() < MAX_PARSED) {
+                PARSED.putIfAbsent(header, types);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Content negotiation, pick the produced type the client most prefers. For each produced type the most specific
+     * accepted type compatible with it decides its quality, the produced type with the highest quality wins. Ties
+     * go to the type matched by the more specific accepted type then to the order the types are produced in.
+     *
+     * @param produces the types which can be produced
+     * @param accepts  the types the client accepts, if empty the client accepts anything
+     * @return the best type or null if the client accepts none of the produced types
+     */
+    public static MediaType negotiate(List<MediaType> produces, List<MediaType> accepts) {
+        if (accepts.isEmpty()) {
+            return produces.isEmpty() ? null : produces.get(0);
+        }
+        MediaType best = null;
+        MediaType bestMatch = null;
+        for (MediaType p : produces) {
+            MediaType match = null;
+            for (MediaType a : accepts) {
+                if (a.isCompatible(p) && (match == null || a.specificity() > match.specificity())) {
+                    match = a;
                 }
             }
-            String[] parts = typeSubType.split("/");
-            if (parts.length > 1) {
-                type.type = parts[0];
-                type.subtype = parts[1];
-                //a media type is only valid if it has both type and subtype specified
+            if (match == null || match.quality <= 0) {
+                continue;
+            }
+            if (bestMatch == null || match.quality > bestMatch.quality
+                    || match.quality == bestMatch.quality && match.specificity() > bestMatch.specificity()) {
+                best = p;
+                bestMatch = match;
+            }
+        }
+        return best;
+    }
+
+    private static List<MediaType> parseHeader(String header) {
+        List<MediaType> types = new ArrayList<>();
+        int start = 0;
+        while (start < header.length()) {
+            int end = indexOfUnquoted(header, ',', start);
+            if (end == -1) {
+                end = header.length();
+            }
+            MediaType type = parseType(header.substring(start, end));
+            if (type != null) {
                 types.add(type);
             }
+            start = end + 1;
         }
+        //stable so types of equal quality keep their order
+        Collections.sort(types, QUALITY_ORDER);
         return types;
     }
 
-    private static Set<String> parseDelimitedType(int length, String str, String separator) {
-        HashSet<String> tmp = new HashSet<>();
-        //parameter values can be quoted. if they are can contain commas,semi-colons and slashes
-        //text/xhtml;q="a;bc,123/abc",text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8
-        int start = 0, end = 0;
-        String tmpChunk = "", chunk = "";
-        while (end < length) {
-            end = str.indexOf(separator);
-            if (end == -1) {
-                //just one media type or at the end
-                if (!str.isEmpty()) {
-                    if (tmpChunk.isEmpty()) {
-                        tmp.add(str);
-                    } else {
-                        tmp.add(tmpChunk + str);
-                    }
+    private static MediaType parseType(String str) {
+        //type and subtype is everything up to the first semi colon
+        int semi = indexOfUnquoted(str, ';', 0);
+        String typeSubType = (semi == -1 ? str : str.substring(0, semi)).trim();
+        int slash = typeSubType.indexOf('/');
+        if (slash <= 0 || slash == typeSubType.length() - 1) {
+            //a media type is only valid if it has both type and subtype specified
+            return null;
+        }
+        Map<String, String> params = null;
+        while (semi != -1) {
+            int next = indexOfUnquoted(str, ';', semi + 1);
+            String param = str.substring(semi + 1, next == -1 ? str.length() : next);
+            int eq = param.indexOf('=');
+            if (eq != -1) {
+                String value = param.substring(eq + 1).trim();
+                if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
                 }
-                end = length;
-            } else {
-                chunk = str.substring(start, end);
-                str = str.substring(end);
-                //if a quote occurred in the last chunk then the comma is part of a quoted parameter
-                //go find the closing quote then get the comma after it BUT
-                //if there has also only been ONE quote in the tmpChunk so far we need to keep going until
-                // we get the closing quote
-                if (chunk.lastIndexOf('"') != -1 || countOccurrences(tmpChunk, '"') == 1) {
-                    //+1 to remove the comma in the chunk
-                    str = str.substring(1);
-                    tmpChunk += chunk + separator;
-                    continue;
-                } else {
-                    if (tmpChunk.endsWith(separator)) {
-                        tmpChunk = tmpChunk.substring(0, tmpChunk.length() - 1);
-                    }
-                    if (chunk.endsWith(separator)) {
-                        chunk = chunk.substring(0, chunk.length() - 1);
-                    }
-                    if (!tmpChunk.isEmpty()) {
-                        tmp.add(tmpChunk);
-                    }
-                    if (!chunk.isEmpty()) {
-                        tmp.add(chunk);
-                    }
-                    //reset
-                    chunk = "";
-                    tmpChunk = "";
-                    //+1 to remove the last comma seen
-                    str = str.substring(1);
+                if (params == null) {
+                    params = new HashMap<>();
                 }
+                params.put(param.substring(0, eq).trim(), value);
+            }
+            semi = next;
+        }
+        return new MediaType(typeSubType.substring(0, slash).trim(), typeSubType.substring(slash + 1).trim(), params);
+    }
+
+    /**
+     * Parameter values can be quoted, if they are they can contain commas, semi-colons and slashes i.e.
+     * text/xhtml;q="a;bc,123/abc",text/html,application/xhtml+xml,application/xml;q=0.9,*&#47;*;q=0.8
+     */
+    private static int indexOfUnquoted(String str, char c, int from) {
+        boolean quoted = false;
+        for (int i = from; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch == '"') {
+                quoted = !quoted;
+            } else if (ch == c && !quoted) {
+                return i;
             }
         }
-        return tmp;
+        return -1;
     }
 
     public static int countOccurrences(String haystack, char needle) {
@@ -295,6 +355,20 @@ public class MediaType {
         return count;
     }
 
+    /**
+     * @return the value of the q parameter, between 0 and 1, or 1 if it isn't set or isn't valid
+     */
+    public float quality() {
+        return quality;
+    }
+
+    /**
+     * @return 0 for *&#47;*, 1 for a subtype wildcard such as text/* and 2 for a concrete type
+     */
+    public int specificity() {
+        return isWildcardType() ? 0 : isWildcardSubtype() ? 1 : 2;
+    }
+
     /**
      * Checks if the primary type is a wildcard.
      *
@@ -0,0 +1,88 @@
+package io.higgs.http.server.sse;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Topic based fan out of {@link SseEvent}s to any number of {@link SseEmitter}s.
+ * A single broadcaster is created by the {@link io.higgs.http.server.protocol.HttpProtocolConfiguration} and made
+ * available for injection through the global {@link io.higgs.core.reflect.dependency.DependencyProvider}.
+ */
+public class SseBroadcaster {
+    private final ConcurrentMap<String, SseTopic> topics = new ConcurrentHashMap<>();
+    private final int replayBufferSize;
+    private final ByteBufAllocator alloc;
+
+    public SseBroadcaster(int replayBufferSize) {
+        this(replayBufferSize, PooledByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * @param replayBufferSize how many events each topic keeps for Last-Event-ID replay, 0 disables replay
+     * @param alloc            the allocator encoded events are written to
+     */
+    public SseBroadcaster(int replayBufferSize, ByteBufAllocator alloc) {
+        this.replayBufferSize = replayBufferSize;
+        this.alloc = alloc;
+    }
+
+    /**
+     * Get a topic, creating it if it doesn't exist
+     *
+     * @param name the topic's name
+     * @return the topic
+     */
+    public SseTopic topic(String name) {
+        SseTopic topic = topics.get(name);
+        if (topic == null) {
+            topic = new SseTopic(name, replayBufferSize, alloc);
+            SseTopic existing = topics.putIfAbsent(name, topic);
+            if (existing != null) {
+                topic = existing;
+            }
+        }
+        return topic;
+    }
+
+    /**
+     * Publish an unnamed event
+     *
+     * @see #publish(String, String, Object)
+     */
+    public int publish(String topic, Object data) throws JsonProcessingException {
+        return publish(topic, null, data);
+    }
+
+    /**
+     * Publish an event to every subscriber of the topic
+     *
+     * @param topic the topic to publish to
+     * @param event the event name or null
+     * @param data  an {@link SseEvent}, a string or an object to be converted to JSON
+     * @return the number of subscribers the event was delivered or queued for
+     * @throws JsonProcessingException if data is converted to JSON and that conversion fails
+     */
+    public int publish(String topic, String event, Object data) throws JsonProcessingException {
+        return topic(topic).publish(SseEmitter.toEvent(event, data));
+    }
+
+    /**
+     * Removes a topic, existing subscribers stay connected but will get no more events from it
+     *
+     * @param name the topic to remove
+     * @return the removed topic or null if it didn't exist
+     */
+    public SseTopic remove(String name) {
+        return topics.remove(name);
+    }
+
+    public Set<String> topics() {
+        return Collections.unmodifiableSet(topics.keySet());
+    }
+}
@@ -0,0 +1,287 @@
+package io.higgs.http.server.sse;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.higgs.http.server.HttpRequest;
+import io.higgs.http.server.MessagePusher;
+import io.higgs.http.server.config.HttpConfig;
+import io.higgs.http.server.protocol.mediaTypeDecoders.JsonDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link MessagePusher} which writes to a text/event-stream response. One emitter exists per channel, it is
+ * injected into resource methods which accept an {@link SseEmitter} parameter or return one, or which
+ * produce {@link io.higgs.http.server.resource.MediaType#SERVER_SENT_EVENTS}.
+ * <p/>
+ * Messages pushed directly to the emitter are encoded for this channel only. Subscribing the emitter to an
+ * {@link SseTopic} shares one encoded buffer between all subscribers. If the channel isn't writable when a topic
+ * event arrives the event is either dropped or coalesced so that only the latest pending event is written
+ * once the channel becomes writable again, see {@link HttpConfig#sse_coalesce_slow_consumers}.
+ */
+public class SseEmitter implements MessagePusher {
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
+    private static final Logger log = LoggerFactory.getLogger(SseEmitter.class);
+    protected final ChannelHandlerContext ctx;
+    protected final HttpRequest request;
+    protected final SseBroadcaster broadcaster;
+    protected final HttpConfig config;
+    protected final String lastEventId;
+    protected final AtomicBoolean open = new AtomicBoolean();
+    protected final AtomicBoolean closed = new AtomicBoolean();
+    protected final AtomicReference<ByteBuf> pending = new AtomicReference<>();
+    protected final AtomicLong dropped = new AtomicLong();
+    protected final Map<SseTopic, AtomicLong> topics = new ConcurrentHashMap<>();
+    protected ScheduledFuture<?> heartbeat;
+
+    public SseEmitter(ChannelHandlerContext ctx, HttpRequest request, SseBroadcaster broadcaster, HttpConfig config) {
+        this.ctx = ctx;
+        this.request = request;
+        this.broadcaster = broadcaster;
+        this.config = config;
+        lastEventId = request == null ? null : request.headers().get(LAST_EVENT_ID);
+        ctx.channel().closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                closed();
+            }
+        });
+    }
+
+    /**
+     * Send the response headers which start the event stream. Invoked automatically by the
+     * {@link io.higgs.http.server.protocol.HttpHandler} once the resource method returns.
+     * Calling this more than once has no effect.
+     *
+     * @param headers any additional headers to send, e.g. cookies set by the resource method. can be null
+     */
+    public void open(HttpHeaders headers) {
+        if (!open.compareAndSet(false, true)) {
+            return;
+        }
+        DefaultHttpResponse res = new DefaultHttpResponse(request.getProtocolVersion(), HttpResponseStatus.OK);
+        if (headers != null) {
+            res.headers().add(headers);
+        }
+        res.headers().set(HttpHeaders.Names.CONTENT_TYPE, "text/event-stream; charset=UTF-8");
+        res.headers().set(HttpHeaders.Names.CACHE_CONTROL, HttpHeaders.Values.NO_CACHE);
+        res.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+        res.headers().remove(HttpHeaders.Names.CONTENT_LENGTH);
+        HttpHeaders.setTransferEncodingChunked(res);
+        ctx.writeAndFlush(res);
+        if (config.sse_heartbeat_interval > 0) {
+            heartbeat = ctx.executor().scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    //no point sending a heartbeat if the channel's buffer is already full
+                    if (ctx.channel().isWritable()) {
+                        ctx.writeAndFlush(new DefaultHttpContent(Unpooled.wrappedBuffer(SseEvent.HEARTBEAT)));
+                    }
+                }
+            }, config.sse_heartbeat_interval, config.sse_heartbeat_interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Push a message to this client only.
+     * {@link SseEvent}s are sent as is, {@link String}s become the data of an unnamed event and anything else
+     * is converted to JSON.
+     */
+    @Override
+    public ChannelFuture push(Object message) {
+        if (closed.get()) {
+            return ctx.newFailedFuture(new IllegalStateException("Event stream closed"));
+        }
+        if (message == null) {
+            return ctx.newFailedFuture(new IllegalArgumentException("Tried to push a null message"));
+        }
+        SseEvent event;
+        try {
+            event = toEvent(null, message);
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to convert message to JSON for event stream", e);
+            return ctx.newFailedFuture(e);
+        }
+        open(null);
+        return ctx.writeAndFlush(new DefaultHttpContent(event.encode(ctx.alloc())));
+    }
+
+    /**
+     * Subscribe to a topic from the {@link SseBroadcaster}. If the client sent a Last-Event-ID any events it
+     * missed which are still in the topic's replay buffer are sent first.
+     *
+     * @param topic the name of the topic
+     */
+    public void subscribe(String topic) {
+        open(null);
+        broadcaster.topic(topic).subscribe(this, lastEventId);
+    }
+
+    public void unsubscribe(String topic) {
+        SseTopic t = broadcaster.topic(topic);
+        t.unsubscribe(this);
+        topics.remove(t);
+    }
+
+    /**
+     * Invoked by a topic with the topic lock held, before the emitter is added as a subscriber
+     */
+    protected void subscribed(SseTopic topic, long sequence, List<SseEvent> missed) {
+        topics.put(topic, new AtomicLong(sequence));
+        for (SseEvent event : missed) {
+            ctx.write(new DefaultHttpContent(event.encode(ctx.alloc())));
+        }
+        if (!missed.isEmpty()) {
+            ctx.flush();
+        }
+    }
+
+    /**
+     * Offer an already encoded topic event to this client. The buffer is shared with every other subscriber,
+     * it is never modified and a retained duplicate is written. Invoked by the topic with its lock held, so a
+     * topic's events arrive in sequence order.
+     *
+     * @param topic   the topic the event belongs to
+     * @param seq     the topic's sequence number for the event
+     * @param encoded the encoded event
+     * @return true if the event was written or queued, false if it was dropped
+     */
+    protected boolean offer(SseTopic topic, long seq, ByteBuf encoded) {
+        AtomicLong last = topics.get(topic);
+        if (closed.get() || last == null) {
+            return false;
+        }
+        //replayed on subscribe already
+        if (seq <= last.get()) {
+            return false;
+        }
+        last.set(seq);
+        Channel channel = ctx.channel();
+        if (channel.isWritable()) {
+            //a coalesced event is older than this one, it has to go first
+            ByteBuf older = pending.getAndSet(null);
+            if (older != null) {
+                ctx.write(new DefaultHttpContent(older));
+            }
+            ctx.writeAndFlush(new DefaultHttpContent(encoded.duplicate().retain()));
+            return true;
+        }
+        if (!config.sse_coalesce_slow_consumers) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        ByteBuf old = pending.getAndSet(encoded.duplicate().retain());
+        if (old != null) {
+            old.release();
+            dropped.incrementAndGet();
+        }
+        if (closed.get()) {
+            //closed while we were queueing, make sure the buffer isn't leaked
+            ByteBuf buf = pending.getAndSet(null);
+            if (buf != null) {
+                buf.release();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Invoked when the channel's writability changes, writes any coalesced event once the channel can take more
+     */
+    public void writabilityChanged() {
+        if (!ctx.channel().isWritable()) {
+            return;
+        }
+        ByteBuf buf = pending.getAndSet(null);
+        if (buf != null) {
+            ctx.writeAndFlush(new DefaultHttpContent(buf));
+        }
+    }
+
+    /**
+     * End the event stream and close the connection
+     *
+     * @return the future of the final write
+     */
+    public ChannelFuture complete() {
+        ChannelFuture f = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        f.addListener(ChannelFutureListener.CLOSE);
+        return f;
+    }
+
+    protected void closed() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+        }
+        for (SseTopic topic : topics.keySet()) {
+            topic.unsubscribe(this);
+        }
+        topics.clear();
+        ByteBuf buf = pending.getAndSet(null);
+        if (buf != null) {
+            buf.release();
+        }
+    }
+
+    /**
+     * Convert any supported object to an event
+     *
+     * @param name    the event name, can be null
+     * @param message the event or data
+     * @return the event
+     * @throws JsonProcessingException if the message isn't an event or string and can't be converted to JSON
+     */
+    public static SseEvent toEvent(String name, Object message) throws JsonProcessingException {
+        if (message instanceof SseEvent) {
+            return (SseEvent) message;
+        }
+        String data = message instanceof CharSequence ? message.toString() :
+                JsonDecoder.mapper.writeValueAsString(message);
+        return new SseEvent(null, name, data);
+    }
+
+    /**
+     * @return the number of topic events this client missed because its channel wasn't writable
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public boolean isOpen() {
+        return open.get() && !closed.get();
+    }
+
+    /**
+     * @return the ID the client sent in the Last-Event-ID header or null
+     */
+    public String lastEventId() {
+        return lastEventId;
+    }
+
+    @Override
+    public ChannelHandlerContext ctx() {
+        return ctx;
+    }
+}
@@ -0,0 +1,120 @@
+package io.higgs.http.server.sse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.CharsetUtil;
+
+/**
+ * A single Server-Sent Event. Instances are immutable, once an event is published its encoded form
+ * is shared by every subscriber so it must never change.
+ * See <a href="http://www.w3.org/TR/eventsource/#event-stream-interpretation">event stream interpretation</a>
+ */
+public class SseEvent {
+    /**
+     * A comment line, ignored by browsers but keeps intermediaries from timing out idle connections
+     */
+    public static final byte[] HEARTBEAT = ":\n\n".getBytes(CharsetUtil.UTF_8);
+    private final String id;
+    private final String event;
+    private final String data;
+    private final long retry;
+
+    public SseEvent(String data) {
+        this(null, null, data);
+    }
+
+    public SseEvent(String id, String event, String data) {
+        this(id, event, data, -1);
+    }
+
+    /**
+     * @param id    the event's ID, sent back by the browser in the Last-Event-ID header on reconnect. can be null
+     * @param event the event name, if null browsers dispatch it as a "message" event
+     * @param data  the event's payload, multi-line strings are sent as multiple data fields
+     * @param retry the reconnection time in milliseconds, ignored if less than 0
+     * @throws IllegalArgumentException if the ID or name contains a line break, it would end the field early and
+     *                                  the rest of the value would be read as fields of its own
+     */
+    public SseEvent(String id, String event, String data, long retry) {
+        checkSingleLine("ID", id);
+        checkSingleLine("name", event);
+        this.id = id;
+        this.event = event;
+        this.data = data == null ? "" : data;
+        this.retry = retry;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String event() {
+        return event;
+    }
+
+    public String data() {
+        return data;
+    }
+
+    public long retry() {
+        return retry;
+    }
+
+    /**
+     * Encode this event in the text/event-stream format
+     *
+     * @param alloc the allocator to get the buffer from
+     * @return a buffer with a ref count of 1 owned by the caller
+     */
+    public ByteBuf encode(ByteBufAllocator alloc) {
+        ByteBuf buf = alloc.buffer(data.length() + 32);
+        if (id != null) {
+            writeField(buf, "id", id);
+        }
+        if (event != null) {
+            writeField(buf, "event", event);
+        }
+        if (retry >= 0) {
+            writeField(buf, "retry", String.valueOf(retry));
+        }
+        int start = 0;
+        //CR LF, CR and LF all end a field so each line must be sent as its own data field
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c == '\r' || c == '\n') {
+                writeField(buf, "data", data.substring(start, i));
+                if (c == '\r' && i + 1 < data.length() && data.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        writeField(buf, "data", data.substring(start));
+        buf.writeByte('\n');
+        return buf;
+    }
+
+    private static void checkSingleLine(String field, String value) {
+        if (value != null && (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0)) {
+            throw new IllegalArgumentException(String.format("An event's %s cannot contain a line break", field));
+        }
+    }
+
+    private void writeField(ByteBuf buf, String name, String value) {
+        buf.writeBytes(name.getBytes(CharsetUtil.UTF_8));
+        buf.writeByte(':');
+        buf.writeByte(' ');
+        buf.writeBytes(value.getBytes(CharsetUtil.UTF_8));
+        buf.writeByte('\n');
+    }
+
+    @Override
+    public String toString() {
+        return "SseEvent{" +
+                "id='" + id + '\'' +
+                ", event='" + event + '\'' +
+                ", data='" + data + '\'' +
+                ", retry=" + retry +
+                '}';
+    }
+}
@@ -0,0 +1,128 @@
+package io.higgs.http.server.sse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A named stream of {@link SseEvent}s. Every published event is encoded exactly once and the same buffer is
+ * written to every subscriber. The last N events are kept in a ring buffer so that clients which reconnect with
+ * a Last-Event-ID header can have the events they missed replayed.
+ */
+public class SseTopic {
+    private final String name;
+    private final ByteBufAllocator alloc;
+    private final Set<SseEmitter> subscribers =
+            Collections.newSetFromMap(new ConcurrentHashMap<SseEmitter, Boolean>());
+    private final SseEvent[] ring;
+    private final long[] ringSequences;
+    private long sequence;
+
+    public SseTopic(String name, int replayBufferSize, ByteBufAllocator alloc) {
+        if (name == null) {
+            throw new IllegalArgumentException("Topic name cannot be null");
+        }
+        this.name = name;
+        this.alloc = alloc;
+        ring = new SseEvent[Math.max(replayBufferSize, 0)];
+        ringSequences = new long[ring.length];
+    }
+
+    /**
+     * Publish an event to all subscribers of this topic.
+     * If the event has no ID then the topic's sequence number is used as its ID. Events are offered to subscribers
+     * under the topic's lock so every subscriber receives them in sequence order, even when several threads
+     * publish at once. Offering never blocks, a subscriber that can't take an event drops or coalesces it.
+     *
+     * @param event the event to publish
+     * @return the number of subscribers the event was delivered or queued for
+     */
+    public int publish(SseEvent event) {
+        synchronized (ring) {
+            long seq = ++sequence;
+            if (event.id() == null) {
+                event = new SseEvent(String.valueOf(seq), event.event(), event.data(), event.retry());
+            }
+            if (ring.length > 0) {
+                int idx = (int) (seq % ring.length);
+                ring[idx] = event;
+                ringSequences[idx] = seq;
+            }
+            if (subscribers.isEmpty()) {
+                return 0;
+            }
+            ByteBuf encoded = event.encode(alloc);
+            int delivered = 0;
+            try {
+                for (SseEmitter subscriber : subscribers) {
+                    if (subscriber.offer(this, seq, encoded)) {
+                        delivered++;
+                    }
+                }
+            } finally {
+                encoded.release();
+            }
+            return delivered;
+        }
+    }
+
+    /**
+     * Subscribe the emitter to this topic. Any events retained in the replay buffer which were published after
+     * lastEventId are sent to the emitter first. If lastEventId is no longer in the buffer everything retained
+     * is replayed.
+     *
+     * @param emitter     the emitter to subscribe
+     * @param lastEventId the ID of the last event the client received or null if this is a new client
+     */
+    public void subscribe(SseEmitter emitter, String lastEventId) {
+        List<SseEvent> missed = new ArrayList<>();
+        //replay and registration happen under the same lock as publishing so the emitter sees every event once
+        synchronized (ring) {
+            if (lastEventId != null && ring.length > 0) {
+                long oldest = Math.max(sequence - ring.length + 1, 1);
+                long from = oldest;
+                //scan from newest to oldest, the most likely match is a client that only just disconnected
+                for (long s = sequence; s >= oldest; s--) {
+                    SseEvent e = ring[(int) (s % ring.length)];
+                    if (e != null && lastEventId.equals(e.id())) {
+                        from = s + 1;
+                        break;
+                    }
+                }
+                for (long s = from; s <= sequence; s++) {
+                    int idx = (int) (s % ring.length);
+                    if (ring[idx] != null && ringSequences[idx] == s) {
+                        missed.add(ring[idx]);
+                    }
+                }
+            }
+            emitter.subscribed(this, sequence, missed);
+            subscribers.add(emitter);
+        }
+    }
+
+    public boolean unsubscribe(SseEmitter emitter) {
+        return subscribers.remove(emitter);
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "SseTopic{" +
+                "name='" + name + '\'' +
+                ", subscribers=" + subscribers.size() +
+                '}';
+    }
+}
@@ -26,6 +26,11 @@ public abstract class BaseTransformer implements ResponseTransformer {
     protected Logger log = LoggerFactory.getLogger(getClass());
     protected int priority;
     protected Set<MediaType> supportedTypes = new HashSet<>();
+    private MediaType[] supportedTypesArray = new MediaType[0];
+    /**
+     * True if a subclass overrides canTransform, route level decisions can't assume the default rules then
+     */
+    private final boolean customCanTransform = overridesCanTransform();
 
     protected void setResponseContent(HttpResponse res, byte[] data) {
         if (data != null) {
@@ -65,13 +70,56 @@ public abstract class BaseTransformer implements ResponseTransformer {
     public boolean canTransform(Object response, HttpRequest request, MediaType mediaType,
                                 HttpMethod method, ChannelHandlerContext ctx) {
         if (method != null && method.hasProduces()) {
-            return method.produces(supportedTypes.toArray(new MediaType[supportedTypes.size()]));
+            return method.produces(supportedTypes());
         } else {
             //if is error we need to handle converting the error to an output or if the response isn't a static file
             return mediaTypeMatches(request) && ((isError(response)) || !isStaticFileResponse(response));
         }
     }
 
+    /**
+     * Decides once per route, without a request, if this transformer may be able to handle the route's non-error
+     * responses. Routes only consider the transformers this returns true for, so it must not return false if
+     * {@link #canTransform(Object, HttpRequest, MediaType, HttpMethod, ChannelHandlerContext)} could return true.
+     *
+     * @param method the route's method
+     * @return false if this transformer can never handle the route's non-error responses
+     */
+    public boolean canTransformRoute(HttpMethod method) {
+        return customCanTransform || !method.hasProduces() || method.produces(supportedTypes());
+    }
+
+    /**
+     * @param method the route's method
+     * @return true if, for the given route, canTransform's result depends only on the matched media type and the
+     * class of the response so the route can cache which transformer it selects
+     */
+    public boolean isCacheable(HttpMethod method) {
+        //without produces the client's accept header is checked
+        return !customCanTransform && method.hasProduces();
+    }
+
+    private boolean overridesCanTransform() {
+        try {
+            return getClass().getMethod("canTransform", Object.class, HttpRequest.class, MediaType.class,
+                    HttpMethod.class, ChannelHandlerContext.class).getDeclaringClass() != BaseTransformer.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return the supported types as an array, cached until the set's size changes
+     */
+    protected MediaType[] supportedTypes() {
+        MediaType[] types = supportedTypesArray;
+        if (types.length != supportedTypes.size()) {
+            types = supportedTypes.toArray(new MediaType[supportedTypes.size()]);
+            supportedTypesArray = types;
+        }
+        return types;
+    }
+
     /**
      * Checks if the this transformer supports the {@link io.higgs.http.server.resource.MediaType}s supported by the
      * request.
@@ -0,0 +1,86 @@
+package io.higgs.http.server.transformers;
+
+import io.higgs.http.server.HttpRequest;
+import io.higgs.http.server.protocol.HttpMethod;
+import io.higgs.http.server.resource.MediaType;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The transformers which may be able to handle a single route's non-error responses, in priority order.
+ * If every candidate's decision depends only on the route, the matched media type and the class of the response
+ * then the transformer selected for each (media type, response class) pair is cached, so after the first response
+ * selection doesn't call {@link ResponseTransformer#canTransform} at all.
+ */
+public class RouteTransformers {
+    private static final int MAX_CACHED = 8;
+    private static final Entry[] EMPTY = new Entry[0];
+    private final ResponseTransformer[] candidates;
+    private final boolean cacheable;
+    private final int generation;
+    private volatile Entry[] cache = EMPTY;
+
+    public RouteTransformers(List<ResponseTransformer> candidates, boolean cacheable, int generation) {
+        this.candidates = candidates.toArray(new ResponseTransformer[candidates.size()]);
+        this.cacheable = cacheable;
+        this.generation = generation;
+    }
+
+    /**
+     * @return the first candidate able to transform the response or null if none can
+     */
+    public ResponseTransformer select(Object response, HttpRequest request, HttpMethod method,
+                                      ChannelHandlerContext ctx) {
+        MediaType mediaType = request.getMatchedMediaType();
+        Class<?> responseClass = response == null ? null : response.getClass();
+        Entry[] entries = cache;
+        if (cacheable) {
+            //matched media types are the method's own produces instances or the wildcard constant, identity works
+            for (Entry e : entries) {
+                if (e.mediaType == mediaType && e.responseClass == responseClass) {
+                    return e.transformer;
+                }
+            }
+        }
+        ResponseTransformer selected = null;
+        for (ResponseTransformer t : candidates) {
+            if (t.canTransform(response, request, mediaType, method, ctx)) {
+                selected = t;
+                break;
+            }
+        }
+        if (cacheable && entries.length < MAX_CACHED) {
+            //racing writers may lose an entry, it'll just be worked out again
+            Entry[] copy = Arrays.copyOf(entries, entries.length + 1);
+            copy[entries.length] = new Entry(mediaType, responseClass, selected);
+            cache = copy;
+        }
+        return selected;
+    }
+
+    public int generation() {
+        return generation;
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public List<ResponseTransformer> candidates() {
+        return Arrays.asList(candidates);
+    }
+
+    private static final class Entry {
+        private final MediaType mediaType;
+        private final Class<?> responseClass;
+        private final ResponseTransformer transformer;
+
+        private Entry(MediaType mediaType, Class<?> responseClass, ResponseTransformer transformer) {
+            this.mediaType = mediaType;
+            this.responseClass = responseClass;
+            this.transformer = transformer;
+        }
+    }
+}
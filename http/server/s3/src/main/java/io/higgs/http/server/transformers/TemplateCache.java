@@ -0,0 +1,115 @@
+package io.higgs.http.server.transformers;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded cache of compiled templates keyed by template name, used by the template transformers so each template
+ * is read and compiled once rather than on every response.
+ * <p/>
+ * If a check interval is set, a cached template's source is checked for modifications at most once per interval and
+ * the template is recompiled when it has changed. With a max size of 0 nothing is cached.
+ *
+ * @param <T> the type of the compiled template
+ */
+public class TemplateCache<T> {
+    private final ConcurrentHashMap<String, Entry<T>> templates = new ConcurrentHashMap<>();
+    private final Loader<T> loader;
+    private final int maxSize;
+    private final long checkInterval;
+
+    /**
+     * @param loader        loads and compiles templates
+     * @param maxSize       the maximum number of templates to keep, 0 disables caching
+     * @param checkInterval how often to check a cached template's source for changes in milliseconds,
+     *                      0 never checks
+     */
+    public TemplateCache(Loader<T> loader, int maxSize, long checkInterval) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Template loader cannot be null");
+        }
+        this.loader = loader;
+        this.maxSize = maxSize;
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * @param name the template's name
+     * @return the compiled template, from the cache if it's there and its source hasn't been modified
+     * @throws IOException if the template needs to be loaded and can't be
+     */
+    public T get(String name) throws IOException {
+        if (maxSize <= 0) {
+            return loader.load(name);
+        }
+        Entry<T> entry = templates.get(name);
+        long now = System.currentTimeMillis();
+        if (entry != null) {
+            if (checkInterval <= 0 || now - entry.checkedAt < checkInterval) {
+                return entry.template;
+            }
+            entry.checkedAt = now;
+            if (loader.lastModified(name) == entry.lastModified) {
+                return entry.template;
+            }
+        } else if (templates.size() >= maxSize) {
+            evictOne();
+        }
+        //concurrent misses may both compile, the last one in wins which is harmless
+        long lastModified = loader.lastModified(name);
+        T template = loader.load(name);
+        templates.put(name, new Entry<>(template, lastModified, now));
+        return template;
+    }
+
+    /**
+     * Remove a template so it's loaded again the next time it's needed
+     */
+    public void invalidate(String name) {
+        templates.remove(name);
+    }
+
+    public void clear() {
+        templates.clear();
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    private void evictOne() {
+        //rather than track usage remove whichever comes first, often used templates are quickly back
+        Iterator<String> it = templates.keySet().iterator();
+        if (it.hasNext()) {
+            templates.remove(it.next());
+        }
+    }
+
+    /**
+     * Loads templates for a {@link TemplateCache}
+     */
+    public interface Loader<T> {
+        /**
+         * @return the compiled template with the given name
+         */
+        T load(String name) throws IOException;
+
+        /**
+         * @return when the template's source was last modified, used to decide if a cached template is stale
+         */
+        long lastModified(String name);
+    }
+
+    private static final class Entry<T> {
+        private final T template;
+        private final long lastModified;
+        private volatile long checkedAt;
+
+        private Entry(T template, long lastModified, long checkedAt) {
+            this.template = template;
+            this.lastModified = lastModified;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package io.higgs.http.server.transformers;
+
+import io.higgs.core.ResolvedFile;
+import io.higgs.http.server.HttpRequest;
+import io.higgs.http.server.HttpResponse;
+import io.higgs.http.server.ManagedWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Where template transformers render to. Output goes straight into a pooled {@link ByteBuf} which becomes the
+ * response's content, so a page is never copied into a String or byte[] first.
+ * <p/>
+ * If a chunk size is given, once that many bytes have been rendered the response headers and the output so far are
+ * sent as chunked content while rendering continues, and the rest is sent by the {@link ManagedWriter} methods once
+ * the handler writes the response. Chunking is never used for HTTP/1.0 clients.
+ * <p/>
+ * Headers can't change once they're sent, so the request's session is created before the first chunk to make sure
+ * its cookie goes out with them. Cookies set on the response after that can't be sent and are logged as dropped.
+ */
+public class TemplateOutput extends OutputStream implements ManagedWriter {
+    private static final int INITIAL_CAPACITY = 4096;
+    private final ChannelHandlerContext ctx;
+    private final HttpRequest request;
+    private final HttpResponse res;
+    private final int chunkSize;
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private ByteBuf buf;
+    private List<String> sentCookies;
+    private boolean streaming;
+    private boolean done;
+
+    /**
+     * @param chunkSize the number of bytes after which output is sent as chunked content, 0 to never chunk
+     */
+    public TemplateOutput(ChannelHandlerContext ctx, HttpRequest request, HttpResponse res, int chunkSize) {
+        this.ctx = ctx;
+        this.request = request;
+        this.res = res;
+        this.chunkSize = request == null || HttpVersion.HTTP_1_0.equals(request.getProtocolVersion()) ? 0 : chunkSize;
+        buf = allocate();
+    }
+
+    /**
+     * @return a writer encoding to this output with the given charset
+     */
+    public Writer writer(Charset charset) {
+        return new OutputStreamWriter(this, charset);
+    }
+
+    @Override
+    public void write(int b) {
+        buf.writeByte(b);
+        chunk();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        buf.writeBytes(b, off, len);
+        chunk();
+    }
+
+    /**
+     * @return true if the headers and some of the content have already been sent
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Rendering has finished, hand the output to the response. Call after flushing the writer.
+     */
+    public void complete() {
+        if (streaming) {
+            res.finalizeCustomHeaders(request);
+            List<String> cookies = res.headers().getAll(HttpHeaders.Names.SET_COOKIE);
+            if (!sentCookies.containsAll(cookies)) {
+                log.warn(String.format("Cookies set after %s started streaming were not sent", request.getUri()));
+            }
+            res.setManagedWriter(this);
+        } else {
+            res.content().release();
+            res.resetContent(buf);
+            buf = null;
+        }
+    }
+
+    /**
+     * Rendering failed, discard the output. If part of the response has already been sent there's no way to report
+     * the error to the client so the connection is closed.
+     */
+    public void abort() {
+        if (buf != null) {
+            buf.release();
+            buf = null;
+        }
+        if (streaming) {
+            done = true;
+            ctx.close();
+        }
+    }
+
+    @Override
+    public ChannelFuture doWrite() {
+        ByteBuf last = buf;
+        buf = null;
+        ChannelFuture future = ctx.writeAndFlush(new DefaultLastHttpContent(last));
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) {
+                done = true;
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public ResolvedFile getFile() {
+        return null;
+    }
+
+    private void chunk() {
+        if (chunkSize <= 0 || buf.readableBytes() < chunkSize) {
+            return;
+        }
+        if (!streaming) {
+            streaming = true;
+            DefaultHttpResponse head = new DefaultHttpResponse(res.getProtocolVersion(), res.getStatus());
+            if (request.isSessionEnabled() && !request.isSubjectCreated()) {
+                //a session the template starts later would need a cookie after the headers have gone
+                request.getSubject();
+            }
+            res.finalizeCustomHeaders(request);
+            sentCookies = res.headers().getAll(HttpHeaders.Names.SET_COOKIE);
+            head.headers().add(res.headers());
+            head.headers().remove(HttpHeaders.Names.CONTENT_LENGTH);
+            HttpHeaders.setTransferEncodingChunked(head);
+            ctx.write(head);
+        }
+        ctx.writeAndFlush(new DefaultHttpContent(buf));
+        buf = allocate();
+    }
+
+    private ByteBuf allocate() {
+        return PooledByteBufAllocator.DEFAULT.buffer(chunkSize > 0 ? Math.min(chunkSize, INITIAL_CAPACITY)
+                : INITIAL_CAPACITY);
+    }
+}
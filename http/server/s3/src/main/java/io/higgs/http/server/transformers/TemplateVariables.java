@@ -0,0 +1,175 @@
+package io.higgs.http.server.transformers;
+
+import io.higgs.http.server.HttpRequest;
+import io.higgs.http.server.protocol.HttpMethod;
+import org.apache.shiro.session.Session;
+import org.apache.shiro.subject.Subject;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The variables every template gets i.e. ${_query} ,${_form},${_files},${_subject},${_session},${_cookies},
+ * ${_request},${_response} and ${_validation}, as a read-only map which looks each one up when it's asked for
+ * instead of copying them all into a new map for every render.
+ * <p/>
+ * The request's subject and session are only created when first used, so ${_subject} and ${_session} are stand-ins
+ * which create them the first time one of their methods is called. A template that never uses the session never
+ * starts one, even if the engine copies every variable before rendering.
+ */
+public class TemplateVariables extends AbstractMap<String, Object> {
+    public static final String QUERY = "_query";
+    public static final String FORM = "_form";
+    public static final String FILES = "_files";
+    public static final String SUBJECT = "_subject";
+    public static final String SESSION = "_session";
+    public static final String COOKIES = "_cookies";
+    public static final String REQUEST = "_request";
+    public static final String RESPONSE = "_response";
+    public static final String VALIDATION = "_validation";
+    private static final String[] KEYS = {QUERY, FORM, FILES, SUBJECT, SESSION, COOKIES, REQUEST, RESPONSE,
+            VALIDATION};
+    private final HttpRequest request;
+    private final Object response;
+    private final HttpMethod method;
+    private Set<Entry<String, Object>> entries;
+
+    /**
+     * @param method the method which was invoked, if null there's no ${_validation}
+     */
+    public TemplateVariables(HttpRequest request, Object response, HttpMethod method) {
+        if (request == null) {
+            throw new IllegalArgumentException("Request cannot be null");
+        }
+        this.request = request;
+        this.response = response;
+        this.method = method;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        switch ((String) key) {
+            case QUERY:
+                return request.getQueryParams();
+            case FORM:
+                return request.getFormParam();
+            case FILES:
+                return request.getFormFiles();
+            case SUBJECT:
+                return subject();
+            case SESSION:
+                return session();
+            case COOKIES:
+                return request.getCookies();
+            case REQUEST:
+                return request;
+            case RESPONSE:
+                return response;
+            case VALIDATION:
+                return method == null ? null : method.getValidationResult();
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (VALIDATION.equals(key)) {
+            return method != null;
+        }
+        for (String k : KEYS) {
+            if (k.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return method == null ? KEYS.length - 1 : KEYS.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entries == null) {
+            entries = new Entries();
+        }
+        return entries;
+    }
+
+    private Subject subject() {
+        if (request.isSubjectCreated() || !request.isSessionEnabled()) {
+            return request.getSubject();
+        }
+        return lazy(Subject.class, false);
+    }
+
+    private Session session() {
+        if (request.isSubjectCreated()) {
+            return request.getSubject().getSession();
+        }
+        if (!request.isSessionEnabled()) {
+            return null;
+        }
+        return lazy(Session.class, true);
+    }
+
+    private <T> T lazy(Class<T> type, final boolean session) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                Subject subject = request.getSubject();
+                try {
+                    return m.invoke(session ? subject.getSession() : subject, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        }));
+    }
+
+    private final class Entries extends AbstractSet<Entry<String, Object>> {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new Iterator<Entry<String, Object>>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size();
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    //VALIDATION is last so it's skipped when there's no method
+                    String key = KEYS[next++];
+                    return new SimpleImmutableEntry<>(key, get(key));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return TemplateVariables.this.size();
+        }
+    }
+}
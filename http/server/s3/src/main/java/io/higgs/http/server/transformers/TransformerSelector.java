@@ -0,0 +1,93 @@
+package io.higgs.http.server.transformers;
+
+import io.higgs.core.FixedSortedList;
+import io.higgs.http.server.HttpRequest;
+import io.higgs.http.server.protocol.HttpMethod;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the {@link ResponseTransformer} for a response. Each registered route gets its candidate transformers
+ * worked out once from its produces media types and template, see {@link BaseTransformer#canTransformRoute}.
+ * Errors and routes which weren't registered (e.g. static files) fall back to checking every transformer.
+ * <p/>
+ * If transformers are added or removed after routes are registered each route's candidates are rebuilt the next time
+ * it's used. If a transformer is replaced by another call {@link #invalidate()}.
+ */
+public class TransformerSelector {
+    private final Queue<ResponseTransformer> transformers;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public TransformerSelector(Queue<ResponseTransformer> transformers) {
+        if (transformers == null) {
+            throw new IllegalArgumentException("Transformers cannot be null");
+        }
+        this.transformers = transformers;
+    }
+
+    /**
+     * Work out the candidate transformers for a route
+     *
+     * @param method the route's method
+     */
+    public void register(HttpMethod method) {
+        method.setRouteTransformers(build(method, currentGeneration()));
+    }
+
+    /**
+     * Discard every route's candidates, they're rebuilt the next time each route is used
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return the transformer to use or null if none of them can transform the response
+     */
+    public ResponseTransformer select(Object response, HttpRequest request, HttpMethod method,
+                                      ChannelHandlerContext ctx) {
+        if (method == null || response instanceof Throwable || method.getRouteTransformers() == null) {
+            for (ResponseTransformer t : new FixedSortedList<>(transformers)) {
+                if (t.canTransform(response, request, request.getMatchedMediaType(), method, ctx)) {
+                    return t;
+                }
+            }
+            return null;
+        }
+        RouteTransformers route = method.getRouteTransformers();
+        int current = currentGeneration();
+        if (route.generation() != current) {
+            route = build(method, current);
+            method.setRouteTransformers(route);
+        }
+        return route.select(response, request, method, ctx);
+    }
+
+    private RouteTransformers build(HttpMethod method, int gen) {
+        List<ResponseTransformer> candidates = new ArrayList<>();
+        boolean cacheable = true;
+        for (ResponseTransformer t : new FixedSortedList<>(transformers)) {
+            if (t instanceof BaseTransformer) {
+                BaseTransformer bt = (BaseTransformer) t;
+                if (bt.canTransformRoute(method)) {
+                    candidates.add(t);
+                    cacheable &= bt.isCacheable(method);
+                }
+            } else {
+                //nothing is known about other implementations so they're always asked
+                candidates.add(t);
+                cacheable = false;
+            }
+        }
+        return new RouteTransformers(candidates, cacheable, gen);
+    }
+
+    private int currentGeneration() {
+        //size is cheap for the handful of transformers a server has and catches additions/removals
+        return generation.get() * 31 + transformers.size();
+    }
+}
@@ -0,0 +1,94 @@
+package io.higgs.http.server;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TranscriberTest {
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("/a/b/", prefix("^/a/b/(\\w+)"));
+        //escaped punctuation is literal, character classes aren't
+        assertEquals("/a.b/", prefix("/a\\.b/\\d+"));
+        //an optional or repeated character can't be part of it
+        assertEquals("/a", prefix("/ab?c"));
+        assertEquals("/a", prefix("/ab*c"));
+        assertEquals("/a", prefix("/ab{2}c"));
+        assertEquals("/a", prefix("/a(b|c)"));
+        //could match without it
+        assertEquals("", prefix("/a|/b"));
+        assertEquals("", prefix(".*\\.php"));
+        assertEquals("", Transcription.literalPrefix(Pattern.compile("/a", Pattern.CASE_INSENSITIVE)));
+    }
+
+    @Test
+    public void testFirstAddedWinsAcrossPrefixes() {
+        //both match, the longer prefix is deeper in the trie but the shorter one was added first
+        Transcriber transcriber = new Transcriber();
+        transcriber.addTranscription(new Transcription("/api/.*", "/general"));
+        transcriber.addTranscription(new Transcription("/api/v1/.*", "/specific"));
+        assertEquals("/general", transcriber.transcribe("/api/v1/users"));
+
+        transcriber = new Transcriber();
+        transcriber.addTranscription(new Transcription("/api/v1/.*", "/specific"));
+        transcriber.addTranscription(new Transcription("/api/.*", "/general"));
+        assertEquals("/specific", transcriber.transcribe("/api/v1/users"));
+        assertEquals("/general", transcriber.transcribe("/api/v2/users"));
+    }
+
+    @Test
+    public void testSharedPrefixFallsThroughToNextMatch() {
+        Transcriber transcriber = new Transcriber(0);
+        transcriber.addTranscription(new Transcription("/a/(\\w+)", "/one/$1", false));
+        transcriber.addTranscription(new Transcription("/a/(\\w+)/(\\w+)", "/two/$1/$2", false));
+        transcriber.addTranscription(new Transcription("/ab", "/three"));
+        assertEquals("/one/x", transcriber.transcribe("/a/x"));
+        assertEquals("/two/x/y", transcriber.transcribe("/a/x/y"));
+        assertEquals("/three", transcriber.transcribe("/ab"));
+    }
+
+    @Test
+    public void testPatternsWithoutAPrefixAreAlwaysTried() {
+        Transcriber transcriber = new Transcriber();
+        transcriber.addTranscription(new Transcription("/legacy/(\\w+)\\.html", "/new/$1", false));
+        transcriber.addTranscription(new Transcription(".*\\.php", "/php"));
+        transcriber.addTranscription(new Transcription(Pattern.compile("/UPPER/.*", Pattern.CASE_INSENSITIVE),
+                "/upper"));
+        assertEquals("/new/page", transcriber.transcribe("/legacy/page.html"));
+        assertEquals("/php", transcriber.transcribe("/legacy/index.php"));
+        assertEquals("/php", transcriber.transcribe("/index.php"));
+        assertEquals("/upper", transcriber.transcribe("/upper/x"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        Transcriber transcriber = new Transcriber();
+        assertNull(transcriber.transcribe("/anything"));
+        transcriber.addTranscription(new Transcription("/legacy/(\\w+)\\.html", "/new/$1", false));
+        //shorter than the prefix, diverges from it, matches the prefix but not the pattern
+        for (String uri : new String[]{ "", "/leg", "/other/page.html", "/legacy/a/b.html" }) {
+            assertNull(transcriber.transcribe(uri));
+            //and again from the cache
+            assertNull(transcriber.transcribe(uri));
+        }
+    }
+
+    @Test
+    public void testRefreshAfterModifying() {
+        Transcriber transcriber = new Transcriber();
+        Transcription transcription = new Transcription("/old", "/new");
+        transcriber.addTranscription(transcription);
+        assertEquals("/new", transcriber.transcribe("/old"));
+        transcription.setPattern(Pattern.compile("/older"));
+        transcriber.refresh();
+        assertNull(transcriber.transcribe("/old"));
+        assertEquals("/new", transcriber.transcribe("/older"));
+    }
+
+    private static String prefix(String regex) {
+        return Transcription.literalPrefix(Pattern.compile(regex));
+    }
+}
@@ -0,0 +1,43 @@
+package io.higgs.http.server.accesslog;
+
+import io.higgs.http.server.HttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AccessLogTest {
+    @Test(timeout = 60000)
+    public void testCloseWritesQueuedRecords() throws Exception {
+        Path dir = Files.createTempDirectory("access-log");
+        Path file = dir.resolve("access.log");
+        AccessLog log = new AccessLog(AccessLogFormat.COMBINED, 1024, file.toString(), false);
+        InetSocketAddress client = new InetSocketAddress("127.0.0.1", 1234);
+        for (int i = 0; i < 100; i++) {
+            //the writer parks when it catches up, each batch has to wake it
+            if (i % 10 == 0) {
+                Thread.sleep(5);
+            }
+            assertTrue(log.log(client, new HttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/r" + i, null),
+                    200, i));
+        }
+        log.close(10000);
+        assertFalse(log.log(client, new HttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/late", null), 200, 0));
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(100, lines.size());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(lines.get(i), lines.get(i).contains("GET /r" + i + " "));
+        }
+        Files.delete(file);
+        Files.delete(dir);
+    }
+}
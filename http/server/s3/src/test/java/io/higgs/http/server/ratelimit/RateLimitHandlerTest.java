@@ -0,0 +1,65 @@
+package io.higgs.http.server.ratelimit;
+
+import io.higgs.core.metrics.ServerMetrics;
+import io.higgs.core.ratelimit.RateLimiter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimitHandlerTest {
+    @Test
+    public void testRefusedWithTooManyRequests() {
+        HttpRateLimiter limiter = new HttpRateLimiter(new RateLimiter(1, 1, TimeUnit.MINUTES, 1, 10),
+                RateLimitKey.HEADER, "X-Api-Key");
+        ServerMetrics metrics = new ServerMetrics();
+        EmbeddedChannel allowed = new EmbeddedChannel(new RateLimitHandler(limiter, null, metrics));
+        HttpRequest first = request("key");
+        allowed.writeInbound(first);
+        assertSame(first, allowed.readInbound());
+        assertNull(allowed.readOutbound());
+
+        EmbeddedChannel refused = new EmbeddedChannel(new RateLimitHandler(limiter, null, metrics));
+        //the content arrives before the close
+        refused.writeInbound(request("key"), LastHttpContent.EMPTY_LAST_CONTENT);
+        //neither the request nor its content is passed on
+        assertNull(refused.readInbound());
+        FullHttpResponse res = (FullHttpResponse) refused.readOutbound();
+        assertEquals(HttpResponseStatus.TOO_MANY_REQUESTS, res.getStatus());
+        assertEquals("60", res.headers().get(HttpHeaders.Names.RETRY_AFTER));
+        assertEquals(HttpHeaders.Values.CLOSE, res.headers().get(HttpHeaders.Names.CONNECTION));
+        assertEquals(HttpResponseStatus.TOO_MANY_REQUESTS.reasonPhrase(), res.content().toString(CharsetUtil.UTF_8));
+        assertFalse(refused.isOpen());
+
+        assertEquals(1, metrics.getRequests());
+        assertEquals(0, metrics.getInFlight());
+        assertEquals(Long.valueOf(1), metrics.getErrorsByStatus().get(429));
+        assertEquals(1, metrics.route(null).getErrors());
+
+        //another client isn't affected
+        EmbeddedChannel other = new EmbeddedChannel(new RateLimitHandler(limiter, null, metrics));
+        other.writeInbound(request("other"));
+        assertTrue(other.readInbound() instanceof HttpRequest);
+    }
+
+    private static HttpRequest request(String key) {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        request.headers().set("X-Api-Key", key);
+        return request;
+    }
+}
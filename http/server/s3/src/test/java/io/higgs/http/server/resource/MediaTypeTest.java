@@ -0,0 +1,99 @@
+package io.higgs.http.server.resource;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static io.higgs.http.server.resource.MediaType.APPLICATION_JSON_TYPE;
+import static io.higgs.http.server.resource.MediaType.TEXT_HTML_TYPE;
+import static io.higgs.http.server.resource.MediaType.TEXT_PLAIN_TYPE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MediaTypeTest {
+    private static final List<MediaType> PRODUCES = Arrays.asList(TEXT_HTML_TYPE, APPLICATION_JSON_TYPE,
+            TEXT_PLAIN_TYPE);
+
+    @Test
+    public void testQualityZeroExcludes() {
+        assertEquals(APPLICATION_JSON_TYPE, negotiate("text/html;q=0, */*"));
+        //the specific type's q=0 applies even though a wildcard accepts it
+        assertEquals(TEXT_PLAIN_TYPE, negotiate("text/*, text/html;q=0, application/json;q=0"));
+        assertNull(negotiate("text/*;q=0, application/*;q=0"));
+        assertNull(negotiate("*/*;q=0"));
+    }
+
+    @Test
+    public void testHighestQualityWins() {
+        assertEquals(TEXT_HTML_TYPE, negotiate("*/*;q=0.1, application/json;q=0.5, text/*;q=0.8"));
+        assertEquals(APPLICATION_JSON_TYPE, negotiate("text/*;q=0.5, application/json;q=0.9"));
+    }
+
+    @Test
+    public void testMostSpecificAcceptedTypeDecidesQuality() {
+        //text/html matches text/* too but its own lower quality is what counts
+        assertEquals(TEXT_PLAIN_TYPE, negotiate("text/*;q=0.9, text/html;q=0.1"));
+        assertEquals(TEXT_HTML_TYPE, negotiate("*/*;q=0.9, text/html;q=0.1, application/json;q=0.05, text/plain;q=0"));
+    }
+
+    @Test
+    public void testTiesGoToTheMoreSpecificMatchThenProducedOrder() {
+        assertEquals(APPLICATION_JSON_TYPE, negotiate("text/*, application/json"));
+        assertEquals(TEXT_PLAIN_TYPE, negotiate("*/*, text/plain"));
+        assertEquals(TEXT_HTML_TYPE, negotiate("*/*"));
+        assertEquals(TEXT_HTML_TYPE, negotiate("text/plain, text/html"));
+    }
+
+    @Test
+    public void testNothingAcceptedOrProduced() {
+        assertEquals(TEXT_HTML_TYPE, MediaType.negotiate(PRODUCES, Collections.<MediaType>emptyList()));
+        assertNull(MediaType.negotiate(Collections.<MediaType>emptyList(), Collections.<MediaType>emptyList()));
+        assertNull(negotiate("image/png"));
+    }
+
+    @Test
+    public void testInvalidQualityIsOne() {
+        for (String q : new String[]{ "abc", "2", "-0.5", "NaN", "" }) {
+            List<MediaType> types = MediaType.parse("text/html;q=" + q);
+            assertEquals(1, types.size());
+            assertEquals(1f, types.get(0).quality(), 0f);
+        }
+        assertEquals(0.5f, MediaType.parse("text/html; Q = \"0.5\"").get(0).quality(), 0f);
+    }
+
+    @Test
+    public void testMalformedTypesAndParameters() {
+        //types without both a type and a subtype are dropped
+        assertEquals(Arrays.asList(APPLICATION_JSON_TYPE), MediaType.parse("text, /html, text/, application/json"));
+        assertTrue(MediaType.parse(",;,").isEmpty());
+        assertTrue(MediaType.parse("").isEmpty());
+        assertTrue(MediaType.parse(null).isEmpty());
+        //a parameter without a value is ignored
+        MediaType type = MediaType.parse("text/html;level;charset=utf-8").get(0);
+        assertEquals(1, type.getParameters().size());
+        assertEquals("utf-8", type.getParameters().get("CHARSET"));
+        //quoted values can contain separators
+        List<MediaType> types = MediaType.parse("text/xhtml;x=\"a;bc,123/abc\",text/html;q=0.9");
+        assertEquals(2, types.size());
+        assertEquals("a;bc,123/abc", types.get(0).getParameters().get("x"));
+        assertEquals(TEXT_HTML_TYPE.getSubtype(), types.get(1).getSubtype());
+    }
+
+    @Test
+    public void testParsedInQualityOrder() {
+        List<MediaType> types = MediaType.parse("text/plain;q=0.5, text/html, application/json;q=0.5, */*;q=0.1");
+        assertEquals(Arrays.asList("text/html", "text/plain", "application/json", "*/*"),
+                Arrays.asList(name(types.get(0)), name(types.get(1)), name(types.get(2)), name(types.get(3))));
+    }
+
+    private static MediaType negotiate(String accept) {
+        return MediaType.negotiate(PRODUCES, MediaType.parse(accept));
+    }
+
+    private static String name(MediaType type) {
+        return type.getType() + "/" + type.getSubtype();
+    }
+}
@@ -0,0 +1,37 @@
+package io.higgs.http.server.sse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SseEventTest {
+    @Test
+    public void testEveryLineBreakStartsADataField() {
+        assertEquals("id: 7\nevent: update\ndata: a\ndata: b\ndata: c\ndata: \ndata: d\n\n",
+                encode(new SseEvent("7", "update", "a\r\nb\rc\n\nd")));
+        assertEquals("data: \n\n", encode(new SseEvent(null)));
+        assertEquals("data: x\ndata: \n\n", encode(new SseEvent("x\r")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIdCannotContainCarriageReturn() {
+        new SseEvent("1\rdata: injected", null, "x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNameCannotContainNewLine() {
+        new SseEvent(null, "update\nid: 99", "x");
+    }
+
+    private static String encode(SseEvent event) {
+        ByteBuf buf = event.encode(UnpooledByteBufAllocator.DEFAULT);
+        try {
+            return buf.toString(CharsetUtil.UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+}
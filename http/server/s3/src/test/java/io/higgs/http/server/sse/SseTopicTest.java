@@ -0,0 +1,88 @@
+package io.higgs.http.server.sse;
+
+import io.higgs.http.server.config.HttpConfig;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SseTopicTest {
+    private static final int PUBLISHERS = 4;
+    private static final int EVENTS = 2000;
+
+    @Test(timeout = 60000)
+    public void testConcurrentPublishersDeliverInOrder() throws Exception {
+        final SseTopic topic = new SseTopic("test", 16, UnpooledByteBufAllocator.DEFAULT);
+        EmbeddedChannel[] channels = { new EmbeddedChannel(new ChannelInboundHandlerAdapter()),
+                new EmbeddedChannel(new ChannelInboundHandlerAdapter()) };
+        SseEmitter[] emitters = new SseEmitter[channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            emitters[i] = new SseEmitter(channels[i].pipeline().firstContext(), null, null, new HttpConfig());
+            topic.subscribe(emitters[i], null);
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] publishers = new Thread[PUBLISHERS];
+        for (int i = 0; i < PUBLISHERS; i++) {
+            publishers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int n = 0; n < EVENTS; n++) {
+                        topic.publish(new SseEvent("event"));
+                    }
+                }
+            });
+            publishers[i].start();
+        }
+        start.countDown();
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        for (int i = 0; i < channels.length; i++) {
+            //every event, none dropped, in the order the topic numbered them
+            for (int id = 1; id <= PUBLISHERS * EVENTS; id++) {
+                HttpContent content = (HttpContent) channels[i].readOutbound();
+                String event = content.content().toString(CharsetUtil.UTF_8);
+                content.release();
+                assertTrue(event, event.startsWith("id: " + id + "\n"));
+            }
+            assertNull(channels[i].readOutbound());
+            assertEquals(0, emitters[i].dropped());
+            channels[i].finish();
+        }
+    }
+
+    @Test
+    public void testCoalescedEventSentBeforeNewerOnes() throws Exception {
+        SseTopic topic = new SseTopic("test", 16, UnpooledByteBufAllocator.DEFAULT);
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        SseEmitter emitter = new SseEmitter(channel.pipeline().firstContext(), null, null, new HttpConfig());
+        topic.subscribe(emitter, null);
+        //as if the channel stopped being writable after the first event and became writable before the second
+        topic.publish(new SseEvent("first"));
+        emitter.pending.set(((HttpContent) channel.readOutbound()).content());
+        topic.publish(new SseEvent("second"));
+        String[] expected = { "id: 1\n", "id: 2\n" };
+        for (String id : expected) {
+            HttpContent content = (HttpContent) channel.readOutbound();
+            String event = content.content().toString(CharsetUtil.UTF_8);
+            content.release();
+            assertTrue(event, event.startsWith(id));
+        }
+        assertNull(channel.readOutbound());
+        assertNull(emitter.pending.get());
+        channel.finish();
+    }
+}
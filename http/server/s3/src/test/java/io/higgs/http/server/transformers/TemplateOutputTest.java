@@ -0,0 +1,92 @@
+package io.higgs.http.server.transformers;
+
+import io.higgs.http.server.HttpRequest;
+import io.higgs.http.server.HttpResponse;
+import io.higgs.http.server.params.HttpCookie;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+import org.apache.shiro.subject.Subject;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TemplateOutputTest {
+    @Test
+    public void testSessionCookieSentWithStreamedHeaders() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ChannelHandlerContext ctx = channel.pipeline().firstContext();
+        LazySessionRequest request = new LazySessionRequest();
+        HttpResponse res = new HttpResponse(Unpooled.buffer());
+        res.setCookie("early", "1");
+        TemplateOutput out = new TemplateOutput(ctx, request, res, 8);
+        out.write("<html><body>".getBytes(CharsetUtil.UTF_8));
+        assertTrue(out.isStreaming());
+        assertTrue(request.isSubjectCreated());
+
+        io.netty.handler.codec.http.HttpResponse head = (io.netty.handler.codec.http.HttpResponse)
+                channel.readOutbound();
+        List<String> cookies = head.headers().getAll(HttpHeaders.Names.SET_COOKIE);
+        assertEquals(2, cookies.size());
+        assertTrue(contains(cookies, HttpRequest.SID + "=lazy"));
+        assertTrue(contains(cookies, "early=1"));
+        assertTrue(HttpHeaders.isTransferEncodingChunked(head));
+        assertEquals("<html><body>", ((HttpContent) channel.readOutbound()).content().toString(CharsetUtil.UTF_8));
+
+        //too late to be sent, only logged
+        res.setCookie("late", "2");
+        out.write("</body></html>".getBytes(CharsetUtil.UTF_8));
+        out.complete();
+        assertSame(out, res.getManagedWriter());
+        assertFalse(out.isDone());
+        channel.finish();
+    }
+
+    private static boolean contains(List<String> cookies, String cookie) {
+        for (String c : cookies) {
+            if (c.startsWith(cookie)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class LazySessionRequest extends HttpRequest {
+        private boolean created;
+
+        LazySessionRequest() {
+            super(HttpVersion.HTTP_1_1, HttpMethod.GET, "/page", null);
+        }
+
+        @Override
+        public boolean isSessionEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isSubjectCreated() {
+            return created;
+        }
+
+        @Override
+        public Subject getSubject() {
+            if (!created) {
+                created = true;
+                newSession = true;
+                sessionCookie = new HttpCookie(SID, "lazy");
+            }
+            return null;
+        }
+    }
+}
@@ -13,9 +13,6 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.kohsuke.MetaInfServices;
 
-import java.net.URI;
-import java.net.URISyntaxException;
-
 import static io.higgs.http.server.resource.MediaType.APPLICATION_JSON_TYPE;
 import static io.higgs.http.server.transformers.JsonResponseError.EMPTY_JSON_OBJECT;
 
@@ -40,22 +37,32 @@ public class JsonTransformer extends BaseTransformer {
                 || super.canTransform(response, request, mediaType, method, ctx);
     }
 
+    @Override
+    public boolean canTransformRoute(HttpMethod method) {
+        //any route can be requested with a .json suffix
+        return true;
+    }
+
+    @Override
+    public boolean isCacheable(HttpMethod method) {
+        //if the route produces JSON the path doesn't matter, otherwise a .json suffix has to be checked for
+        return method.hasProduces() && method.produces(supportedTypes());
+    }
+
     private boolean pathIsJson(String uri) {
         if (uri == null || uri.isEmpty()) {
             return false;
         }
-        try {
-            String path = new URI(uri).getPath();
-            if (path == null || path.isEmpty()) {
-                return false;
+        //only the path counts, ignore the query string and fragment
+        int end = uri.length();
+        for (int i = 0; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
             }
-            if (path.endsWith(".json")) {
-                return true;
-            }
-        } catch (URISyntaxException e) {
-            return false;
         }
-        return false;
+        return end >= 5 && uri.startsWith(".json", end - 5);
     }
 
     @Override
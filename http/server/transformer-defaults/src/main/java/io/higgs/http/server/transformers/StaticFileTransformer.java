@@ -75,6 +75,17 @@ public class StaticFileTransformer extends BaseTransformer {
         return isStaticFileResponse(response);
     }
 
+    @Override
+    public boolean canTransformRoute(HttpMethod method) {
+        //any route can return a file
+        return true;
+    }
+
+    @Override
+    public boolean isCacheable(HttpMethod method) {
+        return true;
+    }
+
     @Override
     public void transform(Object response, HttpRequest request, HttpResponse res, MediaType mediaType,
                           HttpMethod method,
@@ -166,6 +166,12 @@ public class StaticFileWriter implements ManagedWriter {
      * @return the final write future
      */
     public ChannelFuture doWrite() {
+        //the handler sets this on the prepared response when the connection is closing, e.g. the server's draining
+        boolean close = !isKeepAlive(request)
+                || HttpHeaders.Values.CLOSE.equalsIgnoreCase(higgsPreparedResponse.headers().get(CONNECTION));
+        if (close) {
+            res.headers().set(CONNECTION, HttpHeaders.Values.CLOSE);
+        }
         if (file.isDirectory()) {
             //send full http response
             return ctx.writeAndFlush(higgsPreparedResponse);
@@ -195,11 +201,11 @@ public class StaticFileWriter implements ManagedWriter {
         });
         ChannelFuture lastWrite = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
         // Decide whether to close the connection or not.
-        if (!isKeepAlive(request)) {
+        if (close) {
             // Close the connection when the whole content is written out.
             lastWrite.addListener(ChannelFutureListener.CLOSE);
         }
-        return writeFuture;
+        return lastWrite;
     }
 
     public boolean isDone() {
@@ -6,7 +6,7 @@ import com.github.jknack.handlebars.HumanizeHelper;
 import com.github.jknack.handlebars.Jackson2Helper;
 import com.github.jknack.handlebars.MarkdownHelper;
 import com.github.jknack.handlebars.Template;
-import com.github.jknack.handlebars.cache.HighConcurrencyTemplateCache;
+import com.github.jknack.handlebars.cache.NullTemplateCache;
 import com.github.jknack.handlebars.context.FieldValueResolver;
 import com.github.jknack.handlebars.context.JavaBeanValueResolver;
 import com.github.jknack.handlebars.context.MapValueResolver;
@@ -20,15 +20,15 @@ import io.higgs.http.server.protocol.HttpMethod;
 import io.higgs.http.server.resource.MediaType;
 import io.higgs.http.server.transformers.BaseTransformer;
 import io.higgs.http.server.transformers.ResponseTransformer;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufOutputStream;
+import io.higgs.http.server.transformers.TemplateCache;
+import io.higgs.http.server.transformers.TemplateOutput;
+import io.higgs.http.server.transformers.TemplateVariables;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.CharsetUtil;
 import org.kohsuke.MetaInfServices;
 
 import javax.ws.rs.WebApplicationException;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -54,6 +54,7 @@ public class HandlebarsTransformer extends BaseTransformer {
     protected HandlebarsConfig config;
     protected Handlebars handlebars;
     protected HiggsTemplateLoader loader;
+    protected TemplateCache<Template> templates;
 
     public HandlebarsTransformer() {
         config = ConfigUtil.loadYaml("handlebars_config.yml", HandlebarsConfig.class);
@@ -74,9 +75,25 @@ public class HandlebarsTransformer extends BaseTransformer {
         if (config.enable_markdown_helper) {
             handlebars.registerHelper("md", MarkdownHelper.INSTANCE);
         }
-        if (config.cache_templates) {
-            handlebars.with(new HighConcurrencyTemplateCache());
-        }
+        //compiled templates are cached by name below, partials are compiled along with the template using them
+        handlebars.with(NullTemplateCache.INSTANCE);
+        int cacheSize = config.cache_templates && !config.dev_mode ? config.template_cache_size : 0;
+        templates = new TemplateCache<>(new TemplateCache.Loader<Template>() {
+            @Override
+            public Template load(String name) throws IOException {
+                return handlebars.compile(name);
+            }
+
+            @Override
+            public long lastModified(String name) {
+                try {
+                    return loader.sourceAt(name).lastModified();
+                } catch (IOException e) {
+                    //missing, load will report it
+                    return -1;
+                }
+            }
+        }, cacheSize, config.template_check_interval_ms);
     }
 
     protected void loadHelpers() {
@@ -98,6 +115,16 @@ public class HandlebarsTransformer extends BaseTransformer {
                 method.hasTemplate() && super.canTransform(response, request, mediaType, method, ctx);
     }
 
+    @Override
+    public boolean canTransformRoute(HttpMethod method) {
+        return method.hasTemplate() && (!method.hasProduces() || method.produces(supportedTypes()));
+    }
+
+    @Override
+    public boolean isCacheable(HttpMethod method) {
+        return method.hasProduces();
+    }
+
     @Override
     public void transform(Object response, HttpRequest request, HttpResponse res, MediaType mediaType,
                           HttpMethod method, ChannelHandlerContext ctx) {
@@ -118,22 +145,21 @@ public class HandlebarsTransformer extends BaseTransformer {
             }
             tpl = method.getTemplate();
         }
-        ByteBuf buf = ctx.alloc().heapBuffer();
-        OutputStream in = new ByteBufOutputStream(buf);
-        Writer writer = new OutputStreamWriter(in);
-
+        TemplateOutput out = new TemplateOutput(ctx, request, res, config.stream_chunk_size);
+        Writer writer = out.writer(CharsetUtil.UTF_8);
         try {
-            Template template = handlebars.compile(tpl);
+            Template template = templates.get(tpl);
             template.apply(scopes(response, request, method), writer);
-            //flush data to byte buf
+            //flush any chars still held by the writer into the output
             writer.flush();
-            byte[] data = new byte[buf.readableBytes()];
-            buf.readBytes(data);
-            setResponseContent(res, data);
+            out.complete();
         } catch (IOException e) {
             log.warn("Failed to write the results of a mustacheTransformer execution", e);
+            out.abort();
             res.setStatus(INTERNAL_SERVER_ERROR);
-            setResponseContent(res, new byte[0]);
+        } catch (RuntimeException e) {
+            out.abort();
+            throw e;
         }
     }
 
@@ -146,26 +172,18 @@ public class HandlebarsTransformer extends BaseTransformer {
                         MethodValueResolver.INSTANCE
                 ).build();
 
-        //${_query} ,${_form},${_files},${_session},${_cookies},${_request},${_response},${_server}
+        //${_query} ,${_form},${_files},${_session},${_cookies},${_request},${_response},${_validation}
+        //the subject and session are stand-ins which are only created if the template uses them
         Map<String, ?> anything = DependencyProvider.global().get(HANDLE_BARS);
-        ctx.data("_query", request.getQueryParams())
-                .data("_form", request.getFormParam())
-                .data("_files", request.getFormFiles())
-                .data("_subject", request.getSubject())
-                .data("_session", request.getSubject().getSession())
-                .data("_cookies", request.getCookies())
-                .data("_request", request)
-                .data("_response", response)
+        ctx.data(new TemplateVariables(request, response, method))
                         //add anything the user sets
                 .data(anything);
-        if (method != null) {
-            ctx.data("_validation", method.getValidationResult());
-        }
         return ctx;
     }
 
     @Override
     public ResponseTransformer instance() {
-        return new HandlebarsTransformer();
+        //compiled templates are immutable and shared so one instance serves every request
+        return this;
     }
 }
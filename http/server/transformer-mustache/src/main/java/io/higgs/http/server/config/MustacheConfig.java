@@ -25,4 +25,22 @@ public class MustacheConfig {
     public String template = ".mustache";
 
     public boolean cache_templates = true;
+    /**
+     * If true templates are compiled on every request so changes show up immediately, for development
+     */
+    public boolean dev_mode;
+    /**
+     * The maximum number of compiled templates to keep
+     */
+    public int template_cache_size = 256;
+    /**
+     * If greater than 0 a cached template is recompiled if its file has been modified, checking at most this often
+     * (in milliseconds)
+     */
+    public long template_check_interval_ms;
+    /**
+     * If greater than 0, once a page's output reaches this many bytes it's sent as chunked content while the rest is
+     * rendered, so large pages start arriving sooner. 0 buffers the whole page and sends it with a Content-Length
+     */
+    public int stream_chunk_size;
 }
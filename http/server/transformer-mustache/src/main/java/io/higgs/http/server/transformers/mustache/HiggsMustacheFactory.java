@@ -38,9 +38,16 @@ public class HiggsMustacheFactory extends DefaultMustacheFactory implements Must
     }
 
     public Mustache compile(String name) {
-        if (config.cache_templates) {
+        if (config.cache_templates && !config.dev_mode) {
             return super.compile(name);
         }
+        return compileTemplate(name);
+    }
+
+    /**
+     * Compile a template, bypassing the factory's own cache
+     */
+    public Mustache compileTemplate(String name) {
         try {
             Mustache mustache = mc.compile(name);
             mustache.init();
@@ -50,6 +57,13 @@ public class HiggsMustacheFactory extends DefaultMustacheFactory implements Must
         }
     }
 
+    /**
+     * @return when the named template's file was last modified
+     */
+    public long lastModified(String name) {
+        return FileUtil.resolve(base, Paths.get(name)).lastModified();
+    }
+
     private MustacheException handle(Exception e) {
         Throwable cause = e.getCause();
         if (cause instanceof MustacheException) {
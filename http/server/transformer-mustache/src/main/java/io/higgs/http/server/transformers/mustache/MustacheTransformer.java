@@ -1,8 +1,9 @@
 package io.higgs.http.server.transformers.mustache;
 
 import com.github.mustachejava.Mustache;
-import com.github.mustachejava.MustacheFactory;
 import io.higgs.core.ConfigUtil;
+import io.higgs.core.reflect.FieldAccessor;
+import io.higgs.core.reflect.FieldAccessors;
 import io.higgs.core.reflect.ReflectionUtil;
 import io.higgs.http.server.HttpRequest;
 import io.higgs.http.server.HttpResponse;
@@ -11,22 +12,21 @@ import io.higgs.http.server.protocol.HttpMethod;
 import io.higgs.http.server.resource.MediaType;
 import io.higgs.http.server.transformers.BaseTransformer;
 import io.higgs.http.server.transformers.ResponseTransformer;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufOutputStream;
+import io.higgs.http.server.transformers.TemplateCache;
+import io.higgs.http.server.transformers.TemplateOutput;
+import io.higgs.http.server.transformers.TemplateVariables;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.CharsetUtil;
 import org.kohsuke.MetaInfServices;
 
 import javax.ws.rs.WebApplicationException;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import static io.higgs.http.server.resource.MediaType.APPLICATION_FORM_URLENCODED_TYPE;
 import static io.higgs.http.server.resource.MediaType.APPLICATION_XHTML_XML_TYPE;
@@ -43,13 +43,26 @@ import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERR
 @MetaInfServices(ResponseTransformer.class)
 public class MustacheTransformer extends BaseTransformer {
     protected MustacheConfig config;
-    protected MustacheFactory mf;
+    protected HiggsMustacheFactory mf;
+    protected TemplateCache<Mustache> templates;
 
     public MustacheTransformer() {
         config = ConfigUtil.loadYaml("mustache_config.yml", MustacheConfig.class);
         setPriority(config.priority);
         addSupportedTypes(WILDCARD_TYPE, TEXT_HTML_TYPE, APPLICATION_FORM_URLENCODED_TYPE, APPLICATION_XHTML_XML_TYPE);
         mf = new HiggsMustacheFactory(config);
+        int cacheSize = config.cache_templates && !config.dev_mode ? config.template_cache_size : 0;
+        templates = new TemplateCache<>(new TemplateCache.Loader<Mustache>() {
+            @Override
+            public Mustache load(String name) {
+                return mf.compileTemplate(name);
+            }
+
+            @Override
+            public long lastModified(String name) {
+                return mf.lastModified(name);
+            }
+        }, cacheSize, config.template_check_interval_ms);
     }
 
     @Override
@@ -59,6 +72,16 @@ public class MustacheTransformer extends BaseTransformer {
                 method.hasTemplate() && super.canTransform(response, request, mediaType, method, ctx);
     }
 
+    @Override
+    public boolean canTransformRoute(HttpMethod method) {
+        return method.hasTemplate() && (!method.hasProduces() || method.produces(supportedTypes()));
+    }
+
+    @Override
+    public boolean isCacheable(HttpMethod method) {
+        return method.hasProduces();
+    }
+
     @Override
     public void transform(Object response, HttpRequest request, HttpResponse res, MediaType mediaType,
                           HttpMethod method, ChannelHandlerContext ctx) {
@@ -74,21 +97,21 @@ public class MustacheTransformer extends BaseTransformer {
             throw new WebApplicationException("MustacheTransformer only supports a template " +
                     "value,  to use fragments use mustacheTransformer's inheritance", FAILED_DEPENDENCY.code());
         }
-        ByteBuf buf = ctx.alloc().heapBuffer();
-        OutputStream in = new ByteBufOutputStream(buf);
-        Writer writer = new OutputStreamWriter(in);
-        Mustache mustache = mf.compile(resoleTemplateName(method.getTemplate()));
-        mustache.execute(writer, scopes(response, request, method));
+        TemplateOutput out = new TemplateOutput(ctx, request, res, config.stream_chunk_size);
+        Writer writer = out.writer(CharsetUtil.UTF_8);
         try {
-            //flush data to byte buf
+            Mustache mustache = templates.get(resoleTemplateName(method.getTemplate()));
+            mustache.execute(writer, scopes(response, request, method));
+            //flush any chars still held by the writer into the output
             writer.flush();
-            byte[] data = new byte[buf.readableBytes()];
-            buf.readBytes(data);
-            setResponseContent(res, data);
+            out.complete();
         } catch (IOException e) {
             log.warn("Failed to write the results of a mustacheTransformer execution", e);
+            out.abort();
             res.setStatus(INTERNAL_SERVER_ERROR);
-            setResponseContent(res, new byte[0]);
+        } catch (RuntimeException e) {
+            out.abort();
+            throw e;
         }
     }
 
@@ -101,22 +124,10 @@ public class MustacheTransformer extends BaseTransformer {
     }
 
     private Object[] scopes(Object response, HttpRequest request, HttpMethod method) {
-        Set<Map<String, Object>> scopes = new HashSet<>();
-        Map<String, Object> global = new HashMap<>();
-        scopes.add(global);
-
-        //${_query} ,${_form},${_files},${_session},${_cookies},${_request},${_response},${_server}
-        global.put("_query", request.getQueryParams());
-        global.put("_form", request.getFormParam());
-        global.put("_files", request.getFormFiles());
-        global.put("_subject", request.getSubject());
-        global.put("_session", request.getSubject().getSession());
-        global.put("_cookies", request.getCookies());
-        global.put("_request", request);
-        global.put("_response", response);
-        if (method != null) {
-            global.put("_validation", method.getValidationResult());
-        }
+        //a list rather than a set, hashing the variables would look up every one of them
+        List<Map<String, Object>> scopes = new ArrayList<>(2);
+        //${_query} ,${_form},${_files},${_session},${_cookies},${_request},${_response} are looked up when used
+        scopes.add(new TemplateVariables(request, response, method));
         //scopes.put("_server", server);
         //response already available under ${_response} so only include if is POJO or Map, then we can
         //do a field to value setup
@@ -129,17 +140,12 @@ public class MustacheTransformer extends BaseTransformer {
             } else {
                 //it must be a POJO otherwise (since its not a primitive or a Map,List or Set...)
                 if (config.extract_pojo_fields) {
-                    //get fields going a max of 10 parent classes up in the chain
-                    Set<Field> fields = ReflectionUtil.getAllFields(new HashSet<Field>(), response.getClass(), 10);
-                    Map<String, Object> variables = new HashMap<>();
+                    //accessors for the class's fields, including inherited ones, are only looked up once
+                    FieldAccessor[] fields = FieldAccessors.of(response.getClass()).all();
+                    Map<String, Object> variables = new HashMap<>(fields.length * 2);
                     scopes.add(variables);
-                    for (Field field : fields) {
-                        try {
-                            field.setAccessible(true);
-                            variables.put(field.getName(), field.get(response));
-                        } catch (IllegalAccessException e) {
-                            log.warn(String.format("Unable to set template variable %s", field.getName()), e);
-                        }
+                    for (FieldAccessor field : fields) {
+                        variables.put(field.name(), field.get(response));
                     }
                 }
             }
@@ -149,6 +155,7 @@ public class MustacheTransformer extends BaseTransformer {
 
     @Override
     public ResponseTransformer instance() {
-        return new MustacheTransformer();
+        //compiled templates are immutable and shared so one instance serves every request
+        return this;
     }
 }
@@ -1,6 +1,8 @@
 package io.higgs.http.server.transformers;
 
 import io.higgs.core.ConfigUtil;
+import io.higgs.core.reflect.FieldAccessor;
+import io.higgs.core.reflect.FieldAccessors;
 import io.higgs.core.reflect.ReflectionUtil;
 import io.higgs.http.server.HttpRequest;
 import io.higgs.http.server.HttpResponse;
@@ -17,13 +19,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.thymeleaf.TemplateEngine;
 
-import java.lang.reflect.Field;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 import static io.higgs.http.server.resource.MediaType.APPLICATION_FORM_URLENCODED_TYPE;
 import static io.higgs.http.server.resource.MediaType.APPLICATION_XHTML_XML_TYPE;
@@ -56,6 +56,16 @@ public class ThymeleafTransformer extends BaseTransformer {
                 method.hasTemplate() && super.canTransform(response, request, mediaType, method, ctx);
     }
 
+    @Override
+    public boolean canTransformRoute(HttpMethod method) {
+        return method.hasTemplate() && (!method.hasProduces() || method.produces(supportedTypes()));
+    }
+
+    @Override
+    public boolean isCacheable(HttpMethod method) {
+        return method.hasProduces();
+    }
+
     public void transform(Object response, HttpRequest request, HttpResponse res, MediaType mediaType,
                           HttpMethod method, ChannelHandlerContext ctx) {
         WebContext webContext = new WebContext();
@@ -65,7 +75,7 @@ public class ThymeleafTransformer extends BaseTransformer {
             template = tl.getFullTemplate(template, fragements);
         }
 
-        byte[] data = null;
+        TemplateOutput out = new TemplateOutput(ctx, request, res, config.stream_chunk_size);
         try {
             if (request != null) {
                 if (config.determine_language_from_accept_header) {
@@ -82,34 +92,28 @@ public class ThymeleafTransformer extends BaseTransformer {
                 template = determineErrorTemplate(res, response);
             }
             populateContext(webContext, response, request, method);
-            String content = tl.getTemplateEngine().process(template, webContext);
-            data = content.getBytes(Charset.forName(config.character_encoding));
+            Writer writer = out.writer(Charset.forName(config.character_encoding));
+            tl.getTemplateEngine().process(template, webContext, writer);
+            writer.flush();
+            out.complete();
         } catch (Throwable e) {
             log.warn("Unable to transform response to HTML using Thymeleaf transformer", e);
+            out.abort();
             res.setStatus(HttpStatus.INTERNAL_SERVER_ERROR);
         }
-        setResponseContent(res, data);
     }
 
     @Override
     public ThymeleafTransformer instance() {
-        return new ThymeleafTransformer();
+        //the template engine is thread safe and holds the parsed template cache so one instance serves every request
+        return this;
     }
 
     private void populateContext(final WebContext ctx, Object response, HttpRequest request, HttpMethod method) {
         //set defaults first so that users can override
-        //${_query} ,${_form},${_files},${_session},${_cookies},${_request},${_response},${_server}
-        ctx.setVariable("_query", request.getQueryParams());
-        ctx.setVariable("_form", request.getFormParam());
-        ctx.setVariable("_files", request.getFormFiles());
-        ctx.setVariable("_subject", request.getSubject());
-        ctx.setVariable("_session", request.getSubject().getSession());
-        ctx.setVariable("_cookies", request.getCookies());
-        ctx.setVariable("_request", request);
-        ctx.setVariable("_response", response);
-        if (method != null) {
-            ctx.setVariable("_validation", method.getValidationResult());
-        }
+        //${_query} ,${_form},${_files},${_session},${_cookies},${_request},${_response}
+        //the subject and session are stand-ins which are only created if the template uses them
+        ctx.setVariables(new TemplateVariables(request, response, method));
         //ctx.setVariable("_server", server);
         //response already available under ${_response} so only include if is POJO or Map, then we can
         //do a field to value setup
@@ -122,15 +126,9 @@ public class ThymeleafTransformer extends BaseTransformer {
             } else {
                 //it must be a POJO otherwise (since its not a primitive or a Map,List or Set...)
                 if (config.convert_pojo_responses_to_key_value_pairs) {
-                    //get fields going a max of 10 parent classes up in the chain
-                    Set<Field> fields = ReflectionUtil.getAllFields(new HashSet<Field>(), response.getClass(), 10);
-                    for (Field field : fields) {
-                        try {
-                            field.setAccessible(true);
-                            ctx.setVariable(field.getName(), field.get(response));
-                        } catch (IllegalAccessException e) {
-                            log.warn(String.format("Unable to set template variable %s", field.getName()), e);
-                        }
+                    //accessors for the class's fields, including inherited ones, are only looked up once
+                    for (FieldAccessor field : FieldAccessors.of(response.getClass()).all()) {
+                        ctx.setVariable(field.name(), field.get(response));
                     }
                 }
             }
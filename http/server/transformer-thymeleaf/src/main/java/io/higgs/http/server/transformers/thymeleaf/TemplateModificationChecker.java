@@ -0,0 +1,49 @@
+package io.higgs.http.server.transformers.thymeleaf;
+
+import io.higgs.core.HiggsServer;
+import io.higgs.http.server.config.TemplateConfig;
+import org.thymeleaf.Template;
+import org.thymeleaf.cache.ICacheEntryValidityChecker;
+import org.thymeleaf.cache.StandardCacheManager;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides if a template in Thymeleaf's template cache is still valid. As well as the resolver's TTL, if a check
+ * interval is configured a template loaded from a file is invalid once the file has been modified after the template
+ * was cached. Each template's file is checked at most once per interval.
+ */
+public class TemplateModificationChecker implements ICacheEntryValidityChecker<String, Template> {
+    private static final long serialVersionUID = 1L;
+    private final String prefix;
+    private final String suffix;
+    private final long checkInterval;
+    private final transient ConcurrentHashMap<String, Long> checkedAt = new ConcurrentHashMap<>();
+
+    public TemplateModificationChecker(TemplateConfig config) {
+        prefix = config.prefix;
+        suffix = config.suffix;
+        checkInterval = config.template_check_interval_ms;
+    }
+
+    @Override
+    public boolean checkIsValueStillValid(String name, Template template, long entryCreationTimestamp) {
+        if (!StandardCacheManager.DEFAULT_TEMPLATE_CACHE_VALIDITY_CHECKER.checkIsValueStillValid(name, template,
+                entryCreationTimestamp)) {
+            return false;
+        }
+        if (checkInterval <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Long last = checkedAt.get(name);
+        if (last != null && now - last < checkInterval) {
+            return true;
+        }
+        checkedAt.put(name, now);
+        //templates from the class path or a URL don't exist here and are left to the TTL
+        File file = HiggsServer.BASE_PATH.resolve(prefix + name + suffix).toFile();
+        return !file.exists() || file.lastModified() <= entryCreationTimestamp;
+    }
+}
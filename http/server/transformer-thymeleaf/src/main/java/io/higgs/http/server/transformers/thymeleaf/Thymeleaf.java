@@ -3,6 +3,7 @@ package io.higgs.http.server.transformers.thymeleaf;
 import io.higgs.core.HiggsServer;
 import io.higgs.http.server.config.TemplateConfig;
 import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.cache.StandardCacheManager;
 import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 import org.thymeleaf.templateresolver.FileTemplateResolver;
 import org.thymeleaf.templateresolver.ITemplateResolver;
@@ -39,6 +40,11 @@ public class Thymeleaf {
         this.config = config;
         this.ignoreConfigPrefixAndSuffix = ignoreConfigPrefixAndSuffix;
         templateEngine.setTemplateResolvers(getTemplateResolvers());
+        StandardCacheManager cacheManager = new StandardCacheManager();
+        //a max size of 0 turns the template cache off
+        cacheManager.setTemplateCacheMaxSize(config.dev_mode ? 0 : config.template_cache_size);
+        cacheManager.setTemplateCacheValidityChecker(new TemplateModificationChecker(config));
+        templateEngine.setCacheManager(cacheManager);
         if (config.auto_initialize_thymeleaf) {
             templateEngine.initialize();
         }
@@ -60,18 +66,19 @@ public class Thymeleaf {
         urlResolver.setTemplateMode(config.template_mode);
         clResolver.setTemplateMode(config.template_mode);
 
+        boolean cacheable = config.cacheable && !config.dev_mode;
         //
-        clResolver.setCacheable(config.cacheable);
+        clResolver.setCacheable(cacheable);
         clResolver.setCacheTTLMs(config.cache_age_ms);
         clResolver.setCharacterEncoding(config.character_encoding);
         clResolver.setOrder(config.classLoader_resolver_order);
         //
-        fileResolver.setCacheable(config.cacheable);
+        fileResolver.setCacheable(cacheable);
         fileResolver.setCacheTTLMs(config.cache_age_ms);
         fileResolver.setCharacterEncoding(config.character_encoding);
         fileResolver.setOrder(config.fileResolver_order);
         //
-        urlResolver.setCacheable(config.cacheable);
+        urlResolver.setCacheable(cacheable);
         urlResolver.setCacheTTLMs(config.cache_age_ms);
         urlResolver.setCharacterEncoding(config.character_encoding);
         urlResolver.setOrder(config.url_resolver_order);
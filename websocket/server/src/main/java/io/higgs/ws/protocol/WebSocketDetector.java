@@ -3,6 +3,7 @@ package io.higgs.ws.protocol;
 import io.higgs.http.server.HttpRequestDecoder;
 import io.higgs.http.server.HttpResponseEncoder;
 import io.higgs.http.server.protocol.HttpDetector;
+import io.higgs.http.server.ratelimit.RateLimitHandler;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
@@ -37,6 +38,10 @@ public class WebSocketDetector extends HttpDetector {
         p.addLast("ws-aggregator", new HttpObjectAggregator(65536));
         p.addLast("ws-encoder", new HttpResponseEncoder());
         p.addLast("ws-chunkedWriter", new ChunkedWriteHandler());
+        if (config.getRateLimiter() != null) {
+            p.addLast("ws-rateLimiter", new RateLimitHandler(config.getRateLimiter(), config.getAccessLog(),
+                    config.getServer().getMetrics()));
+        }
         p.addLast("ws-handler", h);
         return h;
     }
@@ -7,6 +7,7 @@ import io.higgs.http.server.protocol.HttpDetectorFactory;
  * @author Courtney Robinson <courtney@crlog.info>
  */
 public class WebSocketDetectorFactory extends HttpDetectorFactory {
+    private static final byte[][] SIGNATURES = {{'G', 'E'}};
     private final WebSocketConfiguration config;
 
     public WebSocketDetectorFactory(WebSocketConfiguration config) {
@@ -19,6 +20,11 @@ public class WebSocketDetectorFactory extends HttpDetectorFactory {
         return new WebSocketDetector(config);
     }
 
+    @Override
+    public byte[][] signatures() {
+        return SIGNATURES;
+    }
+
     @Override
     public int priority() {
         return 1;
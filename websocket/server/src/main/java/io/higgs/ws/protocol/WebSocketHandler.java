@@ -1,6 +1,7 @@
 package io.higgs.ws.protocol;
 
 import com.google.common.net.HttpHeaders;
+import io.higgs.core.ServerEvent;
 import io.higgs.core.StaticUtil;
 import io.higgs.http.server.protocol.HttpHandler;
 import io.netty.buffer.Unpooled;
@@ -34,6 +35,10 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
  * @author Courtney Robinson <courtney@crlog.info>
  */
 public class WebSocketHandler extends HttpHandler {
+    /**
+     * The close status sent to web socket clients when the server is shutting down
+     */
+    protected static final int GOING_AWAY = 1001;
     private final String WEBSOCKET_PATH;
     protected WebSocketConfiguration protocolConfig;
     private WebSocketServerHandshaker handshaker;
@@ -88,12 +93,22 @@ public class WebSocketHandler extends HttpHandler {
                 WebSocketServerHandshakerFactory.sendUnsupportedWebSocketVersionResponse(ctx.channel());
             } else {
                 handshaker.handshake(ctx.channel(), req);
+                //the connection stays open for frames, a drain must wait for it
+                server.markBusy(ctx.channel());
             }
         } catch (WebSocketHandshakeException wshe) {
             super.channelRead0(ctx, req);
         }
     }
 
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == ServerEvent.DRAINING && handshaker != null) {
+            handshaker.close(ctx.channel(), new CloseWebSocketFrame(GOING_AWAY, "Server shutting down"));
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
     private void handleWebSocketFrame(ChannelHandlerContext ctx, WebSocketFrame frame) {
 
         // Check for closing frame